@@ -0,0 +1,186 @@
+package Formula1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * This BenchmarkFixture class holds the raw responses of one season and one of its races, read from a
+ * response cache directory, for the benchmarks to work on.
+ *
+ * The directory is given by the f1.fixtures system property and can be a cache recorded from the
+ * real API, for example the .f1cache directory of the visualizer. Without it, a synthetic season is
+ * generated into a temporary directory with FixtureGenerator. The f1.year and f1.race properties choose
+ * the season and the index of the race within it.
+ */
+public class BenchmarkFixture {
+    private final API api = new API();
+    private final ResponseCache cache;
+
+    private final String seasonJson;
+    private final Race race;
+    private final String driversJson;
+    private final String pitsJson;
+    private final List<String> lapsJsons = new ArrayList<>();
+
+    /**
+     * Loads the fixture chosen by the system properties.
+     */
+    public BenchmarkFixture() {
+        int year = Integer.getInteger("f1.year", 2024);
+        int raceIndex = Integer.getInteger("f1.race", 0);
+        try {
+            String directory = System.getProperty("f1.fixtures");
+            if (directory != null) {
+                cache = new ResponseCache(Paths.get(directory), true);
+            } else {
+                Path generated = Files.createTempDirectory("f1-fixtures");
+                cache = FixtureGenerator.write(generated, year, 24, year);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        seasonJson = require(api.getSeasonURL(year));
+        race = api.decodeRaces(seasonJson).get(raceIndex);
+        int sessionKey = race.getSessionKey();
+        driversJson = require(api.getDriversURL(sessionKey));
+        pitsJson = require(api.getPitURL(sessionKey));
+        JSONArray drivers = new JSONArray(driversJson);
+        for (int i = 0; i < drivers.length(); i++) {
+            int number = drivers.getJSONObject(i).getInt("driver_number");
+            lapsJsons.add(require(api.getLapsURL(sessionKey, number)));
+        }
+    }
+
+    /**
+     * Gets a response from the cache, failing the benchmark if it was not recorded.
+     *
+     * @param url The URL of the request
+     * @return The body of the response
+     */
+    private String require(String url) {
+        String body = cache.get(url);
+        if (body == null) {
+            throw new IllegalStateException("No fixture for " + url + " in " + cache.getDirectory());
+        }
+        return body;
+    }
+
+    /**
+     * Gets the response cache the fixture was read from, for benchmarks working on the whole season.
+     *
+     * @return The response cache
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets the API used to decode the responses.
+     *
+     * @return The API
+     */
+    public API getApi() {
+        return api;
+    }
+
+    /**
+     * Gets the response of the sessions endpoint for the season.
+     *
+     * @return The JSON array of race sessions
+     */
+    public String getSeasonJson() {
+        return seasonJson;
+    }
+
+    /**
+     * Gets the race the other responses belong to.
+     *
+     * @return The race
+     */
+    public Race getRace() {
+        return race;
+    }
+
+    /**
+     * Gets the response of the drivers endpoint for the race.
+     *
+     * @return The JSON array of drivers
+     */
+    public String getDriversJson() {
+        return driversJson;
+    }
+
+    /**
+     * Gets the response of the pit endpoint for the race.
+     *
+     * @return The JSON array of pit stops
+     */
+    public String getPitsJson() {
+        return pitsJson;
+    }
+
+    /**
+     * Gets the responses of the laps endpoint for the race, in the order of the drivers response.
+     *
+     * @return One JSON array of laps per driver
+     */
+    public List<String> getLapsJsons() {
+        return lapsJsons;
+    }
+
+    /**
+     * Decodes the drivers of the race.
+     *
+     * @return The drivers who completed a lap
+     */
+    public List<Driver> decodeDrivers() {
+        JSONArray drivers = new JSONArray(driversJson);
+        List<Driver> decoded = new ArrayList<>();
+        for (int i = 0; i < drivers.length(); i++) {
+            Driver driver = api.decodeDriver(drivers.getJSONObject(i), new JSONArray(lapsJsons.get(i)));
+            if (driver != null) {
+                decoded.add(driver);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes the pit stops of the race.
+     *
+     * @return The pit stops
+     */
+    public List<Pitstop> decodePitstops() {
+        return api.decodePitstops(new JSONArray(pitsJson));
+    }
+
+    /**
+     * Gets the last lap of each driver with a duration, in the order of the drivers response, as the
+     * driver decoding reads it.
+     *
+     * @return One JSON object per driver, or null for drivers without laps
+     */
+    public List<JSONObject> lastLaps() {
+        List<JSONObject> lastLaps = new ArrayList<>();
+        for (String lapsJson : lapsJsons) {
+            JSONArray laps = new JSONArray(lapsJson);
+            JSONObject last = null;
+            for (int i = laps.length() - 1; i >= 0 && last == null; i--) {
+                if (!laps.getJSONObject(i).isNull("lap_duration")) {
+                    last = laps.getJSONObject(i);
+                }
+            }
+            lastLaps.add(last);
+        }
+        return lastLaps;
+    }
+}
@@ -0,0 +1,72 @@
+package Formula1;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * This DecodeBenchmark class measures turning the responses of the sessions, drivers, pit, and laps
+ * endpoints into objects, the work done by API after every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DecodeBenchmark {
+    private BenchmarkFixture fixture;
+    private API api;
+
+    @Setup
+    public void setUp() {
+        fixture = new BenchmarkFixture();
+        api = fixture.getApi();
+    }
+
+    /**
+     * Decodes the races of a season.
+     */
+    @Benchmark
+    public List<Race> sessions() {
+        return api.decodeRaces(fixture.getSeasonJson());
+    }
+
+    /**
+     * Decodes the drivers of a race, including parsing each driver's laps to find their finish.
+     */
+    @Benchmark
+    public List<Driver> drivers() {
+        return fixture.decodeDrivers();
+    }
+
+    /**
+     * Decodes the pit stops of a race.
+     */
+    @Benchmark
+    public List<Pitstop> pits() {
+        return api.decodePitstops(new JSONArray(fixture.getPitsJson()));
+    }
+
+    /**
+     * Parses the laps of every driver in a race, without building drivers.
+     */
+    @Benchmark
+    public void laps(Blackhole blackhole) {
+        for (String lapsJson : fixture.getLapsJsons()) {
+            blackhole.consume(new JSONArray(lapsJson));
+        }
+    }
+}
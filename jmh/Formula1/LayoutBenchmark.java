@@ -0,0 +1,66 @@
+package Formula1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This LayoutBenchmark class measures computing the coordinates of a race chart, the same layout
+ * DataVisualizer draws and ChartExporter renders, and indexing its points for hover lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LayoutBenchmark {
+    private static final double WIDTH = 1500, HEIGHT = 800;
+
+    private Race race;
+    private RaceData raceData;
+    private ChartLayout layout;
+    private PointIndex index;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture();
+        race = fixture.getRace();
+        raceData = new RaceData(fixture.decodeDrivers(), fixture.decodePitstops());
+        layout = new ChartLayout(race, raceData, WIDTH, HEIGHT);
+        index = new PointIndex(layout.getDataPoints(), 20);
+    }
+
+    /**
+     * Lays out the axes, legend, and traces of a race chart.
+     */
+    @Benchmark
+    public ChartLayout layout() {
+        return new ChartLayout(race, raceData, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Builds the hover index over the points of a laid out chart.
+     */
+    @Benchmark
+    public PointIndex pointIndex() {
+        return new PointIndex(layout.getDataPoints(), 20);
+    }
+
+    /**
+     * Finds the point under the mouse, once per hover event.
+     */
+    @Benchmark
+    public ChartLayout.DataPoint hover() {
+        return index.nearest(WIDTH / 2, HEIGHT / 2, 8);
+    }
+}
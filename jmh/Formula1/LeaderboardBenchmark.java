@@ -0,0 +1,75 @@
+package Formula1;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This LeaderboardBenchmark class measures keeping the pit crew leaderboards of a season up to date
+ * when one of its races is loaded again, incrementally with PitLeaderboards and, for comparison, by
+ * building the leaderboards or the season analytics again from every race.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LeaderboardBenchmark {
+    private final List<Race> races = new ArrayList<>();
+    private final List<RaceData> raceData = new ArrayList<>();
+    private PitLeaderboards leaderboards;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture();
+        API api = fixture.getApi();
+        for (Race race : api.decodeRaces(fixture.getSeasonJson())) {
+            races.add(race);
+            raceData.add(new RaceData(api.fetchDriverInfo(race.getSessionKey()),
+                api.fetchPitInfo(race.getSessionKey())));
+        }
+        int year = races.get(0).getRaceStartTime().atOffset(ZoneOffset.UTC).getYear();
+        leaderboards = PitLeaderboards.of(year, races, raceData);
+    }
+
+    /**
+     * Replaces the stops of one race in leaderboards holding the whole season, taking a different race
+     * each time.
+     */
+    @Benchmark
+    public List<PitLeaderboards.FastStop> incrementalUpdate() {
+        int r = next++ % races.size();
+        leaderboards.update(races.get(r), raceData.get(r));
+        return leaderboards.getFastestStops();
+    }
+
+    /**
+     * Builds the leaderboards again from every race of the season.
+     */
+    @Benchmark
+    public List<PitLeaderboards.FastStop> fullRecompute() {
+        return PitLeaderboards.of(leaderboards.getYear(), races, raceData).getFastestStops();
+    }
+
+    /**
+     * Builds the season analytics, which rescan and sort every stop of the season.
+     */
+    @Benchmark
+    public List<SeasonAnalytics.TeamStats> seasonAnalytics() {
+        return new SeasonAnalytics(leaderboards.getYear(), races, raceData).getTeams();
+    }
+}
@@ -0,0 +1,137 @@
+package Formula1;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * This ModelBenchmark class measures building the model objects once the JSON has been parsed:
+ * Pitstop and Driver construction from their field values, including parsing the OffsetDateTime
+ * strings and team colours, and organizing them into a RaceData, and looking drivers up in it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ModelBenchmark {
+    private int[] pitDrivers, pitLaps;
+    private double[] pitDurations;
+    private String[] pitDates;
+
+    private String[] names, colours, teams, lastLapStarts;
+    private int[] numbers, finalLaps;
+    private double[] lastLapDurations;
+
+    private List<Driver> drivers;
+    private List<Pitstop> pitstops;
+    private RaceData raceData;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture();
+
+        JSONArray pits = new JSONArray(fixture.getPitsJson());
+        pitDrivers = new int[pits.length()];
+        pitLaps = new int[pits.length()];
+        pitDurations = new double[pits.length()];
+        pitDates = new String[pits.length()];
+        for (int i = 0; i < pits.length(); i++) {
+            JSONObject pit = pits.getJSONObject(i);
+            pitDrivers[i] = pit.getInt("driver_number");
+            pitLaps[i] = pit.getInt("lap_number");
+            pitDurations[i] = pit.getDouble("pit_duration");
+            pitDates[i] = pit.getString("date");
+        }
+
+        JSONArray driverArray = new JSONArray(fixture.getDriversJson());
+        List<JSONObject> lastLaps = fixture.lastLaps();
+        int count = (int) lastLaps.stream().filter(lap -> lap != null).count();
+        names = new String[count];
+        colours = new String[count];
+        teams = new String[count];
+        lastLapStarts = new String[count];
+        numbers = new int[count];
+        finalLaps = new int[count];
+        lastLapDurations = new double[count];
+        for (int i = 0, d = 0; i < driverArray.length(); i++) {
+            JSONObject lastLap = lastLaps.get(i);
+            if (lastLap == null) {
+                continue;
+            }
+            JSONObject driver = driverArray.getJSONObject(i);
+            names[d] = driver.getString("name_acronym");
+            colours[d] = driver.optString("team_colour", "000000");
+            teams[d] = driver.optString("team_name", "Unknown");
+            numbers[d] = driver.getInt("driver_number");
+            lastLapStarts[d] = lastLap.getString("date_start");
+            finalLaps[d] = lastLap.getInt("lap_number");
+            lastLapDurations[d] = lastLap.getDouble("lap_duration");
+            d++;
+        }
+
+        drivers = fixture.decodeDrivers();
+        pitstops = fixture.decodePitstops();
+        raceData = new RaceData(drivers, pitstops);
+    }
+
+    /**
+     * Builds every pit stop of a race, parsing the date of each.
+     */
+    @Benchmark
+    public void pitstops(Blackhole blackhole) {
+        for (int i = 0; i < pitDates.length; i++) {
+            blackhole.consume(new Pitstop(pitDrivers[i], pitLaps[i], pitDurations[i],
+                OffsetDateTime.parse(pitDates[i]).toInstant()));
+        }
+    }
+
+    /**
+     * Builds every driver of a race, parsing the start of their last lap and their team colour.
+     */
+    @Benchmark
+    public void drivers(Blackhole blackhole) {
+        for (int i = 0; i < names.length; i++) {
+            Instant start = OffsetDateTime.parse(lastLapStarts[i]).toInstant();
+            Instant finish = start.plus((long) (lastLapDurations[i] * 1000), ChronoUnit.MILLIS);
+            blackhole.consume(new Driver(names[i], numbers[i], finish, finalLaps[i], colours[i], teams[i]));
+        }
+    }
+
+    /**
+     * Organizes the drivers and pit stops of a race into a RaceData.
+     */
+    @Benchmark
+    public RaceData raceData() {
+        return new RaceData(drivers, pitstops);
+    }
+
+    /**
+     * Looks up the driver and pit stops of every pit stop of a race by driver number, the way the
+     * chart and the analytics do.
+     */
+    @Benchmark
+    public void lookups(Blackhole blackhole) {
+        for (int i = 0; i < pitDrivers.length; i++) {
+            blackhole.consume(raceData.getDrivers().get(pitDrivers[i]));
+            blackhole.consume(raceData.getDriversPitstops().get(pitDrivers[i]));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package Formula1;
+
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * This PositionBenchmark class measures the queries of the position timelines of a whole season: the
+ * positions of all drivers at a time of a race, and the positions around every pit stop of the season,
+ * with PositionTimeline and, for comparison, by scanning the updates of the race in time order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PositionBenchmark {
+    private static final int QUERIES = 1024;
+
+    private API api;
+    private final List<Race> races = new ArrayList<>();
+    private final List<String> positionJsons = new ArrayList<>();
+    private final List<PositionTimeline> timelines = new ArrayList<>();
+    private final List<long[][]> updates = new ArrayList<>();
+    private final List<List<Pitstop>> seasonPitstops = new ArrayList<>();
+    private final long[] queryTimes = new long[QUERIES];
+    private final int[] queryRaces = new int[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture();
+        api = fixture.getApi();
+        ResponseCache cache = fixture.getCache();
+        long longest = 0;
+        for (Race race : api.decodeRaces(fixture.getSeasonJson())) {
+            String positions = cache.get(api.getPositionURL(race.getSessionKey()));
+            String pits = cache.get(api.getPitURL(race.getSessionKey()));
+            if (positions == null || pits == null) {
+                continue;
+            }
+            races.add(race);
+            positionJsons.add(positions);
+            timelines.add(api.decodePositions(race, positions));
+            seasonPitstops.add(api.decodePitstops(new JSONArray(pits)));
+
+            // The updates as time, driver, and position, in time order, for the scan
+            JSONArray rows = new JSONArray(positions);
+            List<long[]> raceUpdates = new ArrayList<>();
+            for (int i = 0; i < rows.length(); i++) {
+                JSONObject row = rows.getJSONObject(i);
+                long offset = race.getRaceStartTime().until(OffsetDateTime.parse(row.getString("date")).toInstant(),
+                    ChronoUnit.MILLIS);
+                raceUpdates.add(new long[] {offset, row.getInt("driver_number"), row.getInt("position")});
+            }
+            raceUpdates.sort((a, b) -> Long.compare(a[0], b[0]));
+            updates.add(raceUpdates.toArray(new long[0][]));
+            longest = Math.max(longest, raceUpdates.get(raceUpdates.size() - 1)[0]);
+        }
+        if (races.isEmpty()) {
+            throw new IllegalStateException("No race with positions and pit stops in " + cache.getDirectory());
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        for (int q = 0; q < QUERIES; q++) {
+            queryRaces[q] = random.nextInt(races.size());
+            queryTimes[q] = random.nextLong(longest);
+        }
+    }
+
+    /**
+     * Finds the positions of all drivers at a time of a race, taking another race and time each time.
+     */
+    @Benchmark
+    public Map<Integer, Integer> positionsAt() {
+        int q = next++ & (QUERIES - 1);
+        return timelines.get(queryRaces[q]).positionsAt(queryTimes[q]);
+    }
+
+    /**
+     * Finds the positions of all drivers at a time of a race by applying the race's updates up to the
+     * time, one at a time.
+     */
+    @Benchmark
+    public Map<Integer, Integer> positionsAtByScan() {
+        int q = next++ & (QUERIES - 1);
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (long[] update : updates.get(queryRaces[q])) {
+            if (update[0] > queryTimes[q]) {
+                break;
+            }
+            positions.put((int) update[1], (int) update[2]);
+        }
+        return positions;
+    }
+
+    /**
+     * Finds the positions before and after every pit stop of the season.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void seasonPitChanges(Blackhole blackhole) {
+        for (int r = 0; r < races.size(); r++) {
+            Race race = races.get(r);
+            PositionTimeline timeline = timelines.get(r);
+            for (Pitstop pitstop : seasonPitstops.get(r)) {
+                blackhole.consume(timeline.changeAt(race, pitstop));
+            }
+        }
+    }
+
+    /**
+     * Decodes the position responses of the whole season into timelines.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void decodeSeason(Blackhole blackhole) {
+        for (int r = 0; r < races.size(); r++) {
+            blackhole.consume(api.decodePositions(races.get(r), positionJsons.get(r)));
+        }
+    }
+}
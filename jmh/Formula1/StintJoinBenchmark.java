@@ -0,0 +1,86 @@
+package Formula1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * This StintJoinBenchmark class measures joining the pit stops of a whole season to their outgoing
+ * stints, with the hash join RaceData uses and, for comparison, with a nested loop over the stints of
+ * each stop. One operation joins every race of the season.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StintJoinBenchmark {
+    private final List<List<Pitstop>> seasonPitstops = new ArrayList<>();
+    private final List<List<Stint>> seasonStints = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture();
+        API api = fixture.getApi();
+        ResponseCache cache = fixture.getCache();
+        for (Race race : api.decodeRaces(fixture.getSeasonJson())) {
+            String pits = cache.get(api.getPitURL(race.getSessionKey()));
+            String stints = cache.get(api.getStintsURL(race.getSessionKey()));
+            if (pits == null || stints == null) {
+                continue;
+            }
+            seasonPitstops.add(api.decodePitstops(new JSONArray(pits)));
+            seasonStints.add(api.decodeStints(new JSONArray(stints)));
+        }
+        if (seasonPitstops.isEmpty()) {
+            throw new IllegalStateException("No race with both pit stops and stints in " + cache.getDirectory());
+        }
+    }
+
+    /**
+     * Joins the season with one pass over each race's stints and one over its pit stops.
+     */
+    @Benchmark
+    public void hashJoin(Blackhole blackhole) {
+        for (int r = 0; r < seasonPitstops.size(); r++) {
+            blackhole.consume(RaceData.joinStints(seasonPitstops.get(r), seasonStints.get(r)));
+        }
+    }
+
+    /**
+     * Joins the season by searching every stint of the race for each pit stop.
+     */
+    @Benchmark
+    public void nestedLoopJoin(Blackhole blackhole) {
+        for (int r = 0; r < seasonPitstops.size(); r++) {
+            List<Stint> stints = seasonStints.get(r);
+            List<Pitstop> joined = new ArrayList<>();
+            for (Pitstop pitstop : seasonPitstops.get(r)) {
+                Stint outgoing = null;
+                for (Stint stint : stints) {
+                    if (stint.getDriversID() == pitstop.getDriversID()
+                        && (stint.getLapStart() == pitstop.getLapNum() + 1
+                            || outgoing == null && stint.getLapStart() == pitstop.getLapNum())) {
+                        outgoing = stint;
+                    }
+                }
+                joined.add(outgoing == null ? pitstop : pitstop.withStint(outgoing));
+            }
+            blackhole.consume(joined);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package Formula1;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This StrategyBenchmark class measures the StrategySimulator running a batch of race simulations on
+ * pools of different sizes, to show how it scales with cores. Each operation simulates SIMULATIONS
+ * races of a two-stop strategy against the actual strategy of the race winner, so races per second is
+ * the score times SIMULATIONS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StrategyBenchmark {
+    public static final int SIMULATIONS = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private StrategySimulator simulator;
+    private Driver driver;
+    private StrategySimulator.Strategy strategy;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture();
+        Race race = fixture.getRace();
+        RaceData raceData = new RaceData(fixture.decodeDrivers(), fixture.decodePitstops());
+        driver = raceData.getDrivers().values().stream()
+            .max(Comparator.comparingInt(Driver::getFinalLap)
+                .thenComparing(Comparator.comparingLong((Driver d) -> d.getRaceFinishTime(race)).reversed()))
+            .orElseThrow();
+        int laps = driver.getFinalLap();
+        strategy = new StrategySimulator.Strategy(new int[] {laps / 3, 2 * laps / 3});
+        pool = new ForkJoinPool(threads);
+        simulator = new StrategySimulator(race, raceData, StrategySimulator.pitLosses(List.of(raceData)),
+            0.06, 0.4, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Simulates a batch of races of one strategy.
+     */
+    @Benchmark
+    public StrategySimulator.Outcome simulate() {
+        return simulator.simulate(driver, strategy, SIMULATIONS, seed++);
+    }
+}
@@ -1,32 +1,80 @@
 package Formula1;
 
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 
 /**
  * This API class provides methods to interact with the OpenF1 API and retrieves data related to the
  * races. It fetches data in JSON format from specified endpoints and turns it into structured Java
  * objects for future processing. Includes details about races, drivers, and pitstops.
+ *
+ * Responses go through the response cache when there is one, except those of races that are not over
+ * yet, whose rows may still change, and empty responses, which a race that has not been run returns.
+ * Races are known to be unfinished once they have been decoded from a season by this API. The races
+ * of the current season are fetched again each time, as races are added to it.
  */
 public class API {
-    private String pitURL = "https://api.openf1.org/vi/pit?",
-        driverURL = "https://api.openf1.org/v1/drivers?",
-        sessionURL = "https://api.openf1.org/v1/sessions?",
-        lapURL = "https://api.openf1.org/v1/laps?";
+    public static final String OPENF1_URL = "https://api.openf1.org";
+
+    private String pitURL, driverURL, sessionURL, lapURL, stintURL, carDataURL, positionURL;
+    private ResponseCache cache;
+    private final Set<Integer> unfinishedSessions = ConcurrentHashMap.newKeySet();
 
     /**
      * Constructs an API object for interacting with the OpenF1 API.
      */
     public API() {
+        this(OPENF1_URL, null);
+    }
+
+    /**
+     * Constructs an API object for interacting with the OpenF1 API that reuses cached responses.
+     * 
+     * @param cache The cache of previously fetched responses, or null to always use the network
+     */
+    public API(ResponseCache cache) {
+        this(OPENF1_URL, cache);
+    }
+
+    /**
+     * Constructs an API object for interacting with an OpenF1 compatible server.
+     * 
+     * @param baseURL The URL of the server, without a trailing slash
+     * @param cache   The cache of previously fetched responses, or null to always use the network
+     */
+    public API(String baseURL, ResponseCache cache) {
+        pitURL = baseURL + "/v1/pit?";
+        driverURL = baseURL + "/v1/drivers?";
+        sessionURL = baseURL + "/v1/sessions?";
+        lapURL = baseURL + "/v1/laps?";
+        stintURL = baseURL + "/v1/stints?";
+        carDataURL = baseURL + "/v1/car_data?";
+        positionURL = baseURL + "/v1/position?";
+        this.cache = cache;
     }
 
     /**
@@ -36,20 +84,303 @@ public class API {
      * @return A list of Race objects representing all the races in the given year.
      */
     public List<Race> getSeasonRaces(int year) {
-        JSONArray raceData = fetchAllRacesForYear(year);
         List<Race> races = new ArrayList<>();
-        for (int i = 0; i < raceData.length(); i++) {
-            JSONObject object = raceData.getJSONObject(i);
-            races.add(
-                new Race(
-                    object.getInt("session_key"),
-                    object.getString("circuit_short_name"),
-                    object.getString("date_start"),
-                    OffsetDateTime.parse(object.getString("date_start")).toInstant()));
+        streamSeasonRaces(year, races::add);
+        return races;
+    }
+
+    /**
+     * Fetches all the races in a specified season, handing each race over as soon as its row of the
+     * response has been decoded instead of waiting for the whole response. The races of the current
+     * season, or of a later one, are fetched again each time, since races are added as the season goes
+     * on; the response cache only stands in for them when it is offline.
+     * 
+     * @param year   The year of the season.
+     * @param onRace Called with each race, in season order.
+     * @return true if the whole season was read, false if the request or decoding failed part way.
+     */
+    public boolean streamSeasonRaces(int year, Consumer<Race> onRace) {
+        try {
+            boolean current = year >= Instant.now().atOffset(ZoneOffset.UTC).getYear();
+            streamRows(getSeasonURL(year), "sessions", current, row -> onRace.accept(decodeRace(row)));
+            return true;
+        } catch (IOException | JSONException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in streamSeasonRaces");
+            return false;
+        }
+    }
+
+    /**
+     * Fetches the car data of one driver between two instants, handing each sample over as soon as its
+     * row of the response has been decoded. The samples are never held together, so however many
+     * there are, only one is in memory at a time. The response is written to the response cache and
+     * read back from it as a stream too, so the body is never held whole either.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @param driverID   The number of the driver.
+     * @param from       The earliest sample time to fetch.
+     * @param to         The latest sample time to fetch.
+     * @param onSample   Called with the time and speed in km/h of each sample, in time order.
+     * @return The number of samples read.
+     * @throws IOException If the request fails or an offline cache has no response for it.
+     */
+    public int streamCarData(int sessionKey, int driverID, Instant from, Instant to, SampleConsumer onSample)
+        throws IOException {
+        int[] count = new int[1];
+        streamRows(getCarDataURL(sessionKey, driverID, from, to), "car_data", false, row -> {
+            if (!row.isNull("speed")) {
+                count[0]++;
+                onSample.accept(OffsetDateTime.parse(row.getString("date")).toInstant(), row.getInt("speed"));
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Fetches the position updates of every driver in a race, adding each to the timeline as soon as
+     * its row of the response has been decoded.
+     * 
+     * @param race The race.
+     * @return The position timeline of the race.
+     * @throws IOException If the request fails or an offline cache has no response for it.
+     */
+    public PositionTimeline fetchPositions(Race race) throws IOException {
+        PositionTimeline.Builder builder = new PositionTimeline.Builder();
+        streamRows(getPositionURL(race.getSessionKey()), "position", false,
+            row -> addPosition(builder, race, row));
+        return builder.build();
+    }
+
+    /**
+     * Decodes a response of the position endpoint.
+     * 
+     * @param race The race the positions belong to.
+     * @param json The JSON array of position updates.
+     * @return The position timeline of the race.
+     */
+    public PositionTimeline decodePositions(Race race, String json) {
+        HotPathEvents.Decode event = new HotPathEvents.Decode();
+        event.begin();
+        long start = System.nanoTime();
+        PositionTimeline.Builder builder = new PositionTimeline.Builder();
+        int rows = readRows(new StringReader(json), row -> addPosition(builder, race, row));
+        recordDecode(event, "position", rows, start);
+        return builder.build();
+    }
+
+    /**
+     * Adds one row of the position endpoint to a timeline. Rows without a position are skipped.
+     * 
+     * @param builder The builder of the timeline.
+     * @param race    The race the position belongs to.
+     * @param row     The JSON object of the position update.
+     */
+    private static void addPosition(PositionTimeline.Builder builder, Race race, JSONObject row) {
+        if (row.isNull("position")) {
+            return;
+        }
+        Instant time = OffsetDateTime.parse(row.getString("date")).toInstant();
+        builder.add(row.getInt("driver_number"), race.getRaceStartTime().until(time, ChronoUnit.MILLIS),
+            row.getInt("position"));
+    }
+
+    /**
+     * Receives the samples of a car data stream.
+     */
+    public interface SampleConsumer {
+        /**
+         * Takes one sample.
+         * 
+         * @param time  The time of the sample.
+         * @param speed The speed of the car in km/h.
+         */
+        void accept(Instant time, int speed);
+    }
+
+    /**
+     * Fetches a JSON array response and hands each element over as soon as it has been decoded, going
+     * through the response cache when there is one.
+     * 
+     * @param urlString The URL to request.
+     * @param endpoint  The name of the endpoint, for the metrics.
+     * @param refresh   true to fetch the response even if it is cached, unless the cache is offline, and
+     *                  store it again.
+     * @param onRow     Called with each element of the array, in order.
+     * @throws IOException If the request fails or an offline cache has no response for it.
+     */
+    private void streamRows(String urlString, String endpoint, boolean refresh, Consumer<JSONObject> onRow)
+        throws IOException {
+        HotPathEvents.Request event = new HotPathEvents.Request();
+        event.begin();
+        long start = System.nanoTime();
+        boolean cacheable = cache != null && !isUnfinished(urlString);
+        boolean readCache = cacheable && (!refresh || cache.isOffline());
+        Reader cached = null;
+        ResponseCache.Lock lock = null;
+        try {
+            cached = readCache ? cache.open(urlString) : null;
+            if (cached == null && cacheable && !cache.isOffline()) {
+                // Another thread or process may have stored the response while this one waited
+                lock = cache.lock(urlString);
+                cached = readCache ? cache.open(urlString) : null;
+            }
+            if (cached != null) {
+                event.bytes = Files.size(cache.fileFor(urlString));
+            }
+        } catch (IOException e) {
+            if (cached != null) {
+                cached.close();
+            }
+            if (lock != null) {
+                lock.close();
+            }
+            recordRequest(event, endpoint, start);
+            throw e;
+        }
+        event.cached = cached != null;
+        event.status = cached != null ? 200 : -1;
+        try {
+            if (cached != null) {
+                recordRequest(event, endpoint, start);
+                HotPathEvents.Decode decode = new HotPathEvents.Decode();
+                decode.begin();
+                long decodeStart = System.nanoTime();
+                int rows;
+                try (Reader reader = cached) {
+                    rows = readRows(reader, onRow);
+                }
+                recordDecode(decode, endpoint, rows, decodeStart);
+            } else if (cache != null && cache.isOffline()) {
+                throw new IOException("No cached response for " + urlString);
+            } else {
+                // The response is decoded while it downloads, so its request time includes decoding
+                Connection.Response response = Jsoup.connect(urlString).ignoreContentType(true)
+                    .header("Accept", "application/json").maxBodySize(0).execute();
+                event.status = response.statusCode();
+                InputStream body = response.bodyStream();
+                // The body goes straight to the cache's temporary file as it is read
+                try (ResponseCache.Store store = cacheable ? cache.store(urlString) : null) {
+                    RecordingReader reader = new RecordingReader(new InputStreamReader(body, StandardCharsets.UTF_8),
+                        store == null ? null : store.getWriter());
+                    int rows;
+                    try (reader) {
+                        rows = readRows(reader, onRow);
+                    }
+                    event.bytes = reader.getCount();
+                    recordRequest(event, endpoint, start);
+                    if (store != null && rows > 0) {
+                        store.commit();
+                    }
+                }
+            }
+        } catch (IOException | JSONException e) {
+            if (e instanceof HttpStatusException) {
+                event.status = ((HttpStatusException) e).getStatusCode();
+            }
+            if (!event.cached) {
+                recordRequest(event, endpoint, start);
+            }
+            throw e;
+        } finally {
+            if (lock != null) {
+                lock.close();
+            }
         }
+    }
+
+    /**
+     * Decodes a JSON array one element at a time.
+     * 
+     * @param reader The reader of the JSON array.
+     * @param onRow  Called with each element as soon as it is decoded.
+     * @return The number of elements read.
+     */
+    private static int readRows(Reader reader, Consumer<JSONObject> onRow) {
+        JSONTokener tokener = new JSONTokener(reader);
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("A response must be a JSON array");
+        }
+        int rows = 0;
+        char next = tokener.nextClean();
+        while (next != ']') {
+            tokener.back();
+            onRow.accept((JSONObject) tokener.nextValue());
+            rows++;
+            next = tokener.nextClean();
+            if (next == ',') {
+                next = tokener.nextClean();
+            } else if (next != ']') {
+                throw tokener.syntaxError("Expected , or ] after a row");
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Decodes a response of the sessions endpoint.
+     * 
+     * @param json The JSON array of race sessions.
+     * @return The races in the response, in season order.
+     */
+    public List<Race> decodeRaces(String json) {
+        List<Race> races = new ArrayList<>();
+        decodeRaces(json, races::add);
         return races;
     }
 
+    /**
+     * Decodes a response of the sessions endpoint that is already in memory, recording how long it
+     * took.
+     * 
+     * @param json   The JSON array of race sessions.
+     * @param onRace Called with each race as soon as it is decoded.
+     */
+    private void decodeRaces(String json, Consumer<Race> onRace) {
+        HotPathEvents.Decode event = new HotPathEvents.Decode();
+        event.begin();
+        long start = System.nanoTime();
+        int count = readRows(new StringReader(json), row -> onRace.accept(decodeRace(row)));
+        recordDecode(event, "sessions", count, start);
+    }
+
+    /**
+     * Decodes a race session object.
+     * 
+     * @param object The JSON object of the session.
+     * @return The Race it describes.
+     */
+    private Race decodeRace(JSONObject object) {
+        Race race = new Race(
+            object.getInt("session_key"),
+            object.getString("circuit_short_name"),
+            object.getString("date_start"),
+            OffsetDateTime.parse(object.getString("date_start")).toInstant());
+        if (!LiveSession.isOver(race, Instant.now())) {
+            unfinishedSessions.add(race.getSessionKey());
+        }
+        return race;
+    }
+
+    /**
+     * Checks if a request is for a session that is not over yet, whose response must not be cached.
+     * 
+     * @param urlString The URL of the request.
+     * @return true if the request names the session key of a race decoded as unfinished.
+     */
+    private boolean isUnfinished(String urlString) {
+        int start = urlString.indexOf("session_key=");
+        if (start < 0 || unfinishedSessions.isEmpty()) {
+            return false;
+        }
+        start += "session_key=".length();
+        int end = start;
+        while (end < urlString.length() && Character.isDigit(urlString.charAt(end))) {
+            end++;
+        }
+        return end > start && unfinishedSessions.contains(Integer.parseInt(urlString.substring(start, end)));
+    }
+
     /**
      * Fetches information about drivers participating in a specific race session.
      * 
@@ -57,35 +388,58 @@ public class API {
      * @return A list of Driver objects containing driver details for the session.
      */
     public List<Driver> fetchDriverInfo(int sessionkey) {
-        JSONArray driverData = extractRaceData(driverURL, sessionkey);
+        JSONArray driverData = extractRaceData(getDriversURL(sessionkey));
         List<Driver> drivers = new ArrayList<>();
         for (int i = 0; i < driverData.length(); i++) {
             JSONObject object = driverData.getJSONObject(i);
-            JSONObject lastObj = fetchLastObject(sessionkey, object.getInt("driver_number"));
-            if (lastObj == null) {
+            JSONArray laps = extractRaceData(getLapsURL(sessionkey, object.getInt("driver_number")));
+            if (laps == null) {
                 continue;
             }
-            Instant startTime = OffsetDateTime.parse(lastObj.getString("date_start")).toInstant();
-            Instant endTime = startTime.plus((long) (lastObj.getDouble("lap_duration") * 1000), ChronoUnit.MILLIS);
-            String colorString;
-            try {
-                colorString = object.getString("team_colour");
-            } catch (JSONException e) {
-                System.out.println(e.getMessage());
-                System.out.println("Error in fetchDriverInfo");
-                colorString = "000000";
+            Driver driver = decodeDriver(object, laps);
+            if (driver != null) {
+                drivers.add(driver);
             }
-            drivers.add(
-                new Driver(
-                    object.getString("name_acronym"),
-                    object.getInt("driver_number"),
-                    endTime,
-                    lastObj.getInt("lap_number"),
-                    colorString));
         }
         return drivers;
     }
 
+    /**
+     * Decodes a driver from their entry in the drivers endpoint and their laps in the laps endpoint.
+     * 
+     * @param object The JSON object of the driver.
+     * @param laps   The JSON array of the driver's laps in the session.
+     * @return The Driver, or null if they did not complete a lap.
+     */
+    public Driver decodeDriver(JSONObject object, JSONArray laps) {
+        if (laps.length() == 0) {
+            return null;
+        }
+        HotPathEvents.Decode event = new HotPathEvents.Decode();
+        event.begin();
+        long start = System.nanoTime();
+        JSONObject lastObj = jsonChecker(laps, 1);
+        Instant startTime = OffsetDateTime.parse(lastObj.getString("date_start")).toInstant();
+        Instant endTime = startTime.plus((long) (lastObj.getDouble("lap_duration") * 1000), ChronoUnit.MILLIS);
+        String colorString;
+        try {
+            colorString = object.getString("team_colour");
+        } catch (JSONException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in decodeDriver");
+            colorString = "000000";
+        }
+        Driver driver = new Driver(
+            object.getString("name_acronym"),
+            object.getInt("driver_number"),
+            endTime,
+            lastObj.getInt("lap_number"),
+            colorString,
+            object.optString("team_name", "Unknown"));
+        recordDecode(event, "drivers", 1, start);
+        return driver;
+    }
+
     /**
      * Fetches pitstop details for a specific race session.
      * 
@@ -93,7 +447,19 @@ public class API {
      * @return A list of Pitstop objects containing pitstop details for the session.
      */
     public List<Pitstop> fetchPitInfo(int sessionkey) {
-        JSONArray pitData = extractRaceData(pitURL, sessionkey);
+        return decodePitstops(extractRaceData(getPitURL(sessionkey)));
+    }
+
+    /**
+     * Decodes a response of the pit endpoint.
+     * 
+     * @param pitData The JSON array of pit stops.
+     * @return A list of Pitstop objects containing pitstop details for the session.
+     */
+    public List<Pitstop> decodePitstops(JSONArray pitData) {
+        HotPathEvents.Decode event = new HotPathEvents.Decode();
+        event.begin();
+        long start = System.nanoTime();
         List<Pitstop> pitStops = new ArrayList<>();
         for (int i = 0; i < pitData.length(); i++) {
             try {
@@ -110,45 +476,183 @@ public class API {
                 }
             } catch (JSONException e) {
                 System.out.println(e.getMessage());
-                System.out.println("Error in fetchPitInfo");
+                System.out.println("Error in decodePitstops");
                 i++;
             }
         }
+        recordDecode(event, "pits", pitStops.size(), start);
         return pitStops;
     }
 
     /**
-     * Fetches all race sessions for a given year.
+     * Fetches the stints of every driver in a specific race session.
      * 
-     * @param year The year of the season.
-     * @return A JSONArray containing race session data for the given year.
+     * @param sessionkey The session key identifying the race session.
+     * @return A list of Stint objects, empty if the stints cannot be fetched.
      */
-    private JSONArray fetchAllRacesForYear(int year) {
-        String urlString = sessionURL + "session_type=Race&session_name=Race&year=" + year;
-        try {
-            String object = Jsoup.connect(urlString).ignoreContentType(true).header("Accept", "text/javascript").get()
-                .body().text();
-            JSONArray json = new JSONArray(object);
-            return json;
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
-            return null;
+    public List<Stint> fetchStintInfo(int sessionkey) {
+        JSONArray stintData = extractRaceData(getStintsURL(sessionkey));
+        return stintData == null ? new ArrayList<>() : decodeStints(stintData);
+    }
+
+    /**
+     * Decodes a response of the stints endpoint. Stints still in progress have no last lap yet and end
+     * on their first lap until they are finished.
+     * 
+     * @param stintData The JSON array of stints.
+     * @return A list of Stint objects containing the stint details for the session.
+     */
+    public List<Stint> decodeStints(JSONArray stintData) {
+        HotPathEvents.Decode event = new HotPathEvents.Decode();
+        event.begin();
+        long start = System.nanoTime();
+        List<Stint> stints = new ArrayList<>();
+        for (int i = 0; i < stintData.length(); i++) {
+            try {
+                JSONObject object = stintData.getJSONObject(i);
+                int lapStart = object.getInt("lap_start");
+                stints.add(new Stint(
+                    object.getInt("driver_number"),
+                    object.optInt("stint_number", 0),
+                    object.isNull("compound") ? null : object.getString("compound"),
+                    lapStart,
+                    object.optInt("lap_end", lapStart),
+                    object.optInt("tyre_age_at_start", 0)));
+            } catch (JSONException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in decodeStints");
+            }
         }
+        recordDecode(event, "stints", stints.size(), start);
+        return stints;
+    }
+
+    /**
+     * Gets the URL requesting the races of a season.
+     * 
+     * @param year The year of the season.
+     * @return The URL of the request.
+     */
+    public String getSeasonURL(int year) {
+        return sessionURL + "session_type=Race&session_name=Race&year=" + year;
+    }
+
+    /**
+     * Gets the URL requesting the drivers of a race session.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @return The URL of the request.
+     */
+    public String getDriversURL(int sessionKey) {
+        return driverURL + "session_key=" + sessionKey;
+    }
+
+    /**
+     * Gets the URL requesting the pit stops of a race session.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @return The URL of the request.
+     */
+    public String getPitURL(int sessionKey) {
+        return pitURL + "session_key=" + sessionKey;
+    }
+
+    /**
+     * Gets the URL requesting the stints of every driver in a race session.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @return The URL of the request.
+     */
+    public String getStintsURL(int sessionKey) {
+        return stintURL + "session_key=" + sessionKey;
+    }
+
+    /**
+     * Gets the URL requesting the car data samples of one driver between two instants.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @param driverID   The number of the driver.
+     * @param from       The earliest sample time.
+     * @param to         The latest sample time.
+     * @return The URL of the request, with the comparisons encoded so they are valid in a URL.
+     */
+    public String getCarDataURL(int sessionKey, int driverID, Instant from, Instant to) {
+        return carDataURL + "session_key=" + sessionKey + "&driver_number=" + driverID + "&date%3E=" + from
+            + "&date%3C=" + to;
     }
 
     /**
-     * Extracts race data from a specified API endpoint for a given session key.
+     * Gets the URL requesting the position updates of every driver in a race session.
      * 
-     * @param url        The API endpoint URL.
      * @param sessionKey The session key for the race session.
-     * @return A JSONArray containing race data for the session.
+     * @return The URL of the request.
      */
-    private JSONArray extractRaceData(String url, int sessionKey) {
-        String urlString = url + "session_key=" + sessionKey;
+    public String getPositionURL(int sessionKey) {
+        return positionURL + "session_key=" + sessionKey;
+    }
+
+    /**
+     * Gets the URL requesting the laps of one driver in a race session.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @param driverID   The number of the driver.
+     * @return The URL of the request.
+     */
+    public String getLapsURL(int sessionKey, int driverID) {
+        return lapURL + "session_key=" + sessionKey + "&driver_number=" + driverID;
+    }
+
+    /**
+     * Gets the URL requesting the laps of every driver in a race session that started at or after an
+     * instant, for polling a session in progress. The > of the filter is percent-encoded, as it is not
+     * allowed in a URL.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @param since      The earliest lap start to include.
+     * @return The URL of the request.
+     */
+    public String getLapsSinceURL(int sessionKey, Instant since) {
+        return lapURL + "session_key=" + sessionKey + "&date_start%3E=" + since;
+    }
+
+    /**
+     * Gets the URL requesting the pit stops of a race session that started at or after an instant, for
+     * polling a session in progress. The > of the filter is percent-encoded, as it is not allowed in a
+     * URL.
+     * 
+     * @param sessionKey The session key for the race session.
+     * @param since      The earliest pit entry to include.
+     * @return The URL of the request.
+     */
+    public String getPitSinceURL(int sessionKey, Instant since) {
+        return pitURL + "session_key=" + sessionKey + "&date%3E=" + since;
+    }
+
+    /**
+     * Fetches a JSON array from a session in progress. The response cache is never used, because the
+     * same request returns more rows as the session goes on.
+     * 
+     * @param urlString The URL of the request.
+     * @return The JSONArray in the response body.
+     * @throws IOException If the request fails or the cache is offline.
+     */
+    public JSONArray fetchLive(String urlString) throws IOException {
+        if (cache != null && cache.isOffline()) {
+            throw new IOException("Offline, cannot poll " + urlString);
+        }
+        return fetchJSON(urlString, false);
+    }
+
+    /**
+     * Extracts race data from a specified API request, going through the response cache. Used to
+     * fetch responses that are decoded separately, such as by the fetch stage of an IngestPipeline.
+     * 
+     * @param urlString The URL of the request.
+     * @return A JSONArray containing race data for the session, or null if the request failed.
+     */
+    public JSONArray extractRaceData(String urlString) {
         try {
-            String object = Jsoup.connect(urlString).ignoreContentType(true).header("Accept", "text/javascript").get()
-                .body().text();
-            JSONArray json = new JSONArray(object);
+            JSONArray json = fetchJSON(urlString, true);
             return json;
         } catch (IOException e) {
             System.out.println(e.getMessage());
@@ -158,27 +662,175 @@ public class API {
     }
 
     /**
-     * Fetches the last JSONObject in the JSONArray.
+     * Fetches a JSON array from the given URL, going through the response cache when there is one.
      * 
-     * @param sessionkey The session key identifying the race session.
-     * @param driverID   The ID of the driver.
-     * @return The last JSON object in JSON Array.
+     * @param urlString The URL to request
+     * @param cacheable false to neither read nor store the response in the cache
+     * @return The JSONArray in the response body
+     * @throws IOException If the request fails or an offline cache has no response for it
      */
-    private JSONObject fetchLastObject(int sessionkey, int driverID) {
-        String urlString = lapURL + "session_key=" + sessionkey + "&driver_number=" + driverID;
+    private JSONArray fetchJSON(String urlString, boolean cacheable) throws IOException {
+        String endpoint = endpointOf(urlString);
+        HotPathEvents.Request event = new HotPathEvents.Request();
+        event.begin();
+        long start = System.nanoTime();
+        cacheable &= cache != null && !isUnfinished(urlString);
+        String body = cacheable ? cache.get(urlString) : null;
+        event.cached = body != null;
+        event.status = body != null ? 200 : -1;
         try {
-            String object = Jsoup.connect(urlString).ignoreContentType(true).header("Accept", "text/javascript").get()
-                .body().text();
-            JSONArray json = new JSONArray(object);
-            if (json.length() - 1 != -1) {
-                JSONObject jsonObject = jsonChecker(json, 1);
-                return jsonObject;
+            if (body == null) {
+                if (cache != null && cache.isOffline()) {
+                    throw new IOException("No cached response for " + urlString);
+                }
+                if (cacheable) {
+                    ResponseCache.Lock lock = cache.lock(urlString);
+                    try {
+                        // Another thread or process may have stored the response while this one waited
+                        body = cache.get(urlString);
+                        event.cached = body != null;
+                        if (body != null) {
+                            event.status = 200;
+                        } else {
+                            body = download(urlString, event);
+                            if (!body.strip().equals("[]")) {
+                                cache.put(urlString, body);
+                            }
+                        }
+                    } finally {
+                        lock.close();
+                    }
+                } else {
+                    body = download(urlString, event);
+                }
             }
-            return null;
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
-            System.out.println("Error in extractEnd");
-            return null;
+        } catch (HttpStatusException e) {
+            event.status = e.getStatusCode();
+            throw e;
+        } finally {
+            event.bytes = body == null ? 0 : body.length();
+            recordRequest(event, endpoint, start);
+        }
+
+        HotPathEvents.Decode decode = new HotPathEvents.Decode();
+        decode.begin();
+        long decodeStart = System.nanoTime();
+        JSONArray json = new JSONArray(body);
+        recordDecode(decode, "json." + endpoint, json.length(), decodeStart);
+        return json;
+    }
+
+    /**
+     * Downloads the body of a response as text.
+     * 
+     * @param urlString The URL to request
+     * @param event     The event of the request, given the response status
+     * @return The response body
+     * @throws IOException If the request fails
+     */
+    private static String download(String urlString, HotPathEvents.Request event) throws IOException {
+        Connection.Response response = Jsoup.connect(urlString).ignoreContentType(true)
+            .header("Accept", "text/javascript").execute();
+        event.status = response.statusCode();
+        return response.parse().body().text();
+    }
+
+    /**
+     * Gets the name of the endpoint a request goes to, such as laps for the laps endpoint.
+     * 
+     * @param urlString The URL of the request
+     * @return The last part of the URL path
+     */
+    private static String endpointOf(String urlString) {
+        int query = urlString.indexOf('?');
+        int end = query < 0 ? urlString.length() : query;
+        return urlString.substring(urlString.lastIndexOf('/', end - 1) + 1, end);
+    }
+
+    /**
+     * Records a finished request in the metrics registry and commits its flight recorder event.
+     * 
+     * @param event    The event of the request, with its status, size, and whether it was cached set
+     * @param endpoint The name of the endpoint requested
+     * @param start    The start time of the request from System.nanoTime()
+     */
+    private static void recordRequest(HotPathEvents.Request event, String endpoint, long start) {
+        Metrics metrics = Metrics.global();
+        metrics.timer("api.request." + endpoint).stop(start);
+        metrics.histogram("api.response.bytes", "bytes").record(event.bytes);
+        metrics.counter(event.cached ? "api.cache.hits" : "api.network.requests").increment();
+        if (event.status != 200) {
+            metrics.counter("api.errors").increment();
+        }
+        event.endpoint = endpoint;
+        event.commit();
+    }
+
+    /**
+     * Records a finished decode step in the metrics registry and commits its flight recorder event.
+     * 
+     * @param event The event of the step
+     * @param step  The name of the step
+     * @param items The number of objects decoded
+     * @param start The start time of the step from System.nanoTime()
+     */
+    private static void recordDecode(HotPathEvents.Decode event, String step, int items, long start) {
+        Metrics.global().timer("decode." + step).stop(start);
+        event.step = step;
+        event.items = items;
+        event.commit();
+    }
+
+    /**
+     * A reader that copies everything read through it to a writer, so a streamed response can be
+     * written to the cache as it is read, and counts the characters read.
+     */
+    private static class RecordingReader extends FilterReader {
+        private final Writer copy;
+        private long count;
+
+        /**
+         * Constructs a reader that records what is read from another reader.
+         * 
+         * @param in   The reader to read from.
+         * @param copy The writer receiving a copy of everything read, or null to only count it.
+         */
+        RecordingReader(Reader in, Writer copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                count++;
+                if (copy != null) {
+                    copy.write(c);
+                }
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+                if (copy != null) {
+                    copy.write(buffer, offset, read);
+                }
+            }
+            return read;
+        }
+
+        /**
+         * Gets the number of characters read so far.
+         * 
+         * @return The number of characters
+         */
+        public long getCount() {
+            return count;
         }
     }
 
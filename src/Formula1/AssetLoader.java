@@ -0,0 +1,192 @@
+package Formula1;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * This AssetLoader class prepares the images of the program on a background thread, at exactly the
+ * size they are shown, so the window does not wait for them and they are never scaled while drawing.
+ *
+ * An image is read from the classpath, decoded with as much subsampling as its size allows, scaled to
+ * cover the size asked for and cropped to it, and written as a JPEG to a directory on disk. The file
+ * is named after the image, a checksum of its bytes, and the size, so later launches find it there
+ * and skip decoding and scaling the original, and an image that changes gets a new file.
+ */
+public class AssetLoader {
+    public static final Path DEFAULT_DIRECTORY = Paths.get(".f1cache", "assets");
+    private static final float JPEG_QUALITY = 0.9f;
+
+    private final Path directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "asset-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs an asset loader keeping its scaled images in a directory.
+     *
+     * @param directory The directory of the scaled images
+     */
+    public AssetLoader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Starts preparing an image at the size it is shown.
+     *
+     * @param resource The name of the image on the classpath, such as bg.jpg
+     * @param width    The width it is shown at, in pixels
+     * @param height   The height it is shown at, in pixels
+     * @return The file of the scaled image once it is ready, or an exceptionally completed future if
+     *         the image cannot be read
+     */
+    public CompletableFuture<Path> scaled(String resource, int width, int height) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return prepare(resource, width, height);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Finds the scaled image on disk, or makes it.
+     *
+     * @param resource The name of the image on the classpath
+     * @param width    The width it is shown at
+     * @param height   The height it is shown at
+     * @return The file of the scaled image
+     * @throws IOException If the image cannot be read or decoded
+     */
+    Path prepare(String resource, int width, int height) throws IOException {
+        long start = System.nanoTime();
+        byte[] source;
+        try (InputStream in = AssetLoader.class.getResourceAsStream("/" + resource)) {
+            if (in == null) {
+                throw new IOException("No image " + resource + " on the classpath");
+            }
+            source = in.readAllBytes();
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(source);
+        String base = resource.contains(".") ? resource.substring(0, resource.lastIndexOf('.')) : resource;
+        Path file = directory.resolve(String.format("%s-%08x-%dx%d.jpg", base, checksum.getValue(), width, height));
+        if (Files.isRegularFile(file)) {
+            StartupTimeline.mark(resource + " found scaled");
+            return file;
+        }
+
+        BufferedImage scaled = cover(decode(source, width, height), width, height);
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+        try {
+            write(scaled, temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Metrics.global().timer("assets.scale").stop(start);
+        StartupTimeline.mark(resource + " scaled");
+        return file;
+    }
+
+    /**
+     * Decodes an image, skipping pixels while it stays at least as large as the size it is shown at.
+     *
+     * @param source The bytes of the image file
+     * @param width  The width it is shown at
+     * @param height The height it is shown at
+     * @return The decoded image
+     * @throws IOException If the image cannot be decoded
+     */
+    private static BufferedImage decode(byte[] source, int width, int height) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unknown image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.min(reader.getWidth(0) / width, reader.getHeight(0) / height));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales an image to cover a size, keeping its proportions, and crops the middle of it to the size.
+     *
+     * @param image  The image
+     * @param width  The width to cover
+     * @param height The height to cover
+     * @return The scaled image, exactly width by height
+     */
+    private static BufferedImage cover(BufferedImage image, int width, int height) {
+        double scale = Math.max(width / (double) image.getWidth(), height / (double) image.getHeight());
+        int scaledWidth = (int) Math.ceil(image.getWidth() * scale);
+        int scaledHeight = (int) Math.ceil(image.getHeight() * scale);
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(image, (width - scaledWidth) / 2, (height - scaledHeight) / 2, scaledWidth, scaledHeight,
+            null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    /**
+     * Writes an image as a JPEG.
+     *
+     * @param image The image
+     * @param file  The file to write
+     * @throws IOException If the file cannot be written
+     */
+    private static void write(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
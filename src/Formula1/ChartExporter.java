@@ -0,0 +1,354 @@
+package Formula1;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This ChartExporter class renders the pit stop chart of every race in one or more seasons to PNG and
+ * SVG files without opening a window. Races are fetched and rendered in parallel, and the time spent
+ * on each race and on the whole export is reported when done.
+ *
+ * Usage: ChartExporter [--out=DIR] [--cache=DIR] [--offline] [--threads=N] YEAR...
+ *
+ * Responses are read from and saved to the cache directory, so a second export of the same seasons,
+ * or an export with --offline, replays the recorded data without touching the network.
+ */
+public class ChartExporter {
+    private static final int WIDTH = 1280, HEIGHT = 720;
+    private static final int DEFAULT_FONT_SIZE = 14;
+
+    private final API openf1;
+    private final Path outDir;
+    private final int threads;
+
+    /**
+     * The outcome of exporting one race.
+     *
+     * @param year        The year of the race
+     * @param race        The race that was exported
+     * @param fetchNanos  The time spent fetching and building the race data
+     * @param renderNanos The time spent laying out, rendering, and writing the chart
+     * @param error       The reason the race was not exported, or null if it was
+     */
+    public record ExportResult(int year, Race race, long fetchNanos, long renderNanos, String error) {
+    }
+
+    /**
+     * Constructs a chart exporter.
+     *
+     * @param openf1  The API used to fetch the race data
+     * @param outDir  The directory the charts are written to, one subdirectory per season
+     * @param threads The number of races exported at the same time
+     */
+    public ChartExporter(API openf1, Path outDir, int threads) {
+        this.openf1 = openf1;
+        this.outDir = outDir;
+        this.threads = threads;
+    }
+
+    /**
+     * Exports the charts of the seasons given on the command line.
+     *
+     * @param args The options and years to export
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        Path out = Paths.get("export");
+        Path cacheDir = Paths.get(".f1cache");
+        boolean offline = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Integer> years = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--out=")) {
+                out = Paths.get(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--cache=")) {
+                cacheDir = Paths.get(arg.substring("--cache=".length()));
+            } else if (arg.equals("--offline")) {
+                offline = true;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else {
+                years.add(Integer.parseInt(arg));
+            }
+        }
+        if (years.isEmpty()) {
+            System.out.println("Usage: ChartExporter [--out=DIR] [--cache=DIR] [--offline] [--threads=N] YEAR...");
+            return;
+        }
+
+        API openf1 = new API(new ResponseCache(cacheDir, offline));
+        new ChartExporter(openf1, out, threads).export(years);
+    }
+
+    /**
+     * Exports the chart of every race in the given seasons and prints the throughput of the export.
+     *
+     * @param years The years of the seasons to export
+     * @return The outcome of each race, in season order
+     */
+    public List<ExportResult> export(List<Integer> years) {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<ExportResult>> futures = new ArrayList<>();
+        for (int year : years) {
+            List<Race> races = openf1.getSeasonRaces(year);
+            if (races == null) {
+                continue;
+            }
+            for (int i = 0; i < races.size(); i++) {
+                Race race = races.get(i);
+                String fileName = String.format("%02d-%s-%d", i + 1,
+                    race.getCircuitName().replaceAll("[^A-Za-z0-9]+", "_"), race.getSessionKey());
+                futures.add(pool.submit(() -> exportRace(year, race, outDir.resolve(String.valueOf(year)), fileName)));
+            }
+        }
+
+        List<ExportResult> results = new ArrayList<>();
+        for (Future<ExportResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in ChartExporter.export");
+            }
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long exported = results.stream().filter(result -> result.error() == null).count();
+        long busyNanos = results.stream().mapToLong(result -> result.fetchNanos() + result.renderNanos()).sum();
+        System.out.printf("Exported %d of %d races in %.2f s (%.2f races/s, %.0f ms per race, %d threads)%n",
+            exported, results.size(), seconds, exported / seconds,
+            results.isEmpty() ? 0.0 : busyNanos / 1e6 / results.size(), threads);
+        return results;
+    }
+
+    /**
+     * Fetches one race and writes its chart as a PNG and an SVG file.
+     *
+     * @param year     The year of the race
+     * @param race     The race to export
+     * @param dir      The directory the files are written to
+     * @param fileName The file name of the chart, without an extension
+     * @return The outcome of the export
+     */
+    private ExportResult exportRace(int year, Race race, Path dir, String fileName) {
+        long start = System.nanoTime();
+        long fetched = start;
+        String error = null;
+        try {
+            RaceData raceData = new RaceData(
+                openf1.fetchDriverInfo(race.getSessionKey()),
+                openf1.fetchPitInfo(race.getSessionKey()),
+                openf1.fetchStintInfo(race.getSessionKey()));
+            fetched = System.nanoTime();
+
+            ChartLayout layout = new ChartLayout(race, raceData, WIDTH, HEIGHT);
+            if (layout.hasData()) {
+                Files.createDirectories(dir);
+                ImageIO.write(renderImage(layout), "png", dir.resolve(fileName + ".png").toFile());
+                try (Writer writer = Files.newBufferedWriter(dir.resolve(fileName + ".svg"), StandardCharsets.UTF_8)) {
+                    writeSVG(layout, writer);
+                }
+            } else {
+                error = "not enough data";
+            }
+        } catch (IOException | RuntimeException e) {
+            error = String.valueOf(e.getMessage());
+        }
+        long end = System.nanoTime();
+        if (fetched == start) {
+            fetched = end;
+        }
+
+        ExportResult result = new ExportResult(year, race, fetched - start, end - fetched, error);
+        System.out.printf("%d %-16s (%d): fetch %5d ms, render %4d ms%s%n",
+            year, race.getCircuitName(), race.getSessionKey(),
+            result.fetchNanos() / 1_000_000, result.renderNanos() / 1_000_000,
+            error == null ? "" : "  skipped: " + error);
+        return result;
+    }
+
+    /**
+     * Renders a chart layout to an image, wide enough to hold every data point.
+     *
+     * @param layout The chart layout to render
+     * @return The rendered chart
+     */
+    public static BufferedImage renderImage(ChartLayout layout) {
+        int width = (int) Math.ceil(layout.getContentWidth());
+        int height = (int) Math.ceil(layout.getHeight());
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setStroke(new BasicStroke(1));
+
+        for (ChartLayout.Box box : layout.getBoxes()) {
+            drawSquare(g, box.x(), box.y(), box.size(), box.color());
+        }
+        for (ChartLayout.Label label : layout.getLabels()) {
+            int size = label.fontSize() > 0 ? (int) label.fontSize() : DEFAULT_FONT_SIZE;
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, size));
+            g.setColor(Color.BLACK);
+            FontMetrics metrics = g.getFontMetrics();
+            float x = (float) (label.centerX() - metrics.stringWidth(label.text()) / 2.0);
+            float y = (float) (label.centerY() + (metrics.getAscent() - metrics.getDescent()) / 2.0);
+            g.drawString(label.text(), x, y);
+        }
+        for (ChartLayout.Trace trace : layout.getTraces()) {
+            for (ChartLayout.DataPoint point : trace.points()) {
+                drawSquare(g, point.x() - 5, point.y() - 5, 10, point.color());
+            }
+            for (ChartLayout.Segment segment : trace.segments()) {
+                drawSegment(g, segment);
+            }
+        }
+        for (ChartLayout.Segment axis : layout.getAxes()) {
+            drawSegment(g, axis);
+        }
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Writes a chart layout as an SVG document, wide enough to hold every data point.
+     *
+     * @param layout The chart layout to write
+     * @param out    The writer the document is written to
+     * @throws IOException If the document cannot be written
+     */
+    public static void writeSVG(ChartLayout layout, Writer out) throws IOException {
+        double width = Math.ceil(layout.getContentWidth());
+        double height = Math.ceil(layout.getHeight());
+        out.write(String.format(Locale.ROOT,
+            "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%.0f\" height=\"%.0f\" viewBox=\"0 0 %.0f %.0f\""
+                + " font-family=\"sans-serif\" font-size=\"%d\">%n",
+            width, height, width, height, DEFAULT_FONT_SIZE));
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+
+        for (ChartLayout.Box box : layout.getBoxes()) {
+            writeSquare(out, box.x(), box.y(), box.size(), box.color());
+        }
+        for (ChartLayout.Label label : layout.getLabels()) {
+            out.write(String.format(Locale.ROOT,
+                "<text x=\"%.1f\" y=\"%.1f\" text-anchor=\"middle\" dominant-baseline=\"central\"%s>%s</text>%n",
+                label.centerX(), label.centerY(),
+                label.fontSize() > 0 ? String.format(Locale.ROOT, " font-size=\"%.0f\"", label.fontSize()) : "",
+                escapeXML(label.text())));
+        }
+        for (ChartLayout.Trace trace : layout.getTraces()) {
+            for (ChartLayout.DataPoint point : trace.points()) {
+                writeSquare(out, point.x() - 5, point.y() - 5, 10, point.color());
+            }
+            for (ChartLayout.Segment segment : trace.segments()) {
+                writeSegment(out, segment);
+            }
+        }
+        for (ChartLayout.Segment axis : layout.getAxes()) {
+            writeSegment(out, axis);
+        }
+        out.write("</svg>\n");
+    }
+
+    /**
+     * Draws a filled square with a black outline, like a Rectangle on the canvas.
+     *
+     * @param g    The graphics context to draw on
+     * @param x    The x-coordinate of the top left corner
+     * @param y    The y-coordinate of the top left corner
+     * @param size The width and height of the square
+     * @param fill The fill color
+     */
+    private static void drawSquare(Graphics2D g, double x, double y, double size, Color fill) {
+        Rectangle2D square = new Rectangle2D.Double(x, y, size, size);
+        g.setColor(fill);
+        g.fill(square);
+        g.setColor(Color.BLACK);
+        g.draw(square);
+    }
+
+    /**
+     * Draws a line segment in its color.
+     *
+     * @param g       The graphics context to draw on
+     * @param segment The segment to draw
+     */
+    private static void drawSegment(Graphics2D g, ChartLayout.Segment segment) {
+        g.setColor(segment.color());
+        g.draw(new Line2D.Double(segment.x1(), segment.y1(), segment.x2(), segment.y2()));
+    }
+
+    /**
+     * Writes a filled square with a black outline as an SVG rect element.
+     *
+     * @param out  The writer of the SVG document
+     * @param x    The x-coordinate of the top left corner
+     * @param y    The y-coordinate of the top left corner
+     * @param size The width and height of the square
+     * @param fill The fill color
+     * @throws IOException If the element cannot be written
+     */
+    private static void writeSquare(Writer out, double x, double y, double size, Color fill) throws IOException {
+        out.write(String.format(Locale.ROOT,
+            "<rect x=\"%.1f\" y=\"%.1f\" width=\"%.0f\" height=\"%.0f\" fill=\"%s\" stroke=\"black\"/>%n",
+            x, y, size, size, toHex(fill)));
+    }
+
+    /**
+     * Writes a line segment as an SVG line element.
+     *
+     * @param out     The writer of the SVG document
+     * @param segment The segment to write
+     * @throws IOException If the element cannot be written
+     */
+    private static void writeSegment(Writer out, ChartLayout.Segment segment) throws IOException {
+        out.write(String.format(Locale.ROOT, "<line x1=\"%.1f\" y1=\"%.1f\" x2=\"%.1f\" y2=\"%.1f\" stroke=\"%s\"/>%n",
+            segment.x1(), segment.y1(), segment.x2(), segment.y2(), toHex(segment.color())));
+    }
+
+    /**
+     * Converts a color to its hex notation, for example #FF8000.
+     *
+     * @param color The color to convert
+     * @return The hex notation of the color
+     */
+    private static String toHex(Color color) {
+        return String.format("#%06X", color.getRGB() & 0xFFFFFF);
+    }
+
+    /**
+     * Escapes the characters that are not allowed in XML text.
+     *
+     * @param text The text to escape
+     * @return The escaped text
+     */
+    private static String escapeXML(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,477 @@
+package Formula1;
+
+import java.awt.Color;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * This ChartLayout class computes the positions of everything drawn on the pit stop chart for one
+ * race: driver names, lap labels, axes, and each driver's trace of pit stop points and lines.
+ *
+ * The layout only holds coordinates and colors, so the same chart can be drawn on a CanvasWindow by
+ * the DataVisualizer or rendered to an image or SVG file by the ChartExporter.
+ *
+ * A layout of a race still going on is scaled to a fixed horizon of race time and laps instead of the
+ * data so far, and keeps its drivers in number order, so a driver's trace can be laid out again as
+ * their laps come in without moving anything else on the chart.
+ */
+public class ChartLayout {
+    public static final double PADDING = 50;
+
+    private final Race race;
+    private final RaceData raceData;
+    private final double width, height;
+    private final double xScale, yScale;
+    private final long totalTime;
+    private final int lastLap;
+    private final boolean live, hasData;
+
+    private final List<Label> labels = new ArrayList<>();
+    private final List<Box> boxes = new ArrayList<>();
+    private final List<Segment> axes = new ArrayList<>();
+    private final List<Trace> traces = new ArrayList<>();
+
+    /**
+     * A piece of text centered on a point.
+     *
+     * @param text     The text to display
+     * @param centerX  The x-coordinate of the text's center
+     * @param centerY  The y-coordinate of the text's center
+     * @param fontSize The font size, or 0 for the default size
+     */
+    public record Label(String text, double centerX, double centerY, double fontSize) {
+    }
+
+    /**
+     * A filled square, used for the driver color keys.
+     *
+     * @param x     The x-coordinate of the top left corner
+     * @param y     The y-coordinate of the top left corner
+     * @param size  The width and height of the box
+     * @param color The fill color
+     */
+    public record Box(double x, double y, double size, Color color) {
+    }
+
+    /**
+     * A straight line between two points.
+     *
+     * @param x1    The x-coordinate of the first point
+     * @param y1    The y-coordinate of the first point
+     * @param x2    The x-coordinate of the second point
+     * @param y2    The y-coordinate of the second point
+     * @param color The stroke color
+     */
+    public record Segment(double x1, double y1, double x2, double y2, Color color) {
+    }
+
+    /**
+     * A data point on a driver's trace.
+     *
+     * @param x       The x-coordinate of the point's center
+     * @param y       The y-coordinate of the point's center
+     * @param driver  The driver the point belongs to
+     * @param pitstop The pitstop the point marks, or null for the driver's finish
+     */
+    public record DataPoint(double x, double y, Driver driver, Pitstop pitstop) {
+        /**
+         * Gets the fill color of the point: the compound fitted for a pitstop whose stint is known,
+         * and the driver's color otherwise.
+         *
+         * @return The fill color
+         */
+        public Color color() {
+            Color compound = pitstop == null ? null : Stint.compoundColor(pitstop.getCompound());
+            return compound == null ? driver.getDriverColor() : compound;
+        }
+    }
+
+    /**
+     * The points and lines drawn for a single driver.
+     *
+     * @param driver   The driver of the trace
+     * @param points   The pit entry, pit exit, and finish points of the driver
+     * @param segments The lines joining the points
+     */
+    public record Trace(Driver driver, List<DataPoint> points, List<Segment> segments) {
+    }
+
+    /**
+     * Computes the chart layout for a race at the given chart size.
+     *
+     * @param race     The race being charted
+     * @param raceData The drivers and pitstops of the race
+     * @param width    The width of the visible chart area
+     * @param height   The height of the visible chart area
+     */
+    public ChartLayout(Race race, RaceData raceData, double width, double height) {
+        this(race, raceData, width, height, null, 0);
+    }
+
+    /**
+     * Computes the chart layout for a race still going on, scaled to a fixed race time and number of
+     * laps.
+     *
+     * @param race        The race being charted
+     * @param raceData    The drivers and pitstops of the race so far
+     * @param width       The width of the visible chart area
+     * @param height      The height of the visible chart area
+     * @param horizon     The race time the x-axis covers, or null to fit the data
+     * @param horizonLaps The number of laps the y-axis covers
+     */
+    public ChartLayout(Race race, RaceData raceData, double width, double height, Duration horizon,
+        int horizonLaps) {
+        this.race = race;
+        this.raceData = raceData;
+        this.width = width;
+        this.height = height;
+        live = horizon != null;
+
+        totalTime = live ? horizon.toMillis() : getTotalTime(raceData.getDrivers());
+        lastLap = live ? horizonLaps : getLastLap(raceData.getDrivers());
+        xScale = (width - 2 * PADDING - 50) / totalTime;
+        yScale = (height - 2 * PADDING) / lastLap;
+
+        hasData = raceData.getDrivers().size() != 0 && (live || raceData.getDriversPitstops().size() != 0);
+        if (hasData) {
+            layoutDriverNames();
+            layoutRaceInfo();
+            layoutLapLabels();
+            layoutTraces();
+            layoutAxes();
+        }
+    }
+
+    /**
+     * Checks if there is enough data to chart the race.
+     *
+     * @return true if the race has both drivers and pitstops
+     */
+    public boolean hasData() {
+        return hasData;
+    }
+
+    /**
+     * Gets the race being charted.
+     *
+     * @return The race
+     */
+    public Race getRace() {
+        return race;
+    }
+
+    /**
+     * Gets the width of the visible chart area.
+     *
+     * @return The chart width
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the visible chart area.
+     *
+     * @return The chart height
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Computes the scrollable width of the chart based on the race time.
+     *
+     * @return The width needed to show the race time in its entirety
+     */
+    public double getScrollWidth() {
+        return PADDING + totalTime * xScale + PADDING;
+    }
+
+    /**
+     * Computes the width needed to show every data point, which can exceed the visible chart area
+     * because each driver's trace is shifted right to keep them apart.
+     *
+     * @return The width of the chart content
+     */
+    public double getContentWidth() {
+        double maxX = width;
+        for (Trace trace : traces) {
+            for (DataPoint point : trace.points()) {
+                maxX = Math.max(maxX, point.x() + PADDING);
+            }
+        }
+        return maxX;
+    }
+
+    /**
+     * Gets the text labels of the chart.
+     *
+     * @return The labels
+     */
+    public List<Label> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Gets the driver color keys of the chart.
+     *
+     * @return The color boxes
+     */
+    public List<Box> getBoxes() {
+        return boxes;
+    }
+
+    /**
+     * Gets the lines of the chart axes.
+     *
+     * @return The axis lines
+     */
+    public List<Segment> getAxes() {
+        return axes;
+    }
+
+    /**
+     * Gets the driver traces, ordered by race finish time.
+     *
+     * @return The traces
+     */
+    public List<Trace> getTraces() {
+        return traces;
+    }
+
+    /**
+     * Gets the data points of every driver trace.
+     *
+     * @return The data points of the chart
+     */
+    public List<DataPoint> getDataPoints() {
+        List<DataPoint> points = new ArrayList<>();
+        for (Trace trace : traces) {
+            points.addAll(trace.points());
+        }
+        return points;
+    }
+
+    /**
+     * Computes the median pit stop duration of the race, the baseline that a stop gains or loses time
+     * against.
+     *
+     * @return The median pit stop duration in seconds, or 0 if there were no pit stops
+     */
+    public double getMedianPitDuration() {
+        double[] durations = raceData.getDriversPitstops().values().stream()
+            .flatMap(pitstops -> pitstops.stream())
+            .mapToDouble(Pitstop::getpitDuration)
+            .sorted()
+            .toArray();
+        if (durations.length == 0) {
+            return 0;
+        }
+        int middle = durations.length / 2;
+        return durations.length % 2 == 1 ? durations[middle] : (durations[middle - 1] + durations[middle]) / 2;
+    }
+
+    /**
+     * Lays out the driver names and their corresponding colors along the Y-axis.
+     */
+    private void layoutDriverNames() {
+        Map<Integer, Driver> driversMap = raceData.getDrivers();
+        double startY = height - PADDING;
+        double endY = PADDING;
+        double spacing = (startY - endY) / driversMap.size();
+        double xPos = PADDING - 10;
+
+        int i = 0;
+        for (Driver driver : driversMap.values()) {
+            double yPos = startY - i * spacing;
+            labels.add(new Label(driver.getName(), xPos + 10, yPos, 0));
+            boxes.add(new Box(xPos - 30, yPos - 10, 20, driver.getDriverColor()));
+            i++;
+        }
+    }
+
+    /**
+     * Lays out the race title.
+     */
+    private void layoutRaceInfo() {
+        labels.add(new Label(race.getCircuitName(), width / 2, (PADDING / 2) + 50, 18));
+    }
+
+    /**
+     * Lays out the labels for lap intervals along the Y-axis.
+     */
+    private void layoutLapLabels() {
+        int[] laps = new int[7];
+        int lapInterval = Math.max(1, lastLap / 6);
+        for (int i = lastLap, j = laps.length - 1; i > 0 && j >= 0; i -= lapInterval, j--) {
+            laps[j] = i;
+        }
+
+        double startY = height - 70;
+        double endY = 50;
+        double xPos = PADDING + 30;
+        double spacing = (startY - endY) / (laps.length - 1);
+        for (int i = 0; i < laps.length; i++) {
+            double yPos = startY - i * spacing;
+            labels.add(new Label(String.valueOf(laps[i]), xPos, yPos, 0));
+        }
+    }
+
+    /**
+     * Lays out the pit stop trace of every driver, in order of race finish time. Each driver's trace is
+     * shifted slightly further right so overlapping stops stay distinguishable.
+     */
+    private void layoutTraces() {
+        Comparator<Driver> order = live ? Comparator.comparingInt(Driver::getDriverNumber)
+            : Comparator.comparingLong(driver -> driver.getRaceFinishTime(race));
+        List<Driver> sortedDrivers = raceData.getDrivers().values().stream().sorted(order).toList();
+
+        int interval = 18;
+        for (Driver driver : sortedDrivers) {
+            PriorityQueue<Pitstop> pitstops = raceData.getDriversPitstops().get(driver.getDriverNumber());
+            traces.add(layoutTrace(driver, pitstops, interval));
+            interval += 18;
+        }
+    }
+
+    /**
+     * Lays out the trace of one driver again after their laps or pit stops in the race data changed,
+     * keeping its place on the chart.
+     *
+     * @param driverNumber The number of the driver
+     * @return The new trace, or null if the driver has no trace
+     */
+    public Trace relayoutDriver(int driverNumber) {
+        return relayoutDriver(raceData.getDrivers().get(driverNumber),
+            raceData.getDriversPitstops().get(driverNumber));
+    }
+
+    /**
+     * Lays out the trace of one driver again from other pit stops and finish than the race data has,
+     * such as a projection of a WhatIfModel, keeping its place on the chart.
+     *
+     * @param driver   The driver, finishing at the time to draw
+     * @param pitstops The stops to draw, or null for none
+     * @return The new trace, or null if the driver has no trace
+     */
+    public Trace relayoutDriver(Driver driver, Collection<Pitstop> pitstops) {
+        if (driver == null) {
+            return null;
+        }
+        for (int i = 0; i < traces.size(); i++) {
+            if (traces.get(i).driver().getDriverNumber() == driver.getDriverNumber()) {
+                Trace trace = layoutTrace(driver, pitstops, 18 * (i + 1));
+                traces.set(i, trace);
+                return trace;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the lap drawn at a height of the chart, the inverse of where pit stops are placed.
+     *
+     * @param y The y-coordinate, in chart content space
+     * @return The nearest lap, which may be outside the race
+     */
+    public int lapAt(double y) {
+        return (int) Math.round((height - PADDING - y) / yScale);
+    }
+
+    /**
+     * Lays out a single driver's trace: a line from the start to each pit stop, a horizontal line
+     * across each pit stop, and a line to the driver's finish.
+     *
+     * @param driver   The driver to lay out
+     * @param pitstops The driver's stops, or null for none
+     * @param interval The horizontal shift of this driver's trace
+     * @return The driver's trace
+     */
+    private Trace layoutTrace(Driver driver, Collection<Pitstop> pitstops, int interval) {
+        Color driverColor = driver.getDriverColor();
+        List<DataPoint> points = new ArrayList<>();
+        List<Segment> segments = new ArrayList<>();
+
+        // Poll a copy so the race data can be laid out again later
+        PriorityQueue<Pitstop> remaining = pitstops == null ? new PriorityQueue<>() : new PriorityQueue<>(pitstops);
+
+        double prevX = PADDING + 50, prevY = height - PADDING;
+        while (!remaining.isEmpty()) {
+            Pitstop currPitStop = remaining.poll();
+            int pitLapNum = currPitStop.getLapNum();
+
+            double x1 = (currPitStop.getStartOffset(race) * xScale) + PADDING + interval / 1.7;
+            double y = (height - (pitLapNum * yScale)) - PADDING;
+            double x2 = (currPitStop.getEndOffset(race) * xScale) + (currPitStop.getpitDuration() * 1.5) + PADDING
+                + interval / 1.7;
+
+            points.add(new DataPoint(x1, y, driver, currPitStop));
+            points.add(new DataPoint(x2, y, driver, currPitStop));
+            segments.add(new Segment(x1, y, x2, y, driverColor));
+            segments.add(new Segment(prevX, prevY, x1, y, driverColor));
+
+            prevX = x2;
+            prevY = y;
+        }
+
+        double lastX = PADDING + (driver.getRaceFinishTime(race) * xScale) + interval;
+        double lastY = (height - PADDING) - (driver.getFinalLap() * yScale);
+
+        points.add(new DataPoint(lastX, lastY, driver, null));
+        segments.add(new Segment(prevX, prevY, lastX, lastY, driverColor));
+        return new Trace(driver, points, segments);
+    }
+
+    /**
+     * Lays out the axes and their titles.
+     */
+    private void layoutAxes() {
+        double xAxisY = height - PADDING;
+        double yAxisX = PADDING + 50;
+
+        axes.add(new Segment(yAxisX, xAxisY, width * 2, xAxisY, Color.BLACK));
+        axes.add(new Segment(yAxisX, xAxisY, yAxisX, PADDING, Color.BLACK));
+
+        labels.add(new Label("Race Time Elapsed (seconds)", yAxisX + 550, xAxisY + 40, 0));
+        labels.add(new Label("Lap #", yAxisX - 20, 30, 0));
+    }
+
+    /**
+     * Retrieves the total race time of the last driver to finish the race.
+     *
+     * @param driverIDToDriver A map of the driver IDs to the Driver objects.
+     * @return The total race time in milliseconds.
+     */
+    private long getTotalTime(Map<Integer, Driver> driverIDToDriver) {
+        Optional<Driver> lastDriver = driverIDToDriver.values().stream()
+            .max(Comparator.comparingLong(e -> e.getRaceFinishTime(race)));
+        try {
+            return lastDriver.get().getRaceFinishTime(race);
+        } catch (NoSuchElementException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Retrieves the last lap number completed by drivers.
+     *
+     * @param driverIDToDriver A map of the driver IDs to the Driver objects.
+     * @return The number of the last lap.
+     */
+    private int getLastLap(Map<Integer, Driver> driverIDToDriver) {
+        Optional<Driver> totalNumLaps = driverIDToDriver.values().stream()
+            .max(Comparator.comparingInt(e -> e.getFinalLap()));
+        try {
+            return totalNumLaps.get().getFinalLap();
+        } catch (NoSuchElementException e) {
+            return -1;
+        }
+    }
+}
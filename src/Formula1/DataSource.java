@@ -0,0 +1,270 @@
+package Formula1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * This DataSource class is where the screens get their seasons and race data from. Seasons that have
+ * a season snapshot bundled with the program are read from it without touching the network, and
+ * every other season or race goes to the OpenF1 API.
+ *
+ * Every race loaded is also added to the pit crew leaderboards of its season, and its pit stops are
+ * checked by the anomaly detector, which sees every season loaded through this data source.
+ *
+ * Snapshots are looked up lazily, the first time their season is asked for. By default they are read
+ * from the snapshots folder on the classpath, which the buildSnapshots task fills from recorded
+ * responses, and the years bundled are listed in its index.txt.
+ */
+public class DataSource {
+    public static final String SNAPSHOT_RESOURCES = "/snapshots/";
+    public static final List<Integer> DEFAULT_SEASONS = List.of(2023, 2024);
+
+    private final API openf1;
+    private final Path snapshotDir;
+    private final Map<Integer, Optional<SeasonSnapshot>> snapshots = new ConcurrentHashMap<>();
+    private final Map<Integer, PitLeaderboards> leaderboards = new ConcurrentHashMap<>();
+    private volatile PitAnomalyDetector anomalies = new PitAnomalyDetector();
+
+    /**
+     * Constructs a data source using the snapshots bundled on the classpath.
+     *
+     * @param openf1 The API used for seasons and races without a snapshot
+     */
+    public DataSource(API openf1) {
+        this(openf1, null);
+    }
+
+    /**
+     * Constructs a data source using the snapshots in a directory.
+     *
+     * @param openf1      The API used for seasons and races without a snapshot
+     * @param snapshotDir The directory of season snapshot files, or null to use the classpath
+     */
+    public DataSource(API openf1, Path snapshotDir) {
+        this.openf1 = openf1;
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * Lists the seasons offered to the user: the default seasons and every bundled season.
+     *
+     * @return The years, in order
+     */
+    public static TreeSet<Integer> knownSeasons() {
+        TreeSet<Integer> seasons = new TreeSet<>(DEFAULT_SEASONS);
+        seasons.addAll(bundledSeasons());
+        return seasons;
+    }
+
+    /**
+     * Lists the seasons bundled on the classpath.
+     *
+     * @return The years in the snapshot index, or an empty list if there is none
+     */
+    public static List<Integer> bundledSeasons() {
+        List<Integer> years = new ArrayList<>();
+        InputStream index = DataSource.class.getResourceAsStream(SNAPSHOT_RESOURCES + "index.txt");
+        if (index == null) {
+            return years;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(index, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    years.add(Integer.parseInt(line.trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in bundledSeasons");
+        }
+        return years;
+    }
+
+    /**
+     * Gets the snapshot of a season, loading it the first time it is asked for.
+     *
+     * @param year The year of the season
+     * @return The snapshot, or null if the season has none
+     */
+    public SeasonSnapshot getSnapshot(int year) {
+        return snapshots.computeIfAbsent(year, season -> Optional.ofNullable(loadSnapshot(season))).orElse(null);
+    }
+
+    /**
+     * Checks if the data of a race can be read from a snapshot.
+     *
+     * @param race The race
+     * @return true if the race is in its season's snapshot
+     */
+    public boolean hasSnapshot(Race race) {
+        SeasonSnapshot snapshot = getSnapshot(yearOf(race));
+        return snapshot != null && snapshot.findRace(race.getSessionKey()) >= 0;
+    }
+
+    /**
+     * Gets all the races in a season, handing each race over as soon as it is available.
+     *
+     * @param year   The year of the season
+     * @param onRace Called with each race, in season order
+     * @return true if the whole season was read, false if loading failed part way
+     */
+    public boolean streamSeasonRaces(int year, Consumer<Race> onRace) {
+        SeasonSnapshot snapshot = getSnapshot(year);
+        if (snapshot == null) {
+            return openf1.streamSeasonRaces(year, onRace);
+        }
+        for (int race = 0; race < snapshot.getRaceCount(); race++) {
+            onRace.accept(snapshot.getRace(race));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the drivers and pitstops of a race, from its snapshot if it has one and from the API if not.
+     *
+     * @param race The race
+     * @return The race data
+     */
+    public RaceData fetchRaceData(Race race) {
+        long start = System.nanoTime();
+        SeasonSnapshot snapshot = getSnapshot(yearOf(race));
+        int index = snapshot == null ? -1 : snapshot.findRace(race.getSessionKey());
+        RaceData raceData;
+        if (index >= 0) {
+            raceData = snapshot.getRaceData(index);
+            Metrics.global().timer("data.race.snapshot").stop(start);
+        } else {
+            raceData = new RaceData(
+                openf1.fetchDriverInfo(race.getSessionKey()),
+                openf1.fetchPitInfo(race.getSessionKey()),
+                openf1.fetchStintInfo(race.getSessionKey()));
+            Metrics.global().timer("data.race.live").stop(start);
+        }
+        getLeaderboards(yearOf(race)).update(race, raceData);
+        anomalies.observe(race, raceData);
+        return raceData;
+    }
+
+    /**
+     * Gets the position of every driver over the course of a race from the API. Positions are not in
+     * the season snapshots, so this goes through the response cache even for bundled seasons.
+     *
+     * @param race The race
+     * @return The position timeline, or null if it cannot be fetched
+     */
+    public PositionTimeline fetchPositions(Race race) {
+        long start = System.nanoTime();
+        try {
+            PositionTimeline positions = openf1.fetchPositions(race);
+            Metrics.global().timer("data.positions").stop(start);
+            return positions;
+        } catch (IOException | RuntimeException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in fetchPositions");
+            return null;
+        }
+    }
+
+    /**
+     * Gets the detector the pit stops of every race loaded are checked by.
+     *
+     * @return The anomaly detector
+     */
+    public PitAnomalyDetector getAnomalyDetector() {
+        return anomalies;
+    }
+
+    /**
+     * Replaces the detector the pit stops of the races loaded from now on are checked by, such as one
+     * with another threshold.
+     *
+     * @param anomalies The anomaly detector
+     */
+    public void setAnomalyDetector(PitAnomalyDetector anomalies) {
+        this.anomalies = anomalies;
+    }
+
+    /**
+     * Gets the pit crew leaderboards of a season, which take in every race of it loaded through this
+     * data source.
+     *
+     * @param year The year of the season
+     * @return The leaderboards, empty until a race of the season is loaded
+     */
+    public PitLeaderboards getLeaderboards(int year) {
+        return leaderboards.computeIfAbsent(year, PitLeaderboards::new);
+    }
+
+    /**
+     * Opens a live session following a race that is still going on.
+     *
+     * @param race The race
+     * @return The live session, not yet started
+     */
+    public LiveSession openLiveSession(Race race) {
+        LiveSession live = new LiveSession(openf1, race);
+        live.setLeaderboards(getLeaderboards(yearOf(race)));
+        live.setAnomalyDetector(anomalies);
+        return live;
+    }
+
+    /**
+     * Gets the year of the season a race belongs to.
+     *
+     * @param race The race
+     * @return The year the race started in
+     */
+    private static int yearOf(Race race) {
+        return race.getRaceStartTime().atOffset(ZoneOffset.UTC).getYear();
+    }
+
+    /**
+     * Reads the snapshot of a season from the snapshot directory or the classpath. A snapshot on the
+     * file system, including one on a classpath directory, is memory mapped; one inside a jar is read
+     * into memory.
+     *
+     * @param year The year of the season
+     * @return The snapshot, or null if there is none or it cannot be read
+     */
+    private SeasonSnapshot loadSnapshot(int year) {
+        String name = SnapshotConverter.fileName(year);
+        try {
+            if (snapshotDir != null) {
+                Path file = snapshotDir.resolve(name);
+                return Files.isRegularFile(file) ? SeasonSnapshot.open(file) : null;
+            }
+            URL resource = DataSource.class.getResource(SNAPSHOT_RESOURCES + name);
+            if (resource == null) {
+                return null;
+            }
+            if ("file".equals(resource.getProtocol())) {
+                return SeasonSnapshot.open(Paths.get(resource.toURI()));
+            }
+            try (InputStream in = resource.openStream()) {
+                return SeasonSnapshot.wrap(ByteBuffer.wrap(in.readAllBytes()));
+            }
+        } catch (IOException | URISyntaxException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in loadSnapshot");
+            return null;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package Formula1;
 
 import java.awt.Color;
-import java.util.Comparator;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.Optional;
-import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import edu.macalester.graphics.CanvasWindow;
 import edu.macalester.graphics.GraphicsGroup;
@@ -23,23 +24,66 @@ import edu.macalester.graphics.ui.Button;
  * Includes the interactive components like buttons to navigate back to the main menu or the races
  * screen. The visualization adjusts to the race data provided and supports a detailed exploration
  * of the driver performance.
+ * 
+ * A chart of a race still going on is kept up to date by a LiveSession. Each driver's trace is drawn
+ * in a group of its own, so when a poll brings new laps or pit stops, only the traces of the drivers
+ * they belong to are laid out and drawn again. The session only polls while its chart is displayed,
+ * so charts kept in the screen cache or evicted from it leave no poller behind; when the chart is
+ * shown again, the first poll catches up on what it missed.
+ * 
+ * The pit stops of a finished race can be dragged to other laps to see what the driver's race would
+ * have been with them there. A WhatIfModel projects the driver's new stop times and finish, and only
+ * that driver's trace is laid out and drawn again, each time the stop crosses onto another lap.
+ * 
+ * The positions of the drivers over a finished race are loaded in the background once the chart is
+ * up, and from then on the tooltip of each pit stop tells the places it gained or lost.
  */
 public class DataVisualizer {
+    private static final long BYTES_PER_GRAPHIC = 400, BYTES_PER_POINT = 120, BYTES_PER_PITSTOP = 100,
+        BYTES_PER_DRIVER = 250;
+
     private CanvasWindow canvas;
 
     private Button backButton;
     private Button menuButton;
+    private Button replayButton;
+    private RaceReplay replay;
 
     private ScreenManager manager;
     private Main menu;
     private Race race;
     private RaceData raceData;
     private GraphicsGroup graphGroup;
+    private ChartLayout layout;
+
+    private VisualBar visualBar;
+    private int graphicsCount;
+
+    private static DataVisualizer active;
+    private static CanvasWindow animatedCanvas, listenedCanvas;
+
+    private LiveSession live;
+    private final Queue<LiveSession.Delta> pendingDeltas = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, GraphicsGroup> traceGroups = new HashMap<>();
+    private final Map<Integer, Integer> traceGraphics = new HashMap<>();
+    private GraphicsText liveText;
+
+    private PointIndex pointIndex;
+    private ChartLayout.DataPoint hovered;
+    private GraphicsText tooltipText;
+    private Rectangle tooltipBG;
+    private double medianPitDuration;
+    private volatile PositionTimeline positions;
 
-    private final double XSCALE, YSCALE, PADDDING = 50;
+    private WhatIfModel whatIf;
+    private Pitstop draggedStop;
+    private int draggedDriver, draggedLap;
+    private GraphicsText projectionText;
+    private Button resetButton;
 
     /**
-     * Constructs a DataVisualizer object to represent race data graphically on a canvas.
+     * Constructs a DataVisualizer object to represent race data graphically on a canvas, and displays
+     * it. The chart is built once and can be displayed again later with show().
      * 
      * @param canvas   The canvas window where the race data will be visualized
      * @param manager  The screen manager instance for navigation between screens
@@ -48,272 +92,535 @@ public class DataVisualizer {
      * @param raceData The race data object containing drivers and pit stop data for the race
      */
     public DataVisualizer(CanvasWindow canvas, ScreenManager manager, Main menu, Race race, RaceData raceData) {
+        this(canvas, manager, menu, race, raceData, null);
+    }
+
+    /**
+     * Constructs a DataVisualizer object for a race that may still be going on, and displays it. With
+     * a live session, the chart is scaled to the longest race there could be and polls for new laps
+     * and pit stops until the race is over.
+     * 
+     * @param canvas   The canvas window where the race data will be visualized
+     * @param manager  The screen manager instance for navigation between screens
+     * @param menu     The menu instance to return back to the main menu
+     * @param race     The race object containing the race details
+     * @param raceData The race data object containing drivers and pit stop data for the race so far
+     * @param live     The live session following the race, or null if the race is over
+     */
+    public DataVisualizer(CanvasWindow canvas, ScreenManager manager, Main menu, Race race, RaceData raceData,
+        LiveSession live) {
         this.canvas = canvas;
         this.manager = manager;
         this.menu = menu;
         this.race = race;
         this.raceData = raceData;
+        this.live = live;
         this.graphGroup = new GraphicsGroup();
 
-        XSCALE = (canvas.getWidth() - 2 * PADDDING - 50) / getTotalTime(raceData.getDrivers());
-        YSCALE = (canvas.getHeight() - 2 * PADDDING) / getAllLaps(raceData.getDrivers());
-
-        if (checkDataAvailability()) {
-            start();
+        HotPathEvents.Chart layoutEvent = new HotPathEvents.Chart();
+        layoutEvent.begin();
+        long start = System.nanoTime();
+        this.layout = live == null ? new ChartLayout(race, raceData, canvas.getWidth(), canvas.getHeight())
+            : new ChartLayout(race, raceData, canvas.getWidth(), canvas.getHeight(), LiveSession.HORIZON,
+                LiveSession.HORIZON_LAPS);
+        Metrics.global().timer("chart.layout").stop(start);
+        layoutEvent.phase = "layout";
+        layoutEvent.sessionKey = race.getSessionKey();
+        layoutEvent.commit();
+
+        if (layout.hasData()) {
+            HotPathEvents.Chart drawEvent = new HotPathEvents.Chart();
+            drawEvent.begin();
+            start = System.nanoTime();
+            drawLayout();
+            Metrics.global().timer("chart.draw").stop(start);
+            drawEvent.phase = "draw";
+            drawEvent.sessionKey = race.getSessionKey();
+            drawEvent.graphics = graphicsCount;
+            drawEvent.commit();
+            visualBar = new VisualBar(canvas, graphGroup, layout.getScrollWidth());
+            addTooltip();
+            if (live != null) {
+                startLive();
+            }
         } else {
-            canvas.removeAll();
             GraphicsText noDataText = new GraphicsText("Not enough data to be displayed. Try another race.");
             noDataText.setFontSize(20);
             noDataText.setCenter(canvas.getWidth() / 2, canvas.getHeight() / 2);
-            canvas.add(noDataText);
+            graphGroup.add(noDataText);
             System.out.println("NOT ENOUGH DATA AVAILABLE");
-            addButton(canvas);
         }
+        addButton(canvas);
+        show();
     }
 
     /**
-     * Starts the visualization by drawing the race data and associated components.
+     * Displays the already built chart, its scroll bar, and its buttons on the canvas, keeping the
+     * scroll position it had when it was last shown. A chart followed live starts polling again.
      */
-    private void start() {
+    public void show() {
+        deactivate();
+        RaceReplay.deactivate();
+        SeasonOverlay.deactivate();
         canvas.removeAll();
-        graphGroup.removeAll();
         canvas.add(graphGroup);
-        drawDriverNames(raceData.getDrivers());
-
-        displayRaceInfo();
+        canvas.add(backButton);
+        canvas.add(menuButton);
+        if (replayButton != null) {
+            canvas.add(replayButton);
+        }
+        if (resetButton != null) {
+            canvas.add(resetButton);
+        }
+        if (projectionText != null) {
+            canvas.add(projectionText);
+        }
+        if (visualBar != null) {
+            visualBar.show(canvas);
+        }
+        if (liveText != null) {
+            canvas.add(liveText);
+        }
+        hovered = null;
+        active = this;
+        if (live != null && layout.hasData()) {
+            live.startPolling(pendingDeltas::add);
+        }
+    }
 
-        drawLapLabels();
-        displayPitsops(raceData.getDriversPitstops(), raceData.getDrivers(), race);
-        drawAxes();
-        addButton(canvas);
-        new VisualBar(canvas, graphGroup, contWidth());
+    /**
+     * Checks if the chart was built from polls of a live session rather than from the full race.
+     * 
+     * @return true if the chart follows a live session
+     */
+    public boolean isFollowingLive() {
+        return live != null;
     }
 
     /**
-     * Computes the total scrollable width of the visualization based on race data.
+     * Estimates how much memory the built chart holds on to, counting its graphics, its hover index,
+     * and its race data.
      * 
-     * @return The width required to display the race data in its entirety.
+     * @return The estimated footprint in bytes
      */
-    private double contWidth() {
-        return PADDDING + getTotalTime(raceData.getDrivers()) * XSCALE + PADDDING;
+    public long estimateFootprint() {
+        int pitstops = raceData.getDriversPitstops().values().stream().mapToInt(pits -> pits.size()).sum();
+        return graphicsCount * BYTES_PER_GRAPHIC
+            + layout.getDataPoints().size() * BYTES_PER_POINT
+            + pitstops * BYTES_PER_PITSTOP
+            + raceData.getDrivers().size() * BYTES_PER_DRIVER;
     }
 
     /**
-     * Checks if there is enough data to visualize the race.
+     * Starts loading the positions of the drivers over a finished race in the background, for the
+     * tooltips of the pit stops to show once they are in. A race followed live is left without them.
      * 
-     * @return true if the data is avaialble
+     * @param data The data source to load the positions from
      */
-    private boolean checkDataAvailability() {
-        if (raceData.getDriversPitstops().size() == 0 || raceData.getDrivers().size() == 0) {
-            return false;
+    public void loadPositions(DataSource data) {
+        if (live != null || !layout.hasData()) {
+            return;
         }
-        return true;
+        CompletableFuture.supplyAsync(() -> data.fetchPositions(race)).thenAccept(loaded -> positions = loaded);
     }
 
     /**
-     * Draws the labels for lap intervals along the Y-axis.
+     * Stops the chart on screen from reacting to the mouse, and its live session from polling, for
+     * when another screen is displayed.
      */
-    private void drawLapLabels() {
-        int[] laps = new int[7];
-        int lastLap = getLastLap(raceData.getDrivers());
-        int lapInterval = lastLap / 6;
-        for (int i = lastLap, j = laps.length - 1; i > 0; i -= lapInterval, j--) {
-            laps[j] = i;
-        }
-
-        double startY = canvas.getHeight() - 70;
-        double endY = 50;
-        double xPos = PADDDING + 30;
-        double spacing = (startY - endY) / (laps.length - 1);
-        for (int i = 0; i < laps.length; i++) {
-            double yPos = startY - i * spacing;
-            GraphicsText lapLabel = new GraphicsText(String.valueOf(laps[i]));
-            lapLabel.setCenter(xPos, yPos);
-            graphGroup.add(lapLabel);
+    public static void deactivate() {
+        if (active != null && active.live != null) {
+            active.live.stopPolling();
         }
+        active = null;
+        VisualBar.deactivate();
     }
 
     /**
-     * Draws the driver names and their corresponding colors along the Y-axis.
-     * 
-     * @param driversMap A map of the driver IDs to the Driver objects.
+     * Adds the live marker, and applies the changes the live session polls to the chart on the
+     * animation thread while the chart is displayed.
      */
-    private void drawDriverNames(Map<Integer, Driver> driversMap) {
-        double startY = canvas.getHeight() - PADDDING;
-        double endY = PADDDING;
-        double spacing = (startY - endY) / driversMap.size();
-        double xPos = PADDDING - 10;
-
-        int i = 0;
-        for (Driver driver : driversMap.values()) {
-            double yPos = startY - i * spacing;
-
-            GraphicsText driverName = new GraphicsText(driver.getName());
-            driverName.setCenter(xPos + 10, yPos);
-            graphGroup.add(driverName);
-
-            Rectangle colorBox = new Rectangle(xPos - 30, yPos - 10, 20, 20);
-            colorBox.setFillColor(driver.getDriverColor());
-            graphGroup.add(colorBox);
-            i++;
+    private void startLive() {
+        liveText = new GraphicsText("LIVE");
+        liveText.setFontSize(16);
+        liveText.setFillColor(Color.RED);
+        liveText.setPosition(canvas.getWidth() - 180, 40);
+        if (animatedCanvas != canvas) {
+            animatedCanvas = canvas;
+            canvas.animate(() -> {
+                if (active != null && active.live != null) {
+                    active.applyLiveUpdates();
+                }
+            });
         }
     }
 
     /**
-     * Displays the information about the race.
+     * Applies the changes polled since the last frame to the race data, and lays out and draws again
+     * the traces of the drivers they changed.
      */
-    private void displayRaceInfo() {
-        String raceInfo = race.getCircuitName();
-        GraphicsText raceDetails = new GraphicsText(raceInfo);
-        raceDetails.setFontSize(18);
-        raceDetails.setCenter(canvas.getWidth() / 2, (PADDDING / 2) + 50);
-        graphGroup.add(raceDetails);
+    private void applyLiveUpdates() {
+        LiveSession.Delta delta = pendingDeltas.poll();
+        if (delta == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        Set<Integer> changed = new HashSet<>();
+        boolean pitted = false;
+        for (; delta != null; delta = pendingDeltas.poll()) {
+            changed.addAll(LiveSession.apply(raceData, delta));
+            pitted |= !delta.pitstops().isEmpty();
+        }
+        if (pitted) {
+            live.refreshLeaderboards(raceData);
+            live.checkAnomalies(raceData);
+        }
+        for (int driverNumber : changed) {
+            ChartLayout.Trace trace = layout.relayoutDriver(driverNumber);
+            GraphicsGroup group = traceGroups.get(driverNumber);
+            if (trace != null && group != null) {
+                group.removeAll();
+                graphicsCount -= traceGraphics.getOrDefault(driverNumber, 0);
+                drawTrace(trace, group);
+            }
+        }
+
+        // The old points are gone, so the hover index and tooltip are rebuilt over the new ones
+        pointIndex = new PointIndex(layout.getDataPoints(), 20);
+        medianPitDuration = layout.getMedianPitDuration();
+        if (hovered != null) {
+            canvas.remove(tooltipBG);
+            canvas.remove(tooltipText);
+            hovered = null;
+        }
+        int leaderLap = raceData.getDrivers().values().stream().mapToInt(Driver::getFinalLap).max().orElse(0);
+        liveText.setText((live.isLive() ? "LIVE  lap " : "FINAL  lap ") + leaderLap);
+        Metrics.global().timer("chart.live.update").stop(start);
+        Metrics.global().counter("chart.live.redrawn").add(changed.size());
     }
 
     /**
-     * Draws the pit stop data on the graph for all drivers.
+     * Builds the hover index over the chart's data points and shows a tooltip for the point under the
+     * mouse. The index is in chart content space, so the scroll offset of the chart is subtracted from
+     * the mouse position before each lookup.
      * 
-     * @param pitstopsMap A map of driver IDs to priority queues of objects.
-     * @param driversMap  A map of the driver IDs to the Driver objects.
-     * @param race        The current Race object.
+     * The mouse listeners are registered on the canvas once, by the first chart, and go to the chart
+     * on screen. A listener of its own would keep every chart ever built reachable from the canvas,
+     * so the screen cache evicting a chart would not free it.
      */
-    private void
-        displayPitsops(Map<Integer, PriorityQueue<Pitstop>> pitstopsMap, Map<Integer, Driver> driversMap, Race race) {
-        List<Map.Entry<Integer, Driver>> sortedDrivers = driversMap.entrySet().stream()
-            .sorted(Comparator.comparing(entry -> entry.getValue().getRaceFinishTime(race)))
-            .toList();
-
-        int interval = 18;
-        for (Map.Entry<Integer, Driver> entry : sortedDrivers) {
-            Driver driver = entry.getValue();
-            Color driverColor = driver.getDriverColor();
-
-            PriorityQueue<Pitstop> pitstops = pitstopsMap.get(entry.getKey());
-            Pitstop prevPitstop = null;
-            double prevX = 0, prevY = 0;
-
-            while (pitstops != null && !pitstops.isEmpty()) {
-                Pitstop currPitStop = pitstops.poll();
-                int pitLapNum = currPitStop.getLapNum();
-
-                double x1 = (currPitStop.getStartOffset(race) * XSCALE) + PADDDING + interval / 1.7;
-                double y = (canvas.getHeight() - (pitLapNum * YSCALE)) - PADDDING;
-                double x2 = (currPitStop.getEndOffset(race) * XSCALE) + (currPitStop.getpitDuration() * 1.5) + PADDDING
-                    + interval / 1.7;
-
-                drawDataPoint(x1, y, driverColor);
-                drawDataPoint(x2, y, driverColor);
-                drawLine(x1, y, x2, y, driverColor);
-
-                if (prevPitstop == null) {
-                    double startingX = PADDDING + 50;
-                    double startingY = canvas.getHeight() - PADDDING;
-                    drawLine(startingX, startingY, x1, y, driverColor);
-                } else {
-                    drawLine(prevX, prevY, x1, y, driverColor);
+    private void addTooltip() {
+        pointIndex = new PointIndex(layout.getDataPoints(), 20);
+        medianPitDuration = layout.getMedianPitDuration();
+
+        tooltipText = new GraphicsText("");
+        if (listenedCanvas != canvas) {
+            listenedCanvas = canvas;
+            canvas.onMouseMove(event -> {
+                if (active != null && active.pointIndex != null) {
+                    active.updateTooltip(event.getPosition().getX(), event.getPosition().getY());
+                }
+            });
+            canvas.onDrag(event -> {
+                if (active != null && active.pointIndex != null) {
+                    active.dragPit(event.getPosition().getY());
+                    active.updateTooltip(event.getPosition().getX(), event.getPosition().getY());
+                }
+            });
+            canvas.onMouseDown(event -> {
+                if (active != null && active.pointIndex != null) {
+                    active.startPitDrag(event.getPosition().getX(), event.getPosition().getY());
                 }
+            });
+            canvas.onMouseUp(event -> {
+                if (active != null) {
+                    active.endPitDrag();
+                }
+            });
+        }
+    }
 
-                prevX = x2;
-                prevY = y;
-                prevPitstop = currPitStop;
-            }
+    /**
+     * Picks up the pit stop under the mouse, if there is one, to move it to another lap.
+     * 
+     * @param mouseX The x-coordinate of the mouse on the canvas
+     * @param mouseY The y-coordinate of the mouse on the canvas
+     */
+    private void startPitDrag(double mouseX, double mouseY) {
+        // The stops of a race still going on cannot be moved
+        if (live != null) {
+            return;
+        }
+        ChartLayout.DataPoint point = pointIndex.nearest(mouseX - graphGroup.getX(), mouseY - graphGroup.getY(), 8);
+        if (point == null || point.pitstop() == null) {
+            return;
+        }
+        if (whatIf == null) {
+            whatIf = new WhatIfModel(race, raceData);
+        }
+        draggedStop = point.pitstop();
+        draggedDriver = point.driver().getDriverNumber();
+        draggedLap = draggedStop.getLapNum();
+        visualBar.setPaused(true);
+        if (hovered != null) {
+            canvas.remove(tooltipBG);
+            canvas.remove(tooltipText);
+            hovered = null;
+        }
+    }
+
+    /**
+     * Moves the pit stop being dragged to the lap under the mouse, and draws the driver's projected
+     * trace if the lap changed.
+     * 
+     * @param mouseY The y-coordinate of the mouse on the canvas
+     */
+    private void dragPit(double mouseY) {
+        if (draggedStop == null) {
+            return;
+        }
+        int lap = layout.lapAt(mouseY - graphGroup.getY());
+        if (lap == draggedLap) {
+            return;
+        }
+        WhatIfModel.Projection projection = whatIf.move(draggedDriver, draggedStop, lap);
+        if (projection == null || projection.moved() == null) {
+            return;
+        }
+        draggedStop = projection.moved();
+        draggedLap = lap;
+        drawProjection(projection);
+    }
 
-            double lastX = PADDDING + (driver.getRaceFinishTime(race) * XSCALE) + interval;
-            double lastY = (canvas.getHeight() - PADDDING) - (driver.getFinalLap() * YSCALE);
+    /**
+     * Drops the pit stop being dragged, and indexes the points of its new trace for hovering.
+     */
+    private void endPitDrag() {
+        if (draggedStop == null) {
+            return;
+        }
+        draggedStop = null;
+        visualBar.setPaused(false);
+        pointIndex = new PointIndex(layout.getDataPoints(), 20);
+    }
 
-            drawDataPoint(lastX, lastY, driverColor);
-            drawLine(prevX, prevY, lastX, lastY, driverColor);
+    /**
+     * Lays out and draws again the trace of a driver from a projection, and describes the projection
+     * above the chart.
+     * 
+     * @param projection The projection of the driver's race
+     */
+    private void drawProjection(WhatIfModel.Projection projection) {
+        long start = System.nanoTime();
+        int driverNumber = projection.driver().getDriverNumber();
+        ChartLayout.Trace trace = layout.relayoutDriver(projection.driver(), projection.pitstops());
+        GraphicsGroup group = traceGroups.get(driverNumber);
+        if (trace != null && group != null) {
+            group.removeAll();
+            graphicsCount -= traceGraphics.getOrDefault(driverNumber, 0);
+            drawTrace(trace, group);
+        }
 
-            interval += 18;
+        if (projectionText == null) {
+            projectionText = new GraphicsText("");
+            projectionText.setFontSize(14);
+            projectionText.setPosition(20, 60);
+            canvas.add(projectionText);
+        }
+        if (projection.deltaMillis() == 0 && projection.moved() == null) {
+            projectionText.setText("");
+        } else {
+            projectionText.setText(String.format("What if: %s stops on laps %s, finish %+.1f s, P%d to P%d",
+                projection.driver().getName(), projection.pitstops().stream().map(pitstop -> String.valueOf(
+                    pitstop.getLapNum())).toList(), projection.deltaMillis() / 1000.0, projection.actualPosition(),
+                projection.projectedPosition()));
         }
+        Metrics.global().timer("chart.whatif.redraw").stop(start);
     }
 
     /**
-     * Retrieves the total race time of the last driver to finish the race.
+     * Puts every moved pit stop back on the lap it was actually made on.
+     */
+    private void resetPits() {
+        if (whatIf == null) {
+            return;
+        }
+        for (int driverNumber : whatIf.getEditedDrivers()) {
+            drawProjection(whatIf.reset(driverNumber));
+        }
+        if (projectionText != null) {
+            projectionText.setText("");
+        }
+        pointIndex = new PointIndex(layout.getDataPoints(), 20);
+    }
+
+    /**
+     * Shows the tooltip of the data point under the mouse, or hides it if there is none.
      * 
-     * @param driverIDToDriver A map of the driver IDs to the Driver objects.
-     * @return The total race time in seconds.
+     * @param mouseX The x-coordinate of the mouse on the canvas
+     * @param mouseY The y-coordinate of the mouse on the canvas
      */
-    private long getTotalTime(Map<Integer, Driver> driverIDToDriver) {
-        Optional<Driver> lastDriver = driverIDToDriver.values().stream()
-            .max(Comparator.comparingLong(e -> e.getRaceFinishTime(race)));
-        try {
-            return lastDriver.get().getRaceFinishTime(race);
-        } catch (NoSuchElementException e) {
-            e.printStackTrace();
-            return -1;
+    private void updateTooltip(double mouseX, double mouseY) {
+        if (draggedStop != null) {
+            return;
+        }
+        ChartLayout.DataPoint point = pointIndex.nearest(mouseX - graphGroup.getX(), mouseY - graphGroup.getY(), 8);
+        if (point == hovered) {
+            return;
+        }
+        if (hovered != null) {
+            canvas.remove(tooltipBG);
+            canvas.remove(tooltipText);
         }
+        hovered = point;
+        if (point == null) {
+            return;
+        }
+
+        tooltipText.setText(describe(point));
+        double x = Math.min(mouseX + 15, canvas.getWidth() - tooltipText.getWidth() - 15);
+        double y = Math.max(mouseY - tooltipText.getHeight() - 10, 10);
+        tooltipText.setPosition(x, y);
+        tooltipBG = new Rectangle(x - 5, y - 5, tooltipText.getWidth() + 10, tooltipText.getHeight() + 10);
+        tooltipBG.setFillColor(new Color(255, 255, 255, 220));
+        canvas.add(tooltipBG);
+        canvas.add(tooltipText);
     }
 
     /**
-     * Retrieves the last lap number completed by drivers.
+     * Describes a data point for its tooltip: the driver and lap, and for a pit stop its duration, the
+     * time gained or lost against the median stop of the race, the places gained or lost once the
+     * positions are loaded, and the tyres fitted if they are known.
      * 
-     * @param driverIDToDriver A map of the driver IDs to the Driver objects.
-     * @return The number of the last lap.
+     * @param point The data point to describe
+     * @return The tooltip text
      */
-    private int getLastLap(Map<Integer, Driver> driverIDToDriver) {
-        Optional<Driver> totalNumLaps = driverIDToDriver.values().stream()
-            .max(Comparator.comparingInt(e -> e.getFinalLap()));
-        try {
-            return totalNumLaps.get().getFinalLap();
-        } catch (NoSuchElementException e) {
-            e.printStackTrace();
-            return -1;
+    private String describe(ChartLayout.DataPoint point) {
+        Driver driver = point.driver();
+        Pitstop pitstop = point.pitstop();
+        if (pitstop == null) {
+            return String.format("%s #%d%nFinished lap %d%nRace time %.1f s",
+                driver.getName(), driver.getDriverNumber(), driver.getFinalLap(),
+                driver.getRaceFinishTime(race) / 1000.0);
+        }
+        double delta = pitstop.getpitDuration() - medianPitDuration;
+        String description = String.format("%s #%d%nPit on lap %d%nDuration %.1f s%n%s %.1f s vs median",
+            driver.getName(), driver.getDriverNumber(), pitstop.getLapNum(), pitstop.getpitDuration(),
+            delta <= 0 ? "Gained" : "Lost", Math.abs(delta));
+        PositionTimeline timeline = positions;
+        // A stop dragged to another lap was never made there, so the positions say nothing about it
+        PositionTimeline.Change change = timeline == null
+            || !raceData.getDriversPitstops().get(driver.getDriverNumber()).contains(pitstop) ? null
+            : timeline.changeAt(race, pitstop);
+        if (change != null) {
+            int lost = change.placesLost();
+            String places = lost == 0 ? "held position" : String.format("%s %d place%s",
+                lost < 0 ? "gained" : "lost", Math.abs(lost), Math.abs(lost) == 1 ? "" : "s");
+            description += String.format("%nP%d to P%d, %s", change.before(), change.after(), places);
+        }
+        Stint stint = pitstop.getOutgoingStint();
+        if (stint == null || stint.getCompound() == null) {
+            return description;
         }
+        return description + String.format("%nFitted %s%s for %d laps", stint.getCompound(),
+            stint.getTyreAgeAtStart() > 0 ? " (" + stint.getTyreAgeAtStart() + " laps old)" : "", stint.getLapCount());
     }
 
     /**
-     * Retrieves the highest number of laps completed by drivers.
+     * Draws the labels, color keys, driver traces, and axes of the chart layout.
+     */
+    private void drawLayout() {
+        for (ChartLayout.Box box : layout.getBoxes()) {
+            Rectangle colorBox = new Rectangle(box.x(), box.y(), box.size(), box.size());
+            colorBox.setFillColor(box.color());
+            graphGroup.add(colorBox);
+            graphicsCount++;
+        }
+        for (ChartLayout.Label label : layout.getLabels()) {
+            GraphicsText text = new GraphicsText(label.text());
+            if (label.fontSize() > 0) {
+                text.setFontSize(label.fontSize());
+            }
+            text.setCenter(label.centerX(), label.centerY());
+            graphGroup.add(text);
+            graphicsCount++;
+        }
+        for (ChartLayout.Trace trace : layout.getTraces()) {
+            GraphicsGroup group = new GraphicsGroup();
+            traceGroups.put(trace.driver().getDriverNumber(), group);
+            graphGroup.add(group);
+            drawTrace(trace, group);
+        }
+        for (ChartLayout.Segment axis : layout.getAxes()) {
+            drawLine(graphGroup, axis.x1(), axis.y1(), axis.x2(), axis.y2(), axis.color());
+        }
+    }
+
+    /**
+     * Draws the points and lines of one driver's trace into the driver's group.
      * 
-     * @param driverIDToDriver A map of driver IDs to Driver objects.
-     * @return The total number of laps.
+     * @param trace The trace to draw
+     * @param group The group of the driver's trace
      */
-    private long getAllLaps(Map<Integer, Driver> driverIDToDriver) {
-        Optional<Driver> finishedDriver = driverIDToDriver.values().stream()
-            .max(Comparator.comparingInt(e -> e.getFinalLap()));
-        try {
-            return finishedDriver.get().getFinalLap();
-        } catch (NoSuchElementException e) {
-            e.printStackTrace();
-            return -1;
+    private void drawTrace(ChartLayout.Trace trace, GraphicsGroup group) {
+        for (ChartLayout.DataPoint point : trace.points()) {
+            drawDataPoint(group, point.x(), point.y(), point.color());
+        }
+        for (ChartLayout.Segment segment : trace.segments()) {
+            drawLine(group, segment.x1(), segment.y1(), segment.x2(), segment.y2(), segment.color());
         }
+        traceGraphics.put(trace.driver().getDriverNumber(), trace.points().size() + trace.segments().size());
     }
 
     /**
      * Draws a point on the graph to represent data.
      * 
+     * @param group       The group the point is added to.
      * @param x           The x-coordinate of the point.
      * @param y           The y-coordinate of the point.
-     * @param label       An optional label for the point.
-     * @param driverColor The color representing the driver.
+     * @param color       The color of the point: the driver's, or the tyre compound fitted.
      */
-    private void drawDataPoint(double x, double y, Color driverColor) {
+    private void drawDataPoint(GraphicsGroup group, double x, double y, Color color) {
         Rectangle point = new Rectangle(x - 5, y - 5, 10, 10);
-        point.setFillColor(driverColor);
-        graphGroup.add(point);
+        point.setFillColor(color);
+        group.add(point);
+        graphicsCount++;
     }
 
 
     /**
      * Draws a line between two points on the graph.
      * 
+     * @param group The group the line is added to.
      * @param x1    The x-coordinate of the first point.
      * @param y1    The y-coordinate of the first point.
      * @param x2    The x-coordinate of the second point.
      * @param y2    The y-coordinate of the second point.
      * @param color The color of the line.
      */
-    private void drawLine(double x1, double y1, double x2, double y2, Color color) {
+    private void drawLine(GraphicsGroup group, double x1, double y1, double x2, double y2, Color color) {
         Line line = new Line(x1, y1, x2, y2);
         line.setStrokeColor(color);
-        graphGroup.add(line);
+        group.add(line);
+        graphicsCount++;
     }
 
 
     /**
-     * Adds the navigation buttons to the canvas.
+     * Shows the replay of the race, building it the first time and showing it as it was left after
+     * that. The replay of a race followed live is built again each time, as the race has gone on.
+     */
+    private void showReplay() {
+        if (replay == null || live != null) {
+            replay = new RaceReplay(canvas, manager, menu, race, raceData);
+        } else {
+            replay.show();
+        }
+    }
+
+    /**
+     * Creates the navigation buttons, which are added to the canvas each time the chart is shown.
      * 
-     * @param canvas The canvas on which to add the buttons.
+     * @param canvas The canvas on which the buttons are shown.
      */
     private void addButton(CanvasWindow canvas) {
         double buttonWidth = 100;
@@ -328,41 +635,20 @@ public class DataVisualizer {
 
         menuButton = new Button("Menu");
         menuButton.setCenter(centerX + (buttonWidth + gap), bottomY);
-        backButton.onClick(() -> manager.display(canvas));
 
         menuButton.onClick(() -> {
             menu.start();
         });
 
-        canvas.add(backButton);
-        canvas.add(menuButton);
-    }
-
-    /**
-     * Draws the axes on the canvas for the data visualization.
-     */
-    private void drawAxes() {
-        double xAxisY = canvas.getHeight() - PADDDING;
-        double yAxisX = PADDDING + 50;
-
-        double scrollableWidth = canvas.getWidth() * 2;
-        Line xAxis = new Line(yAxisX, xAxisY, scrollableWidth, xAxisY);
-
-        xAxis.setStrokeColor(Color.BLACK);
-        graphGroup.add(xAxis);
-
-        Line yAxis = new Line(yAxisX, xAxisY, yAxisX, PADDDING);
-        yAxis.setStrokeColor(Color.BLACK);
-        graphGroup.add(yAxis);
-
-        GraphicsText xAxisLabel = new GraphicsText("Race Time Elapsed (seconds)");
-        xAxisLabel.setCenter(yAxisX + 550, xAxisY + 40);
-        graphGroup.add(xAxisLabel);
-
-        GraphicsText yAxisLabel = new GraphicsText("Lap #");
-        yAxisLabel.setCenter(yAxisX - 20, 30);
-        graphGroup.add(yAxisLabel);
+        if (layout.hasData()) {
+            replayButton = new Button("Replay");
+            replayButton.setCenter(centerX, bottomY);
+            replayButton.onClick(this::showReplay);
+        }
+        if (layout.hasData() && live == null) {
+            resetButton = new Button("Reset pits");
+            resetButton.setCenter(centerX + 2 * (buttonWidth + gap), bottomY);
+            resetButton.onClick(this::resetPits);
+        }
     }
-
 }
-
@@ -0,0 +1,457 @@
+package Formula1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONObject;
+
+/**
+ * This DatasetExporter class writes every race, driver finish, and pit stop of one or more seasons to
+ * CSV or NDJSON files, for use in spreadsheets and analysis tools.
+ *
+ * Usage: DatasetExporter [--out=DIR] [--format=csv|ndjson] [--cache=DIR] [--offline] [--threads=N]
+ * [--restart] YEAR...
+ *
+ * Each season gets a directory with races, drivers, and pitstops files. Races are fetched in parallel,
+ * but their rows are written in season order as soon as every earlier race is written, so the files
+ * are the same however many threads are used, and only a few races are held in memory at a time.
+ *
+ * After each race, the length of every file is appended to a progress manifest. An export that was
+ * interrupted continues where it stopped: the files are cut back to the last race in the manifest,
+ * and the races already written are not fetched again. A race that fails is left out and tried again
+ * by the next run, after the races already written. --restart starts a season over.
+ */
+public class DatasetExporter {
+    public static final String MANIFEST = "progress.txt";
+
+    private static final String[] RACE_COLUMNS = {"year", "round", "session_key", "circuit", "date", "start_time"};
+    private static final String[] DRIVER_COLUMNS = {"session_key", "driver_number", "name", "team", "final_lap",
+        "finish_time", "finish_ms"};
+    private static final String[] PITSTOP_COLUMNS = {"session_key", "driver_number", "lap", "duration",
+        "start_time", "start_ms", "end_ms", "compound"};
+
+    private final DataSource data;
+    private final Path outDir;
+    private final Format format;
+    private final int threads;
+
+    /**
+     * The file formats the datasets can be written in.
+     */
+    public enum Format {
+        CSV("csv"), NDJSON("ndjson");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the file extension of the format.
+         *
+         * @return The extension, without a dot
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * The rows of one race, already formatted.
+     *
+     * @param race     The race
+     * @param races    The row of the race
+     * @param drivers  The rows of its drivers
+     * @param pitstops The rows of its pit stops
+     * @param stops    The number of pit stops
+     * @param error    The reason the race could not be exported, or null if it could
+     */
+    private record RaceRows(Race race, byte[] races, byte[] drivers, byte[] pitstops, int stops, String error) {
+    }
+
+    /**
+     * Constructs a dataset exporter.
+     *
+     * @param data    The source of the seasons and race data
+     * @param outDir  The directory the datasets are written to, one subdirectory per season
+     * @param format  The file format to write
+     * @param threads The number of races fetched at the same time
+     */
+    public DatasetExporter(DataSource data, Path outDir, Format format, int threads) {
+        this.data = data;
+        this.outDir = outDir;
+        this.format = format;
+        this.threads = threads;
+    }
+
+    /**
+     * Exports the seasons given on the command line.
+     *
+     * @param args The options and years to export
+     */
+    public static void main(String[] args) {
+        Path out = Paths.get("datasets");
+        Path cacheDir = Paths.get(".f1cache");
+        Format format = Format.CSV;
+        boolean offline = false, restart = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Integer> years = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--out=")) {
+                out = Paths.get(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--format=")) {
+                format = Format.valueOf(arg.substring("--format=".length()).toUpperCase(Locale.ROOT));
+            } else if (arg.startsWith("--cache=")) {
+                cacheDir = Paths.get(arg.substring("--cache=".length()));
+            } else if (arg.equals("--offline")) {
+                offline = true;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--restart")) {
+                restart = true;
+            } else {
+                years.add(Integer.parseInt(arg));
+            }
+        }
+        if (years.isEmpty()) {
+            System.out.println("Usage: DatasetExporter [--out=DIR] [--format=csv|ndjson] [--cache=DIR] [--offline] "
+                + "[--threads=N] [--restart] YEAR...");
+            return;
+        }
+
+        DataSource data = new DataSource(new API(new ResponseCache(cacheDir, offline)));
+        DatasetExporter exporter = new DatasetExporter(data, out, format, threads);
+        for (int year : years) {
+            try {
+                exporter.exportSeason(year, restart);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in DatasetExporter");
+            }
+        }
+    }
+
+    /**
+     * Exports one season, continuing an earlier export of it unless asked to start over.
+     *
+     * @param year    The year of the season
+     * @param restart true to discard an earlier export of the season
+     * @return The number of races written by this run
+     * @throws IOException If the files cannot be written
+     */
+    public int exportSeason(int year, boolean restart) throws IOException {
+        long start = System.nanoTime();
+        List<Race> races = new ArrayList<>();
+        if (!data.streamSeasonRaces(year, races::add)) {
+            throw new IOException("Could not load the " + year + " season");
+        }
+
+        int written = 0, skipped = 0, failed = 0, stops = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (SeasonFiles files = new SeasonFiles(outDir.resolve(String.valueOf(year)), format, restart)) {
+            // At most two races per thread are fetched or waiting to be written at any time, and they
+            // are written oldest first
+            ArrayDeque<Future<RaceRows>> window = new ArrayDeque<>();
+            int next = 0;
+            while (next < races.size() || !window.isEmpty()) {
+                if (next < races.size() && window.size() < threads * 2) {
+                    Race race = races.get(next);
+                    int round = ++next;
+                    if (files.isDone(race.getSessionKey())) {
+                        skipped++;
+                    } else {
+                        window.add(pool.submit(() -> formatRace(year, round, race)));
+                    }
+                    continue;
+                }
+                RaceRows rows = await(window.poll());
+                if (rows.error() == null) {
+                    files.append(rows);
+                    written++;
+                    stops += rows.stops();
+                } else {
+                    failed++;
+                    System.out.println(year + " " + rows.race().getCircuitName() + " skipped: " + rows.error());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.printf(Locale.ROOT, "%d: %d races written (%d pit stops), %d already done, %d failed in %.2f s%n",
+            year, written, stops, skipped, failed, (System.nanoTime() - start) / 1e9);
+        return written;
+    }
+
+    /**
+     * Waits for the rows of a race.
+     *
+     * @param future The race being fetched
+     * @return Its rows, with an error if fetching failed
+     * @throws IOException If interrupted while waiting
+     */
+    private static RaceRows await(Future<RaceRows> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Fetches one race and formats its rows.
+     *
+     * @param year  The year of the race
+     * @param round The round of the race in its season
+     * @param race  The race
+     * @return The rows of the race, or an error if it could not be fetched
+     */
+    private RaceRows formatRace(int year, int round, Race race) {
+        RaceData raceData;
+        try {
+            raceData = data.fetchRaceData(race);
+        } catch (RuntimeException e) {
+            return new RaceRows(race, null, null, null, 0, String.valueOf(e.getMessage()));
+        }
+
+        StringBuilder raceRow = new StringBuilder();
+        appendRow(raceRow, RACE_COLUMNS, year, round, race.getSessionKey(), race.getCircuitName(), race.getDate(),
+            race.getRaceStartTime());
+
+        List<Driver> drivers = new ArrayList<>(raceData.getDrivers().values());
+        drivers.sort(Comparator.comparingInt(Driver::getDriverNumber));
+        StringBuilder driverRows = new StringBuilder();
+        for (Driver driver : drivers) {
+            appendRow(driverRows, DRIVER_COLUMNS, race.getSessionKey(), driver.getDriverNumber(), driver.getName(),
+                driver.getTeamName(), driver.getFinalLap(), driver.getFinishTime(),
+                driver.getFinishTime() == null ? null : driver.getRaceFinishTime(race));
+        }
+
+        List<Pitstop> pitstops = new ArrayList<>();
+        for (PriorityQueue<Pitstop> queue : raceData.getDriversPitstops().values()) {
+            pitstops.addAll(queue);
+        }
+        pitstops.sort(Comparator.<Pitstop>naturalOrder().thenComparingInt(Pitstop::getDriversID));
+        StringBuilder pitRows = new StringBuilder();
+        for (Pitstop pitstop : pitstops) {
+            appendRow(pitRows, PITSTOP_COLUMNS, race.getSessionKey(), pitstop.getDriversID(), pitstop.getLapNum(),
+                pitstop.getpitDuration(), pitstop.getstartPitTime(), pitstop.getStartOffset(race),
+                pitstop.getEndOffset(race), pitstop.getCompound());
+        }
+
+        return new RaceRows(race, bytes(raceRow), bytes(driverRows), bytes(pitRows), pitstops.size(), null);
+    }
+
+    /**
+     * Appends one row in the export format.
+     *
+     * @param out     The rows to append to
+     * @param columns The names of the columns
+     * @param values  The value of each column, with null for a missing value
+     */
+    private void appendRow(StringBuilder out, String[] columns, Object... values) {
+        if (format == Format.NDJSON) {
+            out.append('{');
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append('"').append(columns[i]).append("\":");
+                Object value = values[i];
+                if (value == null) {
+                    out.append("null");
+                } else if (value instanceof Number) {
+                    out.append(value);
+                } else {
+                    out.append(JSONObject.quote(value.toString()));
+                }
+            }
+            out.append("}\n");
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(csvField(values[i]));
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Formats a value as a CSV field, quoting it if it contains a separator, quote, or line break.
+     *
+     * @param value The value, or null for an empty field
+     * @return The field
+     */
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Encodes rows as UTF-8.
+     *
+     * @param rows The rows
+     * @return The bytes
+     */
+    private static byte[] bytes(StringBuilder rows) {
+        return rows.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This SeasonFiles class holds the dataset files of one season open for appending, together with
+     * the progress manifest recording how far they were written.
+     *
+     * The manifest starts with a line naming the format, followed by one line per written race with
+     * its session key and the length of each file after its rows. Rows are appended to the files before
+     * the race's line is added, so a manifest line always describes complete rows, and anything after
+     * the last line is cut off on the next open.
+     */
+    private static class SeasonFiles implements Closeable {
+        private final FileChannel[] channels = new FileChannel[3];
+        private final BufferedWriter manifest;
+        private final Set<Integer> done = new HashSet<>();
+
+        /**
+         * Opens the files of a season, continuing an earlier export in the same format if there is one.
+         *
+         * @param dir     The directory of the season
+         * @param format  The file format
+         * @param restart true to discard an earlier export
+         * @throws IOException If the files cannot be opened
+         */
+        SeasonFiles(Path dir, Format format, boolean restart) throws IOException {
+            Files.createDirectories(dir);
+            String header = "F1 dataset " + format.getExtension();
+            Path manifestFile = dir.resolve(MANIFEST);
+            long[] lengths = new long[channels.length];
+            List<String> lines = new ArrayList<>();
+            lines.add(header);
+            boolean resume = !restart && Files.exists(manifestFile);
+            if (resume) {
+                try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+                    resume = header.equals(reader.readLine());
+                    String line;
+                    while (resume && (line = reader.readLine()) != null) {
+                        String[] parts = line.split(" ");
+                        if (parts.length != channels.length + 1) {
+                            // A line cut off by an interruption
+                            break;
+                        }
+                        done.add(Integer.parseInt(parts[0]));
+                        for (int i = 0; i < channels.length; i++) {
+                            lengths[i] = Long.parseLong(parts[i + 1]);
+                        }
+                        lines.add(line);
+                    }
+                }
+            }
+            if (!resume) {
+                done.clear();
+                lines.subList(1, lines.size()).clear();
+            }
+
+            String[] names = {"races", "drivers", "pitstops"};
+            String[][] columns = {RACE_COLUMNS, DRIVER_COLUMNS, PITSTOP_COLUMNS};
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = FileChannel.open(dir.resolve(names[i] + "." + format.getExtension()),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                channels[i].truncate(resume ? lengths[i] : 0);
+                channels[i].position(channels[i].size());
+                if (channels[i].size() == 0 && format == Format.CSV) {
+                    write(channels[i], (String.join(",", columns[i]) + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            // Rewrite the manifest without a line cut off by an interruption
+            Files.write(manifestFile, lines, StandardCharsets.UTF_8);
+            manifest = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+
+        /**
+         * Checks if a race was written by an earlier run.
+         *
+         * @param sessionKey The session key of the race
+         * @return true if its rows are in the files
+         */
+        boolean isDone(int sessionKey) {
+            return done.contains(sessionKey);
+        }
+
+        /**
+         * Appends the rows of a race and records it in the manifest.
+         *
+         * @param rows The rows of the race
+         * @throws IOException If the files cannot be written
+         */
+        void append(RaceRows rows) throws IOException {
+            write(channels[0], rows.races());
+            write(channels[1], rows.drivers());
+            write(channels[2], rows.pitstops());
+            StringBuilder line = new StringBuilder().append(rows.race().getSessionKey());
+            for (FileChannel channel : channels) {
+                line.append(' ').append(channel.position());
+            }
+            manifest.write(line.toString());
+            manifest.newLine();
+            manifest.flush();
+            done.add(rows.race().getSessionKey());
+        }
+
+        /**
+         * Writes all of some bytes to a file.
+         *
+         * @param channel The file
+         * @param bytes   The bytes
+         * @throws IOException If the file cannot be written
+         */
+        private static void write(FileChannel channel, byte[] bytes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            manifest.close();
+            for (FileChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+    }
+}
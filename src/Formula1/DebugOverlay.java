@@ -0,0 +1,121 @@
+package Formula1;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.NoSuchElementException;
+
+import edu.macalester.graphics.CanvasWindow;
+import edu.macalester.graphics.FontStyle;
+import edu.macalester.graphics.GraphicsGroup;
+import edu.macalester.graphics.GraphicsText;
+import edu.macalester.graphics.Rectangle;
+import edu.macalester.graphics.events.Key;
+
+/**
+ * This DebugOverlay class shows a live snapshot of the metrics registry on top of whatever screen is
+ * displayed, for finding out where the time of a slow screen goes.
+ *
+ * Pressing D shows or hides the overlay, and pressing M writes the snapshot to a metrics file in the
+ * working directory. The overlay is only created when the program runs with -Df1.debug=true.
+ */
+public class DebugOverlay {
+    private static final long REFRESH_NANOS = 500_000_000L;
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final CanvasWindow canvas;
+    private final GraphicsGroup group = new GraphicsGroup();
+    private final GraphicsText text;
+
+    private boolean visible;
+    private long lastRefresh;
+
+    /**
+     * Constructs a hidden overlay and listens for the keys that show it and dump the metrics.
+     *
+     * @param canvas The canvas window the overlay is drawn on
+     */
+    public DebugOverlay(CanvasWindow canvas) {
+        this.canvas = canvas;
+
+        text = new GraphicsText("");
+        text.setFont("Monospaced", FontStyle.PLAIN, 12);
+        text.setFillColor(Color.WHITE);
+        text.setPosition(20, 30);
+
+        canvas.onKeyDown(event -> {
+            if (event.getKey() == Key.D) {
+                toggle();
+            } else if (event.getKey() == Key.M) {
+                dump();
+            }
+        });
+        canvas.animate(this::refresh);
+    }
+
+    /**
+     * Shows the overlay if it is hidden, or hides it if it is shown.
+     */
+    private void toggle() {
+        visible = !visible;
+        if (visible) {
+            lastRefresh = 0;
+            refresh();
+        } else {
+            removeFromCanvas();
+        }
+    }
+
+    /**
+     * Updates the snapshot on the overlay twice a second while it is shown. Screens clear the canvas
+     * when they change, so the overlay is also put back on top of the current screen.
+     */
+    private void refresh() {
+        long now = System.nanoTime();
+        if (!visible || now - lastRefresh < REFRESH_NANOS) {
+            return;
+        }
+        lastRefresh = now;
+
+        String snapshot = Metrics.global().snapshot();
+        text.setText(snapshot.isEmpty() ? "No metrics recorded yet" : snapshot.stripTrailing());
+
+        // The background is sized to the text, so it is replaced when the text changes
+        group.removeAll();
+        Rectangle background = new Rectangle(10, 10, text.getWidth() + 20, text.getHeight() + 20);
+        background.setFillColor(new Color(0, 0, 0, 190));
+        background.setStroked(false);
+        group.add(background);
+        group.add(text);
+        removeFromCanvas();
+        canvas.add(group);
+    }
+
+    /**
+     * Takes the overlay off the canvas if it is on it.
+     */
+    private void removeFromCanvas() {
+        try {
+            canvas.remove(group);
+        } catch (NoSuchElementException e) {
+            // Already removed by a screen clearing the canvas
+        }
+    }
+
+    /**
+     * Writes a snapshot of the metrics to a file named after the current time.
+     */
+    private void dump() {
+        Path file = Paths.get("metrics-" + LocalDateTime.now().format(FILE_TIME) + ".txt");
+        try {
+            Metrics.global().dump(file);
+            System.out.println("Metrics written to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in DebugOverlay.dump");
+        }
+    }
+}
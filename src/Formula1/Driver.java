@@ -7,12 +7,14 @@ import java.awt.Color;
 /**
  * This Driver class represents a Formula 1 driver, encapsulating key information like the driver's
  * name, number, race finish time, final lap, and the associated colors for visualizations.
+ *
+ * The name, number, team, and color are the same in every race of a season, so they are kept in an
+ * identity shared through the season's DriverRegistry; a Driver only adds how far they got in one race.
  */
 public class Driver {
-    private String name;
-    private int driverNumber, finalLap;
-    private Instant finishTime;
-    private Color driverColor;
+    private final DriverRegistry.Identity identity;
+    private final int finalLap;
+    private final Instant finishTime;
 
     /**
      * Constructs a driver object with the specified details.
@@ -24,11 +26,44 @@ public class Driver {
      * @param color         A hex string representing the color associated to the driver
      */
     public Driver(String name, int driverNumber, Instant raceFinishTime, int finalLap, String color) {
-        this.name = name;
-        this.driverNumber = driverNumber;
+        this(name, driverNumber, raceFinishTime, finalLap, color, "Unknown");
+    }
+
+    /**
+     * Constructs a driver object with the specified details, including their team.
+     * 
+     * @param name           The name of the driver
+     * @param driverNumber   The unique number assigned to the driver
+     * @param raceFinishTime The instant representing the time the driver finished the race
+     * @param finalLap       The final lap number completed by the driver
+     * @param color          A hex string representing the color associated to the driver
+     * @param teamName       The name of the driver's team
+     */
+    public Driver(String name, int driverNumber, Instant raceFinishTime, int finalLap, String color, String teamName) {
+        this(DriverRegistry.forSeason(raceFinishTime).intern(driverNumber, name, teamName, color), raceFinishTime,
+            finalLap);
+    }
+
+    /**
+     * Constructs a driver object for one race from their shared identity.
+     * 
+     * @param identity       The name, number, team, and color of the driver in the season
+     * @param raceFinishTime The instant representing the time the driver finished the race
+     * @param finalLap       The final lap number completed by the driver
+     */
+    public Driver(DriverRegistry.Identity identity, Instant raceFinishTime, int finalLap) {
+        this.identity = identity;
         finishTime = raceFinishTime;
         this.finalLap = finalLap;
-        driverColor = Color.decode("#" + color);
+    }
+
+    /**
+     * Returns the identity the driver shares with their other races of the season.
+     * 
+     * @return The identity
+     */
+    public DriverRegistry.Identity getIdentity() {
+        return identity;
     }
 
     /**
@@ -37,7 +72,16 @@ public class Driver {
      * @return The driver's name
      */
     public String getName() {
-        return name;
+        return identity.getName();
+    }
+
+    /**
+     * Returns the name of the driver's team.
+     * 
+     * @return The team name
+     */
+    public String getTeamName() {
+        return identity.getTeamName();
     }
 
     /**
@@ -46,7 +90,7 @@ public class Driver {
      * @return The driver's number
      */
     public int getDriverNumber() {
-        return driverNumber;
+        return identity.getDriverNumber();
     }
 
     /**
@@ -64,7 +108,27 @@ public class Driver {
      * @return The Color object representing the driver's color
      */
     public Color getDriverColor() {
-        return driverColor;
+        return identity.getColor();
+    }
+
+    /**
+     * Returns the instant the driver finished the race.
+     * 
+     * @return The finish time
+     */
+    public Instant getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * Creates a copy of the driver who has since completed more laps.
+     * 
+     * @param raceFinishTime The instant the driver finished their latest lap
+     * @param finalLap       The number of their latest lap
+     * @return The updated driver
+     */
+    public Driver withProgress(Instant raceFinishTime, int finalLap) {
+        return new Driver(identity, raceFinishTime, finalLap);
     }
 
     /**
@@ -0,0 +1,280 @@
+package Formula1;
+
+import java.awt.Color;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This DriverRegistry class keeps the drivers and teams of one season, so the twenty or so drivers who
+ * appear in every race are only stored once. A driver's name, team, and colour are kept in an
+ * Identity shared by every race of the season, and teammates share the same team name and Color.
+ *
+ * Each driver number seen in the season is also given a dense index, starting at 0 in the order the
+ * numbers are first seen, which RaceData uses to keep its drivers and pitstops in arrays rather than
+ * hash maps. An index is never reused, even if the driver behind a number changes team part way
+ * through the season; that driver gets a new Identity with the same index.
+ *
+ * Registries are made once per season and shared by every thread. Looking up an index does not take
+ * a lock.
+ */
+public class DriverRegistry {
+    private static final Map<Integer, DriverRegistry> SEASONS = new ConcurrentHashMap<>();
+
+    private final int year;
+    private final Map<IdentityKey, Identity> identities = new HashMap<>();
+    private final Map<String, String> teams = new HashMap<>();
+    private final Map<Integer, Color> colors = new HashMap<>();
+    // Replaced rather than changed when they grow, so they can be read without the lock
+    private volatile int[] indexByNumber = new int[0];
+    private volatile int[] numberByIndex = new int[0];
+    private volatile int[] indicesInNumberOrder = new int[0];
+
+    /**
+     * The parts of a driver that are the same in every race, shared by all of them.
+     */
+    public static final class Identity {
+        private final int index, driverNumber;
+        private final String name, teamName;
+        private final Color color;
+
+        /**
+         * Constructs an identity.
+         *
+         * @param index        The dense index of the driver number in its season
+         * @param driverNumber The driver's number
+         * @param name         The driver's name
+         * @param teamName     The name of the driver's team
+         * @param color        The color of the driver's team
+         */
+        private Identity(int index, int driverNumber, String name, String teamName, Color color) {
+            this.index = index;
+            this.driverNumber = driverNumber;
+            this.name = name;
+            this.teamName = teamName;
+            this.color = color;
+        }
+
+        /**
+         * Gets the dense index of the driver number in its season.
+         *
+         * @return The index, from 0
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the driver's number.
+         *
+         * @return The number
+         */
+        public int getDriverNumber() {
+            return driverNumber;
+        }
+
+        /**
+         * Gets the driver's name.
+         *
+         * @return The name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the name of the driver's team.
+         *
+         * @return The team name
+         */
+        public String getTeamName() {
+            return teamName;
+        }
+
+        /**
+         * Gets the color of the driver's team.
+         *
+         * @return The color
+         */
+        public Color getColor() {
+            return color;
+        }
+    }
+
+    /**
+     * What makes two drivers the same.
+     *
+     * @param driverNumber The driver's number
+     * @param name         The driver's name
+     * @param teamName     The name of the team
+     * @param rgb          The team colour
+     */
+    private record IdentityKey(int driverNumber, String name, String teamName, int rgb) {
+    }
+
+    /**
+     * Constructs an empty registry.
+     *
+     * @param year The year of the season
+     */
+    private DriverRegistry(int year) {
+        this.year = year;
+    }
+
+    /**
+     * Gets the registry of a season, making it the first time.
+     *
+     * @param year The year of the season
+     * @return The registry
+     */
+    public static DriverRegistry forSeason(int year) {
+        return SEASONS.computeIfAbsent(year, DriverRegistry::new);
+    }
+
+    /**
+     * Gets the registry of the season a moment of it falls in.
+     *
+     * @param time A time during the season, or null for a registry of no particular season
+     * @return The registry
+     */
+    public static DriverRegistry forSeason(Instant time) {
+        return forSeason(time == null ? 0 : time.atOffset(ZoneOffset.UTC).getYear());
+    }
+
+    /**
+     * Gets the year of the season.
+     *
+     * @return The year
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Gets the shared identity of a driver, adding it the first time it is seen.
+     *
+     * @param driverNumber The driver's number
+     * @param name         The driver's name
+     * @param teamName     The name of the driver's team
+     * @param rgb          The team colour as 0xRRGGBB
+     * @return The identity
+     */
+    public synchronized Identity intern(int driverNumber, String name, String teamName, int rgb) {
+        IdentityKey key = new IdentityKey(driverNumber, name, teamName, rgb & 0xFFFFFF);
+        Identity identity = identities.get(key);
+        if (identity == null) {
+            String team = teams.computeIfAbsent(teamName, t -> t);
+            Color color = colors.computeIfAbsent(key.rgb(), Color::new);
+            identity = new Identity(indexFor(driverNumber), driverNumber, name, team, color);
+            identities.put(key, identity);
+        }
+        return identity;
+    }
+
+    /**
+     * Gets the shared identity of a driver from the hex colour OpenF1 gives teams.
+     *
+     * @param driverNumber The driver's number
+     * @param name         The driver's name
+     * @param teamName     The name of the driver's team
+     * @param color        A hex string of the team colour, without a leading #
+     * @return The identity
+     * @throws NumberFormatException If the colour is not a hex number
+     */
+    public Identity intern(int driverNumber, String name, String teamName, String color) {
+        return intern(driverNumber, name, teamName, Integer.parseInt(color, 16));
+    }
+
+    /**
+     * Gets the index of a driver number, giving it the next index the first time it is seen.
+     *
+     * @param driverNumber The driver number
+     * @return The index
+     * @throws IllegalArgumentException If the driver number is negative
+     */
+    public synchronized int indexFor(int driverNumber) {
+        if (driverNumber < 0) {
+            throw new IllegalArgumentException("Negative driver number " + driverNumber);
+        }
+        int index = indexOf(driverNumber);
+        if (index >= 0) {
+            return index;
+        }
+        int[] byNumber = indexByNumber;
+        if (driverNumber >= byNumber.length) {
+            int oldLength = byNumber.length;
+            byNumber = Arrays.copyOf(byNumber, Math.max(driverNumber + 1, Math.max(100, oldLength * 2)));
+            Arrays.fill(byNumber, oldLength, byNumber.length, -1);
+        } else {
+            byNumber = byNumber.clone();
+        }
+        index = numberByIndex.length;
+        int[] byIndex = Arrays.copyOf(numberByIndex, index + 1);
+        byIndex[index] = driverNumber;
+        byNumber[driverNumber] = index;
+        int[] ordered = new int[index + 1];
+        int next = 0;
+        for (int number = 0; number < byNumber.length; number++) {
+            if (byNumber[number] >= 0) {
+                ordered[next++] = byNumber[number];
+            }
+        }
+        numberByIndex = byIndex;
+        indexByNumber = byNumber;
+        indicesInNumberOrder = ordered;
+        return index;
+    }
+
+    /**
+     * Looks up the index of a driver number without adding it.
+     *
+     * @param driverNumber The driver number
+     * @return The index, or -1 if the number has not been seen in the season
+     */
+    public int indexOf(int driverNumber) {
+        int[] byNumber = indexByNumber;
+        return driverNumber >= 0 && driverNumber < byNumber.length ? byNumber[driverNumber] : -1;
+    }
+
+    /**
+     * Gets the driver number at an index.
+     *
+     * @param index The index
+     * @return The driver number
+     */
+    public int numberAt(int index) {
+        return numberByIndex[index];
+    }
+
+    /**
+     * Gets the number of driver numbers seen in the season, which is one more than the highest index.
+     *
+     * @return The number of indices given out
+     */
+    public int size() {
+        return numberByIndex.length;
+    }
+
+    /**
+     * Gets the table of indices by driver number, with -1 for numbers not seen. The array is shared
+     * and must not be changed.
+     *
+     * @return The table
+     */
+    int[] indexTable() {
+        return indexByNumber;
+    }
+
+    /**
+     * Gets the indices given out so far, in order of their driver numbers. The array is shared and must
+     * not be changed.
+     *
+     * @return The indices
+     */
+    int[] indicesInNumberOrder() {
+        return indicesInNumberOrder;
+    }
+}
@@ -0,0 +1,102 @@
+package Formula1;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This HotPathEvents class holds the custom Java Flight Recorder events of the program, so a
+ * recording shows each request, decode step, race data build, chart build, and scroll frame on the
+ * timeline next to the JVM's own events. They are recorded when the program runs with
+ * -XX:StartFlightRecording and cost almost nothing otherwise.
+ */
+public class HotPathEvents {
+
+    /**
+     * A request to the OpenF1 API, or a response read from the cache.
+     */
+    @Name("Formula1.Request")
+    @Label("OpenF1 Request")
+    @Category("Formula1")
+    @StackTrace(false)
+    public static class Request extends Event {
+        @Label("Endpoint")
+        public String endpoint;
+
+        @Label("Bytes")
+        @Description("The length of the response body, which is plain ASCII JSON")
+        @DataAmount
+        public long bytes;
+
+        @Label("Status")
+        @Description("The HTTP status, or -1 if the request failed without one")
+        public int status;
+
+        @Label("Cached")
+        public boolean cached;
+    }
+
+    /**
+     * A step turning JSON into objects.
+     */
+    @Name("Formula1.Decode")
+    @Label("Decode")
+    @Category("Formula1")
+    @StackTrace(false)
+    public static class Decode extends Event {
+        @Label("Step")
+        public String step;
+
+        @Label("Items")
+        public int items;
+    }
+
+    /**
+     * The construction of a RaceData.
+     */
+    @Name("Formula1.RaceDataBuild")
+    @Label("Race Data Build")
+    @Category("Formula1")
+    @StackTrace(false)
+    public static class RaceDataBuild extends Event {
+        @Label("Drivers")
+        public int drivers;
+
+        @Label("Pitstops")
+        public int pitstops;
+    }
+
+    /**
+     * The layout or drawing of a race chart.
+     */
+    @Name("Formula1.Chart")
+    @Label("Chart")
+    @Category("Formula1")
+    @StackTrace(false)
+    public static class Chart extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Session Key")
+        public int sessionKey;
+
+        @Label("Graphics")
+        public int graphics;
+    }
+
+    /**
+     * One update of the chart while its scroll bar is dragged.
+     */
+    @Name("Formula1.ScrollFrame")
+    @Label("Scroll Frame")
+    @Category("Formula1")
+    @StackTrace(false)
+    public static class ScrollFrame extends Event {
+        @Label("Offset")
+        public double offset;
+    }
+}
@@ -0,0 +1,548 @@
+package Formula1;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.json.JSONArray;
+
+/**
+ * This IngestPipeline class runs season-scale jobs over many races as a series of stages, so the
+ * network-bound and CPU-bound parts of different races overlap:
+ *
+ * fetch: the drivers, laps, pit stops, and stints responses of a race, through the API and its cache
+ * decode: the Driver, Pitstop, and Stint objects from the responses
+ * model: the RaceData of the race
+ * layout: the ChartLayout of the race, and the pit crew leaderboards of its season
+ * sink: the job's own work on each race, on a single thread
+ *
+ * Every stage has its own threads and takes its races from a bounded queue filled by the stage before
+ * it. A stage that falls behind fills its queue, which then holds up the stages before it, so only a
+ * few races are between stages at any time however long the season is. A race that fails in a stage
+ * is dropped there and counted against that stage.
+ *
+ * While a run is going, getStats() gives the races each stage has done and how many are waiting in
+ * its queue. The times and queue depths are also kept in the metrics registry as pipeline.* metrics.
+ */
+public class IngestPipeline {
+    public static final int CHART_WIDTH = 1280, CHART_HEIGHT = 720;
+
+    private static final Object END = new Object();
+
+    private final API openf1;
+    private final Settings settings;
+    private final Map<Integer, PitLeaderboards> leaderboards = new ConcurrentHashMap<>();
+    private volatile List<Stage> stages = List.of();
+
+    /**
+     * How many threads each stage has and how many races can wait between two stages.
+     *
+     * @param fetchThreads  The number of races fetched at the same time
+     * @param decodeThreads The number of races decoded at the same time
+     * @param modelThreads  The number of race data built at the same time
+     * @param layoutThreads The number of races laid out at the same time
+     * @param queueCapacity The number of races that can wait in front of each stage
+     */
+    public record Settings(int fetchThreads, int decodeThreads, int modelThreads, int layoutThreads,
+        int queueCapacity) {
+        /**
+         * Gets settings suited to this machine: enough fetches to hide the latency of the network,
+         * and one thread per processor for each stage doing work on the CPU.
+         *
+         * @return The settings
+         */
+        public static Settings defaults() {
+            int processors = Runtime.getRuntime().availableProcessors();
+            return new Settings(8, processors, processors, processors, 4);
+        }
+    }
+
+    /**
+     * A race that has been through every stage before the sink.
+     *
+     * @param race     The race
+     * @param raceData The drivers, pit stops, and stints of the race
+     * @param layout   The chart of the race, CHART_WIDTH by CHART_HEIGHT
+     * @param entered  When the race was put into the pipeline, from System.nanoTime()
+     */
+    public record IngestedRace(Race race, RaceData raceData, ChartLayout layout, long entered) {
+        /**
+         * Gets how long the race took to get through the stages before the sink, including the time
+         * it waited in their queues.
+         *
+         * @return The time in nanoseconds
+         */
+        public long latencyNanos() {
+            return System.nanoTime() - entered;
+        }
+    }
+
+    /**
+     * What one stage has done.
+     *
+     * @param name          The name of the stage
+     * @param threads       The number of threads of the stage
+     * @param processed     The number of races the stage has finished
+     * @param failed        The number of races that failed in the stage
+     * @param queueDepth    The number of races waiting for the stage now
+     * @param maxQueueDepth The most races that waited for the stage at once
+     * @param busyNanos     The time the threads of the stage spent working, added together
+     * @param wallNanos     The time since the run started, or the time the run took if it is over
+     */
+    public record StageStats(String name, int threads, long processed, long failed, int queueDepth,
+        int maxQueueDepth, long busyNanos, long wallNanos) {
+        /**
+         * Gets how many races the stage finished per second of the run.
+         *
+         * @return The races per second
+         */
+        public double throughput() {
+            return wallNanos == 0 ? 0 : processed / (wallNanos / 1e9);
+        }
+
+        /**
+         * Gets the share of the run the threads of the stage spent working.
+         *
+         * @return The utilization, from 0 to 1
+         */
+        public double utilization() {
+            return wallNanos == 0 ? 0 : busyNanos / ((double) wallNanos * threads);
+        }
+    }
+
+    /**
+     * The outcome of a run.
+     *
+     * @param races         The number of races put into the pipeline
+     * @param ingested      The number of races that reached the end of the sink
+     * @param wallNanos     The time the run took
+     * @param stages        What each stage did, in order
+     * @param failedSeasons The years of the seasons whose races could not all be read, so that races
+     *                      of them may be missing from the run
+     */
+    public record Report(int races, long ingested, long wallNanos, List<StageStats> stages,
+        List<Integer> failedSeasons) {
+        /**
+         * Describes the run, with one line per stage.
+         *
+         * @return The description
+         */
+        public String summary() {
+            double seconds = wallNanos / 1e9;
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                "Ingested %d of %d races in %.2f s (%.2f races/s)%n", ingested, races, seconds,
+                seconds == 0 ? 0 : ingested / seconds));
+            text.append("stage    threads   done  failed  races/s   busy  max queue\n");
+            for (StageStats stage : stages) {
+                text.append(String.format(Locale.ROOT, "%-7s  %7d  %5d  %6d  %7.2f  %4.0f%%  %9d%n", stage.name(),
+                    stage.threads(), stage.processed(), stage.failed(), stage.throughput(),
+                    stage.utilization() * 100, stage.maxQueueDepth()));
+            }
+            if (!failedSeasons.isEmpty()) {
+                text.append("source failed for the seasons ").append(failedSeasons).append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * A race waiting to be fetched.
+     *
+     * @param race    The race
+     * @param entered When it was put into the pipeline
+     */
+    private record Queued(Race race, long entered) {
+    }
+
+    /**
+     * The responses of a race, before they are decoded.
+     *
+     * @param race    The race
+     * @param entered When it was put into the pipeline
+     * @param drivers The drivers response
+     * @param laps    The laps response of each driver, in the order of the drivers, null where it failed
+     * @param pits    The pit response
+     * @param stints  The stints response, or null if it failed
+     */
+    private record Fetched(Race race, long entered, JSONArray drivers, JSONArray[] laps, JSONArray pits,
+        JSONArray stints) {
+    }
+
+    /**
+     * The decoded objects of a race.
+     *
+     * @param race     The race
+     * @param entered  When it was put into the pipeline
+     * @param drivers  The drivers who completed a lap
+     * @param pitstops The pit stops
+     * @param stints   The stints
+     */
+    private record Decoded(Race race, long entered, List<Driver> drivers, List<Pitstop> pitstops, List<Stint> stints) {
+    }
+
+    /**
+     * The race data of a race.
+     *
+     * @param race     The race
+     * @param entered  When it was put into the pipeline
+     * @param raceData The race data
+     */
+    private record Built(Race race, long entered, RaceData raceData) {
+    }
+
+    /**
+     * Constructs a pipeline with the default settings.
+     *
+     * @param openf1 The API the races are fetched from
+     */
+    public IngestPipeline(API openf1) {
+        this(openf1, Settings.defaults());
+    }
+
+    /**
+     * Constructs a pipeline.
+     *
+     * @param openf1   The API the races are fetched from
+     * @param settings The threads and queue sizes of the stages
+     */
+    public IngestPipeline(API openf1, Settings settings) {
+        this.openf1 = openf1;
+        this.settings = settings;
+    }
+
+    /**
+     * Runs every race of some seasons through the pipeline. The races of a season are put into the
+     * pipeline as soon as each one is read, so the first are fetched while the rest of the season
+     * is still coming in. A season that cannot be read in full is listed as failed in the report,
+     * with whatever races of it were read still run.
+     *
+     * @param years The years of the seasons
+     * @param sink  Called on one thread with each race that made it through, in the order they finish
+     * @return The outcome of the run
+     */
+    public Report runSeasons(List<Integer> years, Consumer<IngestedRace> sink) {
+        List<Integer> failed = new ArrayList<>();
+        Report report = run(source -> {
+            for (int year : years) {
+                if (!openf1.streamSeasonRaces(year, source)) {
+                    failed.add(year);
+                    Metrics.global().counter("pipeline.source.failed").increment();
+                }
+            }
+        }, sink);
+        return new Report(report.races(), report.ingested(), report.wallNanos(), report.stages(), List.copyOf(failed));
+    }
+
+    /**
+     * Runs a list of races through the pipeline.
+     *
+     * @param races The races
+     * @param sink  Called on one thread with each race that made it through, in the order they finish
+     * @return The outcome of the run
+     */
+    public Report run(List<Race> races, Consumer<IngestedRace> sink) {
+        return run(source -> races.forEach(source), sink);
+    }
+
+    /**
+     * Starts the stages, puts in every race the producer gives, and waits for the last one to come
+     * out of the sink.
+     *
+     * @param producer Gives the races to a consumer that waits while the fetch queue is full
+     * @param sink     Called on one thread with each race that made it through
+     * @return The outcome of the run
+     */
+    private Report run(Consumer<Consumer<Race>> producer, Consumer<IngestedRace> sink) {
+        long start = System.nanoTime();
+        int capacity = settings.queueCapacity();
+        Stage sinkStage = new Stage("sink", 1, capacity, null, item -> {
+            sink.accept((IngestedRace) item);
+            return null;
+        });
+        Stage layout = new Stage("layout", settings.layoutThreads(), capacity, sinkStage,
+            item -> layout((Built) item));
+        Stage model = new Stage("model", settings.modelThreads(), capacity, layout, item -> model((Decoded) item));
+        Stage decode = new Stage("decode", settings.decodeThreads(), capacity, model, item -> decode((Fetched) item));
+        Stage fetch = new Stage("fetch", settings.fetchThreads(), capacity, decode, item -> fetch((Queued) item));
+        List<Stage> run = List.of(fetch, decode, model, layout, sinkStage);
+        CountDownLatch finished = new CountDownLatch(1);
+        sinkStage.onEnd = finished::countDown;
+        run.forEach(stage -> stage.start(start));
+        stages = run;
+
+        AtomicInteger races = new AtomicInteger();
+        try {
+            producer.accept(race -> {
+                if (!Thread.currentThread().isInterrupted()) {
+                    races.incrementAndGet();
+                    fetch.put(new Queued(race, System.nanoTime()));
+                }
+            });
+        } finally {
+            fetch.put(END);
+        }
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.forEach(Stage::stop);
+        }
+        long wall = System.nanoTime() - start;
+        run.forEach(stage -> stage.finish(wall));
+        Metrics.global().timer("pipeline.run").stop(start);
+        return new Report(races.get(), sinkStage.processed.get(), wall, getStats(), List.of());
+    }
+
+    /**
+     * Gets what each stage of the current or last run has done.
+     *
+     * @return The stats of the stages, in order, or an empty list before the first run
+     */
+    public List<StageStats> getStats() {
+        List<StageStats> stats = new ArrayList<>();
+        for (Stage stage : stages) {
+            stats.add(stage.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the pit crew leaderboards of a season, which take in every race of it laid out by this
+     * pipeline.
+     *
+     * @param year The year of the season
+     * @return The leaderboards, empty until a race of the season is laid out
+     */
+    public PitLeaderboards getLeaderboards(int year) {
+        return leaderboards.computeIfAbsent(year, PitLeaderboards::new);
+    }
+
+    /**
+     * Fetches the responses of a race.
+     *
+     * @param queued The race
+     * @return The responses
+     * @throws IllegalStateException If the drivers or pit stops could not be fetched
+     */
+    private Fetched fetch(Queued queued) {
+        Race race = queued.race();
+        int sessionKey = race.getSessionKey();
+        JSONArray drivers = openf1.extractRaceData(openf1.getDriversURL(sessionKey));
+        if (drivers == null) {
+            throw new IllegalStateException("No drivers for " + race.getCircuitName());
+        }
+        JSONArray[] laps = new JSONArray[drivers.length()];
+        for (int i = 0; i < laps.length; i++) {
+            int driverNumber = drivers.getJSONObject(i).getInt("driver_number");
+            laps[i] = openf1.extractRaceData(openf1.getLapsURL(sessionKey, driverNumber));
+        }
+        JSONArray pits = openf1.extractRaceData(openf1.getPitURL(sessionKey));
+        if (pits == null) {
+            throw new IllegalStateException("No pit stops for " + race.getCircuitName());
+        }
+        JSONArray stints = openf1.extractRaceData(openf1.getStintsURL(sessionKey));
+        return new Fetched(race, queued.entered(), drivers, laps, pits, stints);
+    }
+
+    /**
+     * Decodes the responses of a race.
+     *
+     * @param fetched The responses
+     * @return The decoded objects
+     */
+    private Decoded decode(Fetched fetched) {
+        List<Driver> drivers = new ArrayList<>();
+        for (int i = 0; i < fetched.laps().length; i++) {
+            if (fetched.laps()[i] != null) {
+                Driver driver = openf1.decodeDriver(fetched.drivers().getJSONObject(i), fetched.laps()[i]);
+                if (driver != null) {
+                    drivers.add(driver);
+                }
+            }
+        }
+        List<Stint> stints = fetched.stints() == null ? new ArrayList<>() : openf1.decodeStints(fetched.stints());
+        return new Decoded(fetched.race(), fetched.entered(), drivers, openf1.decodePitstops(fetched.pits()), stints);
+    }
+
+    /**
+     * Builds the race data of a race.
+     *
+     * @param decoded The decoded objects
+     * @return The race data
+     * @throws IllegalStateException If no driver completed a lap
+     */
+    private Built model(Decoded decoded) {
+        RaceData raceData = new RaceData(decoded.drivers(), decoded.pitstops(), decoded.stints());
+        if (raceData.getDrivers().isEmpty()) {
+            throw new IllegalStateException("No drivers for " + decoded.race().getCircuitName());
+        }
+        return new Built(decoded.race(), decoded.entered(), raceData);
+    }
+
+    /**
+     * Lays out the chart of a race and adds it to the leaderboards of its season.
+     *
+     * @param built The race data
+     * @return The race ready for the sink
+     */
+    private IngestedRace layout(Built built) {
+        Race race = built.race();
+        ChartLayout layout = new ChartLayout(race, built.raceData(), CHART_WIDTH, CHART_HEIGHT);
+        getLeaderboards(race.getRaceStartTime().atOffset(ZoneOffset.UTC).getYear()).update(race, built.raceData());
+        return new IngestedRace(race, built.raceData(), layout, built.entered());
+    }
+
+    /**
+     * One stage of a run: its threads, the queue in front of it, and what it has done.
+     */
+    private static class Stage {
+        private final String name;
+        private final int threads;
+        private final Stage next;
+        private final Function<Object, Object> work;
+        private final BlockingQueue<Object> queue;
+        private final List<Thread> workers = new ArrayList<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final Metrics.Histogram depths;
+        private final Metrics.Timer timer;
+        private Runnable onEnd = () -> {
+        };
+        private long start;
+        private volatile long wallNanos = -1;
+
+        /**
+         * Constructs a stage.
+         *
+         * @param name     The name of the stage
+         * @param threads  The number of threads of the stage
+         * @param capacity The number of races that can wait in its queue
+         * @param next     The stage given what this one makes, or null for the last stage
+         * @param work     What the stage does with each race
+         */
+        Stage(String name, int threads, int capacity, Stage next, Function<Object, Object> work) {
+            this.name = name;
+            this.threads = Math.max(1, threads);
+            this.next = next;
+            this.work = work;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            this.depths = Metrics.global().histogram("pipeline." + name + ".queue", "races");
+            this.timer = Metrics.global().timer("pipeline." + name);
+        }
+
+        /**
+         * Starts the threads of the stage.
+         *
+         * @param runStart When the run started, from System.nanoTime()
+         */
+        void start(long runStart) {
+            start = runStart;
+            running.set(threads);
+            for (int i = 1; i <= threads; i++) {
+                Thread worker = new Thread(this::work, "ingest-" + name + "-" + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        /**
+         * Puts a race in the queue of the stage, waiting while the queue is full.
+         *
+         * @param item The race, or END once there are no more
+         */
+        void put(Object item) {
+            try {
+                queue.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (item != END) {
+                int depth = queue.size();
+                depths.record(depth);
+                maxQueueDepth.accumulateAndGet(depth, Math::max);
+            }
+        }
+
+        /**
+         * Takes races from the queue until the end of the run, giving what is made from each to the
+         * next stage. The last thread to see the end passes it on.
+         */
+        private void work() {
+            try {
+                while (true) {
+                    Object item = queue.take();
+                    if (item == END) {
+                        if (running.decrementAndGet() > 0) {
+                            queue.put(END);
+                        } else if (next != null) {
+                            next.put(END);
+                        } else {
+                            onEnd.run();
+                        }
+                        return;
+                    }
+                    long begin = System.nanoTime();
+                    Object result;
+                    try {
+                        result = work.apply(item);
+                    } catch (RuntimeException e) {
+                        System.out.println(e.getMessage());
+                        System.out.println("Error in IngestPipeline " + name);
+                        failed.incrementAndGet();
+                        continue;
+                    } finally {
+                        busyNanos.addAndGet(timer.stop(begin));
+                    }
+                    processed.incrementAndGet();
+                    if (next != null) {
+                        next.put(result);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Interrupts the threads of the stage.
+         */
+        void stop() {
+            workers.forEach(Thread::interrupt);
+        }
+
+        /**
+         * Fixes the time of the stats at the end of the run.
+         *
+         * @param wall The time the run took
+         */
+        void finish(long wall) {
+            wallNanos = wall;
+        }
+
+        /**
+         * Gets what the stage has done so far.
+         *
+         * @return The stats
+         */
+        StageStats stats() {
+            long wall = wallNanos >= 0 ? wallNanos : System.nanoTime() - start;
+            return new StageStats(name, threads, processed.get(), failed.get(), queue.size(), maxQueueDepth.get(),
+                busyNanos.get(), wall);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package Formula1;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * This LiveSession class follows a race while it is going on, by polling OpenF1 for the laps and pit
+ * stops added since the last poll instead of fetching the whole race again.
+ *
+ * OpenF1 publishes a lap once it is completed and a pit stop once the car has left the pit lane, so a
+ * row can appear a while after its own date. Each poll therefore asks for the rows dated after the
+ * newest row seen minus a lookback longer than any lap, and leaves out the rows it has already seen.
+ * The requests cover the same length of race time however far the race has gone, so the cost of a
+ * poll stays the same from the first lap to the last.
+ *
+ * Polls only return what changed. The changes are applied to the RaceData by whoever draws it, so the
+ * race data is only ever changed on one thread.
+ */
+public class LiveSession {
+    public static final Duration HORIZON = Duration.ofHours(2);
+    public static final int HORIZON_LAPS = 80;
+    public static final Duration LOOKBACK = Duration.ofMinutes(4);
+    public static final long POLL_INTERVAL_MILLIS = 4000;
+
+    private final API openf1;
+    private final Race race;
+    private final Clock clock;
+
+    private final Map<Integer, Driver> drivers = new HashMap<>();
+    private final Set<Long> seenPitstops = new HashSet<>();
+    private Instant newestLap, newestPit;
+    private final Object pollLock = new Object();
+    private ScheduledExecutorService poller;
+    private volatile PitLeaderboards leaderboards;
+    private volatile PitAnomalyDetector anomalies;
+
+    /**
+     * The changes found by one poll.
+     *
+     * @param drivers  The drivers who completed laps, with their latest lap
+     * @param pitstops The pit stops made
+     * @param rows     The number of rows the poll fetched, including ones already seen
+     */
+    public record Delta(List<Driver> drivers, List<Pitstop> pitstops, int rows) {
+        /**
+         * Checks if the poll found nothing new.
+         *
+         * @return true if no driver or pit stop changed
+         */
+        public boolean isEmpty() {
+            return drivers.isEmpty() && pitstops.isEmpty();
+        }
+    }
+
+    /**
+     * Constructs a live session for a race, following the system clock.
+     *
+     * @param openf1 The API to poll
+     * @param race   The race in progress
+     */
+    public LiveSession(API openf1, Race race) {
+        this(openf1, race, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a live session for a race, following a given clock.
+     *
+     * @param openf1 The API to poll
+     * @param race   The race in progress
+     * @param clock  The clock deciding when the race is over
+     */
+    public LiveSession(API openf1, Race race, Clock clock) {
+        this.openf1 = openf1;
+        this.race = race;
+        this.clock = clock;
+        newestLap = race.getRaceStartTime();
+        newestPit = race.getRaceStartTime();
+    }
+
+    /**
+     * Checks if a race could be going on, from shortly before its start until the end of the longest
+     * race it could be.
+     *
+     * @param race The race
+     * @param now  The current time
+     * @return true if the race should be followed live
+     */
+    public static boolean isLive(Race race, Instant now) {
+        Instant start = race.getRaceStartTime();
+        return !now.isBefore(start.minus(15, ChronoUnit.MINUTES)) && now.isBefore(start.plus(HORIZON).plus(LOOKBACK));
+    }
+
+    /**
+     * Checks if a race is over for certain, past the end of the longest race it could be. The data of
+     * a race that is not over yet, including one that has not started, may still change.
+     *
+     * @param race The race
+     * @param now  The current time
+     * @return true if the race can no longer be going on
+     */
+    public static boolean isOver(Race race, Instant now) {
+        return !now.isBefore(race.getRaceStartTime().plus(HORIZON).plus(LOOKBACK));
+    }
+
+    /**
+     * Checks if the race of this session could still be going on.
+     *
+     * @return true if the race should be followed
+     */
+    public boolean isLive() {
+        return isLive(race, clock.instant());
+    }
+
+    /**
+     * Gets the race followed.
+     *
+     * @return The race
+     */
+    public Race getRace() {
+        return race;
+    }
+
+    /**
+     * Sets the leaderboards of the race's season, to be refreshed as pit stops come in.
+     *
+     * @param leaderboards The leaderboards, or null to leave them alone
+     */
+    public void setLeaderboards(PitLeaderboards leaderboards) {
+        this.leaderboards = leaderboards;
+    }
+
+    /**
+     * Refreshes the season leaderboards with the race data once polls have been applied to it. Only
+     * this race's stops are replaced.
+     *
+     * @param raceData The race data of the session
+     */
+    public void refreshLeaderboards(RaceData raceData) {
+        PitLeaderboards board = leaderboards;
+        if (board != null) {
+            board.update(race, raceData);
+        }
+    }
+
+    /**
+     * Sets the detector the race's pit stops are checked by as they come in.
+     *
+     * @param anomalies The anomaly detector, or null to leave the stops unchecked
+     */
+    public void setAnomalyDetector(PitAnomalyDetector anomalies) {
+        this.anomalies = anomalies;
+    }
+
+    /**
+     * Checks the pit stops polled since the last check once polls have been applied to the race data.
+     *
+     * @param raceData The race data of the session
+     * @return The stops flagged now, empty if there is no detector
+     */
+    public List<PitAnomalyDetector.Anomaly> checkAnomalies(RaceData raceData) {
+        PitAnomalyDetector detector = anomalies;
+        return detector == null ? List.of() : detector.observe(race, raceData);
+    }
+
+    /**
+     * Fetches the drivers of the race and builds the race data the polls are applied to. Drivers start
+     * on lap 0 at the start of the race, until their first lap is polled.
+     *
+     * @return The race data without any laps or pit stops
+     * @throws IOException If the drivers cannot be fetched
+     */
+    public RaceData start() throws IOException {
+        JSONArray entries = openf1.fetchLive(openf1.getDriversURL(race.getSessionKey()));
+        List<Driver> entrants = new ArrayList<>();
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject object = entries.getJSONObject(i);
+            Driver driver = new Driver(
+                object.getString("name_acronym"),
+                object.getInt("driver_number"),
+                race.getRaceStartTime(),
+                0,
+                object.optString("team_colour", "000000"),
+                object.optString("team_name", "Unknown"));
+            drivers.put(driver.getDriverNumber(), driver);
+            entrants.add(driver);
+        }
+        return new RaceData(entrants, List.of());
+    }
+
+    /**
+     * Fetches the whole race as it is so far without polling, for when the session cannot be started.
+     * Nothing goes through the response cache, so the partial race is never stored. Drivers without a
+     * completed lap are left out.
+     *
+     * @return The race data so far
+     * @throws IOException If a request fails
+     */
+    public RaceData fetchSoFar() throws IOException {
+        JSONArray entries = openf1.fetchLive(openf1.getDriversURL(race.getSessionKey()));
+        List<Driver> racing = new ArrayList<>();
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject object = entries.getJSONObject(i);
+            JSONArray laps = openf1.fetchLive(openf1.getLapsURL(race.getSessionKey(), object.getInt("driver_number")));
+            Driver driver = openf1.decodeDriver(object, laps);
+            if (driver != null) {
+                racing.add(driver);
+            }
+        }
+        JSONArray pits = openf1.fetchLive(openf1.getPitURL(race.getSessionKey()));
+        JSONArray stints = openf1.fetchLive(openf1.getStintsURL(race.getSessionKey()));
+        return new RaceData(racing, openf1.decodePitstops(pits), openf1.decodeStints(stints));
+    }
+
+    /**
+     * Fetches the laps and pit stops added since the last poll.
+     *
+     * @return The changes since the last poll
+     * @throws IOException If a request fails
+     */
+    public Delta poll() throws IOException {
+        long start = System.nanoTime();
+        JSONArray laps = openf1.fetchLive(openf1.getLapsSinceURL(race.getSessionKey(), newestLap.minus(LOOKBACK)));
+        JSONArray pits = openf1.fetchLive(openf1.getPitSinceURL(race.getSessionKey(), newestPit.minus(LOOKBACK)));
+
+        Map<Integer, Driver> changed = new HashMap<>();
+        for (int i = 0; i < laps.length(); i++) {
+            JSONObject lap = laps.getJSONObject(i);
+            Driver driver = drivers.get(lap.optInt("driver_number"));
+            // Laps in progress and the first lap have no duration yet
+            if (driver == null || lap.isNull("lap_duration") || lap.getInt("lap_number") <= driver.getFinalLap()) {
+                continue;
+            }
+            Instant lapStart = OffsetDateTime.parse(lap.getString("date_start")).toInstant();
+            Instant lapEnd = lapStart.plusMillis((long) (lap.getDouble("lap_duration") * 1000));
+            driver = driver.withProgress(lapEnd, lap.getInt("lap_number"));
+            drivers.put(driver.getDriverNumber(), driver);
+            changed.put(driver.getDriverNumber(), driver);
+            if (lapStart.isAfter(newestLap)) {
+                newestLap = lapStart;
+            }
+        }
+
+        List<Pitstop> pitstops = new ArrayList<>();
+        for (int i = 0; i < pits.length(); i++) {
+            JSONObject pit = pits.getJSONObject(i);
+            // Stops still in the pit lane have no duration yet
+            if (pit.isNull("pit_duration") || pit.isNull("lap_number")) {
+                continue;
+            }
+            int driverID = pit.getInt("driver_number"), lap = pit.getInt("lap_number");
+            if (!seenPitstops.add(((long) driverID << 32) | lap)) {
+                continue;
+            }
+            Instant entry = OffsetDateTime.parse(pit.getString("date")).toInstant();
+            pitstops.add(new Pitstop(driverID, lap, pit.getDouble("pit_duration"), entry));
+            if (entry.isAfter(newestPit)) {
+                newestPit = entry;
+            }
+        }
+
+        Metrics.global().timer("live.poll").stop(start);
+        Metrics.global().histogram("live.poll.rows", "rows").record(laps.length() + pits.length());
+        return new Delta(new ArrayList<>(changed.values()), pitstops, laps.length() + pits.length());
+    }
+
+    /**
+     * Applies the changes of a poll to race data.
+     *
+     * @param raceData The race data of the session
+     * @param delta    The changes of a poll
+     * @return The numbers of the drivers whose trace changed
+     */
+    public static Set<Integer> apply(RaceData raceData, Delta delta) {
+        Set<Integer> changed = new HashSet<>();
+        for (Driver driver : delta.drivers()) {
+            raceData.putDriver(driver);
+            changed.add(driver.getDriverNumber());
+        }
+        for (Pitstop pitstop : delta.pitstops()) {
+            if (raceData.addPitstop(pitstop)) {
+                changed.add(pitstop.getDriversID());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Starts polling in the background until the race is over or polling is stopped, handing every
+     * poll that found changes to a consumer on the polling thread. Polling can be started again after
+     * it is stopped, and picks up from the newest rows seen.
+     *
+     * @param onDelta Called with the changes of each poll
+     */
+    public synchronized void startPolling(Consumer<Delta> onDelta) {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-" + race.getSessionKey());
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            if (!isLive()) {
+                stopPolling();
+                return;
+            }
+            // A poll of a poller that was stopped can still be running when polling starts again
+            synchronized (pollLock) {
+                try {
+                    Delta delta = poll();
+                    if (!delta.isEmpty()) {
+                        onDelta.accept(delta);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.out.println(e.getMessage());
+                    System.out.println("Error in LiveSession.poll");
+                }
+            }
+        }, 0, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling. A poll already running still hands over its changes.
+     */
+    public synchronized void stopPolling() {
+        if (poller != null) {
+            poller.shutdown();
+            poller = null;
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package Formula1;
 
 import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import edu.macalester.graphics.CanvasWindow;
 import edu.macalester.graphics.FontStyle;
@@ -18,20 +27,34 @@ import edu.macalester.graphics.ui.Button;
  * 
  * Includes a background image, introductory text, and buttons for navigating to specific race
  * years.
+ * 
+ * The menu is shown before its background image is ready: the image is scaled to the size of the
+ * window on a background thread by an AssetLoader, and swapped in on the animation thread when it
+ * is done. The data layer is only set up when the first season is opened.
  */
 public class Main {
+    private static final AtomicBoolean firstChartShown = new AtomicBoolean();
+
     private CanvasWindow canvas;
     private GraphicsText text;
     private Image bg;
+    private Rectangle backdrop;
+    private volatile CompletableFuture<Path> background;
+    private boolean interactive;
+    private DataSource data;
     private GraphicsText introText;
     private Rectangle introTextBG;
+    private Map<Integer, ScreenManager> managers = new HashMap<>();
+    private TreeSet<Integer> seasons;
 
     /**
      * Constructs a menu object that initializes the main menu interface for the F1 PitStop Data
      * Visualization program
      */
     public Main() {
+        StartupTimeline.mark("main");
         canvas = new CanvasWindow("Map Verstackpen", 1280, 720);
+        StartupTimeline.mark("window");
 
         text = new GraphicsText("PitStop Performance");
         text.setFillColor(Color.WHITE);
@@ -57,9 +80,20 @@ public class Main {
         introTextBG.setFillColor(new Color(50, 0, 0, 150));
         introTextBG.setCenter(introText.getCenter());
 
-        bg = new Image("bg.jpg");
-        bg.setCenter(canvas.getCenter().getX(), canvas.getCenter().getY());
-        bg.setScale(2);
+        // A dark backdrop stands in for the background image until it has been scaled
+        backdrop = new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+        backdrop.setFillColor(new Color(25, 0, 0));
+        backdrop.setStroked(false);
+        bg = new Image(0, 0);
+        background = new AssetLoader(AssetLoader.DEFAULT_DIRECTORY).scaled("bg.jpg", canvas.getWidth(),
+            canvas.getHeight());
+        canvas.animate(this::showBackground);
+
+        seasons = DataSource.knownSeasons();
+
+        if (Boolean.getBoolean("f1.debug")) {
+            new DebugOverlay(canvas);
+        }
     }
 
     /**
@@ -77,32 +111,97 @@ public class Main {
      * interacting and navigating to different race years.
      */
     public void start() {
+        // Before a season is opened there is no chart, replay, or overlay to stop, and their classes are not loaded
+        if (!managers.isEmpty()) {
+            DataVisualizer.deactivate();
+            RaceReplay.deactivate();
+            SeasonOverlay.deactivate();
+        }
         canvas.removeAll();
+        canvas.add(backdrop);
         canvas.add(bg);
         canvas.add(introTextBG);
         canvas.add(text);
         canvas.add(introText);
 
-        Button button2023 = new Button("2023 Races");
-        button2023.setCenter(canvas.getWidth() / 2 - 100, canvas.getHeight() / 2 + 250);
-        canvas.add(button2023);
+        // One button per season, 200 pixels apart and centered as a row
+        double x = canvas.getWidth() / 2 - 100 * (seasons.size() - 1);
+        for (int year : seasons) {
+            Button seasonButton = new Button(year + " Races");
+            seasonButton.setCenter(x, canvas.getHeight() / 2 + 250);
+            seasonButton.onClick(() -> navigateToScreenManager(year));
+            canvas.add(seasonButton);
+            x += 200;
+        }
+        canvas.draw();
+        if (!interactive) {
+            interactive = true;
+            StartupTimeline.mark("menu interactive");
+        }
+    }
+
+    /**
+     * Shows the background image once it has been scaled to the size of the window. Called on the
+     * animation thread every frame, and does nothing until the image is ready or after it is shown. If
+     * it could not be scaled, the original image is shown enlarged instead.
+     */
+    private void showBackground() {
+        CompletableFuture<Path> ready = background;
+        if (ready == null || !ready.isDone()) {
+            return;
+        }
+        background = null;
+        try {
+            bg.setImagePath(ready.join().toAbsolutePath().toString());
+        } catch (CompletionException e) {
+            System.out.println(e.getCause().getMessage());
+            System.out.println("Error in Main");
+            bg.setImagePath("bg.jpg");
+            bg.setCenter(canvas.getCenter().getX(), canvas.getCenter().getY());
+            bg.setScale(2);
+        }
+        StartupTimeline.mark("background shown");
+    }
 
-        Button button2024 = new Button("2024 Races");
-        button2024.setCenter(canvas.getWidth() / 2 + 100, canvas.getHeight() / 2 + 250);
-        canvas.add(button2024);
+    /**
+     * Gets the data source shared by the screens of every season, setting it up the first time a
+     * season is opened.
+     * 
+     * @return The data source
+     */
+    public synchronized DataSource getDataSource() {
+        if (data == null) {
+            data = new DataSource(new API(new ResponseCache(Paths.get(".f1cache"), false)));
+            StartupTimeline.mark("data layer");
+        }
+        return data;
+    }
 
-        button2023.onClick(() -> navigateToScreenManager(2023));
-        button2024.onClick(() -> navigateToScreenManager(2024));
-        canvas.draw();
+    /**
+     * Records how long after launch the first chart was displayed, the first time a chart is shown.
+     * The time is printed with the rest of the startup timeline when running with -Df1.debug=true.
+     * 
+     * @param source Where the chart's race data came from, snapshot or live
+     */
+    public static void recordFirstChart(String source) {
+        if (firstChartShown.compareAndSet(false, true)) {
+            long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            StartupTimeline.mark("first chart");
+            Metrics.global().histogram("startup.first_chart." + source, "ms").record(uptime);
+        }
     }
 
     /**
-     * Navigates to the ScreenManager class for the specified race year.
+     * Navigates to the ScreenManager class for the specified race year. The screen manager of a season
+     * is kept once opened, so opening the same season again is instant.
      * 
      * @param year The year of the races to display
      */
     private void navigateToScreenManager(int year) {
-        ScreenManager manager = new ScreenManager(year, this);
+        ScreenManager manager = managers.computeIfAbsent(year, season -> new ScreenManager(season, this));
+        if (manager.isSeasonLoaded() && manager.getRaces().isEmpty()) {
+            managers.remove(year);
+        }
         manager.display(canvas);
     }
 }
\ No newline at end of file
@@ -0,0 +1,283 @@
+package Formula1;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This Metrics class is an in-process registry of counters, timers, and histograms, so the time spent
+ * on requests, decoding, building race data, and drawing can be told apart while the program runs.
+ *
+ * Metrics are created on first use by name and are safe to update from any thread. Histograms keep
+ * eight buckets per power of two, so percentiles are accurate to within an eighth of the value while
+ * recording stays a few atomic increments. A snapshot of every metric can be printed as text or
+ * written to a file.
+ */
+public class Metrics {
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the registry the program records into.
+     *
+     * @return The global registry
+     */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Gets the counter with a name, creating it on first use.
+     *
+     * @param name The name of the counter
+     * @return The counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Gets the histogram with a name, creating it on first use.
+     *
+     * @param name The name of the histogram
+     * @param unit The unit of the recorded values, shown in snapshots
+     * @return The histogram
+     */
+    public Histogram histogram(String name, String unit) {
+        return histograms.computeIfAbsent(name, key -> new Histogram(unit));
+    }
+
+    /**
+     * Gets the timer with a name, creating it on first use.
+     *
+     * @param name The name of the timer
+     * @return The timer
+     */
+    public Timer timer(String name) {
+        return (Timer) histograms.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * Describes every metric, one per line in order of name. Timers are shown in milliseconds.
+     *
+     * @return The snapshot as text
+     */
+    public String snapshot() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            text.append(String.format(Locale.ROOT, "%-28s %d%n", entry.getKey(), entry.getValue().get()));
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            double scale = histogram instanceof Timer ? 1e-6 : 1;
+            String unit = histogram instanceof Timer ? "ms" : histogram.getUnit();
+            text.append(String.format(Locale.ROOT, "%-28s n=%d mean=%.2f p50=%.2f p99=%.2f max=%.2f %s%n",
+                entry.getKey(), histogram.getCount(), histogram.getMean() * scale,
+                histogram.percentile(0.50) * scale, histogram.percentile(0.99) * scale,
+                histogram.getMax() * scale, unit));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a snapshot of every metric to a file.
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void dump(Path file) throws IOException {
+        Files.writeString(file, snapshot(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A count of how many times something happened.
+     */
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * Adds one to the count.
+         */
+        public void increment() {
+            count.increment();
+        }
+
+        /**
+         * Adds an amount to the count.
+         *
+         * @param amount The amount to add
+         */
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        /**
+         * Gets the count.
+         *
+         * @return The total so far
+         */
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A distribution of non-negative values, such as response sizes.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKETS = 8, SUB_BITS = 3;
+
+        private final String unit;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Constructs an empty histogram.
+         *
+         * @param unit The unit of the recorded values
+         */
+        Histogram(String unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * Records a value.
+         *
+         * @param value The value, with negative values counted as 0
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Gets the unit of the recorded values.
+         *
+         * @return The unit
+         */
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * Gets the number of recorded values.
+         *
+         * @return The count
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * Gets the mean of the recorded values.
+         *
+         * @return The mean, or 0 if nothing was recorded
+         */
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        /**
+         * Gets the largest recorded value.
+         *
+         * @return The maximum, or 0 if nothing was recorded
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Estimates a percentile of the recorded values from the buckets.
+         *
+         * @param fraction The percentile between 0 and 1
+         * @return The upper bound of the bucket holding the percentile, or 0 if nothing was recorded
+         */
+        public long percentile(double fraction) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * n));
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length(); bucket++) {
+                seen += buckets.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(max.get(), upperBoundOf(bucket));
+                }
+            }
+            return max.get();
+        }
+
+        /**
+         * Finds the bucket of a value: values below 8 get their own bucket, and every power of two
+         * above is split into eight equal buckets.
+         *
+         * @param value The non-negative value
+         * @return The index of its bucket
+         */
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * Finds the largest value that falls in a bucket.
+         *
+         * @param bucket The index of the bucket
+         * @return The highest value of the bucket
+         */
+        private static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long width = 1L << (exponent - SUB_BITS);
+            long low = (1L << exponent) + (bucket % SUB_BUCKETS) * width;
+            return low + width - 1;
+        }
+    }
+
+    /**
+     * A histogram of durations in nanoseconds.
+     */
+    public static class Timer extends Histogram {
+        /**
+         * Constructs an empty timer.
+         */
+        Timer() {
+            super("ns");
+        }
+
+        /**
+         * Records the time since a start time.
+         *
+         * @param startNanos The start time from System.nanoTime()
+         * @return The recorded duration in nanoseconds
+         */
+        public long stop(long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            record(elapsed);
+            return elapsed;
+        }
+    }
+}
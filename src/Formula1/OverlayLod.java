@@ -0,0 +1,166 @@
+package Formula1;
+
+import java.util.Arrays;
+
+/**
+ * This OverlayLod class reduces the points of a multi-race overlay to what can actually be seen at
+ * the current zoom level.
+ *
+ * Points are kept sorted by their x value, so the visible range is found with a binary search. When
+ * zoomed out, the visible points are binned per pixel column and each column is drawn as one
+ * aggregate with its count, minimum, maximum, and mean. When zoomed in far enough that there are only
+ * a few points per column, every visible point is returned in full detail instead.
+ */
+public class OverlayLod {
+    private final double[] xs, ys;
+    private final int[] series;
+
+    /**
+     * The points or column aggregates to draw for one view of the overlay.
+     *
+     * @param detailed true if every visible point is returned, false if the points are binned
+     * @param count    The number of entries in the arrays that are in use
+     * @param xs       The x value of each point, or the center x value of each bin
+     * @param ys       The y value of each point, or the mean y value of each bin
+     * @param mins     The lowest y value in each bin, or the y value of each point
+     * @param maxes    The highest y value in each bin, or the y value of each point
+     * @param sizes    The number of points in each bin, or 1 for each point
+     * @param series   The series of each point, or -1 for bins
+     */
+    public record Reduction(boolean detailed, int count, double[] xs, double[] ys, double[] mins, double[] maxes,
+        int[] sizes, int[] series) {
+    }
+
+    /**
+     * Builds the level of detail index of a set of points.
+     *
+     * @param xs     The x value of each point
+     * @param ys     The y value of each point
+     * @param series The series, such as the race, that each point belongs to
+     */
+    public OverlayLod(double[] xs, double[] ys, int[] series) {
+        Integer[] order = new Integer[xs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(xs[a], xs[b]));
+
+        this.xs = new double[xs.length];
+        this.ys = new double[xs.length];
+        this.series = new int[xs.length];
+        for (int i = 0; i < order.length; i++) {
+            this.xs[i] = xs[order[i]];
+            this.ys[i] = ys[order[i]];
+            this.series[i] = series[order[i]];
+        }
+    }
+
+    /**
+     * Gets the number of points in the index.
+     *
+     * @return The number of points
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Reduces the points inside a range of x values to at most one aggregate per pixel column, or to
+     * the points themselves when there are few enough of them.
+     *
+     * @param viewMin          The lowest visible x value
+     * @param viewMax          The highest visible x value
+     * @param columns          The number of pixel columns the range is drawn across
+     * @param pointsPerColumn  The number of visible points per column at or below which every point is
+     *                         returned in full detail
+     * @return The points or bins to draw
+     */
+    public Reduction reduce(double viewMin, double viewMax, int columns, double pointsPerColumn) {
+        int from = lowerBound(viewMin);
+        int to = upperBound(viewMax);
+        int visible = to - from;
+
+        if (visible <= pointsPerColumn * columns) {
+            double[] pointXs = Arrays.copyOfRange(xs, from, to);
+            double[] pointYs = Arrays.copyOfRange(ys, from, to);
+            int[] ones = new int[visible];
+            Arrays.fill(ones, 1);
+            return new Reduction(true, visible, pointXs, pointYs, pointYs, pointYs, ones,
+                Arrays.copyOfRange(series, from, to));
+        }
+
+        double[] sums = new double[columns];
+        double[] mins = new double[columns];
+        double[] maxes = new double[columns];
+        int[] sizes = new int[columns];
+        double columnWidth = (viewMax - viewMin) / columns;
+        for (int i = from; i < to; i++) {
+            int column = Math.min(columns - 1, (int) ((xs[i] - viewMin) / columnWidth));
+            if (sizes[column] == 0) {
+                mins[column] = ys[i];
+                maxes[column] = ys[i];
+            } else {
+                mins[column] = Math.min(mins[column], ys[i]);
+                maxes[column] = Math.max(maxes[column], ys[i]);
+            }
+            sums[column] += ys[i];
+            sizes[column]++;
+        }
+
+        // Pack the non-empty columns to the front
+        int count = 0;
+        double[] binXs = new double[columns];
+        double[] means = new double[columns];
+        int[] noSeries = new int[columns];
+        for (int column = 0; column < columns; column++) {
+            if (sizes[column] > 0) {
+                binXs[count] = viewMin + (column + 0.5) * columnWidth;
+                means[count] = sums[column] / sizes[column];
+                mins[count] = mins[column];
+                maxes[count] = maxes[column];
+                sizes[count] = sizes[column];
+                noSeries[count] = -1;
+                count++;
+            }
+        }
+        return new Reduction(false, count, binXs, means, mins, maxes, sizes, noSeries);
+    }
+
+    /**
+     * Finds the first point whose x value is at least the given value.
+     *
+     * @param x The x value to search for
+     * @return The index of the first point at or after x
+     */
+    private int lowerBound(double x) {
+        int low = 0, high = xs.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (xs[middle] < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first point whose x value is greater than the given value.
+     *
+     * @param x The x value to search for
+     * @return The index of the first point after x
+     */
+    private int upperBound(double x) {
+        int low = 0, high = xs.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (xs[middle] <= x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
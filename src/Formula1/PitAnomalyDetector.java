@@ -0,0 +1,299 @@
+package Formula1;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * This PitAnomalyDetector class flags pit stops that took far longer than usual, such as stops with a
+ * wheel-gun problem or a held release, as races are loaded, instead of leaving them to be spotted as
+ * long horizontal lines on the chart.
+ *
+ * The stop times of each team and of each circuit are kept as a running count, mean, and sum of
+ * squared differences (Welford's method), so the detector reads each stop once and holds three numbers
+ * per group however many seasons it sees. A stop is flagged when it is more than the threshold number
+ * of standard deviations above the mean of its team or of its circuit, once that group has at least
+ * MIN_SAMPLES stops. Flagged stops are left out of the statistics, so one botched stop does not make
+ * the next look normal. Stops are judged against the stops seen before them, so the first races loaded
+ * are only judged against each other.
+ *
+ * A race that may still be going on is read a stop at a time, as a live session hands it over again
+ * after every poll with pit stops: only the stops new to it are added. Once the race is over, the next
+ * time it is read, such as when the full race is loaded, adds the stops the polls missed and the stops
+ * read are forgotten; a race nobody reads again is forgotten FORGET_AFTER past its end. A race that is
+ * over is read once, whole, and only its session key is kept, so loading it again adds nothing. Stops
+ * longer than SeasonAnalytics.MAX_PIT_SECONDS are left out, as they are in the season analytics.
+ *
+ * Usage: PitAnomalyDetector [--cache=DIR] [--offline] [--threshold=Z] YEAR...
+ */
+public class PitAnomalyDetector {
+    public static final double DEFAULT_THRESHOLD = 3.0;
+    public static final int MIN_SAMPLES = 10;
+    public static final Duration FORGET_AFTER = Duration.ofDays(1);
+
+    private final double threshold;
+    private final Clock clock;
+    private final Map<String, Welford> teams = new HashMap<>();
+    private final Map<String, Welford> circuits = new HashMap<>();
+    private final Map<Integer, LiveRace> liveRaces = new HashMap<>();
+    private final Set<Integer> racesRead = new HashSet<>();
+    private final List<Anomaly> anomalies = new ArrayList<>();
+    private int observed;
+
+    /**
+     * A flagged pit stop.
+     *
+     * @param race        The race of the stop
+     * @param pitstop     The stop
+     * @param driverName  The name of the driver, or null if unknown
+     * @param team        The team of the driver
+     * @param teamMean    The mean stop time of the team before this stop, in seconds
+     * @param teamZ       How many standard deviations above the team's mean the stop was
+     * @param circuitMean The mean stop time at the circuit before this stop, in seconds
+     * @param circuitZ    How many standard deviations above the circuit's mean the stop was
+     */
+    public record Anomaly(Race race, Pitstop pitstop, String driverName, String team, double teamMean,
+        double teamZ, double circuitMean, double circuitZ) {
+        /**
+         * Gets how much longer the stop took than the norm it stood out most from.
+         *
+         * @return The difference in seconds
+         */
+        public double deviation() {
+            return pitstop.getpitDuration() - (teamZ >= circuitZ ? teamMean : circuitMean);
+        }
+    }
+
+    /**
+     * A race that may still be going on and the stops of it read so far.
+     *
+     * @param race  The race
+     * @param stops The stops read, as the driver number shifted above the lap
+     */
+    private record LiveRace(Race race, Set<Long> stops) {
+    }
+
+    /**
+     * Constructs a detector flagging stops more than DEFAULT_THRESHOLD standard deviations out.
+     */
+    public PitAnomalyDetector() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructs a detector.
+     *
+     * @param threshold The number of standard deviations above the mean a stop is flagged at
+     */
+    public PitAnomalyDetector(double threshold) {
+        this(threshold, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a detector following a given clock.
+     *
+     * @param threshold The number of standard deviations above the mean a stop is flagged at
+     * @param clock     The clock deciding which races may still be going on
+     */
+    public PitAnomalyDetector(double threshold, Clock clock) {
+        this.threshold = threshold;
+        this.clock = clock;
+    }
+
+    /**
+     * Lists the flagged pit stops of seasons, loading every race of them.
+     *
+     * @param args The options and years to check
+     */
+    public static void main(String[] args) {
+        Path cacheDir = Paths.get(".f1cache");
+        boolean offline = false;
+        double threshold = DEFAULT_THRESHOLD;
+        List<Integer> years = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--cache=")) {
+                cacheDir = Paths.get(arg.substring("--cache=".length()));
+            } else if (arg.equals("--offline")) {
+                offline = true;
+            } else if (arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+            } else {
+                years.add(Integer.parseInt(arg));
+            }
+        }
+        if (years.isEmpty()) {
+            System.out.println("Usage: PitAnomalyDetector [--cache=DIR] [--offline] [--threshold=Z] YEAR...");
+            return;
+        }
+
+        DataSource data = new DataSource(new API(new ResponseCache(cacheDir, offline)));
+        PitAnomalyDetector detector = new PitAnomalyDetector(threshold);
+        data.setAnomalyDetector(detector);
+        for (int year : years) {
+            List<Race> races = new ArrayList<>();
+            if (!data.streamSeasonRaces(year, races::add)) {
+                System.out.println("Could not load the " + year + " season");
+                continue;
+            }
+            for (Race race : races) {
+                data.fetchRaceData(race);
+            }
+        }
+
+        List<Anomaly> flagged = detector.getAnomalies();
+        System.out.printf(Locale.ROOT, "%d of %d stops flagged at %.1f standard deviations%n", flagged.size(),
+            detector.getObservedCount(), threshold);
+        for (Anomaly anomaly : flagged) {
+            System.out.printf(Locale.ROOT,
+                "%s %-16s lap %2d  %-4s %-16s %5.1f s  +%4.1f s  team z %4.1f  circuit z %4.1f%n",
+                anomaly.race().getDate(), anomaly.race().getCircuitName(), anomaly.pitstop().getLapNum(),
+                anomaly.driverName() == null ? "#" + anomaly.pitstop().getDriversID() : anomaly.driverName(),
+                anomaly.team(), anomaly.pitstop().getpitDuration(), anomaly.deviation(), anomaly.teamZ(),
+                anomaly.circuitZ());
+        }
+    }
+
+    /**
+     * Reads the stops of a race that are new to the detector, flagging those far above the norm. A
+     * race that is over and was read before is skipped.
+     *
+     * @param race     The race
+     * @param raceData The drivers and pit stops of the race
+     * @return The stops flagged from this race now
+     */
+    public synchronized List<Anomaly> observe(Race race, RaceData raceData) {
+        long start = System.nanoTime();
+        if (racesRead.contains(race.getSessionKey())) {
+            return List.of();
+        }
+        forgetFinishedRaces(race.getSessionKey());
+        // A race over now is read whole, leaving out the stops read while it was live
+        LiveRace liveRace = liveRaces.remove(race.getSessionKey());
+        Set<Long> seen = liveRace == null ? new HashSet<>() : liveRace.stops();
+        if (LiveSession.isLive(race, clock.instant())) {
+            liveRaces.put(race.getSessionKey(), new LiveRace(race, seen));
+        } else {
+            racesRead.add(race.getSessionKey());
+        }
+        Welford circuit = circuits.computeIfAbsent(race.getCircuitName(), key -> new Welford());
+        List<Anomaly> flagged = new ArrayList<>();
+        for (Map.Entry<Integer, PriorityQueue<Pitstop>> entry : raceData.getDriversPitstops().entrySet()) {
+            Driver driver = raceData.getDrivers().get(entry.getKey());
+            String team = driver == null ? "Unknown" : driver.getTeamName();
+            Welford teamStats = teams.computeIfAbsent(team, key -> new Welford());
+            for (Pitstop pitstop : entry.getValue()) {
+                double duration = pitstop.getpitDuration();
+                if (duration <= 0 || duration > SeasonAnalytics.MAX_PIT_SECONDS
+                    || !seen.add((long) pitstop.getDriversID() << 32 | pitstop.getLapNum())) {
+                    continue;
+                }
+                observed++;
+                double teamZ = teamStats.zScore(duration), circuitZ = circuit.zScore(duration);
+                if (teamZ > threshold || circuitZ > threshold) {
+                    flagged.add(new Anomaly(race, pitstop, driver == null ? null : driver.getName(), team,
+                        teamStats.mean, teamZ, circuit.mean, circuitZ));
+                } else {
+                    teamStats.add(duration);
+                    circuit.add(duration);
+                }
+            }
+        }
+        anomalies.addAll(flagged);
+        Metrics.global().timer("anomalies.observe").stop(start);
+        Metrics.global().counter("anomalies.flagged").add(flagged.size());
+        return flagged;
+    }
+
+    /**
+     * Drops the stops read of the races that were live and ended more than FORGET_AFTER ago without
+     * being read again, keeping only their session keys, so the detector holds the stops of recent
+     * live races alone.
+     *
+     * @param sessionKey The session key of the race being read, which is kept for that read
+     */
+    private void forgetFinishedRaces(int sessionKey) {
+        Instant now = clock.instant();
+        liveRaces.values().removeIf(liveRace -> {
+            Race race = liveRace.race();
+            Instant forgetAt = race.getRaceStartTime().plus(LiveSession.HORIZON).plus(LiveSession.LOOKBACK)
+                .plus(FORGET_AFTER);
+            if (race.getSessionKey() == sessionKey || now.isBefore(forgetAt)) {
+                return false;
+            }
+            racesRead.add(race.getSessionKey());
+            return true;
+        });
+    }
+
+    /**
+     * Gets every stop flagged so far.
+     *
+     * @return The flagged stops, in the order they were flagged
+     */
+    public synchronized List<Anomaly> getAnomalies() {
+        return Collections.unmodifiableList(new ArrayList<>(anomalies));
+    }
+
+    /**
+     * Gets the number of timed stops read so far, flagged or not.
+     *
+     * @return The number of stops
+     */
+    public synchronized int getObservedCount() {
+        return observed;
+    }
+
+    /**
+     * Gets the threshold stops are flagged at.
+     *
+     * @return The number of standard deviations above the mean
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * The running mean and variance of one group's stop times.
+     */
+    private static class Welford {
+        private int count;
+        private double mean, squaredDifferences;
+
+        /**
+         * Adds a stop time.
+         *
+         * @param duration The duration in seconds
+         */
+        void add(double duration) {
+            count++;
+            double delta = duration - mean;
+            mean += delta / count;
+            squaredDifferences += delta * (duration - mean);
+        }
+
+        /**
+         * Finds how many standard deviations a stop time is above the mean.
+         *
+         * @param duration The duration in seconds
+         * @return The z-score, or 0 if the group has fewer than MIN_SAMPLES stops or no spread
+         */
+        double zScore(double duration) {
+            if (count < MIN_SAMPLES) {
+                return 0;
+            }
+            double deviation = Math.sqrt(squaredDifferences / (count - 1));
+            return deviation == 0 ? 0 : (duration - mean) / deviation;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package Formula1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * This PitLeaderboards class keeps the pit crew leaderboards of a season up to date as its races are
+ * loaded: the fastest stops, the teams by median stop time, and the teams by how consistent their
+ * stops are.
+ *
+ * Nothing is recomputed from the whole season when a race comes in. Each team keeps its stop times in
+ * two heaps, the faster half in one and the slower half in the other, so its median is at the top of
+ * them, and a running mean and sum of squared differences (Welford's method) for its variance. The
+ * fastest stops are kept in a heap bounded to the size of the leaderboard. Loading a race only adds
+ * its own stops to these. A race that is loaded again, such as one followed live, has its old stops
+ * taken out first; only the fastest stops are then rebuilt, from the few fastest of each race.
+ *
+ * After every update the leaderboards are copied into lists that are never changed, so reading them
+ * for display takes no work and needs no lock. Stops longer than SeasonAnalytics.MAX_PIT_SECONDS are
+ * left out, as they are in the season analytics.
+ */
+public class PitLeaderboards {
+    public static final int DEFAULT_SIZE = 10;
+    public static final int MIN_CONSISTENCY_STOPS = 5;
+
+    private static final Comparator<FastStop> FASTEST_FIRST = Comparator.comparingDouble(FastStop::duration)
+        .thenComparingInt(stop -> stop.race().getSessionKey())
+        .thenComparingInt(stop -> stop.pitstop().getDriversID())
+        .thenComparingInt(stop -> stop.pitstop().getLapNum());
+
+    private final int year;
+    private final int size;
+    private final Map<Integer, RaceEntry> racesLoaded = new HashMap<>();
+    private final Map<String, TeamBoard> teamBoards = new HashMap<>();
+    // The slowest of the fastest stops is on top, so it is the one to drop
+    private final PriorityQueue<FastStop> fastest;
+    private volatile Views views = new Views(List.of(), List.of(), List.of(), 0, 0);
+
+    /**
+     * One of the fastest stops of the season.
+     *
+     * @param race       The race of the stop
+     * @param pitstop    The stop
+     * @param driverName The name of the driver, or null if unknown
+     * @param team       The team of the driver
+     */
+    public record FastStop(Race race, Pitstop pitstop, String driverName, String team) {
+        /**
+         * Gets the duration of the stop.
+         *
+         * @return The duration in seconds
+         */
+        public double duration() {
+            return pitstop.getpitDuration();
+        }
+    }
+
+    /**
+     * The stops of one team so far.
+     *
+     * @param team           The name of the team
+     * @param stops          The number of timed stops
+     * @param medianDuration The median duration in seconds
+     * @param meanDuration   The mean duration in seconds
+     * @param stdDeviation   The standard deviation of the durations in seconds
+     */
+    public record TeamStanding(String team, int stops, double medianDuration, double meanDuration,
+        double stdDeviation) {
+    }
+
+    /**
+     * The leaderboards as of the last update.
+     *
+     * @param fastest    The fastest stops, fastest first
+     * @param byMedian   The teams, fastest median first
+     * @param consistent The teams with enough stops, smallest standard deviation first
+     * @param races      The number of races loaded
+     * @param stops      The number of timed stops loaded
+     */
+    private record Views(List<FastStop> fastest, List<TeamStanding> byMedian, List<TeamStanding> consistent,
+        int races, int stops) {
+    }
+
+    /**
+     * What one race added to the leaderboards, so it can be taken out again.
+     *
+     * @param teamDurations The durations of the race's timed stops, by team
+     * @param fastest       The fastest stops of the race, as many as the leaderboard holds
+     */
+    private record RaceEntry(Map<String, List<Double>> teamDurations, List<FastStop> fastest) {
+    }
+
+    /**
+     * Constructs empty leaderboards of the default size.
+     *
+     * @param year The year of the season
+     */
+    public PitLeaderboards(int year) {
+        this(year, DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructs empty leaderboards.
+     *
+     * @param year The year of the season
+     * @param size The number of fastest stops to keep
+     */
+    public PitLeaderboards(int year, int size) {
+        this.year = year;
+        this.size = size;
+        this.fastest = new PriorityQueue<>(size + 1, FASTEST_FIRST.reversed());
+    }
+
+    /**
+     * Builds leaderboards from every race of a season at once.
+     *
+     * @param year     The year of the season
+     * @param races    The races of the season
+     * @param raceData The race data of each race, in the same order
+     * @return The leaderboards
+     */
+    public static PitLeaderboards of(int year, List<Race> races, List<RaceData> raceData) {
+        PitLeaderboards leaderboards = new PitLeaderboards(year);
+        for (int r = 0; r < races.size(); r++) {
+            leaderboards.update(races.get(r), raceData.get(r));
+        }
+        return leaderboards;
+    }
+
+    /**
+     * Adds the stops of a race that has just been loaded, or replaces the stops it had if it was
+     * loaded before.
+     *
+     * @param race     The race
+     * @param raceData The drivers and pit stops of the race
+     */
+    public synchronized void update(Race race, RaceData raceData) {
+        long start = System.nanoTime();
+        RaceEntry old = racesLoaded.remove(race.getSessionKey());
+        if (old != null) {
+            for (Map.Entry<String, List<Double>> team : old.teamDurations().entrySet()) {
+                TeamBoard board = teamBoards.get(team.getKey());
+                team.getValue().forEach(board::remove);
+                if (board.count == 0) {
+                    teamBoards.remove(team.getKey());
+                }
+            }
+        }
+
+        Map<String, List<Double>> teamDurations = new HashMap<>();
+        PriorityQueue<FastStop> raceFastest = new PriorityQueue<>(size + 1, FASTEST_FIRST.reversed());
+        for (Map.Entry<Integer, PriorityQueue<Pitstop>> entry : raceData.getDriversPitstops().entrySet()) {
+            Driver driver = raceData.getDrivers().get(entry.getKey());
+            String team = driver == null ? "Unknown" : driver.getTeamName();
+            for (Pitstop pitstop : entry.getValue()) {
+                double duration = pitstop.getpitDuration();
+                if (duration <= 0 || duration > SeasonAnalytics.MAX_PIT_SECONDS) {
+                    continue;
+                }
+                teamDurations.computeIfAbsent(team, key -> new ArrayList<>()).add(duration);
+                teamBoards.computeIfAbsent(team, TeamBoard::new).add(duration);
+                offer(raceFastest, new FastStop(race, pitstop, driver == null ? null : driver.getName(), team));
+            }
+        }
+        RaceEntry entry = new RaceEntry(teamDurations, List.copyOf(raceFastest));
+        racesLoaded.put(race.getSessionKey(), entry);
+
+        if (old == null) {
+            entry.fastest().forEach(stop -> offer(fastest, stop));
+        } else {
+            // A bounded heap forgets what it dropped, so it is refilled from the fastest of each race
+            fastest.clear();
+            for (RaceEntry loaded : racesLoaded.values()) {
+                loaded.fastest().forEach(stop -> offer(fastest, stop));
+            }
+        }
+        publish();
+        Metrics.global().timer("leaderboards.update").stop(start);
+    }
+
+    /**
+     * Adds a stop to a heap of fastest stops, dropping the slowest if it holds too many.
+     *
+     * @param heap The heap, slowest on top
+     * @param stop The stop
+     */
+    private void offer(PriorityQueue<FastStop> heap, FastStop stop) {
+        if (heap.size() < size) {
+            heap.add(stop);
+        } else if (size > 0 && FASTEST_FIRST.compare(stop, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(stop);
+        }
+    }
+
+    /**
+     * Copies the leaderboards into the lists read for display.
+     */
+    private void publish() {
+        List<FastStop> fastestList = new ArrayList<>(fastest);
+        fastestList.sort(FASTEST_FIRST);
+        List<TeamStanding> byMedian = new ArrayList<>();
+        int stops = 0;
+        for (TeamBoard board : teamBoards.values()) {
+            byMedian.add(board.standing());
+            stops += board.count;
+        }
+        byMedian.sort(Comparator.comparingDouble(TeamStanding::medianDuration).thenComparing(TeamStanding::team));
+        List<TeamStanding> consistent = new ArrayList<>();
+        for (TeamStanding team : byMedian) {
+            if (team.stops() >= MIN_CONSISTENCY_STOPS) {
+                consistent.add(team);
+            }
+        }
+        consistent.sort(Comparator.comparingDouble(TeamStanding::stdDeviation).thenComparing(TeamStanding::team));
+        views = new Views(Collections.unmodifiableList(fastestList), Collections.unmodifiableList(byMedian),
+            Collections.unmodifiableList(consistent), racesLoaded.size(), stops);
+    }
+
+    /**
+     * Gets the year of the season.
+     *
+     * @return The year
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Gets the fastest stops loaded so far.
+     *
+     * @return The stops, fastest first, at most as many as the leaderboard holds
+     */
+    public List<FastStop> getFastestStops() {
+        return views.fastest();
+    }
+
+    /**
+     * Gets every team with a timed stop so far, by median stop time.
+     *
+     * @return The teams, fastest median first
+     */
+    public List<TeamStanding> getTeamsByMedian() {
+        return views.byMedian();
+    }
+
+    /**
+     * Gets the teams with at least MIN_CONSISTENCY_STOPS timed stops so far, by how much their stop
+     * times vary.
+     *
+     * @return The teams, smallest standard deviation first
+     */
+    public List<TeamStanding> getMostConsistent() {
+        return views.consistent();
+    }
+
+    /**
+     * Gets the number of races loaded.
+     *
+     * @return The number of races
+     */
+    public int getRaceCount() {
+        return views.races();
+    }
+
+    /**
+     * Gets the number of timed stops loaded.
+     *
+     * @return The number of stops
+     */
+    public int getStopCount() {
+        return views.stops();
+    }
+
+    /**
+     * The running statistics of one team's stop times.
+     */
+    private static class TeamBoard {
+        private final String team;
+        // The faster half of the stop times, slowest on top, and the slower half, fastest on top
+        private final PriorityQueue<Double> lower = new PriorityQueue<>(Comparator.reverseOrder());
+        private final PriorityQueue<Double> upper = new PriorityQueue<>();
+        private int count;
+        private double mean, squaredDifferences;
+
+        /**
+         * Constructs the statistics of a team without stops.
+         *
+         * @param team The name of the team
+         */
+        TeamBoard(String team) {
+            this.team = team;
+        }
+
+        /**
+         * Adds a stop time.
+         *
+         * @param duration The duration in seconds
+         */
+        void add(double duration) {
+            if (lower.isEmpty() || duration <= lower.peek()) {
+                lower.add(duration);
+            } else {
+                upper.add(duration);
+            }
+            balance();
+            count++;
+            double delta = duration - mean;
+            mean += delta / count;
+            squaredDifferences += delta * (duration - mean);
+        }
+
+        /**
+         * Takes out a stop time added before.
+         *
+         * @param duration The duration in seconds
+         */
+        void remove(double duration) {
+            boolean removed = !lower.isEmpty() && duration <= lower.peek() ? lower.remove(duration)
+                : upper.remove(duration);
+            if (!removed && !lower.remove(duration) && !upper.remove(duration)) {
+                return;
+            }
+            balance();
+            count--;
+            if (count == 0) {
+                mean = 0;
+                squaredDifferences = 0;
+                return;
+            }
+            // Welford's update run backwards
+            double oldMean = mean;
+            mean = (mean * (count + 1) - duration) / count;
+            squaredDifferences = Math.max(0, squaredDifferences - (duration - oldMean) * (duration - mean));
+        }
+
+        /**
+         * Moves stop times between the halves until the lower half has as many as the upper or one
+         * more.
+         */
+        private void balance() {
+            if (lower.size() > upper.size() + 1) {
+                upper.add(lower.poll());
+            } else if (upper.size() > lower.size()) {
+                lower.add(upper.poll());
+            }
+        }
+
+        /**
+         * Gets the team's standing from its running statistics.
+         *
+         * @return The standing
+         */
+        TeamStanding standing() {
+            double median = lower.size() > upper.size() ? lower.peek() : (lower.peek() + upper.peek()) / 2;
+            double variance = count > 1 ? squaredDifferences / (count - 1) : 0;
+            return new TeamStanding(team, count, median, mean, Math.sqrt(variance));
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package Formula1;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * This PitTelemetry class breaks pit stops down into the drive down the pit lane, the time stationary
+ * in the box, and the drive out, from OpenF1's car data.
+ *
+ * Car data has several samples a second for every car, millions of rows over a race, so instead of
+ * fetching it whole only a window around each pit stop is requested, and its rows are read one at a
+ * time as they arrive. Each sample updates the breakdown as it goes and is added to a fixed number of
+ * buckets averaging the speed over a short interval, so the memory used for a stop is the same
+ * however many samples it has, and only the breakdowns are kept for a race.
+ *
+ * The pit lane starts where the car last slowed to the pit speed limit before stopping and ends where
+ * it first went faster than the limit after stopping. The car is stationary while its speed is 0.
+ */
+public class PitTelemetry {
+    public static final int PIT_LANE_KMH = 90;
+    public static final Duration PADDING = Duration.ofSeconds(20);
+    public static final long DEFAULT_RESOLUTION_MILLIS = 500;
+
+    private final API openf1;
+    private final Race race;
+    private final long resolutionMillis;
+
+    /**
+     * The pit lane breakdown of one pit stop.
+     *
+     * @param pitstop           The pit stop
+     * @param entrySeconds      The time from the pit lane entry to stopping, or NaN if not found
+     * @param stationarySeconds The time stationary, or 0 if the car was not seen stopping
+     * @param exitSeconds       The time from pulling away to the pit lane exit, or NaN if not found
+     * @param samples           The number of samples read
+     * @param windowStart       The time of the first bucket of the speed trace
+     * @param resolutionMillis  The length of each bucket of the speed trace
+     * @param speeds            The mean speed in km/h of each bucket, or NaN for buckets without samples
+     */
+    public record Breakdown(Pitstop pitstop, double entrySeconds, double stationarySeconds, double exitSeconds,
+        int samples, Instant windowStart, long resolutionMillis, float[] speeds) {
+        /**
+         * Checks if all three parts of the stop were found.
+         *
+         * @return true if the entry, stationary, and exit times are known
+         */
+        public boolean isComplete() {
+            return stationarySeconds > 0 && !Double.isNaN(entrySeconds) && !Double.isNaN(exitSeconds);
+        }
+
+        /**
+         * Gets the time from the pit lane entry to the exit.
+         *
+         * @return The pit lane time in seconds, or NaN if the stop is not complete
+         */
+        public double laneSeconds() {
+            return isComplete() ? entrySeconds + stationarySeconds + exitSeconds : Double.NaN;
+        }
+    }
+
+    /**
+     * Constructs a pit telemetry reader for a race with the default speed trace resolution.
+     *
+     * @param openf1 The API to fetch the car data from
+     * @param race   The race
+     */
+    public PitTelemetry(API openf1, Race race) {
+        this(openf1, race, DEFAULT_RESOLUTION_MILLIS);
+    }
+
+    /**
+     * Constructs a pit telemetry reader for a race.
+     *
+     * @param openf1           The API to fetch the car data from
+     * @param race             The race
+     * @param resolutionMillis The length of each bucket of the speed traces
+     */
+    public PitTelemetry(API openf1, Race race, long resolutionMillis) {
+        this.openf1 = openf1;
+        this.race = race;
+        this.resolutionMillis = resolutionMillis;
+    }
+
+    /**
+     * Prints the pit lane breakdown of every stop in a race.
+     *
+     * Usage: PitTelemetry --year=2024 --race=N [--resolution=MS] [--cache=DIR] [--offline]
+     *
+     * @param args The options
+     */
+    public static void main(String[] args) {
+        int year = 2024, raceNumber = 1;
+        long resolution = DEFAULT_RESOLUTION_MILLIS;
+        String cacheDir = ".f1cache";
+        boolean offline = false;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--year=")) {
+                year = Integer.parseInt(value);
+            } else if (arg.startsWith("--race=")) {
+                raceNumber = Integer.parseInt(value);
+            } else if (arg.startsWith("--resolution=")) {
+                resolution = Long.parseLong(value);
+            } else if (arg.startsWith("--cache=")) {
+                cacheDir = value;
+            } else if (arg.equals("--offline")) {
+                offline = true;
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+
+        API openf1 = new API(new ResponseCache(Paths.get(cacheDir), offline));
+        DataSource data = new DataSource(openf1);
+        List<Race> races = new ArrayList<>();
+        data.streamSeasonRaces(year, races::add);
+        if (races.size() < raceNumber) {
+            System.out.println("No race " + raceNumber + " in " + year);
+            return;
+        }
+        Race race = races.get(raceNumber - 1);
+        RaceData raceData = data.fetchRaceData(race);
+        long start = System.nanoTime();
+        List<Breakdown> breakdowns = new PitTelemetry(openf1, race, resolution).analyze(raceData);
+
+        System.out.println(race.getCircuitName() + " " + year);
+        System.out.println("driver  lap  pit s  entry s  stopped s  exit s  samples");
+        for (Breakdown breakdown : breakdowns) {
+            Pitstop pitstop = breakdown.pitstop();
+            Driver driver = raceData.getDrivers().get(pitstop.getDriversID());
+            System.out.printf(Locale.ROOT, "%-6s %4d %6.1f %8.1f %10.1f %7.1f %8d%n",
+                driver == null ? "#" + pitstop.getDriversID() : driver.getName(), pitstop.getLapNum(),
+                pitstop.getpitDuration(), breakdown.entrySeconds(), breakdown.stationarySeconds(),
+                breakdown.exitSeconds(), breakdown.samples());
+        }
+        System.out.printf(Locale.ROOT, "%d stops in %.2f s, median pit lane %.1f s%n", breakdowns.size(),
+            (System.nanoTime() - start) / 1e9, medianLaneSeconds(breakdowns));
+    }
+
+    /**
+     * Breaks down every pit stop of a race, one stop at a time. Stops whose car data cannot be fetched
+     * are left out.
+     *
+     * @param raceData The drivers and pit stops of the race
+     * @return The breakdown of each stop, in the order the stops were made
+     */
+    public List<Breakdown> analyze(RaceData raceData) {
+        List<Pitstop> pitstops = new ArrayList<>();
+        for (PriorityQueue<Pitstop> queue : raceData.getDriversPitstops().values()) {
+            pitstops.addAll(queue);
+        }
+        pitstops.sort(Comparator.naturalOrder());
+        List<Breakdown> breakdowns = new ArrayList<>(pitstops.size());
+        for (Pitstop pitstop : pitstops) {
+            try {
+                breakdowns.add(analyze(pitstop));
+            } catch (IOException | RuntimeException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in PitTelemetry.analyze, skipping driver " + pitstop.getDriversID()
+                    + " lap " + pitstop.getLapNum());
+            }
+        }
+        return breakdowns;
+    }
+
+    /**
+     * Breaks down one pit stop, streaming the car data of a window from a little before the stop to a
+     * little after it.
+     *
+     * @param pitstop The pit stop
+     * @return The breakdown of the stop
+     * @throws IOException If the car data cannot be fetched
+     */
+    public Breakdown analyze(Pitstop pitstop) throws IOException {
+        long start = System.nanoTime();
+        Instant from = pitstop.getstartPitTime().minus(PADDING);
+        Instant to = pitstop.getstartPitTime().plusMillis((long) (pitstop.getpitDuration() * 1000)).plus(PADDING);
+        int buckets = (int) (Duration.between(from, to).toMillis() / resolutionMillis) + 1;
+        WindowState state = new WindowState(from, buckets);
+
+        int samples = openf1.streamCarData(race.getSessionKey(), pitstop.getDriversID(), from, to, state::accept);
+
+        Metrics.global().timer("telemetry.stop").stop(start);
+        Metrics.global().histogram("telemetry.samples", "rows").record(samples);
+        return state.finish(pitstop, samples);
+    }
+
+    /**
+     * The state of one window of car data being read: the speed buckets and the times the breakdown is
+     * worked out from, updated by each sample in turn.
+     */
+    private class WindowState {
+        private final Instant from;
+        private final double[] speedSums;
+        private final int[] speedCounts;
+        private Instant slowedAt, stoppedAt, lastStationary, leftAt;
+        private int lastSpeed = Integer.MAX_VALUE;
+
+        /**
+         * Constructs the state of an empty window.
+         *
+         * @param from    The start of the window
+         * @param buckets The number of speed buckets
+         */
+        WindowState(Instant from, int buckets) {
+            this.from = from;
+            speedSums = new double[buckets];
+            speedCounts = new int[buckets];
+        }
+
+        /**
+         * Takes one sample of the window.
+         *
+         * @param time  The time of the sample
+         * @param speed The speed in km/h
+         */
+        void accept(Instant time, int speed) {
+            int bucket = (int) (Duration.between(from, time).toMillis() / resolutionMillis);
+            if (bucket >= 0 && bucket < speedSums.length) {
+                speedSums[bucket] += speed;
+                speedCounts[bucket]++;
+            }
+
+            if (stoppedAt == null) {
+                // The last time the car slowed to the limit before stopping is the pit lane entry
+                if (speed <= PIT_LANE_KMH && lastSpeed > PIT_LANE_KMH) {
+                    slowedAt = time;
+                }
+                if (speed == 0) {
+                    stoppedAt = time;
+                    lastStationary = time;
+                }
+            } else if (leftAt == null) {
+                if (speed == 0) {
+                    lastStationary = time;
+                } else if (speed > PIT_LANE_KMH) {
+                    leftAt = time;
+                }
+            }
+            lastSpeed = speed;
+        }
+
+        /**
+         * Works out the breakdown once every sample has been read.
+         *
+         * @param pitstop The pit stop of the window
+         * @param samples The number of samples read
+         * @return The breakdown
+         */
+        Breakdown finish(Pitstop pitstop, int samples) {
+            float[] speeds = new float[speedSums.length];
+            for (int i = 0; i < speeds.length; i++) {
+                speeds[i] = speedCounts[i] == 0 ? Float.NaN : (float) (speedSums[i] / speedCounts[i]);
+            }
+            if (stoppedAt == null) {
+                return new Breakdown(pitstop, Double.NaN, 0, Double.NaN, samples, from, resolutionMillis, speeds);
+            }
+            double entry = slowedAt == null ? Double.NaN : seconds(slowedAt, stoppedAt);
+            double exit = leftAt == null ? Double.NaN : seconds(lastStationary, leftAt);
+            return new Breakdown(pitstop, entry, seconds(stoppedAt, lastStationary), exit, samples, from,
+                resolutionMillis, speeds);
+        }
+    }
+
+    /**
+     * Measures the time between two instants.
+     *
+     * @param from The earlier instant
+     * @param to   The later instant
+     * @return The time between them in seconds
+     */
+    private static double seconds(Instant from, Instant to) {
+        return Duration.between(from, to).toNanos() / 1e9;
+    }
+
+    /**
+     * Finds the median pit lane time of the complete breakdowns.
+     *
+     * @param breakdowns The breakdowns
+     * @return The median in seconds, or NaN if none is complete
+     */
+    public static double medianLaneSeconds(List<Breakdown> breakdowns) {
+        double[] lanes = breakdowns.stream().filter(Breakdown::isComplete).mapToDouble(Breakdown::laneSeconds)
+            .sorted().toArray();
+        if (lanes.length == 0) {
+            return Double.NaN;
+        }
+        int middle = lanes.length / 2;
+        return lanes.length % 2 == 1 ? lanes[middle] : (lanes[middle - 1] + lanes[middle]) / 2;
+    }
+}
@@ -5,7 +5,8 @@ import java.time.temporal.ChronoUnit;
 
 /**
  * This class represents the details of a single pitstop during a Formula 1 race. Each pitstop is
- * associated with a specific driver, lap number, duration, and start time.
+ * associated with a specific driver, lap number, duration, and start time, and once joined to the
+ * stints of the race, the stint the driver went out on after the stop.
  * 
  * Implements Comparable<Pitstop> to allow sorting based on the pitstop's start time.
  */
@@ -13,6 +14,7 @@ public class Pitstop implements Comparable<Pitstop> {
     private int driverID, lap;
     private double pitDuration;
     private Instant startPitTime;
+    private Stint outgoingStint;
 
     /**
      * Constructs a Pitstop object with the specified details.
@@ -30,6 +32,18 @@ public class Pitstop implements Comparable<Pitstop> {
 
     }
 
+    /**
+     * Constructs a copy of this pitstop joined to the stint that followed it.
+     * 
+     * @param outgoingStint The stint the driver went out on after this pitstop
+     * @return The joined pitstop
+     */
+    public Pitstop withStint(Stint outgoingStint) {
+        Pitstop joined = new Pitstop(driverID, lap, pitDuration, startPitTime);
+        joined.outgoingStint = outgoingStint;
+        return joined;
+    }
+
     /**
      * Gets the unique ID of the driver associated with this pitstop.
      * 
@@ -66,6 +80,24 @@ public class Pitstop implements Comparable<Pitstop> {
         return startPitTime;
     }
 
+    /**
+     * Gets the stint the driver went out on after this pitstop.
+     * 
+     * @return The outgoing stint, or null if the stints of the race are not known
+     */
+    public Stint getOutgoingStint() {
+        return outgoingStint;
+    }
+
+    /**
+     * Gets the tyre compound fitted at this pitstop.
+     * 
+     * @return The compound, or null if it is not known
+     */
+    public String getCompound() {
+        return outgoingStint == null ? null : outgoingStint.getCompound();
+    }
+
     /**
      * Calculates the end offset of the pitstop relative to the start time of the race.
      * 
@@ -0,0 +1,140 @@
+package Formula1;
+
+import java.util.List;
+
+/**
+ * This PointIndex class is a uniform grid over the data points of a chart, used to find the point
+ * under the mouse without checking every point on the chart.
+ *
+ * Points are bucketed by the grid cell they fall in and stored cell by cell in flat arrays, so a
+ * lookup only visits the few cells around the cursor and does not allocate. Coordinates are in chart
+ * content space, before the chart is scrolled; callers subtract the scroll offset from the mouse
+ * position, so the index stays valid however the chart is scrolled.
+ */
+public class PointIndex {
+    private final List<ChartLayout.DataPoint> points;
+    private final double cellSize;
+    private final double minX, minY;
+    private final int columns, rows;
+
+    private final int[] cellStart;
+    private final int[] cellPoints;
+    private final double[] xs, ys;
+
+    /**
+     * Builds an index over the given data points.
+     *
+     * @param points   The data points to index
+     * @param cellSize The width and height of a grid cell, about the size of the largest search radius
+     */
+    public PointIndex(List<ChartLayout.DataPoint> points, double cellSize) {
+        this.points = points;
+        this.cellSize = cellSize;
+
+        int count = points.size();
+        xs = new double[count];
+        ys = new double[count];
+        double lowX = 0, lowY = 0, highX = 0, highY = 0;
+        for (int i = 0; i < count; i++) {
+            xs[i] = points.get(i).x();
+            ys[i] = points.get(i).y();
+            lowX = i == 0 ? xs[i] : Math.min(lowX, xs[i]);
+            lowY = i == 0 ? ys[i] : Math.min(lowY, ys[i]);
+            highX = Math.max(highX, xs[i]);
+            highY = Math.max(highY, ys[i]);
+        }
+        minX = lowX;
+        minY = lowY;
+        columns = (int) ((highX - minX) / cellSize) + 1;
+        rows = (int) ((highY - minY) / cellSize) + 1;
+
+        // Count the points per cell, then place each point at its cell's next free slot
+        cellStart = new int[columns * rows + 1];
+        int[] cellOf = new int[count];
+        for (int i = 0; i < count; i++) {
+            cellOf[i] = cellIndex(column(xs[i]), row(ys[i]));
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellPoints = new int[count];
+        int[] filled = new int[columns * rows];
+        for (int i = 0; i < count; i++) {
+            cellPoints[cellStart[cellOf[i]] + filled[cellOf[i]]++] = i;
+        }
+    }
+
+    /**
+     * Gets the number of indexed points.
+     *
+     * @return The number of points
+     */
+    public int size() {
+        return points.size();
+    }
+
+    /**
+     * Finds the data point closest to a position, if it is within the given distance.
+     *
+     * @param x           The x-coordinate, in chart content space
+     * @param y           The y-coordinate, in chart content space
+     * @param maxDistance The largest distance a point may be from the position
+     * @return The closest data point, or null if no point is close enough
+     */
+    public ChartLayout.DataPoint nearest(double x, double y, double maxDistance) {
+        int firstColumn = Math.max(0, column(x - maxDistance));
+        int lastColumn = Math.min(columns - 1, column(x + maxDistance));
+        int firstRow = Math.max(0, row(y - maxDistance));
+        int lastRow = Math.min(rows - 1, row(y + maxDistance));
+
+        int best = -1;
+        double bestDistance = maxDistance * maxDistance;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = cellIndex(column, row);
+                for (int slot = cellStart[cell]; slot < cellStart[cell + 1]; slot++) {
+                    int i = cellPoints[slot];
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    double distance = dx * dx + dy * dy;
+                    if (distance <= bestDistance) {
+                        bestDistance = distance;
+                        best = i;
+                    }
+                }
+            }
+        }
+        return best == -1 ? null : points.get(best);
+    }
+
+    /**
+     * Finds the grid column of an x-coordinate. The result may be outside the grid.
+     *
+     * @param x The x-coordinate
+     * @return The column of the coordinate
+     */
+    private int column(double x) {
+        return (int) Math.floor((x - minX) / cellSize);
+    }
+
+    /**
+     * Finds the grid row of a y-coordinate. The result may be outside the grid.
+     *
+     * @param y The y-coordinate
+     * @return The row of the coordinate
+     */
+    private int row(double y) {
+        return (int) Math.floor((y - minY) / cellSize);
+    }
+
+    /**
+     * Finds the position of a cell in the flat cell arrays.
+     *
+     * @param column The column of the cell
+     * @param row    The row of the cell
+     * @return The index of the cell
+     */
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+}
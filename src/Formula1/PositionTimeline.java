@@ -0,0 +1,222 @@
+package Formula1;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This PositionTimeline class holds the race position of every driver over the course of a race, as
+ * the position endpoint of OpenF1 reports it, to tell whether a pit stop cost a driver places.
+ *
+ * Only the changes are kept. Each driver's changes are packed into one sorted array of longs, the time
+ * from the start of the race in milliseconds shifted above the position, so a change takes 8 bytes
+ * and the position of a driver at any time is found by a binary search of their array. The positions
+ * of all drivers at a time take one search per driver.
+ *
+ * A timeline is built once from the updates of a race, in any order, and does not change after.
+ */
+public class PositionTimeline {
+    // After a stop, the position reported once the car is back on track and through the next timing
+    // point, when the cars that were behind it in the pit lane have passed
+    public static final long AFTER_STOP_MILLIS = 20_000;
+    private static final int POSITION_BITS = 8;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+    private final int[] driverNumbers;
+    private final long[][] changes;
+    private final int updateCount;
+
+    /**
+     * The positions of a driver around one of their pit stops.
+     *
+     * @param pitstop The stop
+     * @param before  The position the driver held as they entered the pit lane, from 1
+     * @param after   The position the driver held once back on track, from 1
+     */
+    public record Change(Pitstop pitstop, int before, int after) {
+        /**
+         * Gets how many places the stop cost.
+         *
+         * @return The places lost, or negative for places gained
+         */
+        public int placesLost() {
+            return after - before;
+        }
+    }
+
+    /**
+     * Constructs a timeline from the packed changes of each driver.
+     *
+     * @param driverNumbers The numbers of the drivers, in increasing order
+     * @param changes       The packed changes of each driver, in time order
+     * @param updateCount   The number of updates the timeline was built from
+     */
+    private PositionTimeline(int[] driverNumbers, long[][] changes, int updateCount) {
+        this.driverNumbers = driverNumbers;
+        this.changes = changes;
+        this.updateCount = updateCount;
+    }
+
+    /**
+     * Finds the position of a driver at a time of the race.
+     *
+     * @param driverNumber The number of the driver
+     * @param offsetMillis The time from the start of the race in milliseconds
+     * @return The last position reported for the driver at or before the time, or 0 if there is none
+     */
+    public int positionAt(int driverNumber, long offsetMillis) {
+        int driver = Arrays.binarySearch(driverNumbers, driverNumber);
+        return driver < 0 ? 0 : positionAt(changes[driver], offsetMillis);
+    }
+
+    /**
+     * Finds the positions of all drivers at a time of the race.
+     *
+     * @param offsetMillis The time from the start of the race in milliseconds
+     * @return The position of each driver reported at or before the time, by driver number, in
+     *         position order
+     */
+    public Map<Integer, Integer> positionsAt(long offsetMillis) {
+        long[] byPosition = new long[driverNumbers.length];
+        int count = 0;
+        for (int driver = 0; driver < driverNumbers.length; driver++) {
+            int position = positionAt(changes[driver], offsetMillis);
+            if (position > 0) {
+                byPosition[count++] = (long) position << 32 | driver;
+            }
+        }
+        Arrays.sort(byPosition, 0, count);
+        Map<Integer, Integer> positions = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            positions.put(driverNumbers[(int) byPosition[i]], (int) (byPosition[i] >>> 32));
+        }
+        return positions;
+    }
+
+    /**
+     * Finds the positions of a driver before and after one of their pit stops: as they entered the pit
+     * lane, and AFTER_STOP_MILLIS after the stop ended.
+     *
+     * @param race    The race of the stop
+     * @param pitstop The stop
+     * @return The positions around the stop, or null if the driver's position is not known then
+     */
+    public Change changeAt(Race race, Pitstop pitstop) {
+        int driver = Arrays.binarySearch(driverNumbers, pitstop.getDriversID());
+        if (driver < 0) {
+            return null;
+        }
+        int before = positionAt(changes[driver], pitstop.getStartOffset(race) - 1);
+        int after = positionAt(changes[driver], pitstop.getEndOffset(race) + AFTER_STOP_MILLIS);
+        return before == 0 || after == 0 ? null : new Change(pitstop, before, after);
+    }
+
+    /**
+     * Gets the drivers with a position in the timeline.
+     *
+     * @return The numbers of the drivers, in increasing order
+     */
+    public int[] getDriverNumbers() {
+        return driverNumbers.clone();
+    }
+
+    /**
+     * Gets the number of updates the timeline was built from, including those that repeated a
+     * driver's position.
+     *
+     * @return The number of updates
+     */
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Gets the number of position changes kept.
+     *
+     * @return The number of changes over all drivers
+     */
+    public int getChangeCount() {
+        int count = 0;
+        for (long[] driverChanges : changes) {
+            count += driverChanges.length;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the last position in a driver's packed changes at or before a time.
+     *
+     * @param driverChanges The packed changes of the driver
+     * @param offsetMillis  The time from the start of the race in milliseconds
+     * @return The position, or 0 if the driver has none yet
+     */
+    private static int positionAt(long[] driverChanges, long offsetMillis) {
+        // Every change at the time packs to at most the key, so the search lands just after the last one
+        int index = Arrays.binarySearch(driverChanges, offsetMillis << POSITION_BITS | POSITION_MASK);
+        int last = index >= 0 ? index : -index - 2;
+        return last < 0 ? 0 : (int) (driverChanges[last] & POSITION_MASK);
+    }
+
+    /**
+     * This Builder class collects the position updates of a race for a PositionTimeline.
+     */
+    public static class Builder {
+        private final Map<Integer, long[]> updates = new HashMap<>();
+        private final Map<Integer, Integer> counts = new HashMap<>();
+        private int updateCount;
+
+        /**
+         * Adds an update of a driver's position. Updates can be added in any order.
+         *
+         * @param driverNumber The number of the driver
+         * @param offsetMillis The time of the update from the start of the race in milliseconds, negative
+         *                     for the grid before the start
+         * @param position     The position of the driver from 1, at most 255
+         * @return This builder
+         */
+        public Builder add(int driverNumber, long offsetMillis, int position) {
+            if (position < 1 || position > POSITION_MASK) {
+                throw new IllegalArgumentException("Position " + position + " out of range");
+            }
+            int count = counts.getOrDefault(driverNumber, 0);
+            long[] driverUpdates = updates.get(driverNumber);
+            if (driverUpdates == null || count == driverUpdates.length) {
+                driverUpdates = Arrays.copyOf(driverUpdates == null ? new long[0] : driverUpdates,
+                    Math.max(16, count * 2));
+                updates.put(driverNumber, driverUpdates);
+            }
+            driverUpdates[count] = offsetMillis << POSITION_BITS | position;
+            counts.put(driverNumber, count + 1);
+            updateCount++;
+            return this;
+        }
+
+        /**
+         * Builds the timeline, sorting each driver's updates and keeping only those that changed their
+         * position.
+         *
+         * @return The timeline
+         */
+        public PositionTimeline build() {
+            int[] driverNumbers = updates.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            long[][] changes = new long[driverNumbers.length][];
+            for (int driver = 0; driver < driverNumbers.length; driver++) {
+                long[] driverUpdates = updates.get(driverNumbers[driver]);
+                int count = counts.get(driverNumbers[driver]);
+                Arrays.sort(driverUpdates, 0, count);
+                int kept = 0;
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    long position = driverUpdates[i] & POSITION_MASK;
+                    if (position != previous) {
+                        driverUpdates[kept++] = driverUpdates[i];
+                        previous = position;
+                    }
+                }
+                changes[driver] = Arrays.copyOf(driverUpdates, kept);
+            }
+            return new PositionTimeline(driverNumbers, changes, updateCount);
+        }
+    }
+}
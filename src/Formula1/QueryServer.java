@@ -0,0 +1,657 @@
+package Formula1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This QueryServer class serves the seasons, races, race data, and season analytics the program
+ * works with as JSON over HTTP, without opening a window, for other tools to use.
+ *
+ * Endpoints:
+ * GET /seasons                           The known seasons and whether each is bundled
+ * GET /seasons/{year}/races              The races of a season
+ * GET /seasons/{year}/races/{sessionKey} The drivers and pit stops of a race
+ * GET /seasons/{year}/analytics          The pit stop analytics of a season
+ * GET /seasons/{year}/leaderboards       The pit crew leaderboards of the races loaded so far
+ * GET /anomalies                         The pit stops flagged as abnormal in the races loaded so far
+ *
+ * Responses are built once and kept in an in-memory cache bounded by size, on top of the response
+ * cache on disk and the bundled snapshots the DataSource reads from. Concurrent requests for a
+ * response being built wait for it instead of building it again. The race data behind the responses
+ * is kept too, in a second cache bounded by an estimate of its size, so the analytics of a season
+ * reuse the races already loaded for the race endpoints. Every response has an ETag, and a request
+ * whose If-None-Match matches gets an empty 304. Each request is handled on its own thread.
+ * The leaderboards and anomalies grow as races are loaded, so they are not cached but read from the
+ * DataSource every time, which costs nothing to read.
+ *
+ * Usage: QueryServer [--port=8080] [--cache=DIR] [--offline] [--threads=N]
+ */
+public class QueryServer {
+    private static final long RESPONSE_OVERHEAD_BYTES = 200, BYTES_PER_PITSTOP = 100, BYTES_PER_DRIVER = 250;
+
+    private final DataSource data;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final ScreenCache<String, Response> responses = new ScreenCache<>(ScreenCache.defaultBudget());
+    private final Map<String, CompletableFuture<Response>> building = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Race>> seasonRaces = new ConcurrentHashMap<>();
+    private final ScreenCache<Integer, RaceData> raceData = new ScreenCache<>(ScreenCache.defaultBudget() / 2);
+    private final Map<Integer, CompletableFuture<RaceData>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * A built response and its entity tag.
+     *
+     * @param body The JSON body in UTF-8
+     * @param etag The quoted entity tag of the body
+     */
+    private record Response(byte[] body, String etag) {
+    }
+
+    /**
+     * An error answered with an HTTP status other than 500.
+     */
+    private static class HttpError extends RuntimeException {
+        private final int status;
+
+        /**
+         * Constructs an error.
+         *
+         * @param status  The HTTP status to answer with
+         * @param message The reason, sent in the body
+         */
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Constructs a server for a data source, listening on a port of this machine.
+     *
+     * @param data    The source of the seasons and race data
+     * @param port    The port to listen on, or 0 for any free port
+     * @param threads The most requests handled at the same time, or 0 for a thread per request
+     * @throws IOException If the port cannot be opened
+     */
+    public QueryServer(DataSource data, int port, int threads) throws IOException {
+        this.data = data;
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = threads > 0 ? Executors.newFixedThreadPool(threads, factory)
+            : Executors.newCachedThreadPool(factory);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts the server from the command line.
+     *
+     * @param args The options of the server
+     * @throws IOException If the port cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080, threads = 0;
+        Path cacheDir = Paths.get(".f1cache");
+        boolean offline = false;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--cache=")) {
+                cacheDir = Paths.get(arg.substring("--cache=".length()));
+            } else if (arg.equals("--offline")) {
+                offline = true;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else {
+                System.out.println("Usage: QueryServer [--port=8080] [--cache=DIR] [--offline] [--threads=N]");
+                return;
+            }
+        }
+        QueryServer server = new QueryServer(new DataSource(new API(new ResponseCache(cacheDir, offline))), port,
+            threads);
+        server.start();
+        System.out.println("Serving pit stop data on http://localhost:" + server.getPort() + "/seasons");
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server and its threads.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers a request from the response cache, building the response if needed.
+     *
+     * @param exchange The request and its response
+     * @throws IOException If the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        int status;
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                throw new HttpError(405, "Only GET is supported");
+            }
+            Response response = lookup(exchange.getRequestURI().getPath());
+            exchange.getResponseHeaders().set("ETag", response.etag());
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (response.etag().equals(ifNoneMatch)) {
+                status = 304;
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                status = 200;
+                send(exchange, status, method.equals("HEAD") ? null : response.body());
+            }
+        } catch (HttpError e) {
+            status = e.status;
+            send(exchange, status, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in QueryServer.handle");
+            status = 500;
+            send(exchange, status, error(String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+        Metrics.global().timer("query.request").stop(start);
+        Metrics.global().counter("query.status." + status).increment();
+    }
+
+    /**
+     * Sends a JSON response.
+     *
+     * @param exchange The request and its response
+     * @param status   The HTTP status
+     * @param body     The body, or null to send only the headers
+     * @throws IOException If the response cannot be sent
+     */
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        if (body != null) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Gets the response of a path from the cache, or builds it. Only one thread builds a response at
+     * a time; the others wait for its result.
+     *
+     * @param path The path of the request
+     * @return The response
+     */
+    private Response lookup(String path) {
+        String key = path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        if (key.endsWith("/leaderboards") || key.equals("/anomalies")) {
+            byte[] body = render(key).getBytes(StandardCharsets.UTF_8);
+            return new Response(body, etag(body));
+        }
+        synchronized (responses) {
+            Response cached = responses.get(key);
+            if (cached != null) {
+                Metrics.global().counter("query.cache.hits").increment();
+                return cached;
+            }
+        }
+
+        CompletableFuture<Response> mine = new CompletableFuture<>();
+        CompletableFuture<Response> running = building.putIfAbsent(key, mine);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            byte[] body = render(key).getBytes(StandardCharsets.UTF_8);
+            Response response = new Response(body, etag(body));
+            synchronized (responses) {
+                responses.put(key, response, body.length + RESPONSE_OVERHEAD_BYTES);
+            }
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            building.remove(key);
+        }
+    }
+
+    /**
+     * Builds the JSON of a path.
+     *
+     * @param path The path of the request, without a trailing slash
+     * @return The JSON text
+     */
+    private String render(String path) {
+        String[] parts = Arrays.stream(path.split("/")).filter(part -> !part.isEmpty()).toArray(String[]::new);
+        if (parts.length == 1 && parts[0].equals("seasons")) {
+            return renderSeasons();
+        }
+        if (parts.length == 1 && parts[0].equals("anomalies")) {
+            return renderAnomalies();
+        }
+        if (parts.length >= 3 && parts[0].equals("seasons")) {
+            int year = parseNumber(parts[1], "year");
+            if (parts.length == 3 && parts[2].equals("races")) {
+                return renderRaces(year);
+            }
+            if (parts.length == 4 && parts[2].equals("races")) {
+                return renderRaceData(year, parseNumber(parts[3], "session key"));
+            }
+            if (parts.length == 3 && parts[2].equals("analytics")) {
+                return renderAnalytics(year);
+            }
+            if (parts.length == 3 && parts[2].equals("leaderboards")) {
+                return renderLeaderboards(year);
+            }
+        }
+        throw new HttpError(404, "No endpoint " + path);
+    }
+
+    /**
+     * Builds the list of known seasons.
+     *
+     * @return The JSON array of seasons
+     */
+    private String renderSeasons() {
+        JSONArray seasons = new JSONArray();
+        for (int year : DataSource.knownSeasons()) {
+            JSONObject season = new JSONObject();
+            season.put("year", year);
+            season.put("bundled", data.getSnapshot(year) != null);
+            seasons.put(season);
+        }
+        return seasons.toString();
+    }
+
+    /**
+     * Builds the list of races of a season.
+     *
+     * @param year The year of the season
+     * @return The JSON array of races
+     */
+    private String renderRaces(int year) {
+        JSONArray races = new JSONArray();
+        for (Race race : racesOf(year)) {
+            races.put(raceJSON(race));
+        }
+        return races.toString();
+    }
+
+    /**
+     * Builds the drivers and pit stops of a race.
+     *
+     * @param year       The year of the season
+     * @param sessionKey The session key of the race
+     * @return The JSON object of the race data
+     */
+    private String renderRaceData(int year, int sessionKey) {
+        Race race = racesOf(year).stream().filter(r -> r.getSessionKey() == sessionKey).findFirst()
+            .orElseThrow(() -> new HttpError(404, "No race " + sessionKey + " in " + year));
+        RaceData raceData = raceDataOf(race);
+
+        List<Driver> drivers = new ArrayList<>(raceData.getDrivers().values());
+        drivers.sort(Comparator.comparingInt(Driver::getDriverNumber));
+        JSONArray driverArray = new JSONArray();
+        for (Driver driver : drivers) {
+            JSONObject object = new JSONObject();
+            object.put("number", driver.getDriverNumber());
+            object.put("name", driver.getName());
+            object.put("team", driver.getTeamName());
+            object.put("colour", String.format("#%06X", driver.getDriverColor().getRGB() & 0xFFFFFF));
+            object.put("final_lap", driver.getFinalLap());
+            object.put("finish_ms", driver.getRaceFinishTime(race));
+            driverArray.put(object);
+        }
+
+        List<Pitstop> pitstops = new ArrayList<>();
+        for (PriorityQueue<Pitstop> queue : raceData.getDriversPitstops().values()) {
+            pitstops.addAll(queue);
+        }
+        pitstops.sort(Comparator.naturalOrder());
+        JSONArray pitArray = new JSONArray();
+        for (Pitstop pitstop : pitstops) {
+            JSONObject object = new JSONObject();
+            object.put("driver", pitstop.getDriversID());
+            object.put("lap", pitstop.getLapNum());
+            object.put("duration", pitstop.getpitDuration());
+            object.put("start_ms", pitstop.getStartOffset(race));
+            object.put("end_ms", pitstop.getEndOffset(race));
+            object.put("compound", pitstop.getCompound() == null ? JSONObject.NULL : pitstop.getCompound());
+            pitArray.put(object);
+        }
+
+        JSONObject object = raceJSON(race);
+        object.put("drivers", driverArray);
+        object.put("pitstops", pitArray);
+        return object.toString();
+    }
+
+    /**
+     * Builds the pit stop analytics of a season, loading the data of every race.
+     *
+     * @param year The year of the season
+     * @return The JSON object of the analytics
+     */
+    private String renderAnalytics(int year) {
+        List<Race> races = new ArrayList<>();
+        List<RaceData> raceData = new ArrayList<>();
+        for (Race race : racesOf(year)) {
+            try {
+                raceData.add(raceDataOf(race));
+                races.add(race);
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in renderAnalytics, skipping " + race.getCircuitName());
+            }
+        }
+        SeasonAnalytics analytics = new SeasonAnalytics(year, races, raceData);
+
+        JSONArray teams = new JSONArray();
+        for (SeasonAnalytics.TeamStats team : analytics.getTeams()) {
+            JSONObject object = new JSONObject();
+            object.put("team", team.team());
+            object.put("stops", team.stops());
+            object.put("mean_duration", team.meanDuration());
+            object.put("median_duration", team.medianDuration());
+            object.put("best_duration", team.bestDuration());
+            teams.put(object);
+        }
+        JSONArray compounds = new JSONArray();
+        for (SeasonAnalytics.CompoundStats compound : analytics.getCompounds()) {
+            JSONObject object = new JSONObject();
+            object.put("compound", compound.compound());
+            object.put("fitted", compound.fitted());
+            object.put("mean_stint_laps", compound.meanStintLaps());
+            object.put("used_share", compound.usedShare());
+            compounds.put(object);
+        }
+        JSONArray raceArray = new JSONArray();
+        for (SeasonAnalytics.RaceStats stats : analytics.getRaces()) {
+            JSONObject object = raceJSON(stats.race());
+            object.put("stops", stats.stops());
+            object.put("median_duration", stats.medianDuration());
+            if (stats.fastest() != null) {
+                JSONObject fastest = new JSONObject();
+                fastest.put("driver", stats.fastest().getDriversID());
+                fastest.put("name", stats.fastestDriver() == null ? JSONObject.NULL : stats.fastestDriver().getName());
+                fastest.put("lap", stats.fastest().getLapNum());
+                fastest.put("duration", stats.fastest().getpitDuration());
+                object.put("fastest", fastest);
+            }
+            raceArray.put(object);
+        }
+
+        JSONObject object = new JSONObject();
+        object.put("year", year);
+        object.put("races_included", races.size());
+        object.put("total_stops", analytics.getTotalStops());
+        object.put("median_duration", analytics.getMedianDuration());
+        object.put("teams", teams);
+        object.put("compounds", compounds);
+        object.put("races", raceArray);
+        return object.toString();
+    }
+
+    /**
+     * Builds the pit crew leaderboards of a season from the races loaded so far, without loading any.
+     *
+     * @param year The year of the season
+     * @return The JSON object of the leaderboards
+     */
+    private String renderLeaderboards(int year) {
+        PitLeaderboards leaderboards = data.getLeaderboards(year);
+        JSONArray fastest = new JSONArray();
+        for (PitLeaderboards.FastStop stop : leaderboards.getFastestStops()) {
+            JSONObject object = raceJSON(stop.race());
+            object.put("driver", stop.pitstop().getDriversID());
+            object.put("name", stop.driverName() == null ? JSONObject.NULL : stop.driverName());
+            object.put("team", stop.team());
+            object.put("lap", stop.pitstop().getLapNum());
+            object.put("duration", stop.duration());
+            fastest.put(object);
+        }
+
+        JSONObject object = new JSONObject();
+        object.put("year", year);
+        object.put("races_included", leaderboards.getRaceCount());
+        object.put("timed_stops", leaderboards.getStopCount());
+        object.put("fastest_stops", fastest);
+        object.put("teams_by_median", standingsJSON(leaderboards.getTeamsByMedian()));
+        object.put("most_consistent", standingsJSON(leaderboards.getMostConsistent()));
+        return object.toString();
+    }
+
+    /**
+     * Builds the list of pit stops flagged as abnormal in the races loaded so far, without loading any.
+     *
+     * @return The JSON object of the flagged stops
+     */
+    private String renderAnomalies() {
+        PitAnomalyDetector detector = data.getAnomalyDetector();
+        JSONArray flagged = new JSONArray();
+        for (PitAnomalyDetector.Anomaly anomaly : detector.getAnomalies()) {
+            JSONObject object = raceJSON(anomaly.race());
+            object.put("driver", anomaly.pitstop().getDriversID());
+            object.put("name", anomaly.driverName() == null ? JSONObject.NULL : anomaly.driverName());
+            object.put("team", anomaly.team());
+            object.put("lap", anomaly.pitstop().getLapNum());
+            object.put("duration", anomaly.pitstop().getpitDuration());
+            object.put("deviation", anomaly.deviation());
+            object.put("team_mean", anomaly.teamMean());
+            object.put("team_z", anomaly.teamZ());
+            object.put("circuit_mean", anomaly.circuitMean());
+            object.put("circuit_z", anomaly.circuitZ());
+            flagged.put(object);
+        }
+
+        JSONObject object = new JSONObject();
+        object.put("threshold", detector.getThreshold());
+        object.put("timed_stops", detector.getObservedCount());
+        object.put("anomalies", flagged);
+        return object.toString();
+    }
+
+    /**
+     * Builds a JSON array of team standings.
+     *
+     * @param standings The standings, in order
+     * @return The JSON array
+     */
+    private static JSONArray standingsJSON(List<PitLeaderboards.TeamStanding> standings) {
+        JSONArray array = new JSONArray();
+        for (PitLeaderboards.TeamStanding team : standings) {
+            JSONObject object = new JSONObject();
+            object.put("team", team.team());
+            object.put("stops", team.stops());
+            object.put("median_duration", team.medianDuration());
+            object.put("mean_duration", team.meanDuration());
+            object.put("std_deviation", team.stdDeviation());
+            array.put(object);
+        }
+        return array;
+    }
+
+    /**
+     * Gets the races of a season, loading them the first time. A season that fails to load is not
+     * kept, so a later request tries again.
+     *
+     * @param year The year of the season
+     * @return The races in season order
+     */
+    private List<Race> racesOf(int year) {
+        List<Race> races = seasonRaces.get(year);
+        if (races != null) {
+            return races;
+        }
+        List<Race> loaded = new ArrayList<>();
+        if (!data.streamSeasonRaces(year, loaded::add)) {
+            throw new HttpError(502, "Could not load the " + year + " season");
+        }
+        if (loaded.isEmpty()) {
+            throw new HttpError(404, "No races in " + year);
+        }
+        races = seasonRaces.putIfAbsent(year, List.copyOf(loaded));
+        return races == null ? seasonRaces.get(year) : races;
+    }
+
+    /**
+     * Gets the race data of a race from the cache, or loads it. Only one thread loads a race at a
+     * time; the others wait for its result. A race that fails to load is not kept, so a later request
+     * tries again.
+     *
+     * @param race The race
+     * @return The race data
+     */
+    private RaceData raceDataOf(Race race) {
+        synchronized (raceData) {
+            RaceData cached = raceData.get(race.getSessionKey());
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        CompletableFuture<RaceData> mine = new CompletableFuture<>();
+        CompletableFuture<RaceData> running = loading.putIfAbsent(race.getSessionKey(), mine);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            RaceData loaded = data.fetchRaceData(race);
+            int pitstops = loaded.getDriversPitstops().values().stream().mapToInt(pits -> pits.size()).sum();
+            synchronized (raceData) {
+                raceData.put(race.getSessionKey(), loaded,
+                    pitstops * BYTES_PER_PITSTOP + loaded.getDrivers().size() * BYTES_PER_DRIVER);
+            }
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(race.getSessionKey());
+        }
+    }
+
+    /**
+     * Waits for a response or race data another thread is building.
+     *
+     * @param <T>    The type of the result
+     * @param future The result being built
+     * @return The result
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Describes a race.
+     *
+     * @param race The race
+     * @return The JSON object of the race
+     */
+    private static JSONObject raceJSON(Race race) {
+        JSONObject object = new JSONObject();
+        object.put("session_key", race.getSessionKey());
+        object.put("circuit", race.getCircuitName());
+        object.put("date", race.getDate());
+        return object;
+    }
+
+    /**
+     * Builds the body of an error response.
+     *
+     * @param message The reason for the error
+     * @return The JSON body
+     */
+    private static byte[] error(String message) {
+        return new JSONObject().put("error", message).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a number in the path.
+     *
+     * @param text The part of the path
+     * @param name What the number is, for the error message
+     * @return The number
+     */
+    private static int parseNumber(String text, String name) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Invalid " + name + " " + text);
+        }
+    }
+
+    /**
+     * Computes the entity tag of a body from its SHA-256 hash.
+     *
+     * @param body The body
+     * @return The quoted entity tag
+     */
+    private static String etag(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
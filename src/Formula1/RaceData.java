@@ -1,18 +1,33 @@
 package Formula1;
 
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * This RaceData class represents the data associated with a Formula1 race. Organizes drivers and
  * pitstops into easily accessible maps for efficient retrieval and processing. Includes information
  * about drivers and their pitstops.
+ *
+ * The drivers and pitstops are kept in arrays indexed by the dense index the season's DriverRegistry
+ * gives each driver number, and handed out as maps by driver number over those arrays. Looking up a
+ * driver is two array reads instead of hashing, and the maps list drivers in order of their number.
  */
 public class RaceData {
-    private Map<Integer, PriorityQueue<Pitstop>> driversPitstops;
-    private Map<Integer, Driver> driversMap;
+    private final DriverRegistry registry;
+    private final IndexedMap<PriorityQueue<Pitstop>> driversPitstops;
+    private final IndexedMap<Driver> driversMap;
 
     /**
      * Constructs a race data object by organizing the given drivers and pitstops into maps
@@ -21,8 +36,93 @@ public class RaceData {
      * @param pitstops A list of pitstop objects representing pitstops during the race
      */
     public RaceData(List<Driver> drivers, List<Pitstop> pitstops) {
+        HotPathEvents.RaceDataBuild event = new HotPathEvents.RaceDataBuild();
+        event.begin();
+        long start = System.nanoTime();
+        registry = registryOf(drivers, pitstops);
+        driversPitstops = new IndexedMap<>(registry);
+        driversMap = new IndexedMap<>(registry);
         setDriversPitstops(pitstops);
         arrangeDrivers(drivers);
+        Metrics.global().timer("racedata.build").stop(start);
+        event.drivers = drivers.size();
+        event.pitstops = pitstops.size();
+        event.commit();
+    }
+
+    /**
+     * Constructs a race data object whose pitstops are joined to the stints the drivers went out on
+     * after them.
+     * 
+     * @param drivers  A list of driver objects participating in the race
+     * @param pitstops A list of pitstop objects representing pitstops during the race
+     * @param stints   A list of the stints of the race
+     */
+    public RaceData(List<Driver> drivers, List<Pitstop> pitstops, List<Stint> stints) {
+        this(drivers, joinStints(pitstops, stints));
+    }
+
+    /**
+     * Finds the registry of the season a race belongs to, from its drivers or, if it has none, its
+     * pitstops.
+     * 
+     * @param drivers  The drivers of the race
+     * @param pitstops The pitstops of the race
+     * @return The registry of the race's season
+     */
+    private static DriverRegistry registryOf(List<Driver> drivers, List<Pitstop> pitstops) {
+        if (!drivers.isEmpty()) {
+            return DriverRegistry.forSeason(drivers.get(0).getFinishTime());
+        }
+        return DriverRegistry.forSeason(pitstops.isEmpty() ? null : pitstops.get(0).getstartPitTime());
+    }
+
+    /**
+     * Gets the registry of the season the race belongs to.
+     * 
+     * @return The registry
+     */
+    public DriverRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Joins each pitstop to the stint that followed it, in one pass over the stints to index them by
+     * driver and first lap and one pass over the pitstops to look them up. The stint after a stop on
+     * lap L usually starts on lap L + 1, but starts on lap L when the stop is counted on the lap the
+     * car came in from, so both are looked up.
+     * 
+     * @param pitstops The pitstops of the race
+     * @param stints   The stints of the race
+     * @return The pitstops, each joined to its outgoing stint if one was found
+     */
+    public static List<Pitstop> joinStints(List<Pitstop> pitstops, List<Stint> stints) {
+        long start = System.nanoTime();
+        Map<Long, Stint> byStart = new HashMap<>(stints.size() * 2);
+        for (Stint stint : stints) {
+            byStart.put(stintKey(stint.getDriversID(), stint.getLapStart()), stint);
+        }
+        List<Pitstop> joined = new ArrayList<>(pitstops.size());
+        for (Pitstop pitstop : pitstops) {
+            Stint outgoing = byStart.get(stintKey(pitstop.getDriversID(), pitstop.getLapNum() + 1));
+            if (outgoing == null) {
+                outgoing = byStart.get(stintKey(pitstop.getDriversID(), pitstop.getLapNum()));
+            }
+            joined.add(outgoing == null ? pitstop : pitstop.withStint(outgoing));
+        }
+        Metrics.global().timer("racedata.join").stop(start);
+        return joined;
+    }
+
+    /**
+     * Packs a driver and a lap into the key the stints are indexed by.
+     * 
+     * @param driverID The driver's ID
+     * @param lap      The lap number
+     * @return The key
+     */
+    private static long stintKey(int driverID, int lap) {
+        return ((long) driverID << 32) | (lap & 0xFFFFFFFFL);
     }
 
     /**
@@ -44,6 +144,33 @@ public class RaceData {
         return driversMap;
     }
 
+    /**
+     * Adds a pitstop made after the race data was built, for a race that is still going on.
+     * 
+     * @param pitstop The new pitstop
+     * @return true if it was added, false if the driver already has a pitstop on that lap
+     */
+    public boolean addPitstop(Pitstop pitstop) {
+        PriorityQueue<Pitstop> pits = driversPitstops.computeIfAbsent(pitstop.getDriversID(),
+            driver -> new PriorityQueue<>());
+        for (Pitstop existing : pits) {
+            if (existing.getLapNum() == pitstop.getLapNum()) {
+                return false;
+            }
+        }
+        return pits.offer(pitstop);
+    }
+
+    /**
+     * Adds a driver, or replaces them if they are already in the race data, for a race that is still
+     * going on.
+     * 
+     * @param driver The driver
+     */
+    public void putDriver(Driver driver) {
+        driversMap.put(driver.getDriverNumber(), driver);
+    }
+
     /**
      * Organizes the given list of drivers into a map where the key is the driver's ID and the value is
      * the Driver object.
@@ -51,7 +178,6 @@ public class RaceData {
      * @param drivers A list of Driver objects participating in the race
      */
     private void arrangeDrivers(List<Driver> drivers) {
-        driversMap = new HashMap<>();
         for (Driver driver : drivers) {
             driversMap.put(driver.getDriverNumber(), driver);
         }
@@ -64,7 +190,6 @@ public class RaceData {
      * @param racePitstops A list of pitstop objects representing pitstops during the race
      */
     private void setDriversPitstops(List<Pitstop> racePitstops) {
-        driversPitstops = new HashMap<>();
         for (Pitstop pitstop : racePitstops) {
             PriorityQueue<Pitstop> pits = null;
             if (!driversPitstops.containsKey(pitstop.getDriversID())) {
@@ -76,4 +201,249 @@ public class RaceData {
             driversPitstops.put(pitstop.getDriversID(), pits);
         }
     }
+
+    /**
+     * A map from driver numbers to values kept in an array by the dense index of each number. Driver
+     * numbers not yet in the registry are given an index when they are put in the map.
+     * 
+     * Every key of the map went through put, so the registry's tables as they were at the last put
+     * already hold them all, and the map reads its own copy of them instead of the registry's.
+     * 
+     * @param <V> The type of the values
+     */
+    private static class IndexedMap<V> extends AbstractMap<Integer, V> {
+        private final DriverRegistry registry;
+        private int[] indexByNumber, order;
+        private Object[] values;
+        private int size;
+
+        /**
+         * Constructs an empty map with room for every driver of the season so far.
+         * 
+         * @param registry The registry giving the indices
+         */
+        IndexedMap(DriverRegistry registry) {
+            this.registry = registry;
+            indexByNumber = registry.indexTable();
+            order = registry.indicesInNumberOrder();
+            values = new Object[registry.size()];
+        }
+
+        /**
+         * Looks up the index of a driver number in the map's copy of the registry.
+         * 
+         * @param number The driver number
+         * @return The index, or -1 if the number is not in the map
+         */
+        private int indexOf(int number) {
+            return number >= 0 && number < indexByNumber.length ? indexByNumber[number] : -1;
+        }
+
+        /**
+         * Gets the value of a driver number.
+         * 
+         * @param key The driver number
+         * @return The value, or null if there is none
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            int index = indexOf((Integer) key);
+            return index >= 0 && index < values.length ? (V) values[index] : null;
+        }
+
+        /**
+         * Checks if a driver number has a value.
+         * 
+         * @param key The driver number
+         * @return true if it has one
+         */
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        /**
+         * Sets the value of a driver number.
+         * 
+         * @param key   The driver number
+         * @param value The value, which cannot be null
+         * @return The value it replaced, or null if there was none
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public V put(Integer key, V value) {
+            Objects.requireNonNull(value);
+            int index = registry.indexFor(key);
+            if (index >= order.length) {
+                indexByNumber = registry.indexTable();
+                order = registry.indicesInNumberOrder();
+            }
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, Math.max(index + 1, registry.size()));
+            }
+            V old = (V) values[index];
+            values[index] = value;
+            if (old == null) {
+                size++;
+            }
+            return old;
+        }
+
+        /**
+         * Removes the value of a driver number.
+         * 
+         * @param key The driver number
+         * @return The value removed, or null if there was none
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public V remove(Object key) {
+            V old = get(key);
+            if (old != null) {
+                values[indexOf((Integer) key)] = null;
+                size--;
+            }
+            return old;
+        }
+
+        /**
+         * Gets the number of driver numbers with a value.
+         * 
+         * @return The size of the map
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Gets the entries of the map, in order of driver number. Removing through the iterator is
+         * supported, as is setting the value of an entry.
+         * 
+         * @return The entries
+         */
+        @Override
+        public Set<Map.Entry<Integer, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Map.Entry<Integer, V>> iterator() {
+                    return new IndexIterator<>() {
+                        @Override
+                        Map.Entry<Integer, V> element(int index) {
+                            int key = registry.numberAt(index);
+                            return new AbstractMap.SimpleEntry<>(key, value(index)) {
+                                @Override
+                                public V setValue(V value) {
+                                    super.setValue(value);
+                                    return put(key, value);
+                                }
+                            };
+                        }
+                    };
+                }
+            };
+        }
+
+        /**
+         * Gets the values of the map, in order of driver number, without making an entry for each.
+         * 
+         * @return The values
+         */
+        @Override
+        public Collection<V> values() {
+            return new AbstractCollection<>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<V> iterator() {
+                    return new IndexIterator<>() {
+                        @Override
+                        V element(int index) {
+                            return value(index);
+                        }
+                    };
+                }
+            };
+        }
+
+        /**
+         * Gets the value at an index.
+         * 
+         * @param index The index
+         * @return The value, or null if there is none
+         */
+        @SuppressWarnings("unchecked")
+        private V value(int index) {
+            return index < values.length ? (V) values[index] : null;
+        }
+
+        /**
+         * Walks the indices of the registry in order of driver number, stopping at those with a value.
+         * 
+         * @param <E> The type of the elements handed out
+         */
+        private abstract class IndexIterator<E> implements Iterator<E> {
+            private final int[] order = IndexedMap.this.order;
+            private int next = advance(0);
+            private int last = -1;
+
+            /**
+             * Makes the element of an index with a value.
+             * 
+             * @param index The index
+             * @return The element
+             */
+            abstract E element(int index);
+
+            /**
+             * Finds the first position in the order from a given one whose index has a value.
+             * 
+             * @param from The position to start from
+             * @return The position, or the length of the order if there are no more
+             */
+            private int advance(int from) {
+                int position = from;
+                while (position < order.length && value(order[position]) == null) {
+                    position++;
+                }
+                return position;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < order.length;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = order[next];
+                next = advance(next + 1);
+                return element(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                IndexedMap.this.remove(registry.numberAt(last));
+                last = -1;
+            }
+        }
+    }
 }
@@ -0,0 +1,330 @@
+package Formula1;
+
+import java.awt.Color;
+
+import edu.macalester.graphics.CanvasWindow;
+import edu.macalester.graphics.GraphicsText;
+import edu.macalester.graphics.Line;
+import edu.macalester.graphics.Rectangle;
+import edu.macalester.graphics.events.Key;
+import edu.macalester.graphics.ui.Button;
+
+/**
+ * This RaceReplay class plays a race forward in time. Every driver has a lane with a marker that moves
+ * along as they complete laps and turns white while they are in the pit lane.
+ *
+ * Includes buttons to play or pause, skip back or forward a minute, and change the speed, and the
+ * progress bar can be clicked to seek to any moment. Positions come from a RaceTimeline, so seeking
+ * is a binary search. Every graphic, color, and label is created up front, so the frame update only
+ * moves existing objects and does not allocate.
+ *
+ * A replay is built once per chart and shown again as it was left. The frame loop, mouse clicks, and
+ * key presses are registered on the canvas once, and go to whichever replay is on screen.
+ */
+public class RaceReplay {
+    private static final double[] SPEEDS = {1, 5, 10, 30, 60, 120};
+    private static final double TRACK_LEFT = 150, MARKER_SIZE = 12;
+
+    private static RaceReplay active;
+    private static CanvasWindow animatedCanvas;
+
+    private CanvasWindow canvas;
+    private ScreenManager manager;
+    private Main menu;
+    private Race race;
+    private RaceTimeline timeline;
+
+    private Rectangle[] markers;
+    private Color[] driverColors;
+    private boolean[] shownInPit;
+    private double[] laneY;
+    private double lapWidth;
+
+    private Rectangle progressBar, progressKnob;
+    private GraphicsText clockText, eventText, speedText;
+    private String[] clockLabels, eventLabels, speedLabels;
+    private int shownSecond = -1, shownEvent = -1;
+
+    private double time;
+    private boolean playing;
+    private int speedIndex = 2;
+    private long lastFrame;
+
+    /**
+     * Constructs a replay of a race and displays it on the canvas, paused at the start.
+     *
+     * @param canvas   The canvas window where the replay will be displayed
+     * @param manager  The screen manager instance for navigation between screens
+     * @param menu     The menu instance to return back to the main menu
+     * @param race     The race object containing the race details
+     * @param raceData The race data object containing drivers and pit stop data for the race
+     */
+    public RaceReplay(CanvasWindow canvas, ScreenManager manager, Main menu, Race race, RaceData raceData) {
+        this.canvas = canvas;
+        this.manager = manager;
+        this.menu = menu;
+        this.race = race;
+        this.timeline = new RaceTimeline(race, raceData);
+
+        precomputeLabels();
+        show();
+    }
+
+    /**
+     * Stops the replay on screen from playing, for when another screen is displayed.
+     */
+    public static void deactivate() {
+        active = null;
+    }
+
+    /**
+     * Draws the lanes, markers, controls, and labels of the replay at the moment it was left, and
+     * starts the frame loop the first time a replay is shown on the canvas.
+     */
+    public void show() {
+        DataVisualizer.deactivate();
+        SeasonOverlay.deactivate();
+        canvas.removeAll();
+
+        GraphicsText title = new GraphicsText(race.getCircuitName() + " Replay");
+        title.setFontSize(18);
+        title.setCenter(canvas.getWidth() / 2, 75);
+        canvas.add(title);
+
+        int count = timeline.getDriverCount();
+        double top = 110, bottom = canvas.getHeight() - 130;
+        double laneHeight = (bottom - top) / Math.max(1, count);
+        lapWidth = (canvas.getWidth() - TRACK_LEFT - 100) / Math.max(1, timeline.getLastLap());
+
+        markers = new Rectangle[count];
+        driverColors = new Color[count];
+        shownInPit = new boolean[count];
+        laneY = new double[count];
+        for (int d = 0; d < count; d++) {
+            Driver driver = timeline.getDriver(d);
+            laneY[d] = top + (d + 0.5) * laneHeight;
+            driverColors[d] = driver.getDriverColor();
+
+            GraphicsText name = new GraphicsText(driver.getName());
+            name.setCenter(TRACK_LEFT - 40, laneY[d]);
+            canvas.add(name);
+
+            Line lane = new Line(TRACK_LEFT, laneY[d], TRACK_LEFT + timeline.getLastLap() * lapWidth, laneY[d]);
+            lane.setStrokeColor(Color.LIGHT_GRAY);
+            canvas.add(lane);
+
+            markers[d] = new Rectangle(TRACK_LEFT - MARKER_SIZE / 2, laneY[d] - MARKER_SIZE / 2, MARKER_SIZE,
+                MARKER_SIZE);
+            markers[d].setFillColor(driverColors[d]);
+            markers[d].setStrokeColor(driverColors[d]);
+            canvas.add(markers[d]);
+        }
+
+        addControls();
+        active = this;
+        shownSecond = -1;
+        shownEvent = -1;
+        lastFrame = System.nanoTime();
+        render();
+
+        // The listeners only reach the replay on screen through active, so a replay no longer shown
+        // is not kept alive by the canvas
+        if (animatedCanvas != canvas) {
+            animatedCanvas = canvas;
+            canvas.animate(() -> {
+                if (active != null) {
+                    active.frame();
+                }
+            });
+            canvas.onClick(event -> {
+                if (active != null) {
+                    active.clickProgress(event.getPosition().getX(), event.getPosition().getY());
+                }
+            });
+            canvas.onKeyDown(event -> {
+                if (active != null && event.getKey() == Key.SPACE) {
+                    active.togglePlaying();
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates every label the replay can show, so changing a label during playback does not allocate.
+     */
+    private void precomputeLabels() {
+        int seconds = (int) (timeline.getDuration() / 1000) + 1;
+        clockLabels = new String[seconds];
+        for (int s = 0; s < seconds; s++) {
+            clockLabels[s] = String.format("%d:%02d:%02d", s / 3600, (s / 60) % 60, s % 60);
+        }
+
+        eventLabels = new String[timeline.getEventCount()];
+        for (int e = 0; e < eventLabels.length; e++) {
+            String name = timeline.getDriver(timeline.getEventDriver(e)).getName();
+            int lap = timeline.getEventLap(e);
+            switch (timeline.getEventType(e)) {
+                case RaceTimeline.PIT_IN:
+                    eventLabels[e] = name + " enters the pits on lap " + lap;
+                    break;
+                case RaceTimeline.PIT_OUT:
+                    eventLabels[e] = name + " leaves the pits on lap " + lap;
+                    break;
+                default:
+                    eventLabels[e] = name + " finishes after " + lap + " laps";
+            }
+        }
+
+        speedLabels = new String[SPEEDS.length];
+        for (int i = 0; i < SPEEDS.length; i++) {
+            speedLabels[i] = "Speed x" + (int) SPEEDS[i];
+        }
+    }
+
+    /**
+     * Adds the playback controls, the progress bar, and the navigation buttons to the canvas.
+     */
+    private void addControls() {
+        double controlsY = canvas.getHeight() - 50;
+        double centerX = canvas.getWidth() / 2;
+
+        progressBar = new Rectangle(TRACK_LEFT, canvas.getHeight() - 100, canvas.getWidth() - TRACK_LEFT - 100, 6);
+        progressBar.setFillColor(Color.GRAY);
+        canvas.add(progressBar);
+        progressKnob = new Rectangle(TRACK_LEFT - 4, canvas.getHeight() - 105, 8, 16);
+        progressKnob.setFillColor(Color.BLACK);
+        canvas.add(progressKnob);
+
+        clockText = new GraphicsText("");
+        clockText.setFontSize(18);
+        clockText.setPosition(TRACK_LEFT, controlsY + 6);
+        canvas.add(clockText);
+
+        eventText = new GraphicsText("");
+        eventText.setPosition(centerX + 320, controlsY + 6);
+        canvas.add(eventText);
+
+        speedText = new GraphicsText(speedLabels[speedIndex]);
+        speedText.setPosition(centerX + 230, controlsY + 6);
+        canvas.add(speedText);
+
+        Button back = new Button("-1 min");
+        back.setCenter(centerX - 180, controlsY);
+        back.onClick(() -> seek(time - 60_000));
+        canvas.add(back);
+
+        Button play = new Button("Play / Pause");
+        play.setCenter(centerX - 60, controlsY);
+        play.onClick(this::togglePlaying);
+        canvas.add(play);
+
+        Button forward = new Button("+1 min");
+        forward.setCenter(centerX + 60, controlsY);
+        forward.onClick(() -> seek(time + 60_000));
+        canvas.add(forward);
+
+        Button speed = new Button("Speed");
+        speed.setCenter(centerX + 170, controlsY);
+        speed.onClick(() -> {
+            speedIndex = (speedIndex + 1) % SPEEDS.length;
+            speedText.setText(speedLabels[speedIndex]);
+        });
+        canvas.add(speed);
+
+        Button chartButton = new Button("Chart");
+        chartButton.setCenter(centerX - 120, 25);
+        chartButton.onClick(() -> {
+            deactivate();
+            manager.showData(canvas, race);
+        });
+        canvas.add(chartButton);
+
+        Button racesButton = new Button("Races");
+        racesButton.setCenter(centerX + 120, 25);
+        racesButton.onClick(() -> manager.display(canvas));
+        canvas.add(racesButton);
+    }
+
+    /**
+     * Seeks to the moment under a click on the progress bar, ignoring clicks elsewhere.
+     *
+     * @param x The x-coordinate of the click on the canvas
+     * @param y The y-coordinate of the click on the canvas
+     */
+    private void clickProgress(double x, double y) {
+        if (y > progressBar.getY() - 10 && y < progressBar.getY() + 16) {
+            double fraction = (x - progressBar.getX()) / progressBar.getWidth();
+            seek(Math.max(0, Math.min(1, fraction)) * timeline.getDuration());
+        }
+    }
+
+    /**
+     * Plays the replay if it is paused, or pauses it if it is playing. Playing from the end starts
+     * the race over.
+     */
+    private void togglePlaying() {
+        if (!playing && time >= timeline.getDuration()) {
+            time = 0;
+        }
+        playing = !playing;
+    }
+
+    /**
+     * Jumps to a moment of the race.
+     *
+     * @param newTime The race time in milliseconds
+     */
+    private void seek(double newTime) {
+        time = Math.max(0, Math.min(timeline.getDuration(), newTime));
+        render();
+    }
+
+    /**
+     * Advances the race clock by the time since the last frame, scaled by the playback speed, and
+     * redraws the markers.
+     */
+    private void frame() {
+        long now = System.nanoTime();
+        double elapsedMillis = (now - lastFrame) / 1e6;
+        lastFrame = now;
+        if (playing) {
+            time += elapsedMillis * SPEEDS[speedIndex];
+            if (time >= timeline.getDuration()) {
+                time = timeline.getDuration();
+                playing = false;
+            }
+        }
+        render();
+    }
+
+    /**
+     * Moves every marker, the progress knob, and the labels to the current race time. Only reuses the
+     * objects and labels created up front.
+     */
+    private void render() {
+        long now = (long) time;
+        for (int d = 0; d < markers.length; d++) {
+            double x = TRACK_LEFT + timeline.lapAt(d, now) * lapWidth;
+            markers[d].setPosition(x - MARKER_SIZE / 2, laneY[d] - MARKER_SIZE / 2);
+            boolean inPit = timeline.inPitAt(d, now);
+            if (inPit != shownInPit[d]) {
+                markers[d].setFillColor(inPit ? Color.WHITE : driverColors[d]);
+                shownInPit[d] = inPit;
+            }
+        }
+
+        double fraction = timeline.getDuration() == 0 ? 0 : time / timeline.getDuration();
+        progressKnob.setPosition(progressBar.getX() - 4 + fraction * progressBar.getWidth(), progressKnob.getY());
+
+        int second = Math.min(clockLabels.length - 1, (int) (now / 1000));
+        if (second != shownSecond) {
+            clockText.setText(clockLabels[second]);
+            shownSecond = second;
+        }
+        int event = timeline.eventsAt(now);
+        if (event != shownEvent) {
+            eventText.setText(event == 0 ? "" : eventLabels[event - 1]);
+            shownEvent = event;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package Formula1;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This RaceTimeline class is a time index of a race, built once from the race data so the race can
+ * be replayed and seeked to any moment quickly.
+ *
+ * Each driver's progress is stored as a sorted list of knots (race time, lap) running from the start,
+ * through the entry and exit of every pit stop, to the driver's finish. The lap at any time is found
+ * with a binary search over the knots. The pit entries, pit exits, and finishes of all drivers are
+ * also merged into one sorted event list. All the data lives in flat primitive arrays, so queries
+ * run in logarithmic time and do not allocate.
+ */
+public class RaceTimeline {
+    public static final int PIT_IN = 0, PIT_OUT = 1, FINISH = 2;
+
+    private final Driver[] drivers;
+    private final long duration;
+    private final int lastLap;
+
+    private final int[] knotStart;
+    private final long[] knotTimes;
+    private final double[] knotLaps;
+
+    private final int[] pitStart;
+    private final long[] pitInTimes, pitOutTimes;
+
+    private final long[] eventTimes;
+    private final int[] eventDrivers, eventTypes, eventLaps;
+
+    /**
+     * Builds the timeline of a race. Drivers are ordered by race finish time.
+     *
+     * @param race     The race to index
+     * @param raceData The drivers and pitstops of the race
+     */
+    public RaceTimeline(Race race, RaceData raceData) {
+        drivers = raceData.getDrivers().values().stream()
+            .sorted(Comparator.comparingLong(driver -> driver.getRaceFinishTime(race)))
+            .toArray(Driver[]::new);
+
+        List<long[]> knots = new ArrayList<>();
+        List<long[]> pits = new ArrayList<>();
+        List<long[]> events = new ArrayList<>();
+        knotStart = new int[drivers.length + 1];
+        pitStart = new int[drivers.length + 1];
+        long longest = 0;
+        int mostLaps = 0;
+
+        for (int d = 0; d < drivers.length; d++) {
+            Driver driver = drivers[d];
+            long finish = Math.max(0, driver.getRaceFinishTime(race));
+            longest = Math.max(longest, finish);
+            mostLaps = Math.max(mostLaps, driver.getFinalLap());
+
+            knots.add(new long[] {0, 0});
+            long lastTime = 0;
+            PriorityQueue<Pitstop> driverPits = raceData.getDriversPitstops().get(driver.getDriverNumber());
+            PriorityQueue<Pitstop> remaining = driverPits == null ? new PriorityQueue<>()
+                : new PriorityQueue<>(driverPits);
+            while (!remaining.isEmpty()) {
+                Pitstop pitstop = remaining.poll();
+                long in = pitstop.getStartOffset(race);
+                long out = pitstop.getEndOffset(race);
+                // Skip stops that overlap the previous one or fall outside the race
+                if (in <= lastTime || out <= in || out >= finish) {
+                    continue;
+                }
+                knots.add(new long[] {in, pitstop.getLapNum()});
+                knots.add(new long[] {out, pitstop.getLapNum()});
+                pits.add(new long[] {in, out});
+                events.add(new long[] {in, d, PIT_IN, pitstop.getLapNum()});
+                events.add(new long[] {out, d, PIT_OUT, pitstop.getLapNum()});
+                lastTime = out;
+            }
+            if (finish > lastTime) {
+                knots.add(new long[] {finish, driver.getFinalLap()});
+            }
+            events.add(new long[] {finish, d, FINISH, driver.getFinalLap()});
+            knotStart[d + 1] = knots.size();
+            pitStart[d + 1] = pits.size();
+        }
+        duration = longest;
+        lastLap = mostLaps;
+
+        knotTimes = new long[knots.size()];
+        knotLaps = new double[knots.size()];
+        for (int i = 0; i < knots.size(); i++) {
+            knotTimes[i] = knots.get(i)[0];
+            knotLaps[i] = knots.get(i)[1];
+        }
+        pitInTimes = new long[pits.size()];
+        pitOutTimes = new long[pits.size()];
+        for (int i = 0; i < pits.size(); i++) {
+            pitInTimes[i] = pits.get(i)[0];
+            pitOutTimes[i] = pits.get(i)[1];
+        }
+
+        events.sort(Comparator.comparingLong(event -> event[0]));
+        eventTimes = new long[events.size()];
+        eventDrivers = new int[events.size()];
+        eventTypes = new int[events.size()];
+        eventLaps = new int[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            eventTimes[i] = events.get(i)[0];
+            eventDrivers[i] = (int) events.get(i)[1];
+            eventTypes[i] = (int) events.get(i)[2];
+            eventLaps[i] = (int) events.get(i)[3];
+        }
+    }
+
+    /**
+     * Gets the number of drivers in the timeline.
+     *
+     * @return The number of drivers
+     */
+    public int getDriverCount() {
+        return drivers.length;
+    }
+
+    /**
+     * Gets a driver by their position in the timeline.
+     *
+     * @param index The index of the driver, in order of race finish time
+     * @return The driver
+     */
+    public Driver getDriver(int index) {
+        return drivers[index];
+    }
+
+    /**
+     * Gets the race time of the last finish.
+     *
+     * @return The race duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Gets the highest lap number completed in the race.
+     *
+     * @return The last lap
+     */
+    public int getLastLap() {
+        return lastLap;
+    }
+
+    /**
+     * Finds how far a driver had got at a moment of the race, interpolating between knots.
+     *
+     * @param driver The index of the driver
+     * @param time   The race time in milliseconds
+     * @return The lap progress of the driver, for example 12.5 halfway through lap 13
+     */
+    public double lapAt(int driver, long time) {
+        int from = knotStart[driver], to = knotStart[driver + 1];
+        int k = upperBound(knotTimes, from, to, time) - 1;
+        if (k < from) {
+            return 0;
+        }
+        if (k >= to - 1) {
+            return knotLaps[to - 1];
+        }
+        double fraction = (double) (time - knotTimes[k]) / (knotTimes[k + 1] - knotTimes[k]);
+        return knotLaps[k] + fraction * (knotLaps[k + 1] - knotLaps[k]);
+    }
+
+    /**
+     * Checks if a driver was in the pit lane at a moment of the race.
+     *
+     * @param driver The index of the driver
+     * @param time   The race time in milliseconds
+     * @return true if the driver was in a pit stop
+     */
+    public boolean inPitAt(int driver, long time) {
+        int p = upperBound(pitInTimes, pitStart[driver], pitStart[driver + 1], time) - 1;
+        return p >= pitStart[driver] && time < pitOutTimes[p];
+    }
+
+    /**
+     * Counts the pit stops a driver had started by a moment of the race.
+     *
+     * @param driver The index of the driver
+     * @param time   The race time in milliseconds
+     * @return The number of pit stops started
+     */
+    public int pitsStartedAt(int driver, long time) {
+        return upperBound(pitInTimes, pitStart[driver], pitStart[driver + 1], time) - pitStart[driver];
+    }
+
+    /**
+     * Gets the number of events in the timeline.
+     *
+     * @return The number of events
+     */
+    public int getEventCount() {
+        return eventTimes.length;
+    }
+
+    /**
+     * Counts the events that happened up to and including a moment of the race, which is also the
+     * index of the next event to happen.
+     *
+     * @param time The race time in milliseconds
+     * @return The number of events at or before the time
+     */
+    public int eventsAt(long time) {
+        return upperBound(eventTimes, 0, eventTimes.length, time);
+    }
+
+    /**
+     * Gets the race time of an event.
+     *
+     * @param event The index of the event
+     * @return The race time in milliseconds
+     */
+    public long getEventTime(int event) {
+        return eventTimes[event];
+    }
+
+    /**
+     * Gets the driver an event happened to.
+     *
+     * @param event The index of the event
+     * @return The index of the driver
+     */
+    public int getEventDriver(int event) {
+        return eventDrivers[event];
+    }
+
+    /**
+     * Gets the type of an event.
+     *
+     * @param event The index of the event
+     * @return PIT_IN, PIT_OUT, or FINISH
+     */
+    public int getEventType(int event) {
+        return eventTypes[event];
+    }
+
+    /**
+     * Gets the lap an event happened on.
+     *
+     * @param event The index of the event
+     * @return The lap number
+     */
+    public int getEventLap(int event) {
+        return eventLaps[event];
+    }
+
+    /**
+     * Finds the first position in a sorted range whose value is greater than the key.
+     *
+     * @param values The sorted values
+     * @param from   The start of the range, inclusive
+     * @param to     The end of the range, exclusive
+     * @param key    The value to search for
+     * @return The position of the first greater value, or to if there is none
+     */
+    private static int upperBound(long[] values, int from, int to, long key) {
+        int low = from, high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
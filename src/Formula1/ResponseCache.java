@@ -0,0 +1,352 @@
+package Formula1;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This ResponseCache class stores OpenF1 responses on disk so races that were already downloaded can
+ * be loaded again without the network. Each response is kept in its own file, named after the
+ * request's path and query.
+ *
+ * An offline cache only replays what was recorded before and never lets the API go to the network.
+ *
+ * The directory can be shared by several programs running at once. A response is written to a
+ * temporary file and moved into place in one step, so a reader sees either no file or the whole
+ * response, never part of one. Before fetching a response that is not cached, the API takes the lock
+ * of its request, which is a lock on a file under .locks held with FileChannel and so shared with
+ * every other process using the directory, and looks in the cache again: whoever got the lock first
+ * has fetched and stored the response by then, so each response is downloaded only once.
+ */
+public class ResponseCache {
+    private static final String LOCK_DIRECTORY = ".locks";
+    private static final long MAX_LOCK_BACKOFF_MILLIS = 20;
+
+    // A JVM cannot hold two FileChannel locks on the same file, so its threads queue here first. A lock
+    // is only kept while a thread holds it or waits for it
+    private static final ConcurrentHashMap<Path, LocalLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final boolean offline;
+
+    /**
+     * Constructs a response cache that stores its files in the given directory.
+     *
+     * @param directory The directory holding the cached responses
+     * @param offline   true if requests missing from the cache should fail instead of being fetched
+     */
+    public ResponseCache(Path directory, boolean offline) {
+        this.directory = directory;
+        this.offline = offline;
+    }
+
+    /**
+     * Gets the directory holding the cached responses.
+     *
+     * @return The cache directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Checks if the cache only replays recorded responses.
+     *
+     * @return true if the cache is offline
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Gets the cached response body for a request.
+     *
+     * @param url The request URL
+     * @return The cached response body, or null if the request was never cached
+     */
+    public String get(String url) {
+        Path file = fileFor(url);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in ResponseCache.get");
+            return null;
+        }
+    }
+
+    /**
+     * Opens the cached response body of a request to be read as it is decoded, so a large response is
+     * never held in memory whole.
+     *
+     * @param url The request URL
+     * @return A reader of the cached response body, or null if the request was never cached
+     * @throws IOException If the cache file cannot be opened
+     */
+    public Reader open(String url) throws IOException {
+        try {
+            return Files.newBufferedReader(fileFor(url), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response body of a request in the cache. The body is written to a temporary file in
+     * the cache directory first and then moved over the cache file, so other threads and processes
+     * reading the cache never see a partly written response.
+     *
+     * @param url  The request URL
+     * @param body The response body
+     */
+    public void put(String url, String body) {
+        try (Store store = store(url)) {
+            store.getWriter().write(body);
+            store.commit();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in ResponseCache.put");
+        }
+    }
+
+    /**
+     * Starts storing the response body of a request, for a body written as it is read from the network
+     * instead of all at once. Like put, the body goes to a temporary file until it is committed.
+     *
+     * @param url The request URL
+     * @return The store of the body, to be committed once the body is complete and closed in any case
+     * @throws IOException If the temporary file cannot be created
+     */
+    public Store store(String url) throws IOException {
+        Files.createDirectories(directory);
+        Path file = fileFor(url);
+        Path temp = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+        try {
+            return new Store(file, temp, Files.newBufferedWriter(temp, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the lock of a request, waiting until no other thread or process using the cache directory
+     * holds it. Another process's lock is polled for with a growing pause of up to 20 ms. The lock is
+     * meant to be held while the response is looked up again, fetched and stored, and must be closed
+     * by the thread that took it.
+     *
+     * @param url The request URL
+     * @return The lock, to be closed once the response is stored
+     * @throws IOException If the lock file cannot be opened or locked
+     */
+    public Lock lock(String url) throws IOException {
+        long start = System.nanoTime();
+        Path lockFile = lockFileFor(url).toAbsolutePath().normalize();
+        LocalLock local = LOCAL_LOCKS.compute(lockFile, (file, held) -> {
+            LocalLock taken = held == null ? new LocalLock(file) : held;
+            taken.users++;
+            return taken;
+        });
+        local.lock.lock();
+        try {
+            Files.createDirectories(lockFile.getParent());
+            FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                // The kernel tracks file locks per process, so a blocking lock can report a deadlock
+                // between two processes that is only between different threads of each; polling cannot
+                long backoff = 1;
+                while (channel.tryLock() == null) {
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_LOCK_BACKOFF_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                channel.close();
+                throw new InterruptedIOException("Interrupted waiting for the lock of " + url);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            Metrics.global().timer("cache.lock.wait").stop(start);
+            return new Lock(local, channel);
+        } catch (IOException | RuntimeException e) {
+            local.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * The lock of one lock file within this JVM, with the number of threads holding it or waiting for
+     * it. The count is only changed inside LOCAL_LOCKS.compute, so the entry is removed exactly when
+     * the last of them lets go, and a thread arriving then gets a new lock.
+     */
+    private static final class LocalLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Path file;
+        private int users;
+
+        /**
+         * Constructs a lock nobody holds yet.
+         *
+         * @param file The lock file it guards
+         */
+        private LocalLock(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * Releases the lock, removing it from LOCAL_LOCKS if no other thread holds it or waits for it.
+         */
+        private void unlock() {
+            lock.unlock();
+            LOCAL_LOCKS.computeIfPresent(file, (key, held) -> --held.users == 0 ? null : held);
+        }
+    }
+
+    /**
+     * The lock of one request, held by one thread of one process at a time. Closing it lets the next
+     * waiting thread or process in.
+     */
+    public static final class Lock implements AutoCloseable {
+        private final LocalLock local;
+        private final FileChannel channel;
+
+        /**
+         * Constructs a held lock.
+         *
+         * @param local   The lock of the request within this JVM, held by the current thread
+         * @param channel The channel of the lock file, locked for the whole file
+         */
+        private Lock(LocalLock local, FileChannel channel) {
+            this.local = local;
+            this.channel = channel;
+        }
+
+        /**
+         * Releases the lock. Closing the channel releases its file lock.
+         *
+         * @throws IOException If the lock file cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                local.unlock();
+            }
+        }
+    }
+
+    /**
+     * A response body being written to the cache. Nothing is visible to readers of the cache until it
+     * is committed, and closing it without committing throws the body away.
+     */
+    public static final class Store implements AutoCloseable {
+        private final Path file, temp;
+        private final Writer writer;
+        private boolean committed;
+
+        /**
+         * Constructs a store writing to a temporary file.
+         *
+         * @param file   The cache file the body is moved to once committed
+         * @param temp   The temporary file the body is written to
+         * @param writer The writer of the temporary file
+         */
+        private Store(Path file, Path temp, Writer writer) {
+            this.file = file;
+            this.temp = temp;
+            this.writer = writer;
+        }
+
+        /**
+         * Gets the writer the body is written to.
+         *
+         * @return The writer of the temporary file
+         */
+        public Writer getWriter() {
+            return writer;
+        }
+
+        /**
+         * Moves the body written so far over the cache file.
+         *
+         * @throws IOException If the body cannot be written or moved
+         */
+        public void commit() throws IOException {
+            writer.close();
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            committed = true;
+        }
+
+        /**
+         * Closes the store, deleting the temporary file if the body was not committed.
+         *
+         * @throws IOException If the temporary file cannot be deleted
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.close();
+            } finally {
+                if (!committed) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the cache file of a request. The file is named after the request's path and query, so the
+     * same request made against a different server shares the same file.
+     *
+     * @param url The request URL
+     * @return The path of the cache file
+     */
+    Path fileFor(String url) {
+        return directory.resolve(keyFor(url) + ".json");
+    }
+
+    /**
+     * Finds the lock file of a request, kept apart from the responses under .locks. Lock files are
+     * left in place once made, since removing one could let two processes lock different files for
+     * the same request.
+     *
+     * @param url The request URL
+     * @return The path of the lock file
+     */
+    Path lockFileFor(String url) {
+        return directory.resolve(LOCK_DIRECTORY).resolve(keyFor(url) + ".lock");
+    }
+
+    /**
+     * Turns the path and query of a request into a file name.
+     *
+     * @param url The request URL
+     * @return The name, without an extension
+     */
+    private static String keyFor(String url) {
+        URI uri = URI.create(url);
+        String key = uri.getRawPath() + (uri.getRawQuery() == null ? "" : "_" + uri.getRawQuery());
+        return key.replaceAll("^/+", "").replaceAll("[^A-Za-z0-9=._-]", "_");
+    }
+}
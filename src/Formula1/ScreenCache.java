@@ -0,0 +1,113 @@
+package Formula1;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This ScreenCache class keeps fully built screens so that returning to one does not rebuild it. The
+ * cache is bounded by an estimate of the memory its screens use: when adding a screen takes the total
+ * over the budget, the least recently shown screens are evicted first.
+ *
+ * @param <K> The type of key identifying a screen, such as a race's session key
+ * @param <V> The type of screen kept
+ */
+public class ScreenCache<K, V> {
+    private final long budgetBytes;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    /**
+     * A cached screen and its estimated size.
+     *
+     * @param screen The cached screen
+     * @param bytes  The estimated memory footprint of the screen in bytes
+     */
+    private record Entry<V>(V screen, long bytes) {
+    }
+
+    /**
+     * Constructs an empty screen cache.
+     *
+     * @param budgetBytes The most memory, in estimated bytes, the cached screens may use together
+     */
+    public ScreenCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Computes a default budget of an eighth of the heap, capped at 64 MB.
+     *
+     * @return The default budget in bytes
+     */
+    public static long defaultBudget() {
+        return Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * Gets a cached screen and marks it as the most recently used.
+     *
+     * @param key The key of the screen
+     * @return The cached screen, or null if it is not cached
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.screen();
+    }
+
+    /**
+     * Adds a screen to the cache, evicting the least recently used screens until the cache fits in its
+     * budget. A screen bigger than the whole budget is not cached.
+     *
+     * @param key    The key of the screen
+     * @param screen The screen to cache
+     * @param bytes  The estimated memory footprint of the screen in bytes
+     */
+    public void put(K key, V screen, long bytes) {
+        Entry<V> old = entries.remove(key);
+        if (old != null) {
+            usedBytes -= old.bytes();
+        }
+        if (bytes > budgetBytes) {
+            return;
+        }
+        entries.put(key, new Entry<>(screen, bytes));
+        usedBytes += bytes;
+
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes a screen from the cache, such as one that is out of date.
+     *
+     * @param key The key of the screen
+     */
+    public void remove(K key) {
+        Entry<V> old = entries.remove(key);
+        if (old != null) {
+            usedBytes -= old.bytes();
+        }
+    }
+
+    /**
+     * Gets the number of cached screens.
+     *
+     * @return The number of screens
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the estimated memory used by the cached screens.
+     *
+     * @return The estimated footprint in bytes
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+}
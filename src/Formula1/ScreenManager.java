@@ -1,8 +1,12 @@
 package Formula1;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.awt.Color;
 
 import edu.macalester.graphics.CanvasWindow;
@@ -17,7 +21,7 @@ public class ScreenManager {
     private ScreenNode head, tail;
     private ScreenNode current;
 
-    private API openf1;
+    private DataSource data;
 
     private Button nextButton;
     private Button prevButton;
@@ -26,12 +30,22 @@ public class ScreenManager {
     private Button backtoMenu;
 
     private Button dataButton;
+    private Button overlayButton;
+
+    private final CountDownLatch firstRace = new CountDownLatch(1);
+    private volatile boolean seasonLoaded;
+
+    private SeasonOverlay overlay;
+    private ScreenCache<Integer, DataVisualizer> chartCache = new ScreenCache<>(ScreenCache.defaultBudget());
 
     /**
      * Constructs a screen manager for managing and displaying screens representing F1 race data for a
      * specific season. Initializes a linked structure for navigating through race data and sets up the
      * data retrieval machanism.
      * 
+     * Returns as soon as the first race of the season has been decoded, so its screen can be displayed
+     * right away; the rest of the races keep being added in the background.
+     * 
      * @param year The year of the F1 season for which race data will be displayed
      * @param menu The menu instance for navigating back to the main menu
      */
@@ -41,8 +55,13 @@ public class ScreenManager {
         head.setNext(tail);
         tail.setPrev(head);
 
-        openf1 = new API();
+        data = menu.getDataSource();
         initializeRaces(year);
+        try {
+            firstRace.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -50,7 +69,7 @@ public class ScreenManager {
      * 
      * @param canvas The canvas to render the next screen
      */
-    public void next(CanvasWindow canvas) {
+    public synchronized void next(CanvasWindow canvas) {
         if (current != null && current.getNext() != tail) {
             current = current.getNext();
             display(canvas);
@@ -62,7 +81,7 @@ public class ScreenManager {
      * 
      * @param canvas The canvas to render the previous screen
      */
-    public void previous(CanvasWindow canvas) {
+    public synchronized void previous(CanvasWindow canvas) {
         if (current != null && current.getPrev() != head) {
             current = current.getPrev();
             display(canvas);
@@ -76,41 +95,90 @@ public class ScreenManager {
      */
     public void display(CanvasWindow canvas) {
         if (current != null) {
+            DataVisualizer.deactivate();
+            RaceReplay.deactivate();
+            SeasonOverlay.deactivate();
             canvas.removeAll();
             current.display(canvas);
-            addButtons(canvas);
+            if (nextButton == null) {
+                createButtons(canvas);
+            }
+            canvas.add(nextButton);
+            canvas.add(prevButton);
+            canvas.add(backtoMenu);
+            canvas.add(dataButton);
+            canvas.add(overlayButton);
         }
     }
 
     /**
-     * Initializes the screens with race data for the specified season.
+     * Starts loading the screens of the specified season in the background. A screen is added as soon
+     * as its race is decoded, and the first one releases the constructor.
      * 
      * @param year The year of the season to initialize
      */
     private void initializeRaces(int year) {
-        List<Race> raceList = openf1.getSeasonRaces(year);
-
-        for (int i = 0; i < raceList.size(); i++) {
-            ScreenNode node = new ScreenNode(
-                raceList.get(i),
-                raceList.get(i).getCircuitName(),
-                formatDate(raceList.get(i).getDate()),
-                year);
-            node.setBackgroundColor(Color.LIGHT_GRAY);
-
-            if (head.getNext() == tail) {
-                head.setNext(node);
-                tail.setPrev(node);
-                node.setNext(tail);
-                node.setPrev(head);
-            } else {
-                tail.getPrev().setNext(node);
-                node.setPrev(tail.getPrev());
-                tail.setPrev(node);
-                node.setNext(tail);
+        Thread loader = new Thread(() -> {
+            try {
+                data.streamSeasonRaces(year, race -> addRace(race, year));
+            } finally {
+                seasonLoaded = true;
+                firstRace.countDown();
             }
+        }, "season-" + year + "-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Adds the screen of a race to the end of the sequence.
+     * 
+     * @param race The race to add
+     * @param year The year of the season
+     */
+    private synchronized void addRace(Race race, int year) {
+        ScreenNode node = new ScreenNode(
+            race,
+            race.getCircuitName(),
+            formatDate(race.getDate()),
+            year);
+        node.setBackgroundColor(Color.LIGHT_GRAY);
+
+        if (head.getNext() == tail) {
+            head.setNext(node);
+            tail.setPrev(node);
+            node.setNext(tail);
+            node.setPrev(head);
+            current = node;
+            firstRace.countDown();
+        } else {
+            tail.getPrev().setNext(node);
+            node.setPrev(tail.getPrev());
+            tail.setPrev(node);
+            node.setNext(tail);
         }
-        current = head.getNext();
+    }
+
+    /**
+     * Checks if every race of the season has been added, or loading has stopped.
+     * 
+     * @return true if the season is done loading
+     */
+    public boolean isSeasonLoaded() {
+        return seasonLoaded;
+    }
+
+    /**
+     * Collects the races of every screen, in season order.
+     * 
+     * @return The races of the season
+     */
+    public synchronized List<Race> getRaces() {
+        List<Race> races = new ArrayList<>();
+        for (ScreenNode node = head.getNext(); node != null && node != tail; node = node.getNext()) {
+            races.add(node.getRace());
+        }
+        return races;
     }
 
     /**
@@ -127,11 +195,66 @@ public class ScreenManager {
     }
 
     /**
-     * Adds navigation and interaction buttons to the canvas.
+     * Displays the chart of a race. A chart that was built before and is still in the screen cache is
+     * shown again as it was; otherwise the race data is loaded from its season snapshot or fetched,
+     * and a new chart is built and cached. A race that may still be going on is followed live, and
+     * once it is over its live chart is replaced by one of the full race, with its stints and
+     * positions. The chart of a race that is not over and cannot be followed is not cached, so it is
+     * fetched again the next time.
+     * 
+     * @param canvas The canvas where the chart will be displayed
+     * @param race   The race to chart
+     */
+    public void showData(CanvasWindow canvas, Race race) {
+        Integer seshKey = race.getSessionKey();
+        Instant now = Instant.now();
+        DataVisualizer chart = chartCache.get(seshKey);
+        if (chart != null && chart.isFollowingLive() && !LiveSession.isLive(race, now)) {
+            chartCache.remove(seshKey);
+            chart = null;
+        }
+        if (chart != null) {
+            chart.show();
+            return;
+        }
+        if (LiveSession.isLive(race, now)) {
+            LiveSession live = data.openLiveSession(race);
+            try {
+                chart = new DataVisualizer(canvas, this, menu, race, live.start(), live);
+                chartCache.put(seshKey, chart, chart.estimateFootprint());
+                return;
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in showData, loading the race as it is so far");
+            }
+            RaceData soFar;
+            try {
+                soFar = live.fetchSoFar();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in showData");
+                soFar = new RaceData(List.of(), List.of());
+            }
+            new DataVisualizer(canvas, this, menu, race, soFar);
+            return;
+        }
+        String source = data.hasSnapshot(race) ? "snapshot" : "live";
+        RaceData info = data.fetchRaceData(race);
+        chart = new DataVisualizer(canvas, this, menu, race, info);
+        chart.loadPositions(data);
+        if (LiveSession.isOver(race, now)) {
+            chartCache.put(seshKey, chart, chart.estimateFootprint());
+        }
+        Main.recordFirstChart(source);
+    }
+
+    /**
+     * Creates the navigation and interaction buttons once; they are added to the canvas each time a
+     * screen is displayed.
      * 
-     * @param canvas The canvas to which the buttons will be added
+     * @param canvas The canvas on which the buttons will be shown
      */
-    private void addButtons(CanvasWindow canvas) {
+    private void createButtons(CanvasWindow canvas) {
         nextButton = new Button("→");
         nextButton.setCenter(canvas.getWidth() - 100, canvas.getHeight() - 350);
         nextButton.onClick(() -> next(canvas));
@@ -149,15 +272,28 @@ public class ScreenManager {
         dataButton = new Button("Data");
         dataButton.setCenter(canvas.getWidth() / 2, canvas.getHeight() - 100);
 
-        dataButton.onClick(() -> {
-            Integer seshKey = current.getRace().getSessionKey();
-            RaceData info = new RaceData(openf1.fetchDriverInfo(seshKey), openf1.fetchPitInfo(seshKey));
-            DataVisualizer dataGraph = new DataVisualizer(canvas, this, menu, current.getRace(), info);
-        });
+        dataButton.onClick(() -> showData(canvas, current.getRace()));
+
+        overlayButton = new Button("Season Overlay");
+        overlayButton.setCenter(canvas.getWidth() / 2, canvas.getHeight() - 60);
+        overlayButton.onClick(() -> showOverlay(canvas));
+    }
 
-        canvas.add(nextButton);
-        canvas.add(prevButton);
-        canvas.add(backtoMenu);
-        canvas.add(dataButton);
+    /**
+     * Displays the season overlay, keeping it to show again as it was left. An overlay opened before
+     * every race of the season had been listed is built again with all of them.
+     * 
+     * @param canvas The canvas where the overlay will be displayed
+     */
+    private void showOverlay(CanvasWindow canvas) {
+        List<Race> races = getRaces();
+        if (overlay != null && overlay.getRaceCount() == races.size()) {
+            overlay.show();
+            return;
+        }
+        if (overlay != null) {
+            overlay.stop();
+        }
+        overlay = new SeasonOverlay(canvas, this, menu, races, data);
     }
 }
@@ -18,6 +18,7 @@ public class ScreenNode {
     private Integer year;
     private Race race;
     private Color bgColor;
+    private double laidOutWidth, laidOutHeight;
 
     /**
      * Constructs a screen node with details about a specific race.
@@ -123,7 +124,8 @@ public class ScreenNode {
     }
 
     /**
-     * Displays the visual representation of the node on the canvas like the race name, year, and date
+     * Displays the visual representation of the node on the canvas like the race name, year, and date.
+     * The texts are only centered again if the canvas size changed since they were last shown.
      * 
      * @param canvas The canvas on which to display the node's visuals
      */
@@ -131,9 +133,13 @@ public class ScreenNode {
         canvas.removeAll();
         canvas.setBackground(bgColor);
 
-        nameText.setCenter(canvas.getWidth() / 2, canvas.getHeight() / 2 - 50);
-        yearText.setCenter(canvas.getWidth() / 2, canvas.getHeight() / 2);
-        dateText.setCenter(canvas.getWidth() / 2, canvas.getHeight() / 2 + 50);
+        if (canvas.getWidth() != laidOutWidth || canvas.getHeight() != laidOutHeight) {
+            nameText.setCenter(canvas.getWidth() / 2, canvas.getHeight() / 2 - 50);
+            yearText.setCenter(canvas.getWidth() / 2, canvas.getHeight() / 2);
+            dateText.setCenter(canvas.getWidth() / 2, canvas.getHeight() / 2 + 50);
+            laidOutWidth = canvas.getWidth();
+            laidOutHeight = canvas.getHeight();
+        }
 
         canvas.add(nameText);
         canvas.add(yearText);
@@ -0,0 +1,203 @@
+package Formula1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * This SeasonAnalytics class summarizes the pit stops of a whole season: how many stops each team
+ * made and how long they took, the median and fastest stop of every race, and how often each tyre
+ * compound was fitted and how long it lasted.
+ *
+ * Stops longer than a minute are almost always red flag stoppages rather than real pit stops, so they
+ * are counted but left out of the duration figures, the same cut-off the season overlay draws at.
+ */
+public class SeasonAnalytics {
+    public static final double MAX_PIT_SECONDS = 60;
+
+    private final int year;
+    private final List<TeamStats> teams = new ArrayList<>();
+    private final List<RaceStats> races = new ArrayList<>();
+    private final List<CompoundStats> compounds = new ArrayList<>();
+    private int totalStops;
+    private double medianDuration;
+
+    /**
+     * The pit stops of one team over the season.
+     *
+     * @param team           The name of the team
+     * @param stops          The number of stops, including long ones
+     * @param meanDuration   The mean duration of the stops in seconds
+     * @param medianDuration The median duration of the stops in seconds
+     * @param bestDuration   The shortest stop in seconds
+     */
+    public record TeamStats(String team, int stops, double meanDuration, double medianDuration,
+        double bestDuration) {
+    }
+
+    /**
+     * The pit stops of one race.
+     *
+     * @param race           The race
+     * @param stops          The number of stops, including long ones
+     * @param medianDuration The median duration of the stops in seconds, or 0 if there were none
+     * @param fastest        The shortest stop, or null if there were none
+     * @param fastestDriver  The driver who made the shortest stop, or null if there were none
+     */
+    public record RaceStats(Race race, int stops, double medianDuration, Pitstop fastest, Driver fastestDriver) {
+    }
+
+    /**
+     * The tyres of one compound fitted at pit stops over the season.
+     *
+     * @param compound       The tyre compound
+     * @param fitted         The number of stops the compound was fitted at
+     * @param meanStintLaps  The mean number of laps the stints on it lasted
+     * @param usedShare      The share of those stops fitting tyres that had already been driven on
+     */
+    public record CompoundStats(String compound, int fitted, double meanStintLaps, double usedShare) {
+    }
+
+    /**
+     * Computes the analytics of a season.
+     *
+     * @param year     The year of the season
+     * @param races    The races of the season, in season order
+     * @param raceData The race data of each race, in the same order
+     */
+    public SeasonAnalytics(int year, List<Race> races, List<RaceData> raceData) {
+        this.year = year;
+        Map<String, List<Double>> teamDurations = new HashMap<>();
+        Map<String, Integer> teamStops = new HashMap<>();
+        Map<String, List<Stint>> compoundStints = new HashMap<>();
+        List<Double> allDurations = new ArrayList<>();
+
+        for (int r = 0; r < races.size(); r++) {
+            RaceData data = raceData.get(r);
+            List<Double> raceDurations = new ArrayList<>();
+            Pitstop fastest = null;
+            int stops = 0;
+            for (Map.Entry<Integer, PriorityQueue<Pitstop>> entry : data.getDriversPitstops().entrySet()) {
+                Driver driver = data.getDrivers().get(entry.getKey());
+                String team = driver == null ? "Unknown" : driver.getTeamName();
+                for (Pitstop pitstop : entry.getValue()) {
+                    stops++;
+                    teamStops.merge(team, 1, Integer::sum);
+                    if (pitstop.getCompound() != null) {
+                        compoundStints.computeIfAbsent(pitstop.getCompound(), key -> new ArrayList<>())
+                            .add(pitstop.getOutgoingStint());
+                    }
+                    double duration = pitstop.getpitDuration();
+                    if (duration <= 0 || duration > MAX_PIT_SECONDS) {
+                        continue;
+                    }
+                    raceDurations.add(duration);
+                    teamDurations.computeIfAbsent(team, key -> new ArrayList<>()).add(duration);
+                    if (fastest == null || duration < fastest.getpitDuration()) {
+                        fastest = pitstop;
+                    }
+                }
+            }
+            totalStops += stops;
+            allDurations.addAll(raceDurations);
+            Driver fastestDriver = fastest == null ? null : data.getDrivers().get(fastest.getDriversID());
+            this.races.add(new RaceStats(races.get(r), stops, median(raceDurations), fastest, fastestDriver));
+        }
+
+        for (Map.Entry<String, Integer> entry : teamStops.entrySet()) {
+            List<Double> durations = teamDurations.getOrDefault(entry.getKey(), List.of());
+            double mean = durations.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            double best = durations.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+            teams.add(new TeamStats(entry.getKey(), entry.getValue(), mean, median(durations), best));
+        }
+        // Teams without a timed stop go last
+        teams.sort(Comparator.comparingDouble((TeamStats team) -> team.medianDuration() == 0 ? Double.MAX_VALUE
+            : team.medianDuration()).thenComparing(TeamStats::team));
+        medianDuration = median(allDurations);
+
+        for (Map.Entry<String, List<Stint>> entry : compoundStints.entrySet()) {
+            List<Stint> stints = entry.getValue();
+            double meanLaps = stints.stream().mapToInt(Stint::getLapCount).average().orElse(0);
+            long used = stints.stream().filter(stint -> stint.getTyreAgeAtStart() > 0).count();
+            compounds.add(new CompoundStats(entry.getKey(), stints.size(), meanLaps, used / (double) stints.size()));
+        }
+        // Most fitted first
+        compounds.sort(Comparator.comparingInt(CompoundStats::fitted).reversed()
+            .thenComparing(CompoundStats::compound));
+    }
+
+    /**
+     * Gets the year of the season.
+     *
+     * @return The year
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Gets the pit stops of each team, fastest median first.
+     *
+     * @return The team statistics
+     */
+    public List<TeamStats> getTeams() {
+        return teams;
+    }
+
+    /**
+     * Gets the pit stops of each race, in season order.
+     *
+     * @return The race statistics
+     */
+    public List<RaceStats> getRaces() {
+        return races;
+    }
+
+    /**
+     * Gets the tyres fitted at pit stops, by compound, most fitted first. Stops whose outgoing stint is
+     * not known are left out.
+     *
+     * @return The compound statistics
+     */
+    public List<CompoundStats> getCompounds() {
+        return compounds;
+    }
+
+    /**
+     * Gets the number of pit stops in the season, including long ones.
+     *
+     * @return The number of stops
+     */
+    public int getTotalStops() {
+        return totalStops;
+    }
+
+    /**
+     * Gets the median duration of every timed stop in the season.
+     *
+     * @return The median in seconds, or 0 if there were none
+     */
+    public double getMedianDuration() {
+        return medianDuration;
+    }
+
+    /**
+     * Finds the median of some durations.
+     *
+     * @param durations The durations in seconds
+     * @return The median, or 0 if there are none
+     */
+    private static double median(List<Double> durations) {
+        if (durations.isEmpty()) {
+            return 0;
+        }
+        double[] sorted = durations.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
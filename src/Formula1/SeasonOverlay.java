@@ -0,0 +1,464 @@
+package Formula1;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import edu.macalester.graphics.CanvasWindow;
+import edu.macalester.graphics.GraphicsGroup;
+import edu.macalester.graphics.GraphicsText;
+import edu.macalester.graphics.Line;
+import edu.macalester.graphics.Rectangle;
+import edu.macalester.graphics.ui.Button;
+
+/**
+ * This SeasonOverlay class compares one team's pit stops, or every team's, across every race of a
+ * season on a single chart. Races are normalised to race progress, so a stop halfway through a race
+ * is drawn at 50% whatever the race length, and the y-axis shows the stop duration.
+ *
+ * Zoomed out, the stops are binned per pixel column by an OverlayLod and each column is drawn as a
+ * line from its shortest to its longest stop with a mark at the mean. Zoomed in, every stop is drawn
+ * and colored by race. The graphics are pooled and reused between redraws, so zooming, panning, and
+ * switching teams only move existing objects.
+ *
+ * The races are loaded on a background thread, so the overlay is up at once and fills in race by
+ * race: each loaded race is merged in on the animation thread and the team shown is drawn again. An
+ * overlay is kept by its ScreenManager and shown again as it was left.
+ */
+public class SeasonOverlay {
+    private static final double LEFT = 110, TOP = 110;
+    private static final double MAX_ZOOM = 64, MAX_DURATION = 60;
+    private static final String ALL_TEAMS = "All Teams";
+
+    private static SeasonOverlay active;
+    private static CanvasWindow animatedCanvas;
+
+    private CanvasWindow canvas;
+    private ScreenManager manager;
+    private Main menu;
+
+    private List<Race> races;
+    private Map<String, List<double[]>> teamStops = new TreeMap<>();
+    private Map<String, Color> teamColors = new TreeMap<>();
+    private List<String> teams = new ArrayList<>();
+    private Color[] raceColors;
+
+    private final Queue<Loaded> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean stopped;
+    private int racesLoaded;
+    private boolean loading = true;
+
+    private int teamIndex;
+    private OverlayLod lod;
+    private double zoom = 1, viewCenter = 50;
+    private double right, bottom;
+
+    private GraphicsGroup plotGroup;
+    private List<Rectangle> pointPool = new ArrayList<>();
+    private List<Line> rangePool = new ArrayList<>();
+    private int shownPoints, shownRanges;
+    private GraphicsText teamText, detailText, statusText;
+    private GraphicsText[] tickLabels = new GraphicsText[5];
+
+    /**
+     * The pit stops of one loaded race, grouped by team as (race progress, duration, race index)
+     * entries.
+     *
+     * @param stops  The stops of each team, and of all teams together
+     * @param colors The color of each team
+     */
+    private record Loaded(Map<String, List<double[]>> stops, Map<String, Color> colors) {
+    }
+
+    /**
+     * Displays the overlay of a season and starts loading the pit stops of its races in the
+     * background.
+     *
+     * @param canvas  The canvas window where the overlay will be displayed
+     * @param manager The screen manager instance for navigation between screens
+     * @param menu    The menu instance to return back to the main menu
+     * @param races   The races of the season
+     * @param data    The source of the race data
+     */
+    public SeasonOverlay(CanvasWindow canvas, ScreenManager manager, Main menu, List<Race> races, DataSource data) {
+        this.canvas = canvas;
+        this.manager = manager;
+        this.menu = menu;
+        this.races = races;
+
+        raceColors = new Color[races.size()];
+        for (int i = 0; i < races.size(); i++) {
+            raceColors[i] = Color.getHSBColor((float) i / races.size(), 0.8f, 0.8f);
+        }
+        Thread loader = new Thread(() -> loadStops(data), "overlay-loader");
+        loader.setDaemon(true);
+        loader.start();
+        show();
+    }
+
+    /**
+     * Stops the overlay on screen from taking in loaded races, for when another screen is displayed.
+     * Races loaded meanwhile are taken in when it is shown again.
+     */
+    public static void deactivate() {
+        active = null;
+    }
+
+    /**
+     * Stops loading races, for an overlay that will not be shown again.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Gets the number of races the overlay covers.
+     *
+     * @return The number of races
+     */
+    public int getRaceCount() {
+        return races.size();
+    }
+
+    /**
+     * Fetches the race data of every race and hands the pit stops of each over to the animation
+     * thread, grouped by team. Races that cannot be loaded are skipped. Runs on the loader thread.
+     *
+     * @param data The source of the race data
+     */
+    private void loadStops(DataSource data) {
+        for (int r = 0; r < races.size() && !stopped; r++) {
+            Race race = races.get(r);
+            RaceData raceData;
+            try {
+                raceData = data.fetchRaceData(race);
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in SeasonOverlay.loadStops");
+                pending.add(new Loaded(Map.of(), Map.of()));
+                continue;
+            }
+
+            Map<String, List<double[]>> stops = new TreeMap<>();
+            Map<String, Color> colors = new TreeMap<>();
+            long raceDuration = raceData.getDrivers().values().stream()
+                .mapToLong(driver -> driver.getRaceFinishTime(race))
+                .max()
+                .orElse(0);
+            for (Driver driver : raceData.getDrivers().values()) {
+                PriorityQueue<Pitstop> pitstops = raceData.getDriversPitstops().get(driver.getDriverNumber());
+                if (pitstops == null || raceDuration <= 0) {
+                    continue;
+                }
+                colors.putIfAbsent(driver.getTeamName(), driver.getDriverColor());
+                colors.putIfAbsent(ALL_TEAMS, Color.DARK_GRAY);
+                List<double[]> teamList = stops.computeIfAbsent(driver.getTeamName(), team -> new ArrayList<>());
+                List<double[]> allStops = stops.computeIfAbsent(ALL_TEAMS, team -> new ArrayList<>());
+                for (Pitstop pitstop : pitstops) {
+                    double progress = 100.0 * pitstop.getStartOffset(race) / raceDuration;
+                    double[] stop = {progress, pitstop.getpitDuration(), r};
+                    teamList.add(stop);
+                    allStops.add(stop);
+                }
+            }
+            pending.add(new Loaded(stops, colors));
+        }
+    }
+
+    /**
+     * Merges the races loaded since the last frame into the overlay and draws the team shown again,
+     * keeping its zoom. Runs on the animation thread.
+     */
+    private void takeLoaded() {
+        Loaded loaded = pending.poll();
+        if (loaded == null) {
+            return;
+        }
+        String shownTeam = teams.isEmpty() ? null : teams.get(teamIndex);
+        for (; loaded != null; loaded = pending.poll()) {
+            racesLoaded++;
+            for (Map.Entry<String, List<double[]>> entry : loaded.stops().entrySet()) {
+                teamStops.computeIfAbsent(entry.getKey(), team -> new ArrayList<>()).addAll(entry.getValue());
+            }
+            for (Map.Entry<String, Color> entry : loaded.colors().entrySet()) {
+                teamColors.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        loading = racesLoaded < races.size();
+        teams = new ArrayList<>(teamStops.keySet());
+        updateStatus();
+        if (teams.isEmpty()) {
+            return;
+        }
+        if (shownTeam == null) {
+            showTeam(0);
+        } else {
+            teamIndex = teams.indexOf(shownTeam);
+            rebuildLod();
+            render();
+        }
+    }
+
+    /**
+     * Draws the axes and controls and shows the team that was shown when the overlay was left, or the
+     * first team.
+     */
+    public void show() {
+        DataVisualizer.deactivate();
+        RaceReplay.deactivate();
+        canvas.removeAll();
+        right = canvas.getWidth() - 60;
+        bottom = canvas.getHeight() - 120;
+
+        Line xAxis = new Line(LEFT, bottom, right, bottom);
+        canvas.add(xAxis);
+        Line yAxis = new Line(LEFT, bottom, LEFT, TOP);
+        canvas.add(yAxis);
+        for (int seconds = 0; seconds <= MAX_DURATION; seconds += 10) {
+            GraphicsText label = new GraphicsText(String.valueOf(seconds));
+            label.setCenter(LEFT - 20, durationToY(seconds));
+            canvas.add(label);
+        }
+        for (int i = 0; i < tickLabels.length; i++) {
+            tickLabels[i] = new GraphicsText("");
+            canvas.add(tickLabels[i]);
+        }
+
+        GraphicsText xAxisLabel = new GraphicsText("Race Progress (%)");
+        xAxisLabel.setCenter((LEFT + right) / 2, bottom + 45);
+        canvas.add(xAxisLabel);
+        GraphicsText yAxisLabel = new GraphicsText("Pit Stop Duration (seconds)");
+        yAxisLabel.setCenter(LEFT + 40, TOP - 20);
+        canvas.add(yAxisLabel);
+
+        teamText = new GraphicsText("");
+        teamText.setFontSize(18);
+        canvas.add(teamText);
+        detailText = new GraphicsText("");
+        detailText.setPosition(right - 260, TOP - 15);
+        canvas.add(detailText);
+        statusText = new GraphicsText("");
+        statusText.setFontSize(16);
+        canvas.add(statusText);
+
+        // The pooled graphics were in the old plot group, so they are added to the new one as needed
+        plotGroup = new GraphicsGroup();
+        shownPoints = 0;
+        shownRanges = 0;
+        canvas.add(plotGroup);
+        addButtons();
+        updateStatus();
+        if (!teams.isEmpty()) {
+            rebuildLod();
+            render();
+        }
+
+        active = this;
+        if (animatedCanvas != canvas) {
+            animatedCanvas = canvas;
+            canvas.animate(() -> {
+                if (active != null) {
+                    active.takeLoaded();
+                }
+            });
+        }
+    }
+
+    /**
+     * Shows how many races are loaded while the season is loading, and the team shown once it has
+     * stops.
+     */
+    private void updateStatus() {
+        if (loading) {
+            statusText.setText("Loading races... " + racesLoaded + " of " + races.size());
+        } else {
+            statusText.setText(teams.isEmpty() ? "Not enough data to be displayed. Try another season." : "");
+        }
+        statusText.setCenter(canvas.getWidth() / 2, teams.isEmpty() ? canvas.getHeight() / 2 : TOP - 40);
+        if (!teams.isEmpty()) {
+            String team = teams.get(teamIndex);
+            teamText.setText(team + " - " + teamStops.get(team).size() + " stops in " + racesLoaded + " races");
+            teamText.setCenter(canvas.getWidth() / 2, 75);
+        }
+    }
+
+    /**
+     * Switches the overlay to a team and resets the zoom.
+     *
+     * @param index The index of the team, wrapping around at either end
+     */
+    private void showTeam(int index) {
+        if (teams.isEmpty()) {
+            return;
+        }
+        teamIndex = Math.floorMod(index, teams.size());
+        updateStatus();
+        rebuildLod();
+        zoom = 1;
+        viewCenter = 50;
+        render();
+    }
+
+    /**
+     * Bins the stops of the team shown for drawing.
+     */
+    private void rebuildLod() {
+        List<double[]> stops = teamStops.get(teams.get(teamIndex));
+        double[] xs = new double[stops.size()];
+        double[] ys = new double[stops.size()];
+        int[] series = new int[stops.size()];
+        for (int i = 0; i < stops.size(); i++) {
+            xs[i] = stops.get(i)[0];
+            ys[i] = stops.get(i)[1];
+            series[i] = (int) stops.get(i)[2];
+        }
+        lod = new OverlayLod(xs, ys, series);
+    }
+
+    /**
+     * Changes the zoom level around the center of the view.
+     *
+     * @param factor The factor to multiply the zoom by
+     */
+    private void zoomBy(double factor) {
+        zoom = Math.max(1, Math.min(MAX_ZOOM, zoom * factor));
+        if (lod != null) {
+            render();
+        }
+    }
+
+    /**
+     * Moves the view by a fraction of its width.
+     *
+     * @param fraction The fraction of the visible range to move, negative to move left
+     */
+    private void pan(double fraction) {
+        viewCenter += fraction * 100 / zoom;
+        if (lod != null) {
+            render();
+        }
+    }
+
+    /**
+     * Redraws the visible part of the overlay at the current zoom level, reusing pooled graphics.
+     */
+    private void render() {
+        double halfRange = 50 / zoom;
+        viewCenter = Math.max(halfRange, Math.min(100 - halfRange, viewCenter));
+        double viewMin = viewCenter - halfRange, viewMax = viewCenter + halfRange;
+        int columns = (int) (right - LEFT);
+
+        OverlayLod.Reduction reduction = lod.reduce(viewMin, viewMax, columns, 0.25);
+        Color teamColor = teamColors.get(teams.get(teamIndex));
+        int points = 0, ranges = 0;
+        for (int i = 0; i < reduction.count(); i++) {
+            double x = LEFT + (reduction.xs()[i] - viewMin) / (viewMax - viewMin) * (right - LEFT);
+            if (!reduction.detailed() && reduction.sizes()[i] > 1) {
+                Line range = rangeAt(ranges++);
+                range.setStartPosition(x, durationToY(reduction.mins()[i]));
+                range.setEndPosition(x, durationToY(reduction.maxes()[i]));
+                range.setStrokeColor(teamColor);
+            }
+            Rectangle point = pointAt(points++);
+            point.setPosition(x - 3, durationToY(reduction.ys()[i]) - 3);
+            point.setFillColor(reduction.detailed() ? raceColors[reduction.series()[i]] : teamColor);
+        }
+        for (int i = points; i < shownPoints; i++) {
+            plotGroup.remove(pointPool.get(i));
+        }
+        for (int i = ranges; i < shownRanges; i++) {
+            plotGroup.remove(rangePool.get(i));
+        }
+        shownPoints = points;
+        shownRanges = ranges;
+
+        for (int i = 0; i < tickLabels.length; i++) {
+            double value = viewMin + i * (viewMax - viewMin) / (tickLabels.length - 1);
+            tickLabels[i].setText(String.format("%.1f", value));
+            tickLabels[i].setCenter(LEFT + i * (right - LEFT) / (tickLabels.length - 1), bottom + 20);
+        }
+        detailText.setText(String.format("Zoom x%.0f - %s", zoom,
+            reduction.detailed() ? "every stop" : reduction.count() + " columns of " + lod.size() + " stops"));
+    }
+
+    /**
+     * Gets a pooled point, adding it to the plot if it is not shown yet.
+     *
+     * @param index The position of the point in the pool
+     * @return The point
+     */
+    private Rectangle pointAt(int index) {
+        if (index == pointPool.size()) {
+            pointPool.add(new Rectangle(0, 0, 6, 6));
+        }
+        if (index >= shownPoints) {
+            plotGroup.add(pointPool.get(index));
+        }
+        return pointPool.get(index);
+    }
+
+    /**
+     * Gets a pooled range line, adding it to the plot if it is not shown yet.
+     *
+     * @param index The position of the line in the pool
+     * @return The line
+     */
+    private Line rangeAt(int index) {
+        if (index == rangePool.size()) {
+            rangePool.add(new Line(0, 0, 0, 0));
+        }
+        if (index >= shownRanges) {
+            plotGroup.add(rangePool.get(index));
+        }
+        return rangePool.get(index);
+    }
+
+    /**
+     * Converts a pit stop duration to a y-coordinate, clamping long stops to the top of the plot.
+     *
+     * @param duration The duration in seconds
+     * @return The y-coordinate
+     */
+    private double durationToY(double duration) {
+        return bottom - Math.min(duration, MAX_DURATION) / MAX_DURATION * (bottom - TOP);
+    }
+
+    /**
+     * Adds the zoom, pan, team, and navigation buttons to the canvas.
+     */
+    private void addButtons() {
+        double centerX = canvas.getWidth() / 2;
+        double controlsY = canvas.getHeight() - 35;
+
+        Button racesButton = new Button("Races");
+        racesButton.setCenter(centerX - 120, 25);
+        racesButton.onClick(() -> manager.display(canvas));
+        canvas.add(racesButton);
+
+        Button menuButton = new Button("Menu");
+        menuButton.setCenter(centerX + 120, 25);
+        menuButton.onClick(() -> menu.start());
+        canvas.add(menuButton);
+
+        String[] labels = {"Prev Team", "←", "Zoom -", "Zoom +", "→", "Next Team"};
+        Runnable[] actions = {
+            () -> showTeam(teamIndex - 1),
+            () -> pan(-0.5),
+            () -> zoomBy(0.5),
+            () -> zoomBy(2),
+            () -> pan(0.5),
+            () -> showTeam(teamIndex + 1)
+        };
+        for (int i = 0; i < labels.length; i++) {
+            Button button = new Button(labels[i]);
+            button.setCenter(centerX + (i - 2.5) * 110, controlsY);
+            button.onClick(actions[i]);
+            canvas.add(button);
+        }
+    }
+}
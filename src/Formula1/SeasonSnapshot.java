@@ -0,0 +1,549 @@
+package Formula1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * This SeasonSnapshot class reads and writes a compact binary file holding a whole season: its races,
+ * and the drivers and pitstops of every race, so a season can be opened without parsing any JSON.
+ *
+ * The file starts with a header of eight little-endian ints: the magic number "F1SS", the format
+ * version, the year, the numbers of races, drivers, pitstops, and strings, and the length of the
+ * string bytes. Then come fixed-width columns, one per field, holding that field for every race,
+ * driver, or pitstop in turn: the 8-byte columns first, then the 4-byte columns, then the string
+ * table of UTF-8 bytes with the offset of each string. Names, circuits, teams, and dates are stored
+ * once in the string table and referred to by index. The drivers and pitstops of race r are the rows
+ * from firstDriver[r] and firstPit[r] up to those of race r + 1. Times are microseconds since the
+ * epoch, and driver colours are RGB ints. Each pitstop row also holds the stint the driver went out
+ * on after it, with a compound index of -1 when the stint is not known.
+ *
+ * Opening a snapshot maps the file into memory and reads only the header, so it takes microseconds
+ * and allocates no object per record. Columns are read on access, and Race, Driver, and Pitstop
+ * objects are only created when asked for.
+ */
+public class SeasonSnapshot {
+    public static final int MAGIC = 0x46315353;
+    public static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+
+    private static final int RACE_START = 0, DRIVER_FINISH = 1, PIT_START = 2, PIT_DURATION = 3,
+        RACE_KEY = 4, RACE_CIRCUIT = 5, RACE_DATE = 6, RACE_FIRST_DRIVER = 7, RACE_FIRST_PIT = 8,
+        DRIVER_NAME = 9, DRIVER_NUMBER = 10, DRIVER_FINAL_LAP = 11, DRIVER_COLOUR = 12, DRIVER_TEAM = 13,
+        PIT_DRIVER = 14, PIT_LAP = 15, PIT_COMPOUND = 16, PIT_STINT_NUMBER = 17, PIT_STINT_START = 18,
+        PIT_STINT_END = 19, PIT_TYRE_AGE = 20, STRING_OFFSETS = 21, STRING_BYTES = 22, END = 23;
+
+    private final ByteBuffer buffer;
+    private final int year, raceCount, driverCount, pitCount, stringCount;
+    private final int[] columns;
+    private final String[] strings;
+
+    /**
+     * Reads the header of a snapshot held in a buffer.
+     *
+     * @param data The bytes of the snapshot
+     * @throws IOException If the bytes are not a snapshot of a supported version
+     */
+    private SeasonSnapshot(ByteBuffer data) throws IOException {
+        buffer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a season snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported season snapshot version " + version);
+        }
+        year = buffer.getInt(8);
+        raceCount = buffer.getInt(12);
+        driverCount = buffer.getInt(16);
+        pitCount = buffer.getInt(20);
+        stringCount = buffer.getInt(24);
+        columns = columnOffsets(raceCount, driverCount, pitCount, stringCount, buffer.getInt(28));
+        if (columns[END] > buffer.limit()) {
+            throw new IOException("Truncated season snapshot");
+        }
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Opens a snapshot file by mapping it into memory.
+     *
+     * @param file The snapshot file
+     * @return The opened snapshot
+     * @throws IOException If the file cannot be read or is not a snapshot
+     */
+    public static SeasonSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new SeasonSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Opens a snapshot already in memory, such as one read from the classpath.
+     *
+     * @param data The bytes of the snapshot
+     * @return The opened snapshot
+     * @throws IOException If the bytes are not a snapshot
+     */
+    public static SeasonSnapshot wrap(ByteBuffer data) throws IOException {
+        return new SeasonSnapshot(data);
+    }
+
+    /**
+     * Computes where each column starts from the numbers of rows. The 8-byte columns come first so
+     * every column is aligned to its width.
+     *
+     * @param races       The number of races
+     * @param drivers     The number of drivers over all races
+     * @param pits        The number of pitstops over all races
+     * @param strings     The number of strings
+     * @param stringBytes The total length of the strings in UTF-8
+     * @return The offset of each column, with the total size of the snapshot at END
+     */
+    private static int[] columnOffsets(int races, int drivers, int pits, int strings, int stringBytes) {
+        long[] sizes = new long[END];
+        sizes[RACE_START] = 8L * races;
+        sizes[DRIVER_FINISH] = 8L * drivers;
+        sizes[PIT_START] = 8L * pits;
+        sizes[PIT_DURATION] = 8L * pits;
+        sizes[RACE_KEY] = 4L * races;
+        sizes[RACE_CIRCUIT] = 4L * races;
+        sizes[RACE_DATE] = 4L * races;
+        sizes[RACE_FIRST_DRIVER] = 4L * (races + 1);
+        sizes[RACE_FIRST_PIT] = 4L * (races + 1);
+        sizes[DRIVER_NAME] = 4L * drivers;
+        sizes[DRIVER_NUMBER] = 4L * drivers;
+        sizes[DRIVER_FINAL_LAP] = 4L * drivers;
+        sizes[DRIVER_COLOUR] = 4L * drivers;
+        sizes[DRIVER_TEAM] = 4L * drivers;
+        sizes[PIT_DRIVER] = 4L * pits;
+        sizes[PIT_LAP] = 4L * pits;
+        sizes[PIT_COMPOUND] = 4L * pits;
+        sizes[PIT_STINT_NUMBER] = 4L * pits;
+        sizes[PIT_STINT_START] = 4L * pits;
+        sizes[PIT_STINT_END] = 4L * pits;
+        sizes[PIT_TYRE_AGE] = 4L * pits;
+        sizes[STRING_OFFSETS] = 4L * (strings + 1);
+        sizes[STRING_BYTES] = stringBytes;
+
+        int[] offsets = new int[END + 1];
+        long offset = HEADER_BYTES;
+        for (int column = 0; column < END; column++) {
+            offsets[column] = (int) offset;
+            offset += sizes[column];
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Season too large for a snapshot");
+        }
+        offsets[END] = (int) offset;
+        return offsets;
+    }
+
+    /**
+     * Gets the year of the season.
+     *
+     * @return The year
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Gets the number of races in the season.
+     *
+     * @return The number of races
+     */
+    public int getRaceCount() {
+        return raceCount;
+    }
+
+    /**
+     * Gets the size of the snapshot.
+     *
+     * @return The number of bytes
+     */
+    public int getSizeBytes() {
+        return columns[END];
+    }
+
+    /**
+     * Gets the session key of a race.
+     *
+     * @param race The index of the race in the season
+     * @return The session key
+     */
+    public int getSessionKey(int race) {
+        return buffer.getInt(columns[RACE_KEY] + 4 * race);
+    }
+
+    /**
+     * Gets the circuit name of a race.
+     *
+     * @param race The index of the race in the season
+     * @return The circuit name
+     */
+    public String getCircuitName(int race) {
+        return string(buffer.getInt(columns[RACE_CIRCUIT] + 4 * race));
+    }
+
+    /**
+     * Gets the start time of a race.
+     *
+     * @param race The index of the race in the season
+     * @return The start in microseconds since the epoch
+     */
+    public long getRaceStartMicros(int race) {
+        return buffer.getLong(columns[RACE_START] + 8 * race);
+    }
+
+    /**
+     * Gets the number of drivers of a race.
+     *
+     * @param race The index of the race in the season
+     * @return The number of drivers
+     */
+    public int getDriverCount(int race) {
+        return firstDriver(race + 1) - firstDriver(race);
+    }
+
+    /**
+     * Gets the number of pitstops of a race.
+     *
+     * @param race The index of the race in the season
+     * @return The number of pitstops
+     */
+    public int getPitstopCount(int race) {
+        return firstPit(race + 1) - firstPit(race);
+    }
+
+    /**
+     * Finds the race with a session key.
+     *
+     * @param sessionKey The session key of the race
+     * @return The index of the race in the season, or -1 if it is not in the snapshot
+     */
+    public int findRace(int sessionKey) {
+        for (int race = 0; race < raceCount; race++) {
+            if (getSessionKey(race) == sessionKey) {
+                return race;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates the Race object of a race.
+     *
+     * @param race The index of the race in the season
+     * @return The race
+     */
+    public Race getRace(int race) {
+        return new Race(
+            getSessionKey(race),
+            getCircuitName(race),
+            string(buffer.getInt(columns[RACE_DATE] + 4 * race)),
+            toInstant(getRaceStartMicros(race)));
+    }
+
+    /**
+     * Creates the Race objects of every race in the season.
+     *
+     * @return The races in season order
+     */
+    public List<Race> getRaces() {
+        List<Race> races = new ArrayList<>(raceCount);
+        for (int race = 0; race < raceCount; race++) {
+            races.add(getRace(race));
+        }
+        return races;
+    }
+
+    /**
+     * Creates the Season object of the snapshot.
+     *
+     * @return The season and its races
+     */
+    public Season getSeason() {
+        return new Season(year, getRaces());
+    }
+
+    /**
+     * Creates the drivers and pitstops of a race.
+     *
+     * @param race The index of the race in the season
+     * @return The race data
+     */
+    public RaceData getRaceData(int race) {
+        List<Driver> drivers = new ArrayList<>(getDriverCount(race));
+        DriverRegistry registry = DriverRegistry.forSeason(year);
+        for (int d = firstDriver(race); d < firstDriver(race + 1); d++) {
+            DriverRegistry.Identity identity = registry.intern(
+                buffer.getInt(columns[DRIVER_NUMBER] + 4 * d),
+                string(buffer.getInt(columns[DRIVER_NAME] + 4 * d)),
+                string(buffer.getInt(columns[DRIVER_TEAM] + 4 * d)),
+                buffer.getInt(columns[DRIVER_COLOUR] + 4 * d));
+            drivers.add(new Driver(identity, toInstant(buffer.getLong(columns[DRIVER_FINISH] + 8 * d)),
+                buffer.getInt(columns[DRIVER_FINAL_LAP] + 4 * d)));
+        }
+        List<Pitstop> pitstops = new ArrayList<>(getPitstopCount(race));
+        for (int p = firstPit(race); p < firstPit(race + 1); p++) {
+            int driverID = buffer.getInt(columns[PIT_DRIVER] + 4 * p);
+            Pitstop pitstop = new Pitstop(
+                driverID,
+                buffer.getInt(columns[PIT_LAP] + 4 * p),
+                buffer.getDouble(columns[PIT_DURATION] + 8 * p),
+                toInstant(buffer.getLong(columns[PIT_START] + 8 * p)));
+            int compound = buffer.getInt(columns[PIT_COMPOUND] + 4 * p);
+            if (compound >= 0) {
+                pitstop = pitstop.withStint(new Stint(
+                    driverID,
+                    buffer.getInt(columns[PIT_STINT_NUMBER] + 4 * p),
+                    string(compound),
+                    buffer.getInt(columns[PIT_STINT_START] + 4 * p),
+                    buffer.getInt(columns[PIT_STINT_END] + 4 * p),
+                    buffer.getInt(columns[PIT_TYRE_AGE] + 4 * p)));
+            }
+            pitstops.add(pitstop);
+        }
+        return new RaceData(drivers, pitstops);
+    }
+
+    /**
+     * Gets the first driver row of a race.
+     *
+     * @param race The index of the race, or the race count for the end of the last race
+     * @return The row of the race's first driver
+     */
+    private int firstDriver(int race) {
+        return buffer.getInt(columns[RACE_FIRST_DRIVER] + 4 * race);
+    }
+
+    /**
+     * Gets the first pitstop row of a race.
+     *
+     * @param race The index of the race, or the race count for the end of the last race
+     * @return The row of the race's first pitstop
+     */
+    private int firstPit(int race) {
+        return buffer.getInt(columns[RACE_FIRST_PIT] + 4 * race);
+    }
+
+    /**
+     * Gets a string from the string table, decoding it on first use.
+     *
+     * @param index The index of the string
+     * @return The string
+     */
+    private String string(int index) {
+        String value = strings[index];
+        if (value == null) {
+            int start = buffer.getInt(columns[STRING_OFFSETS] + 4 * index);
+            int end = buffer.getInt(columns[STRING_OFFSETS] + 4 * (index + 1));
+            byte[] bytes = new byte[end - start];
+            buffer.get(columns[STRING_BYTES] + start, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Converts microseconds since the epoch to an instant.
+     *
+     * @param micros The microseconds since the epoch
+     * @return The instant
+     */
+    private static Instant toInstant(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    /**
+     * Converts an instant to microseconds since the epoch.
+     *
+     * @param instant The instant
+     * @return The microseconds since the epoch
+     */
+    private static long toMicros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    /**
+     * Writes a season to a snapshot file. The file is written next to its destination first and then
+     * moved into place, so readers never see a partly written snapshot.
+     *
+     * @param file     The snapshot file to write
+     * @param year     The year of the season
+     * @param races    The races of the season, in season order
+     * @param raceData The race data of each race, in the same order
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path file, int year, List<Race> races, List<RaceData> raceData) throws IOException {
+        List<Driver> drivers = new ArrayList<>();
+        List<Pitstop> pitstops = new ArrayList<>();
+        int[] firstDrivers = new int[races.size() + 1];
+        int[] firstPits = new int[races.size() + 1];
+        for (int r = 0; r < races.size(); r++) {
+            RaceData data = raceData.get(r);
+            List<Driver> raceDrivers = new ArrayList<>(data.getDrivers().values());
+            raceDrivers.sort(Comparator.comparingInt(Driver::getDriverNumber));
+            drivers.addAll(raceDrivers);
+            List<Integer> pitDrivers = new ArrayList<>(data.getDriversPitstops().keySet());
+            pitDrivers.sort(null);
+            for (int driver : pitDrivers) {
+                PriorityQueue<Pitstop> queue = new PriorityQueue<>(data.getDriversPitstops().get(driver));
+                while (!queue.isEmpty()) {
+                    pitstops.add(queue.poll());
+                }
+            }
+            firstDrivers[r + 1] = drivers.size();
+            firstPits[r + 1] = pitstops.size();
+        }
+
+        StringTable table = new StringTable();
+        int[] circuits = new int[races.size()], dates = new int[races.size()];
+        for (int r = 0; r < races.size(); r++) {
+            circuits[r] = table.indexOf(races.get(r).getCircuitName());
+            dates[r] = table.indexOf(races.get(r).getDate());
+        }
+        int[] names = new int[drivers.size()], teams = new int[drivers.size()];
+        for (int d = 0; d < drivers.size(); d++) {
+            names[d] = table.indexOf(drivers.get(d).getName());
+            teams[d] = table.indexOf(drivers.get(d).getTeamName());
+        }
+        int[] compounds = new int[pitstops.size()];
+        for (int p = 0; p < pitstops.size(); p++) {
+            String compound = pitstops.get(p).getCompound();
+            compounds[p] = compound == null ? -1 : table.indexOf(compound);
+        }
+
+        int[] columns = columnOffsets(races.size(), drivers.size(), pitstops.size(), table.size(), table.byteLength());
+        ByteBuffer out = ByteBuffer.allocate(columns[END]).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, year).putInt(12, races.size())
+            .putInt(16, drivers.size()).putInt(20, pitstops.size()).putInt(24, table.size())
+            .putInt(28, table.byteLength());
+
+        for (int r = 0; r < races.size(); r++) {
+            Race race = races.get(r);
+            out.putLong(columns[RACE_START] + 8 * r, toMicros(race.getRaceStartTime()));
+            out.putInt(columns[RACE_KEY] + 4 * r, race.getSessionKey());
+            out.putInt(columns[RACE_CIRCUIT] + 4 * r, circuits[r]);
+            out.putInt(columns[RACE_DATE] + 4 * r, dates[r]);
+        }
+        for (int r = 0; r <= races.size(); r++) {
+            out.putInt(columns[RACE_FIRST_DRIVER] + 4 * r, firstDrivers[r]);
+            out.putInt(columns[RACE_FIRST_PIT] + 4 * r, firstPits[r]);
+        }
+        for (int d = 0; d < drivers.size(); d++) {
+            Driver driver = drivers.get(d);
+            out.putLong(columns[DRIVER_FINISH] + 8 * d, toMicros(driver.getFinishTime()));
+            out.putInt(columns[DRIVER_NAME] + 4 * d, names[d]);
+            out.putInt(columns[DRIVER_NUMBER] + 4 * d, driver.getDriverNumber());
+            out.putInt(columns[DRIVER_FINAL_LAP] + 4 * d, driver.getFinalLap());
+            out.putInt(columns[DRIVER_COLOUR] + 4 * d, driver.getDriverColor().getRGB() & 0xFFFFFF);
+            out.putInt(columns[DRIVER_TEAM] + 4 * d, teams[d]);
+        }
+        for (int p = 0; p < pitstops.size(); p++) {
+            Pitstop pitstop = pitstops.get(p);
+            out.putLong(columns[PIT_START] + 8 * p, toMicros(pitstop.getstartPitTime()));
+            out.putDouble(columns[PIT_DURATION] + 8 * p, pitstop.getpitDuration());
+            out.putInt(columns[PIT_DRIVER] + 4 * p, pitstop.getDriversID());
+            out.putInt(columns[PIT_LAP] + 4 * p, pitstop.getLapNum());
+            out.putInt(columns[PIT_COMPOUND] + 4 * p, compounds[p]);
+            Stint stint = pitstop.getOutgoingStint();
+            if (stint != null && compounds[p] >= 0) {
+                out.putInt(columns[PIT_STINT_NUMBER] + 4 * p, stint.getStintNumber());
+                out.putInt(columns[PIT_STINT_START] + 4 * p, stint.getLapStart());
+                out.putInt(columns[PIT_STINT_END] + 4 * p, stint.getLapEnd());
+                out.putInt(columns[PIT_TYRE_AGE] + 4 * p, stint.getTyreAgeAtStart());
+            }
+        }
+        table.write(out, columns[STRING_OFFSETS], columns[STRING_BYTES]);
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, out.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * The strings of a snapshot being written, each stored once.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int byteLength;
+
+        /**
+         * Gets the index of a string, adding it to the table if it is new.
+         *
+         * @param value The string, with null stored as an empty string
+         * @return The index of the string
+         */
+        int indexOf(String value) {
+            String key = value == null ? "" : value;
+            Integer index = indices.get(key);
+            if (index == null) {
+                index = encoded.size();
+                byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                byteLength += bytes.length;
+                indices.put(key, index);
+            }
+            return index;
+        }
+
+        /**
+         * Gets the number of strings in the table.
+         *
+         * @return The number of strings
+         */
+        int size() {
+            return encoded.size();
+        }
+
+        /**
+         * Gets the total length of the strings in UTF-8.
+         *
+         * @return The number of bytes
+         */
+        int byteLength() {
+            return byteLength;
+        }
+
+        /**
+         * Writes the offsets and bytes of the strings.
+         *
+         * @param out           The buffer of the snapshot
+         * @param offsetsColumn The position of the offsets column
+         * @param bytesColumn   The position of the string bytes
+         */
+        void write(ByteBuffer out, int offsetsColumn, int bytesColumn) {
+            int offset = 0;
+            for (int i = 0; i < encoded.size(); i++) {
+                out.putInt(offsetsColumn + 4 * i, offset);
+                out.put(bytesColumn + offset, encoded.get(i));
+                offset += encoded.get(i).length;
+            }
+            out.putInt(offsetsColumn + 4 * encoded.size(), offset);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package Formula1;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * This SnapshotConverter class turns the OpenF1 responses recorded in a response cache into season
+ * snapshot files. It never uses the network: every race must already be in the cache, for example
+ * from running the program or ChartExporter with the same cache directory. Races whose data is not
+ * in the cache are left out of the snapshot. An index.txt listing the year of every snapshot in the
+ * output directory is written next to them, so the program can tell which seasons are bundled.
+ *
+ * Usage: SnapshotConverter [--cache=DIR] [--out=DIR] YEAR...
+ */
+public class SnapshotConverter {
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("season-(\\d+)\\.f1s");
+
+    private final API openf1;
+
+    /**
+     * Constructs a converter reading recorded responses.
+     *
+     * @param cache The cache of recorded responses
+     */
+    public SnapshotConverter(ResponseCache cache) {
+        this.openf1 = new API(new ResponseCache(cache.getDirectory(), true));
+    }
+
+    /**
+     * Converts the seasons given on the command line.
+     *
+     * @param args The options and years to convert
+     */
+    public static void main(String[] args) {
+        Path cacheDir = Paths.get(".f1cache");
+        Path out = Paths.get("snapshots");
+        List<Integer> years = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--cache=")) {
+                cacheDir = Paths.get(arg.substring("--cache=".length()));
+            } else if (arg.startsWith("--out=")) {
+                out = Paths.get(arg.substring("--out=".length()));
+            } else {
+                years.add(Integer.parseInt(arg));
+            }
+        }
+        if (years.isEmpty()) {
+            System.out.println("Usage: SnapshotConverter [--cache=DIR] [--out=DIR] YEAR...");
+            return;
+        }
+
+        SnapshotConverter converter = new SnapshotConverter(new ResponseCache(cacheDir, true));
+        for (int year : years) {
+            Path file = out.resolve(fileName(year));
+            try {
+                long start = System.nanoTime();
+                int races = converter.convert(year, file);
+                System.out.printf("%d: %d races written to %s in %d ms%n", year, races, file,
+                    (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in SnapshotConverter");
+            }
+        }
+        try {
+            writeIndex(out);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Error in SnapshotConverter.writeIndex");
+        }
+    }
+
+    /**
+     * Writes the index of the snapshots in a directory, one year per line in order.
+     *
+     * @param directory The directory of the snapshots
+     * @throws IOException If the directory cannot be listed or the index cannot be written
+     */
+    public static void writeIndex(Path directory) throws IOException {
+        List<Integer> years = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    years.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        years.sort(null);
+        StringBuilder index = new StringBuilder();
+        for (int year : years) {
+            index.append(year).append('\n');
+        }
+        Files.writeString(directory.resolve("index.txt"), index, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the name of the snapshot file of a season.
+     *
+     * @param year The year of the season
+     * @return The file name
+     */
+    public static String fileName(int year) {
+        return "season-" + year + ".f1s";
+    }
+
+    /**
+     * Converts one season to a snapshot file.
+     *
+     * @param year The year of the season
+     * @param file The snapshot file to write
+     * @return The number of races written
+     * @throws IOException If the season is not in the cache or the file cannot be written
+     */
+    public int convert(int year, Path file) throws IOException {
+        List<Race> races = new ArrayList<>();
+        if (!openf1.streamSeasonRaces(year, races::add) || races.isEmpty()) {
+            throw new IOException("No recorded races for " + year);
+        }
+
+        List<Race> converted = new ArrayList<>();
+        List<RaceData> raceData = new ArrayList<>();
+        for (Race race : races) {
+            try {
+                RaceData data = new RaceData(openf1.fetchDriverInfo(race.getSessionKey()),
+                    openf1.fetchPitInfo(race.getSessionKey()), openf1.fetchStintInfo(race.getSessionKey()));
+                converted.add(race);
+                raceData.add(data);
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Error in SnapshotConverter, skipping " + race.getCircuitName());
+            }
+        }
+        SeasonSnapshot.write(file, year, converted, raceData);
+        return converted.size();
+    }
+}
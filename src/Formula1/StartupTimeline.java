@@ -0,0 +1,59 @@
+package Formula1;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This StartupTimeline class records when each step of starting the program happened, measured from
+ * the launch of the JVM, so the time from launch to an interactive menu can be tracked as the
+ * program changes.
+ *
+ * Every step is kept in the metrics registry as a startup histogram. When the program runs with
+ * -Df1.debug=true each step is also printed as it happens, with the time since the step before it,
+ * so the whole timeline can be read off the console.
+ */
+public class StartupTimeline {
+    private static final boolean PRINT = Boolean.getBoolean("f1.debug");
+    private static final List<Step> steps = new ArrayList<>();
+
+    /**
+     * One step of the startup.
+     *
+     * @param name   What was done
+     * @param millis When it was done, in milliseconds since the JVM started
+     * @param thread The thread it was done on
+     */
+    public record Step(String name, long millis, String thread) {
+    }
+
+    /**
+     * Records that a step of the startup has just been done.
+     *
+     * @param name What was done
+     */
+    public static void mark(String name) {
+        long millis = ManagementFactory.getRuntimeMXBean().getUptime();
+        Step step = new Step(name, millis, Thread.currentThread().getName());
+        long previous;
+        synchronized (steps) {
+            previous = steps.isEmpty() ? 0 : steps.get(steps.size() - 1).millis();
+            steps.add(step);
+        }
+        Metrics.global().histogram("startup." + name.replace(' ', '_'), "ms").record(millis);
+        if (PRINT) {
+            System.out.printf("startup %6d ms (+%5d)  %-28s [%s]%n", millis, millis - previous, name, step.thread());
+        }
+    }
+
+    /**
+     * Gets the steps recorded so far.
+     *
+     * @return The steps, in the order they were recorded
+     */
+    public static List<Step> getSteps() {
+        synchronized (steps) {
+            return List.copyOf(steps);
+        }
+    }
+}
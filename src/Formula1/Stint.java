@@ -0,0 +1,130 @@
+package Formula1;
+
+import java.awt.Color;
+
+/**
+ * This class represents one stint of a driver during a Formula 1 race: the laps driven on one set of
+ * tyres, the compound of the tyres, and how old they were when they were fitted.
+ */
+public class Stint {
+    private final int driverID, stintNumber, lapStart, lapEnd, tyreAgeAtStart;
+    private final String compound;
+
+    /**
+     * Constructs a Stint object with the specified details.
+     *
+     * @param driverID       The unique ID of the driver of the stint.
+     * @param stintNumber    The number of the stint in the driver's race, from 1.
+     * @param compound       The tyre compound, such as SOFT, MEDIUM, or HARD, or null if unknown.
+     * @param lapStart       The first lap of the stint.
+     * @param lapEnd         The last lap of the stint.
+     * @param tyreAgeAtStart The number of laps the tyres had done before the stint.
+     */
+    public Stint(int driverID, int stintNumber, String compound, int lapStart, int lapEnd, int tyreAgeAtStart) {
+        this.driverID = driverID;
+        this.stintNumber = stintNumber;
+        this.compound = compound;
+        this.lapStart = lapStart;
+        this.lapEnd = lapEnd;
+        this.tyreAgeAtStart = tyreAgeAtStart;
+    }
+
+    /**
+     * Gets the unique ID of the driver of this stint.
+     *
+     * @return The driver's ID
+     */
+    public int getDriversID() {
+        return driverID;
+    }
+
+    /**
+     * Gets the number of this stint in the driver's race.
+     *
+     * @return The stint number, from 1
+     */
+    public int getStintNumber() {
+        return stintNumber;
+    }
+
+    /**
+     * Gets the tyre compound of this stint.
+     *
+     * @return The compound, or null if it is unknown
+     */
+    public String getCompound() {
+        return compound;
+    }
+
+    /**
+     * Gets the first lap of this stint.
+     *
+     * @return The lap number
+     */
+    public int getLapStart() {
+        return lapStart;
+    }
+
+    /**
+     * Gets the last lap of this stint.
+     *
+     * @return The lap number
+     */
+    public int getLapEnd() {
+        return lapEnd;
+    }
+
+    /**
+     * Gets the number of laps the tyres had done when they were fitted.
+     *
+     * @return The tyre age at the start of the stint
+     */
+    public int getTyreAgeAtStart() {
+        return tyreAgeAtStart;
+    }
+
+    /**
+     * Gets the number of laps driven in this stint.
+     *
+     * @return The number of laps
+     */
+    public int getLapCount() {
+        return lapEnd - lapStart + 1;
+    }
+
+    /**
+     * Gets the color Formula 1 marks a tyre compound with.
+     *
+     * @param compound The compound, or null if it is unknown
+     * @return The color of the compound, or null if it has none
+     */
+    public static Color compoundColor(String compound) {
+        if (compound == null) {
+            return null;
+        }
+        switch (compound) {
+            case "SOFT":
+                return new Color(0xDA291C);
+            case "MEDIUM":
+                return new Color(0xFFD12E);
+            case "HARD":
+                return new Color(0xF0F0EC);
+            case "INTERMEDIATE":
+                return new Color(0x43B02A);
+            case "WET":
+                return new Color(0x0067AD);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a string representation of this stint.
+     *
+     * @return A string describing the stint
+     */
+    @Override
+    public String toString() {
+        return "Driver: " + driverID + " " + compound + " laps " + lapStart + "-" + lapEnd;
+    }
+}
@@ -0,0 +1,551 @@
+package Formula1;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This StrategySimulator class answers "what if this driver had pitted on other laps" by simulating
+ * the race many times with the driver's actual pit stops and with an alternative strategy, and
+ * comparing the race times and finishing positions they lead to.
+ *
+ * Every lap takes the driver's base pace, plus a fixed loss per lap of tyre age, plus random noise,
+ * and every stop costs a pit duration drawn from historical pit stops. The base pace is worked out
+ * from the driver's actual race time, so the actual strategy reproduces it on average. Both strategies
+ * of one simulation use the same lap noise and stop durations, so the difference between them comes
+ * from the strategy alone and settles with fewer simulations.
+ *
+ * Simulations are split into batches on a work-stealing ForkJoinPool, and every batch has its own
+ * SplittableRandom split off in a fixed order, so the results only depend on the seed and not on the
+ * number of threads.
+ *
+ * Usage: StrategySimulator --year=2024 --race=N --driver=NUMBER [--pit=LAP,LAP] [--stops=3]
+ * [--step=2] [--sims=N] [--degradation=S] [--threads=N] [--cache=DIR] [--offline]
+ */
+public class StrategySimulator {
+    public static final double MAX_PIT_SECONDS = SeasonAnalytics.MAX_PIT_SECONDS;
+    public static final int MIN_STINT = 8;
+
+    private static final int BATCH = 2048;
+    private static final double BIN_SECONDS = 0.1, MAX_DELTA_SECONDS = 300;
+    private static final int BINS = (int) (2 * MAX_DELTA_SECONDS / BIN_SECONDS) + 1;
+
+    private final Race race;
+    private final RaceData raceData;
+    private final double[] pitLosses;
+    private final double degradation, noise;
+    private final ForkJoinPool pool;
+
+    /**
+     * The pace of a driver in the simulation.
+     *
+     * @param laps        The number of laps the driver races
+     * @param baseLap     The lap time on new tyres in seconds
+     * @param degradation The time lost per lap of tyre age in seconds
+     * @param noise       The standard deviation of a lap time in seconds
+     */
+    public record LapModel(int laps, double baseLap, double degradation, double noise) {
+    }
+
+    /**
+     * The laps a driver pits on.
+     *
+     * @param pitLaps The pit laps in order
+     */
+    public record Strategy(int[] pitLaps) {
+        @Override
+        public String toString() {
+            return pitLaps.length + "-stop " + Arrays.toString(pitLaps);
+        }
+    }
+
+    /**
+     * The distribution of results of an alternative strategy against the actual one.
+     *
+     * @param strategy      The alternative strategy
+     * @param simulations   The number of races simulated
+     * @param meanDelta     The mean race time gained (negative) or lost (positive) in seconds
+     * @param p05           The 5th percentile of the race time difference
+     * @param p50           The median race time difference
+     * @param p95           The 95th percentile of the race time difference
+     * @param fasterShare   The share of simulations the alternative was faster in
+     * @param positionShare The share of simulations finishing in each position, from first
+     */
+    public record Outcome(Strategy strategy, int simulations, double meanDelta, double p05, double p50, double p95,
+        double fasterShare, double[] positionShare) {
+        /**
+         * Gets the most likely finishing position.
+         *
+         * @return The position, from 1
+         */
+        public int likelyPosition() {
+            int best = 0;
+            for (int i = 1; i < positionShare.length; i++) {
+                if (positionShare[i] > positionShare[best]) {
+                    best = i;
+                }
+            }
+            return best + 1;
+        }
+    }
+
+    /**
+     * Constructs a simulator for a race.
+     *
+     * @param race        The race
+     * @param raceData    The drivers and pit stops of the race
+     * @param pitLosses   The historical pit stop durations to draw from, in seconds
+     * @param degradation The time lost per lap of tyre age in seconds
+     * @param noise       The standard deviation of a lap time in seconds
+     * @param pool        The pool the simulations run on
+     */
+    public StrategySimulator(Race race, RaceData raceData, Collection<Double> pitLosses, double degradation,
+        double noise, ForkJoinPool pool) {
+        this.race = race;
+        this.raceData = raceData;
+        this.pitLosses = pitLosses.stream().mapToDouble(Double::doubleValue).toArray();
+        this.degradation = degradation;
+        this.noise = noise;
+        this.pool = pool;
+        if (this.pitLosses.length == 0) {
+            throw new IllegalArgumentException("No pit stop durations to draw from");
+        }
+    }
+
+    /**
+     * Simulates a race from the command line.
+     *
+     * @param args The options of the simulation
+     */
+    public static void main(String[] args) {
+        int year = 2024, raceNumber = 1, driverNumber = -1, maxStops = 3, step = 2, sims = 200_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double degradation = 0.06;
+        int[] pitLaps = null;
+        String cacheDir = ".f1cache";
+        boolean offline = false;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--year=")) {
+                year = Integer.parseInt(value);
+            } else if (arg.startsWith("--race=")) {
+                raceNumber = Integer.parseInt(value);
+            } else if (arg.startsWith("--driver=")) {
+                driverNumber = Integer.parseInt(value);
+            } else if (arg.startsWith("--pit=")) {
+                pitLaps = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--stops=")) {
+                maxStops = Integer.parseInt(value);
+            } else if (arg.startsWith("--step=")) {
+                step = Integer.parseInt(value);
+            } else if (arg.startsWith("--sims=")) {
+                sims = Integer.parseInt(value);
+            } else if (arg.startsWith("--degradation=")) {
+                degradation = Double.parseDouble(value);
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.startsWith("--cache=")) {
+                cacheDir = value;
+            } else if (arg.equals("--offline")) {
+                offline = true;
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+
+        DataSource data = new DataSource(new API(new ResponseCache(Paths.get(cacheDir), offline)));
+        List<Race> races = new ArrayList<>();
+        data.streamSeasonRaces(year, races::add);
+        if (races.size() < raceNumber) {
+            System.out.println("No race " + raceNumber + " in " + year);
+            return;
+        }
+        Race race = races.get(raceNumber - 1);
+        RaceData raceData = data.fetchRaceData(race);
+        Driver driver = raceData.getDrivers().get(driverNumber);
+        if (driver == null) {
+            System.out.println("No driver " + driverNumber + " in " + race.getCircuitName() + ", choose one of "
+                + raceData.getDrivers().keySet());
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        StrategySimulator simulator = new StrategySimulator(race, raceData, pitLosses(List.of(raceData)),
+            degradation, 0.4, pool);
+        System.out.printf(Locale.ROOT, "%s %d, %s (#%d), actual %s%n", race.getCircuitName(), year, driver.getName(),
+            driverNumber, simulator.actualStrategy(driver));
+
+        long start = System.nanoTime();
+        List<Outcome> outcomes;
+        if (pitLaps != null) {
+            outcomes = List.of(simulator.simulate(driver, new Strategy(pitLaps), sims, year));
+        } else {
+            List<Strategy> strategies = enumerate(driver.getFinalLap(), maxStops, step);
+            outcomes = simulator.compare(driver, strategies, Math.max(1, sims / Math.max(1, strategies.size())), year);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long total = outcomes.stream().mapToLong(Outcome::simulations).sum();
+
+        System.out.println("strategy                    mean s    p5 s   p50 s   p95 s  faster  likely P");
+        for (Outcome outcome : outcomes.subList(0, Math.min(15, outcomes.size()))) {
+            System.out.printf(Locale.ROOT, "%-26s %7.1f %7.1f %7.1f %7.1f %6.0f%%  %8d%n", outcome.strategy(),
+                outcome.meanDelta(), outcome.p05(), outcome.p50(), outcome.p95(), outcome.fasterShare() * 100,
+                outcome.likelyPosition());
+        }
+        System.out.printf(Locale.ROOT, "%d strategies, %d races simulated in %.2f s (%.0f races/s, %d threads)%n",
+            outcomes.size(), total, seconds, total / seconds, pool.getParallelism());
+        pool.shutdown();
+    }
+
+    /**
+     * Collects the pit stop durations of races, leaving out stops longer than a real stop.
+     *
+     * @param races The race data of the races
+     * @return The durations in seconds
+     */
+    public static List<Double> pitLosses(Collection<RaceData> races) {
+        List<Double> losses = new ArrayList<>();
+        for (RaceData raceData : races) {
+            for (PriorityQueue<Pitstop> pitstops : raceData.getDriversPitstops().values()) {
+                for (Pitstop pitstop : pitstops) {
+                    if (pitstop.getpitDuration() > 0 && pitstop.getpitDuration() <= MAX_PIT_SECONDS) {
+                        losses.add(pitstop.getpitDuration());
+                    }
+                }
+            }
+        }
+        return losses;
+    }
+
+    /**
+     * Lists every strategy of one to a number of stops, with stops on every few laps and every stint
+     * at least MIN_STINT laps long.
+     *
+     * @param laps     The number of laps of the race
+     * @param maxStops The most stops in a strategy
+     * @param step     The number of laps between the pit laps tried
+     * @return The strategies
+     */
+    public static List<Strategy> enumerate(int laps, int maxStops, int step) {
+        List<Strategy> strategies = new ArrayList<>();
+        for (int stops = 1; stops <= maxStops; stops++) {
+            addStrategies(strategies, new int[stops], 0, MIN_STINT, laps, step);
+        }
+        return strategies;
+    }
+
+    /**
+     * Adds every strategy that continues a partly chosen list of pit laps.
+     *
+     * @param strategies The list of strategies to add to
+     * @param pitLaps    The pit laps, chosen up to the index
+     * @param index      The index of the next pit lap to choose
+     * @param firstLap   The earliest lap the next stop can be on
+     * @param laps       The number of laps of the race
+     * @param step       The number of laps between the pit laps tried
+     */
+    private static void addStrategies(List<Strategy> strategies, int[] pitLaps, int index, int firstLap, int laps,
+        int step) {
+        if (index == pitLaps.length) {
+            strategies.add(new Strategy(pitLaps.clone()));
+            return;
+        }
+        int stopsAfter = pitLaps.length - index - 1;
+        for (int lap = firstLap; lap <= laps - MIN_STINT * (stopsAfter + 1); lap += step) {
+            pitLaps[index] = lap;
+            addStrategies(strategies, pitLaps, index + 1, lap + MIN_STINT, laps, step);
+        }
+    }
+
+    /**
+     * Gets the strategy a driver actually raced.
+     *
+     * @param driver The driver
+     * @return The laps the driver pitted on
+     */
+    public Strategy actualStrategy(Driver driver) {
+        PriorityQueue<Pitstop> pitstops = raceData.getDriversPitstops().get(driver.getDriverNumber());
+        if (pitstops == null) {
+            return new Strategy(new int[0]);
+        }
+        return new Strategy(pitstops.stream().mapToInt(Pitstop::getLapNum).sorted().toArray());
+    }
+
+    /**
+     * Works out a driver's pace from their actual race, so that their actual strategy reproduces their
+     * race time on average.
+     *
+     * @param driver The driver
+     * @return The lap model of the driver
+     */
+    public LapModel modelFor(Driver driver) {
+        int laps = driver.getFinalLap();
+        double raceSeconds = driver.getRaceFinishTime(race) / 1000.0;
+        double pitSeconds = 0;
+        PriorityQueue<Pitstop> pitstops = raceData.getDriversPitstops().get(driver.getDriverNumber());
+        if (pitstops != null) {
+            for (Pitstop pitstop : pitstops) {
+                pitSeconds += Math.min(pitstop.getpitDuration(), MAX_PIT_SECONDS);
+            }
+        }
+        int[] pitLaps = actualStrategy(driver).pitLaps();
+        double tyreSeconds = degradation * tyreAgeSum(laps, pitLaps);
+        return new LapModel(laps, (raceSeconds - pitSeconds - tyreSeconds) / laps, degradation, noise);
+    }
+
+    /**
+     * Simulates strategies against a driver's actual strategy.
+     *
+     * @param driver      The driver
+     * @param strategies  The alternative strategies
+     * @param simulations The number of races simulated per strategy
+     * @param seed        The seed of the simulations
+     * @return The outcome of each strategy, fastest on average first
+     */
+    public List<Outcome> compare(Driver driver, List<Strategy> strategies, int simulations, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Outcome> outcomes = new ArrayList<>();
+        for (Strategy strategy : strategies) {
+            outcomes.add(simulate(driver, strategy, simulations, root.split()));
+        }
+        outcomes.sort(Comparator.comparingDouble(Outcome::meanDelta));
+        return outcomes;
+    }
+
+    /**
+     * Simulates one strategy against a driver's actual strategy.
+     *
+     * @param driver      The driver
+     * @param alternative The alternative strategy
+     * @param simulations The number of races to simulate
+     * @param seed        The seed of the simulations
+     * @return The outcome of the strategy
+     */
+    public Outcome simulate(Driver driver, Strategy alternative, int simulations, long seed) {
+        return simulate(driver, alternative, simulations, new SplittableRandom(seed));
+    }
+
+    /**
+     * Simulates one strategy against a driver's actual strategy, with a given source of randomness.
+     *
+     * @param driver      The driver
+     * @param alternative The alternative strategy
+     * @param simulations The number of races to simulate
+     * @param random      The source of randomness, split between the batches
+     * @return The outcome of the strategy
+     */
+    private Outcome simulate(Driver driver, Strategy alternative, int simulations, SplittableRandom random) {
+        LapModel model = modelFor(driver);
+        int[] actual = actualStrategy(driver).pitLaps();
+        // The rivals' actual times, to place the simulated finish among
+        double[] rivals = raceData.getDrivers().values().stream()
+            .filter(rival -> rival.getDriverNumber() != driver.getDriverNumber())
+            .filter(rival -> rival.getFinalLap() >= model.laps())
+            .mapToDouble(rival -> rival.getRaceFinishTime(race) / 1000.0)
+            .sorted()
+            .toArray();
+
+        Tally tally = pool.invoke(new SimulationTask(model, actual, alternative.pitLaps(), rivals, pitLosses, 0,
+            simulations, random));
+        double[] positions = new double[tally.positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = tally.positions[i] / (double) tally.count;
+        }
+        return new Outcome(alternative, tally.count, tally.deltaSum / tally.count, tally.percentile(0.05),
+            tally.percentile(0.50), tally.percentile(0.95), tally.faster / (double) tally.count, positions);
+    }
+
+    /**
+     * Adds up the tyre age of every lap of a strategy.
+     *
+     * @param laps    The number of laps
+     * @param pitLaps The laps pitted on
+     * @return The sum of the tyre age at the start of each lap
+     */
+    private static double tyreAgeSum(int laps, int[] pitLaps) {
+        double sum = 0;
+        int age = 0, next = 0;
+        for (int lap = 1; lap <= laps; lap++) {
+            sum += age++;
+            if (next < pitLaps.length && lap == pitLaps[next]) {
+                age = 0;
+                next++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Simulates the race time of one strategy.
+     *
+     * @param model   The driver's pace
+     * @param pitLaps The laps pitted on
+     * @param noise   The noise of each lap
+     * @param losses  The duration of each stop, in order
+     * @return The race time in seconds
+     */
+    private static double raceTime(LapModel model, int[] pitLaps, double[] noise, double[] losses) {
+        double time = 0;
+        int age = 0, next = 0;
+        for (int lap = 1; lap <= model.laps(); lap++) {
+            time += model.baseLap() + model.degradation() * age++ + noise[lap - 1];
+            if (next < pitLaps.length && lap == pitLaps[next]) {
+                time += losses[next++];
+                age = 0;
+            }
+        }
+        return time;
+    }
+
+    /**
+     * The results of a batch of simulations, with the race time differences counted in bins of a tenth
+     * of a second so a tally takes the same memory however many races it counts.
+     */
+    private static class Tally {
+        private final long[] deltaBins = new long[BINS];
+        private final long[] positions;
+        private int count, faster;
+        private double deltaSum;
+
+        /**
+         * Constructs an empty tally.
+         *
+         * @param positionCount The number of finishing positions
+         */
+        Tally(int positionCount) {
+            positions = new long[positionCount];
+        }
+
+        /**
+         * Counts one simulated race.
+         *
+         * @param delta    The race time difference of the alternative in seconds
+         * @param position The finishing position of the alternative, from 1
+         */
+        void add(double delta, int position) {
+            count++;
+            deltaSum += delta;
+            // Within a millisecond is a tie, not rounding luck
+            if (delta < -0.001) {
+                faster++;
+            }
+            double clamped = Math.max(-MAX_DELTA_SECONDS, Math.min(MAX_DELTA_SECONDS, delta));
+            deltaBins[(int) Math.round((clamped + MAX_DELTA_SECONDS) / BIN_SECONDS)]++;
+            positions[position - 1]++;
+        }
+
+        /**
+         * Adds another tally to this one.
+         *
+         * @param other The other tally
+         * @return This tally
+         */
+        Tally merge(Tally other) {
+            count += other.count;
+            faster += other.faster;
+            deltaSum += other.deltaSum;
+            for (int i = 0; i < BINS; i++) {
+                deltaBins[i] += other.deltaBins[i];
+            }
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] += other.positions[i];
+            }
+            return this;
+        }
+
+        /**
+         * Finds a percentile of the race time differences, to the nearest bin.
+         *
+         * @param fraction The percentile between 0 and 1
+         * @return The difference at the percentile in seconds
+         */
+        double percentile(double fraction) {
+            long rank = Math.max(1, (long) Math.ceil(fraction * count)), seen = 0;
+            for (int i = 0; i < BINS; i++) {
+                seen += deltaBins[i];
+                if (seen >= rank) {
+                    return i * BIN_SECONDS - MAX_DELTA_SECONDS;
+                }
+            }
+            return MAX_DELTA_SECONDS;
+        }
+    }
+
+    /**
+     * This SimulationTask class simulates a range of races, splitting it in half until a batch is small
+     * enough to run on one thread.
+     */
+    private static class SimulationTask extends RecursiveTask<Tally> {
+        private final LapModel model;
+        private final int[] actual, alternative;
+        private final double[] rivals, pitLosses;
+        private final int from, to;
+        private final SplittableRandom random;
+
+        /**
+         * Constructs a task simulating a range of races.
+         *
+         * @param model       The driver's pace
+         * @param actual      The laps the driver actually pitted on
+         * @param alternative The laps of the alternative strategy
+         * @param rivals      The rivals' race times in seconds, sorted
+         * @param pitLosses   The pit stop durations to draw from
+         * @param from        The first race of the range
+         * @param to          The end of the range, exclusive
+         * @param random      The source of randomness of the range
+         */
+        SimulationTask(LapModel model, int[] actual, int[] alternative, double[] rivals, double[] pitLosses,
+            int from, int to, SplittableRandom random) {
+            this.model = model;
+            this.actual = actual;
+            this.alternative = alternative;
+            this.rivals = rivals;
+            this.pitLosses = pitLosses;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from > BATCH) {
+                int middle = (from + to) >>> 1;
+                // Split before forking, so each half gets the same stream on any number of threads
+                SimulationTask left = new SimulationTask(model, actual, alternative, rivals, pitLosses, from,
+                    middle, random.split());
+                SimulationTask right = new SimulationTask(model, actual, alternative, rivals, pitLosses, middle,
+                    to, random);
+                left.fork();
+                Tally tally = right.compute();
+                return tally.merge(left.join());
+            }
+
+            Tally tally = new Tally(rivals.length + 1);
+            double[] noise = new double[model.laps()];
+            double[] losses = new double[Math.max(actual.length, alternative.length)];
+            for (int i = from; i < to; i++) {
+                for (int lap = 0; lap < noise.length; lap++) {
+                    noise[lap] = random.nextGaussian() * model.noise();
+                }
+                for (int stop = 0; stop < losses.length; stop++) {
+                    losses[stop] = pitLosses[random.nextInt(pitLosses.length)];
+                }
+                double actualTime = raceTime(model, actual, noise, losses);
+                double alternativeTime = raceTime(model, alternative, noise, losses);
+                int rivalsAhead = Arrays.binarySearch(rivals, alternativeTime);
+                int position = 1 + (rivalsAhead >= 0 ? rivalsAhead : -rivalsAhead - 1);
+                tally.add(alternativeTime - actualTime, position);
+            }
+            return tally;
+        }
+    }
+}
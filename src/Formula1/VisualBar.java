@@ -12,8 +12,14 @@ import edu.macalester.graphics.Rectangle;
  * 
  * Includes a horizontal bar and a slider, where the slider's position controls the offset of the
  * displayed content.
+ * 
+ * The drag listener is registered on the canvas once and moves whichever bar is shown, so a bar and
+ * the chart it scrolls are not kept alive by the canvas after their chart is gone.
  */
 public class VisualBar {
+    private static VisualBar shown;
+    private static CanvasWindow listenedCanvas;
+
     private final GraphicsGroup graphGroup;
 
     private final double canvasWidth;
@@ -23,9 +29,10 @@ public class VisualBar {
 
     private double sliderWidth;
     private double barRatio;
+    private boolean paused;
 
     /**
-     * Constructs an instance of the VisualBar
+     * Constructs an instance of the VisualBar. The bar is added to the canvas by show().
      * 
      * @param canvas     The canvas where the content is displayed
      * @param graphGroup The graphical group whose position is controlled by the sidebar.
@@ -44,26 +51,77 @@ public class VisualBar {
         slider = new Rectangle(0, canvas.getHeight() - 35, sliderWidth, 15);
         slider.setFillColor(Color.BLACK);
 
+        barAnimate(canvas);
+    }
+
+    /**
+     * Adds the bar and slider to the canvas at the slider's last position, and makes this the bar that
+     * responds to dragging.
+     * 
+     * @param canvas The canvas where the content is displayed
+     */
+    public void show(CanvasWindow canvas) {
         canvas.add(bar);
         canvas.add(slider);
+        shown = this;
+    }
 
-        barAnimate(canvas);
+    /**
+     * Stops the bar on screen from responding to dragging, for when its chart is no longer displayed.
+     */
+    public static void deactivate() {
+        shown = null;
     }
 
     /**
-     * Handles the drag events on the slider to adjust the content's position relative to the bar's
-     * slider movement.
+     * Stops or starts the bar following drags, so a drag meant for something on the chart does not
+     * scroll it.
+     * 
+     * @param paused true to ignore drags until the bar is resumed
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Registers the drag listener of the canvas, the first time a bar is made for it, passing the
+     * drags on to the bar shown.
      * 
      * @param canvas The canvas where the drag movements are registered.
      */
-    private void barAnimate(CanvasWindow canvas) {
+    private static void barAnimate(CanvasWindow canvas) {
+        if (listenedCanvas == canvas) {
+            return;
+        }
+        listenedCanvas = canvas;
         canvas.onDrag(event -> {
-            double newX = event.getPosition().getX() - sliderWidth / 2;
-            newX = Math.max(0, Math.min(newX, canvasWidth - sliderWidth));
-
-            slider.setPosition(newX, slider.getY());
-            double graphMove = -(newX * barRatio);
-            graphGroup.setPosition(graphMove, graphGroup.getY());
+            if (shown != null) {
+                shown.drag(event.getPosition().getX());
+            }
         });
     }
+
+    /**
+     * Handles a drag on the slider, adjusting the content's position relative to the bar's slider
+     * movement.
+     * 
+     * @param mouseX The x-coordinate of the mouse on the canvas
+     */
+    private void drag(double mouseX) {
+        if (paused) {
+            return;
+        }
+        HotPathEvents.ScrollFrame frame = new HotPathEvents.ScrollFrame();
+        frame.begin();
+        long start = System.nanoTime();
+        double newX = mouseX - sliderWidth / 2;
+        newX = Math.max(0, Math.min(newX, canvasWidth - sliderWidth));
+
+        slider.setPosition(newX, slider.getY());
+        double graphMove = -(newX * barRatio);
+        graphGroup.setPosition(graphMove, graphGroup.getY());
+        Metrics.global().timer("visualbar.frame").stop(start);
+        frame.offset = graphMove;
+        frame.commit();
+    }
 }
\ No newline at end of file
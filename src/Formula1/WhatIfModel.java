@@ -0,0 +1,350 @@
+package Formula1;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This WhatIfModel class projects what would have happened had a driver pitted on other laps, for
+ * moving pit stops on the chart by dragging them. It answers with the new times of the driver's stops,
+ * their projected finish, and the position it would have been worth.
+ *
+ * The projection uses the same pace model as the StrategySimulator without its noise: every lap loses
+ * a fixed time per lap of tyre age, and every stop costs its own duration. The driver's actual times
+ * are kept and only the difference the new pit laps make is added to them, so a stop dragged back to
+ * where it was lands exactly on its actual time.
+ *
+ * Each driver keeps the running totals of their actual strategy lap by lap, so moving one stop only
+ * recomputes the totals of that driver, in time proportional to their laps, and then ranks their new
+ * finish among the others. The race data is never changed.
+ */
+public class WhatIfModel {
+    public static final double DEFAULT_DEGRADATION = 0.06;
+
+    private final Race race;
+    private final RaceData raceData;
+    private final double degradation;
+    private final Map<Integer, Plan> plans = new HashMap<>();
+    private final Map<Integer, Long> projectedFinish = new HashMap<>();
+
+    /**
+     * The projected race of a driver after their stops were moved.
+     *
+     * @param driver            The driver, finishing at the projected time
+     * @param pitstops          The driver's stops at their projected laps and times, in order
+     * @param moved             The stop that was moved, as it is now, or null if none was
+     * @param deltaMillis       The projected finish time less the actual one, in milliseconds
+     * @param actualPosition    The position the driver actually finished in, from 1
+     * @param projectedPosition The position the projected finish would be worth, from 1
+     */
+    public record Projection(Driver driver, List<Pitstop> pitstops, Pitstop moved, long deltaMillis,
+        int actualPosition, int projectedPosition) {
+    }
+
+    /**
+     * Constructs a model of a race with the default tyre degradation.
+     *
+     * @param race     The race
+     * @param raceData The drivers and pit stops of the race
+     */
+    public WhatIfModel(Race race, RaceData raceData) {
+        this(race, raceData, DEFAULT_DEGRADATION);
+    }
+
+    /**
+     * Constructs a model of a race.
+     *
+     * @param race        The race
+     * @param raceData    The drivers and pit stops of the race
+     * @param degradation The time lost per lap of tyre age in seconds
+     */
+    public WhatIfModel(Race race, RaceData raceData, double degradation) {
+        this.race = race;
+        this.raceData = raceData;
+        this.degradation = degradation;
+        for (Driver driver : raceData.getDrivers().values()) {
+            projectedFinish.put(driver.getDriverNumber(), driver.getRaceFinishTime(race));
+        }
+    }
+
+    /**
+     * Moves one of a driver's stops to another lap. A stop cannot be moved onto the driver's last lap
+     * or later, before their first lap, or onto a lap they already pit on; such a move changes
+     * nothing.
+     *
+     * @param driverNumber The number of the driver
+     * @param pitstop      The stop to move, as the race data or the last projection has it
+     * @param lap          The lap to pit on instead
+     * @return The projection after the move, or null if the driver is not in the race
+     */
+    public Projection move(int driverNumber, Pitstop pitstop, int lap) {
+        long start = System.nanoTime();
+        Plan plan = planOf(driverNumber);
+        if (plan == null) {
+            return null;
+        }
+        int stop = plan.indexOf(pitstop);
+        boolean moved = stop >= 0 && lap >= 1 && lap < plan.laps && plan.lapFree(lap);
+        if (moved) {
+            plan.lapsNow[stop] = lap;
+            plan.project();
+            projectedFinish.put(driverNumber, plan.finishMillis);
+        }
+        Projection projection = projectionOf(plan, moved ? stop : -1);
+        Metrics.global().timer("whatif.move").stop(start);
+        return projection;
+    }
+
+    /**
+     * Puts a driver's stops back on the laps they were actually made on.
+     *
+     * @param driverNumber The number of the driver
+     * @return The projection of the actual race, or null if the driver is not in the race
+     */
+    public Projection reset(int driverNumber) {
+        plans.remove(driverNumber);
+        Plan plan = planOf(driverNumber);
+        if (plan == null) {
+            return null;
+        }
+        projectedFinish.put(driverNumber, plan.finishMillis);
+        return projectionOf(plan, -1);
+    }
+
+    /**
+     * Gets the drivers with a stop moved.
+     *
+     * @return The numbers of the drivers, in order
+     */
+    public Set<Integer> getEditedDrivers() {
+        Set<Integer> edited = new TreeSet<>();
+        for (Plan plan : plans.values()) {
+            if (plan.isEdited()) {
+                edited.add(plan.driver.getDriverNumber());
+            }
+        }
+        return edited;
+    }
+
+    /**
+     * Gets the plan of a driver, making it the first time one of their stops is moved.
+     *
+     * @param driverNumber The number of the driver
+     * @return The plan, or null if the driver is not in the race
+     */
+    private Plan planOf(int driverNumber) {
+        Plan plan = plans.get(driverNumber);
+        if (plan == null) {
+            Driver driver = raceData.getDrivers().get(driverNumber);
+            if (driver == null) {
+                return null;
+            }
+            plan = new Plan(driver, raceData.getDriversPitstops().get(driverNumber));
+            plans.put(driverNumber, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Builds the projection of a plan, ranking its finish among the projected finishes of the others.
+     * Stops whose lap and time did not change are given as they are in the race data.
+     *
+     * @param plan  The plan
+     * @param moved The index of the stop that was moved, or -1 if none was
+     * @return The projection
+     */
+    private Projection projectionOf(Plan plan, int moved) {
+        Instant raceStart = race.getRaceStartTime();
+        for (int i = 0; i < plan.current.length; i++) {
+            Pitstop actual = plan.actual.get(i), current = plan.current[i];
+            if (plan.lapsNow[i] == actual.getLapNum() && plan.startMillis[i] == actual.getStartOffset(race)) {
+                plan.current[i] = actual;
+            } else if (plan.lapsNow[i] != current.getLapNum() || plan.startMillis[i] != current.getStartOffset(race)) {
+                plan.current[i] = new Pitstop(actual.getDriversID(), plan.lapsNow[i], actual.getpitDuration(),
+                    raceStart.plusMillis(plan.startMillis[i])).withStint(actual.getOutgoingStint());
+            }
+        }
+        List<Pitstop> pitstops = new ArrayList<>(List.of(plan.current));
+        pitstops.sort(Comparator.comparingInt(Pitstop::getLapNum));
+        long actualFinish = plan.driver.getRaceFinishTime(race);
+        Driver projected = plan.finishMillis == actualFinish ? plan.driver
+            : plan.driver.withProgress(raceStart.plusMillis(plan.finishMillis), plan.driver.getFinalLap());
+        return new Projection(projected, Collections.unmodifiableList(pitstops), moved < 0 ? null : plan.current[moved],
+            plan.finishMillis - actualFinish, position(plan.driver, actualFinish, false),
+            position(plan.driver, plan.finishMillis, true));
+    }
+
+    /**
+     * Finds the position a finish is worth: behind every driver who completed more laps, and behind
+     * those who completed as many laps sooner.
+     *
+     * @param driver    The driver finishing
+     * @param finish    The finish time in milliseconds from the start of the race
+     * @param projected true to rank against the projected finishes of the others, false for the actual
+     * @return The position, from 1
+     */
+    private int position(Driver driver, long finish, boolean projected) {
+        int position = 1;
+        for (Driver other : raceData.getDrivers().values()) {
+            if (other.getDriverNumber() == driver.getDriverNumber()) {
+                continue;
+            }
+            long otherFinish = projected ? projectedFinish.get(other.getDriverNumber())
+                : other.getRaceFinishTime(race);
+            if (other.getFinalLap() > driver.getFinalLap()
+                || other.getFinalLap() == driver.getFinalLap() && otherFinish < finish) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * The actual and projected strategy of one driver, with the running totals needed to project it
+     * again when a stop moves.
+     */
+    private class Plan {
+        private final Driver driver;
+        private final int laps;
+        private final List<Pitstop> actual = new ArrayList<>();
+        private final Pitstop[] current;
+        private final int[] lapsNow;
+        private final long[] startMillis;
+        // The time of the actual race at each lap, between the points whose time is known, and what
+        // tyre age and stops had added to it by then
+        private final double[] actualMillis;
+        private final double[] actualExtra;
+        private long finishMillis;
+
+        /**
+         * Constructs the plan of a driver's actual race.
+         *
+         * @param driver   The driver
+         * @param pitstops The driver's stops, or null if they did not stop
+         */
+        Plan(Driver driver, PriorityQueue<Pitstop> pitstops) {
+            this.driver = driver;
+            this.laps = Math.max(1, driver.getFinalLap());
+            if (pitstops != null) {
+                actual.addAll(pitstops);
+            }
+            actual.sort(Comparator.comparingInt(Pitstop::getLapNum));
+            current = actual.toArray(new Pitstop[0]);
+            lapsNow = new int[current.length];
+            startMillis = new long[current.length];
+            for (int i = 0; i < current.length; i++) {
+                lapsNow[i] = current[i].getLapNum();
+                startMillis[i] = current[i].getStartOffset(race);
+            }
+            finishMillis = driver.getRaceFinishTime(race);
+
+            // The start, each stop, and the finish are the points whose time is known
+            actualMillis = new double[laps + 1];
+            int previousLap = 0;
+            double previousMillis = 0;
+            for (int i = 0; i <= current.length; i++) {
+                int lap = i < current.length ? Math.min(lapsNow[i], laps) : laps;
+                double millis = i < current.length ? startMillis[i] : finishMillis;
+                if (lap > previousLap) {
+                    for (int l = previousLap + 1; l <= lap; l++) {
+                        actualMillis[l] = previousMillis + (millis - previousMillis) * (l - previousLap)
+                            / (lap - previousLap);
+                    }
+                    previousLap = lap;
+                    previousMillis = millis;
+                }
+            }
+            actualExtra = extra(lapsNow);
+        }
+
+        /**
+         * Finds a stop of the driver.
+         *
+         * @param pitstop The stop, as the race data or the last projection has it
+         * @return The index of the stop, or -1 if it is not one of the driver's
+         */
+        int indexOf(Pitstop pitstop) {
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == pitstop || actual.get(i) == pitstop) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Checks that no stop of the driver is already on a lap.
+         *
+         * @param lap The lap
+         * @return true if the driver does not pit on the lap
+         */
+        boolean lapFree(int lap) {
+            for (int stopLap : lapsNow) {
+                if (stopLap == lap) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether a stop is on another lap than it was actually made on.
+         *
+         * @return true if a stop has moved
+         */
+        boolean isEdited() {
+            for (int i = 0; i < lapsNow.length; i++) {
+                if (lapsNow[i] != actual.get(i).getLapNum()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Projects the times of the stops and the finish from the laps the stops are on now.
+         */
+        void project() {
+            double[] extra = extra(lapsNow);
+            for (int i = 0; i < lapsNow.length; i++) {
+                int lap = Math.min(lapsNow[i], laps);
+                startMillis[i] = Math.round(actualMillis[lap] + (extra[lap] - actualExtra[lap]) * 1000);
+            }
+            finishMillis = driver.getRaceFinishTime(race) + Math.round((extra[laps] - actualExtra[laps]) * 1000);
+        }
+
+        /**
+         * Adds up, lap by lap, the time lost to tyre age and to the stops made before each lap.
+         *
+         * @param pitLaps The laps of the stops, in the order of the actual stops
+         * @return The time lost by the end of each lap, before any stop on that lap, in seconds
+         */
+        private double[] extra(int[] pitLaps) {
+            double[] losses = new double[laps + 2];
+            boolean[] pits = new boolean[laps + 1];
+            for (int i = 0; i < pitLaps.length; i++) {
+                int lap = Math.min(pitLaps[i], laps);
+                losses[lap + 1] += Math.min(actual.get(i).getpitDuration(), StrategySimulator.MAX_PIT_SECONDS);
+                pits[lap] = true;
+            }
+            double[] extra = new double[laps + 1];
+            double total = 0;
+            int age = 0;
+            for (int lap = 1; lap <= laps; lap++) {
+                total += degradation * age++ + losses[lap];
+                extra[lap] = total;
+                if (pits[lap]) {
+                    age = 0;
+                }
+            }
+            return extra;
+        }
+    }
+}
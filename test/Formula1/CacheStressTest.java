@@ -0,0 +1,321 @@
+package Formula1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * This CacheStressTest class checks that several programs can share one response cache directory at
+ * the same time. It starts a StubOpenF1Server on a generated season and launches a number of worker
+ * JVMs on an empty shared cache, all starting at the same moment. Each worker ingests every race of
+ * the season on several threads, each thread in its own order, while another thread keeps replacing
+ * one large response with its own and reading it back.
+ *
+ * The test passes if the server never served the same response twice, every response left in the
+ * cache matches the one served, no worker ever read a response mixing two writers or cut short, and
+ * no temporary files were left behind.
+ *
+ * Usage: CacheStressTest [--processes=4] [--threads=4] [--year=2024] [--races=4] [--latency=MS]
+ * [--rounds=N]
+ */
+public class CacheStressTest {
+    private static final String CONTENDED_URL = API.OPENF1_URL + "/v1/stress?key=contended";
+    private static final int CONTENDED_ROWS = 4000;
+
+    /**
+     * What one worker saw.
+     *
+     * @param races  The races ingested, over all threads
+     * @param reads  The reads of the contended response
+     * @param torn   The reads of the contended response that were not one whole write
+     * @param errors The lines of the worker's output reporting an error
+     */
+    private record WorkerResult(int races, int reads, int torn, int errors) {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--worker")) {
+            worker(args);
+            return;
+        }
+        int processes = 4, threads = 4, year = 2024, races = 4, rounds = 40;
+        long latency = 20;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--processes=")) {
+                processes = Integer.parseInt(value);
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.startsWith("--year=")) {
+                year = Integer.parseInt(value);
+            } else if (arg.startsWith("--races=")) {
+                races = Integer.parseInt(value);
+            } else if (arg.startsWith("--latency=")) {
+                latency = Long.parseLong(value);
+            } else if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(value);
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+
+        Path fixtures = Files.createTempDirectory("f1-fixtures");
+        FixtureGenerator.write(fixtures, year, races, year);
+        Path shared = Files.createTempDirectory("f1-shared-cache");
+        StubOpenF1Server server = new StubOpenF1Server(new ResponseCache(fixtures, true), 0);
+        server.setLatency(latency, latency);
+        server.start();
+
+        List<WorkerResult> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            // Give every JVM time to start so they all begin fetching together
+            long startAt = System.currentTimeMillis() + 1500 + 250L * processes;
+            List<Process> workers = new ArrayList<>();
+            for (int p = 0; p < processes; p++) {
+                workers.add(new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), CacheStressTest.class.getName(), "--worker",
+                    server.getBaseURL(), shared.toString(), String.valueOf(year), String.valueOf(threads),
+                    String.valueOf(p), String.valueOf(rounds), String.valueOf(startAt))
+                    .redirectErrorStream(true).start());
+            }
+            for (int p = 0; p < workers.size(); p++) {
+                results.add(collect(p, workers.get(p)));
+            }
+        } finally {
+            server.stop();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int ingested = 0, reads = 0, torn = 0, errors = 0;
+        for (WorkerResult result : results) {
+            ingested += result.races();
+            reads += result.reads();
+            torn += result.torn();
+            errors += result.errors();
+        }
+        int[] entries = checkEntries(fixtures, shared);
+        long leftovers;
+        try (Stream<Path> files = Files.list(shared)) {
+            leftovers = files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count();
+        }
+
+        System.out.printf("%d processes x %d threads ingested %d races in %.1f s%n", processes, threads, ingested,
+            seconds);
+        System.out.printf("server: %d requests, %d distinct responses, %d downloaded again, %d missing%n",
+            server.getRequestCount(), server.getDistinctCount(), server.getDuplicateCount(),
+            server.getMissingCount());
+        System.out.printf("cache: %d entries, %d differ from the served response, %d temporary files left%n",
+            entries[0], entries[1], leftovers);
+        System.out.printf("contended response: %d reads, %d torn%n", reads, torn);
+        System.out.printf("worker errors: %d%n", errors);
+
+        boolean passed = server.getDuplicateCount() == 0 && entries[1] == 0 && leftovers == 0 && torn == 0
+            && errors == 0 && ingested == processes * threads * races;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Waits for a worker to finish, echoing its errors and reading its result line.
+     *
+     * @param index  The number of the worker
+     * @param worker The worker process
+     * @return What the worker saw, or a result with one error if it did not report
+     * @throws IOException          If the output of the worker cannot be read
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private static WorkerResult collect(int index, Process worker) throws IOException, InterruptedException {
+        WorkerResult result = null;
+        int errors = 0;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(worker.getInputStream(),
+            StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("RESULT ")) {
+                    String[] fields = line.split(" ");
+                    result = new WorkerResult(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+                } else {
+                    System.out.println("worker " + index + ": " + line);
+                    if (line.startsWith("Error")) {
+                        errors++;
+                    }
+                }
+            }
+        }
+        if (!worker.waitFor(5, TimeUnit.MINUTES) || result == null) {
+            worker.destroyForcibly();
+            return new WorkerResult(0, 0, 0, errors + 1);
+        }
+        return new WorkerResult(result.races(), result.reads(), result.torn(), result.errors() + errors);
+    }
+
+    /**
+     * Compares every response in the shared cache with the fixture it was served from.
+     *
+     * @param fixtures The directory of the fixtures
+     * @param shared   The shared cache directory
+     * @return The number of responses compared and the number that differ
+     * @throws IOException If a directory cannot be listed
+     */
+    private static int[] checkEntries(Path fixtures, Path shared) throws IOException {
+        Path contended = new ResponseCache(shared, true).fileFor(CONTENDED_URL);
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(shared)) {
+            entries = files.filter(file -> file.getFileName().toString().endsWith(".json"))
+                .filter(file -> !file.equals(contended)).toList();
+        }
+        int differ = 0;
+        for (Path entry : entries) {
+            Path fixture = fixtures.resolve(entry.getFileName());
+            try {
+                if (!Files.isRegularFile(fixture) || !new JSONArray(Files.readString(entry)).toString()
+                    .equals(new JSONArray(Files.readString(fixture)).toString())) {
+                    differ++;
+                }
+            } catch (JSONException e) {
+                differ++;
+            }
+        }
+        return new int[] {entries.size(), differ};
+    }
+
+    /**
+     * Runs one worker: ingests the season on several threads while another thread keeps replacing and
+     * reading back the contended response, then prints a RESULT line with races, reads, torn reads and
+     * errors.
+     *
+     * @param args --worker, the server URL, the cache directory, the year, the number of threads, the
+     *             number of the worker, the rounds of contended writes, and the time to start at
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    private static void worker(String[] args) throws InterruptedException {
+        String baseURL = args[1];
+        ResponseCache cache = new ResponseCache(Paths.get(args[2]), false);
+        int year = Integer.parseInt(args[3]), threads = Integer.parseInt(args[4]), index = Integer.parseInt(args[5]);
+        int rounds = Integer.parseInt(args[6]);
+        long startAt = Long.parseLong(args[7]);
+        Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+
+        API openf1 = new API(baseURL, cache);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        List<Future<Integer>> ingests = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = index * 1000L + t;
+            ingests.add(pool.submit(() -> ingest(openf1, year, new Random(seed))));
+        }
+        Future<int[]> contention = pool.submit(() -> contend(cache, index, rounds));
+
+        int races = 0, errors = 0;
+        int[] reads = {0, 0};
+        try {
+            for (Future<Integer> ingest : ingests) {
+                races += ingest.get();
+            }
+            reads = contention.get();
+        } catch (ExecutionException e) {
+            System.out.println(e.getCause());
+            System.out.println("Error in CacheStressTest.worker");
+            errors++;
+        }
+        pool.shutdown();
+        System.out.println("RESULT " + races + " " + reads[0] + " " + reads[1] + " " + errors);
+    }
+
+    /**
+     * Ingests every race of a season in a random order, the way DataSource does.
+     *
+     * @param openf1 The API of the worker
+     * @param year   The year of the season
+     * @param random The order of the races
+     * @return The number of races ingested
+     */
+    private static int ingest(API openf1, int year, Random random) {
+        List<Race> races = new ArrayList<>(openf1.getSeasonRaces(year));
+        Collections.shuffle(races, random);
+        for (Race race : races) {
+            new RaceData(openf1.fetchDriverInfo(race.getSessionKey()), openf1.fetchPitInfo(race.getSessionKey()),
+                openf1.fetchStintInfo(race.getSessionKey()));
+        }
+        return races.size();
+    }
+
+    /**
+     * Replaces the contended response with this worker's own and reads it back, over and over. Every
+     * read must be one whole write, by this worker or another.
+     *
+     * @param cache  The shared cache
+     * @param index  The number of the worker
+     * @param rounds The number of writes
+     * @return The number of reads and the number of torn reads
+     */
+    private static int[] contend(ResponseCache cache, int index, int rounds) {
+        int reads = 0, torn = 0;
+        for (int round = 0; round < rounds; round++) {
+            StringBuilder body = new StringBuilder("[");
+            for (int row = 0; row < CONTENDED_ROWS; row++) {
+                body.append(row > 0 ? "," : "").append("{\"writer\":").append(index).append(",\"round\":")
+                    .append(round).append(",\"row\":").append(row).append('}');
+            }
+            cache.put(CONTENDED_URL, body.append(']').toString());
+            for (int read = 0; read < 3; read++) {
+                reads++;
+                if (!isWhole(cache.get(CONTENDED_URL))) {
+                    torn++;
+                }
+            }
+        }
+        return new int[] {reads, torn};
+    }
+
+    /**
+     * Checks that a contended response was written by one writer in one round, with all its rows.
+     *
+     * @param body The response read
+     * @return true if the response is whole
+     */
+    private static boolean isWhole(String body) {
+        if (body == null) {
+            return false;
+        }
+        try {
+            JSONArray rows = new JSONArray(body);
+            if (rows.length() != CONTENDED_ROWS) {
+                return false;
+            }
+            JSONObject first = rows.getJSONObject(0);
+            for (int row = 0; row < rows.length(); row++) {
+                JSONObject object = rows.getJSONObject(row);
+                if (object.getInt("writer") != first.getInt("writer") || object.getInt("round") != first.getInt("round")
+                    || object.getInt("row") != row) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package Formula1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This FirstChartTiming class measures the time from launching the JVM to having the first chart of
+ * a season laid out, once with the season read from a snapshot and once with it fetched from the API,
+ * so the gain of bundling snapshots can be quantified.
+ *
+ * Every launch is a fresh JVM, so class loading and JIT warm-up are counted like in a real start. The
+ * live launches fetch from a StubOpenF1Server with the given latency, and the snapshot launches read
+ * snapshots converted from the same responses. The window is not opened, so the time of creating it,
+ * which is the same both ways, is left out.
+ *
+ * Usage: FirstChartTiming [--fixtures=DIR] [--year=2024] [--latency=MS] [--launches=N]
+ */
+public class FirstChartTiming {
+    private static final String RESULT_PREFIX = "first-chart-ms=";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].startsWith("--child=")) {
+            runChild(args);
+            return;
+        }
+
+        Path fixtures = null;
+        int year = 2024, launches = 5;
+        long latency = 80;
+        for (String arg : args) {
+            if (arg.startsWith("--fixtures=")) {
+                fixtures = Paths.get(arg.substring("--fixtures=".length()));
+            } else if (arg.startsWith("--year=")) {
+                year = Integer.parseInt(arg.substring("--year=".length()));
+            } else if (arg.startsWith("--latency=")) {
+                latency = Long.parseLong(arg.substring("--latency=".length()));
+            } else if (arg.startsWith("--launches=")) {
+                launches = Integer.parseInt(arg.substring("--launches=".length()));
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+        if (fixtures == null) {
+            fixtures = Files.createTempDirectory("f1-fixtures");
+            FixtureGenerator.write(fixtures, year, 22, year);
+        }
+
+        Path snapshots = Files.createTempDirectory("f1-snapshots");
+        new SnapshotConverter(new ResponseCache(fixtures, true))
+            .convert(year, snapshots.resolve(SnapshotConverter.fileName(year)));
+        Path noSnapshots = Files.createTempDirectory("f1-no-snapshots");
+
+        StubOpenF1Server server = new StubOpenF1Server(new ResponseCache(fixtures, true), 0);
+        server.setLatency(latency, 0);
+        server.start();
+        try {
+            System.out.printf(Locale.ROOT, "Season %d, %d launches each, live latency %d ms%n", year, launches,
+                latency);
+            report("snapshot", launch(snapshots, server, year, launches));
+            report("live", launch(noSnapshots, server, year, launches));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Launches fresh JVMs that each lay out the first chart of a season.
+     *
+     * @param snapshotDir The directory of snapshots the launches may use
+     * @param server      The server the launches fetch from when there is no snapshot
+     * @param year        The year of the season
+     * @param launches    The number of JVMs to launch one after another
+     * @return The time to the first chart of each launch in milliseconds
+     * @throws IOException          If a JVM cannot be started
+     * @throws InterruptedException If interrupted while waiting for a JVM
+     */
+    private static long[] launch(Path snapshotDir, StubOpenF1Server server, int year, int launches)
+        throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        long[] times = new long[launches];
+        for (int i = 0; i < launches; i++) {
+            Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-Djava.awt.headless=true", FirstChartTiming.class.getName(),
+                "--child=" + snapshotDir, server.getBaseURL(), String.valueOf(year))
+                .redirectErrorStream(true).start();
+            times[i] = -1;
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        times[i] = Long.parseLong(line.substring(RESULT_PREFIX.length()));
+                    }
+                }
+            }
+            process.waitFor();
+        }
+        return times;
+    }
+
+    /**
+     * Lays out the first chart of a season as the program would on its first Data click and prints how
+     * long after the JVM started it was done.
+     *
+     * @param args The snapshot directory, the base URL of the server, and the year
+     */
+    private static void runChild(String[] args) {
+        Path snapshotDir = Paths.get(args[0].substring("--child=".length()));
+        DataSource data = new DataSource(new API(args[1], null), snapshotDir);
+        List<Race> races = new ArrayList<>();
+        data.streamSeasonRaces(Integer.parseInt(args[2]), races::add);
+        if (races.isEmpty()) {
+            System.out.println("No races");
+            return;
+        }
+        Race race = races.get(0);
+        ChartLayout layout = new ChartLayout(race, data.fetchRaceData(race), 1280, 720);
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.out.println(layout.getTraces().size() + " traces");
+        System.out.println(RESULT_PREFIX + uptime);
+    }
+
+    /**
+     * Prints the median, fastest, and slowest launch of one way of loading.
+     *
+     * @param name  The way of loading
+     * @param times The time to the first chart of each launch, with -1 for failed launches
+     */
+    private static void report(String name, long[] times) {
+        long[] done = Arrays.stream(times).filter(time -> time >= 0).sorted().toArray();
+        if (done.length == 0) {
+            System.out.println(name + ": every launch failed");
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%-9s median %5d ms  min %5d ms  max %5d ms  (%d of %d launches)%n", name,
+            done[done.length / 2], done[0], done[done.length - 1], done.length, times.length);
+    }
+}
@@ -0,0 +1,260 @@
+package Formula1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * This FixtureGenerator class writes synthetic OpenF1 responses into a response cache directory, so
+ * benchmarks and harnesses have realistic data to work on without the network.
+ *
+ * The responses have the same shape as the real sessions, drivers, pit, laps, stints, and position
+ * endpoints: twenty drivers of ten teams, a full race distance of laps with a missing duration on the
+ * first lap, one to three pit stops per driver, each starting a stint on a new compound, and an update
+ * of each position that changes as the drivers cross the line. The output is decided by the seed, so
+ * the same arguments always produce the same files. A directory recorded from the real API with
+ * ResponseCache can be used in place of a generated one.
+ *
+ * Usage: FixtureGenerator DIRECTORY YEAR RACES [SEED]
+ */
+public class FixtureGenerator {
+    private static final String[] CIRCUITS = {
+        "Sakhir", "Jeddah", "Melbourne", "Suzuka", "Shanghai", "Miami", "Imola", "Monte Carlo", "Montreal",
+        "Catalunya", "Spielberg", "Silverstone", "Hungaroring", "Spa-Francorchamps", "Zandvoort", "Monza",
+        "Baku", "Singapore", "Austin", "Mexico City", "Interlagos", "Las Vegas", "Lusail", "Yas Marina"
+    };
+    private static final String[] TEAMS = {
+        "Red Bull Racing", "Ferrari", "Mercedes", "McLaren", "Aston Martin",
+        "Alpine", "Williams", "RB", "Kick Sauber", "Haas F1 Team"
+    };
+    private static final String[] COLOURS = {
+        "3671C6", "E8002D", "27F4D2", "FF8000", "229971", "FF87BC", "64C4FF", "6692FF", "52E252", "B6BABD"
+    };
+    private static final String[] ACRONYMS = {
+        "VER", "PER", "LEC", "SAI", "HAM", "RUS", "NOR", "PIA", "ALO", "STR",
+        "GAS", "OCO", "ALB", "SAR", "TSU", "RIC", "BOT", "ZHO", "HUL", "MAG"
+    };
+    private static final String[] COMPOUNDS = {"SOFT", "MEDIUM", "HARD"};
+    private static final int[] NUMBERS = {1, 11, 16, 55, 44, 63, 4, 81, 14, 18, 10, 31, 23, 2, 22, 3, 77, 24, 27, 20};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: FixtureGenerator DIRECTORY YEAR RACES [SEED]");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        int year = Integer.parseInt(args[1]);
+        int races = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : year;
+        write(directory, year, races, seed);
+        System.out.println("Wrote " + races + " races of " + year + " to " + directory);
+    }
+
+    /**
+     * Writes a season of synthetic responses into a response cache directory.
+     *
+     * @param directory The directory of the response cache
+     * @param year      The year of the season
+     * @param races     The number of races in the season, at most the number of known circuits
+     * @param seed      The seed deciding every lap time and pit stop
+     * @return The cache holding the responses
+     * @throws IOException If the directory cannot be written
+     */
+    public static ResponseCache write(Path directory, int year, int races, long seed) throws IOException {
+        Files.createDirectories(directory);
+        ResponseCache cache = new ResponseCache(directory, false);
+        API urls = new API();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        JSONArray sessions = new JSONArray();
+        for (int r = 0; r < Math.min(races, CIRCUITS.length); r++) {
+            int sessionKey = year * 100 + r + 1;
+            Instant start = Instant.parse(year + "-03-02T15:00:00Z").plusSeconds(r * 14L * 24 * 3600);
+
+            JSONObject session = new JSONObject();
+            session.put("session_key", sessionKey);
+            session.put("session_name", "Race");
+            session.put("session_type", "Race");
+            session.put("circuit_short_name", CIRCUITS[r]);
+            session.put("date_start", iso(start));
+            session.put("year", year);
+            sessions.put(session);
+
+            writeRace(cache, urls, random, sessionKey, start);
+        }
+        cache.put(urls.getSeasonURL(year), sessions.toString());
+        return cache;
+    }
+
+    /**
+     * Writes the drivers, pit, laps, stints, and position responses of one race. The compounds come from
+     * a source of their own, so the lap times and pit stops do not depend on them, and the positions
+     * follow from the lap times.
+     *
+     * @param cache      The cache to write the responses into
+     * @param urls       The API whose request URLs key the responses
+     * @param random     The source of lap times and pit stops
+     * @param sessionKey The session key of the race
+     * @param start      The start of the race
+     */
+    private static void writeRace(ResponseCache cache, API urls, SplittableRandom random, int sessionKey,
+        Instant start) {
+        int totalLaps = 50 + random.nextInt(21);
+        JSONArray drivers = new JSONArray();
+        JSONArray pits = new JSONArray();
+        JSONArray stints = new JSONArray();
+        SplittableRandom tyres = new SplittableRandom(sessionKey);
+        List<long[]> crossings = new ArrayList<>();
+
+        for (int d = 0; d < NUMBERS.length; d++) {
+            JSONObject driver = new JSONObject();
+            driver.put("session_key", sessionKey);
+            driver.put("driver_number", NUMBERS[d]);
+            driver.put("name_acronym", ACRONYMS[d]);
+            driver.put("team_name", TEAMS[d / 2]);
+            driver.put("team_colour", COLOURS[d / 2]);
+            drivers.put(driver);
+
+            // A few drivers retire early, and the rest are spread over a small pace difference
+            int laps = random.nextInt(10) == 0 ? 10 + random.nextInt(totalLaps - 10) : totalLaps;
+            double pace = 90 + d * 0.15 + random.nextDouble();
+            int stops = 1 + random.nextInt(3);
+            int[] stopLaps = new int[stops];
+            for (int s = 0; s < stops; s++) {
+                stopLaps[s] = (s + 1) * totalLaps / (stops + 1) + random.nextInt(7) - 3;
+            }
+
+            JSONArray driverLaps = new JSONArray();
+            double time = 0;
+            int nextStop = 0;
+            for (int lap = 1; lap <= laps; lap++) {
+                double duration = pace + random.nextDouble() * 1.5;
+                JSONObject lapObject = new JSONObject();
+                lapObject.put("session_key", sessionKey);
+                lapObject.put("driver_number", NUMBERS[d]);
+                lapObject.put("lap_number", lap);
+                lapObject.put("date_start", iso(start.plusMillis((long) (time * 1000))));
+                // The first lap has no duration, like in the real data
+                lapObject.put("lap_duration", lap == 1 ? JSONObject.NULL : duration);
+                driverLaps.put(lapObject);
+
+                if (nextStop < stops && lap == stopLaps[nextStop]) {
+                    double pitDuration = 20 + random.nextDouble() * 8;
+                    JSONObject pit = new JSONObject();
+                    pit.put("session_key", sessionKey);
+                    pit.put("driver_number", NUMBERS[d]);
+                    pit.put("lap_number", lap);
+                    pit.put("pit_duration", pitDuration);
+                    pit.put("date", iso(start.plusMillis((long) ((time + duration - 5) * 1000))));
+                    pits.put(pit);
+                    duration += pitDuration;
+                    nextStop++;
+                }
+                time += duration;
+                crossings.add(new long[] {(long) (time * 1000), d});
+            }
+            cache.put(urls.getLapsURL(sessionKey, NUMBERS[d]), driverLaps.toString());
+
+            int compound = tyres.nextInt(COMPOUNDS.length), lapStart = 1;
+            for (int s = 0; s <= nextStop; s++) {
+                int lapEnd = s < nextStop ? stopLaps[s] : laps;
+                JSONObject stint = new JSONObject();
+                stint.put("session_key", sessionKey);
+                stint.put("driver_number", NUMBERS[d]);
+                stint.put("stint_number", s + 1);
+                stint.put("lap_start", lapStart);
+                stint.put("lap_end", lapEnd);
+                stint.put("compound", COMPOUNDS[compound]);
+                // Now and then a set already driven on in qualifying
+                stint.put("tyre_age_at_start", tyres.nextInt(4) == 0 ? 3 : 0);
+                stints.put(stint);
+                compound = (compound + 1 + tyres.nextInt(COMPOUNDS.length - 1)) % COMPOUNDS.length;
+                lapStart = lapEnd + 1;
+            }
+        }
+        cache.put(urls.getDriversURL(sessionKey), drivers.toString());
+        cache.put(urls.getPitURL(sessionKey), pits.toString());
+        cache.put(urls.getStintsURL(sessionKey), stints.toString());
+        cache.put(urls.getPositionURL(sessionKey), positions(sessionKey, start, crossings).toString());
+    }
+
+    /**
+     * Works out the position updates of a race from the times the drivers crossed the line: the grid in
+     * driver order a minute before the start, then an update for each driver whose position changes
+     * when someone crosses the line. A driver ahead has completed more laps, or as many laps sooner.
+     *
+     * @param sessionKey The session key of the race
+     * @param start      The start of the race
+     * @param crossings  The time in milliseconds from the start and the index of the driver of each
+     *                   lap completed
+     * @return The JSON array of position updates, in time order
+     */
+    private static JSONArray positions(int sessionKey, Instant start, List<long[]> crossings) {
+        JSONArray positions = new JSONArray();
+        int[] laps = new int[NUMBERS.length];
+        long[] lastCrossing = new long[NUMBERS.length];
+        int[] position = new int[NUMBERS.length];
+        Integer[] order = new Integer[NUMBERS.length];
+        for (int d = 0; d < NUMBERS.length; d++) {
+            order[d] = d;
+            position[d] = d + 1;
+            positions.put(position(sessionKey, NUMBERS[d], start.minusSeconds(60), d + 1));
+        }
+        Comparator<Integer> ahead = Comparator.comparingInt((Integer d) -> -laps[d])
+            .thenComparingLong(d -> lastCrossing[d]).thenComparingInt(d -> d);
+
+        crossings.sort(Comparator.comparingLong((long[] crossing) -> crossing[0]));
+        for (long[] crossing : crossings) {
+            int driver = (int) crossing[1];
+            laps[driver]++;
+            lastCrossing[driver] = crossing[0];
+            Arrays.sort(order, ahead);
+            for (int p = 0; p < order.length; p++) {
+                if (position[order[p]] != p + 1) {
+                    position[order[p]] = p + 1;
+                    positions.put(position(sessionKey, NUMBERS[order[p]], start.plusMillis(crossing[0]), p + 1));
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Builds one row of the position endpoint.
+     *
+     * @param sessionKey   The session key of the race
+     * @param driverNumber The number of the driver
+     * @param date         The time of the update
+     * @param position     The position of the driver from 1
+     * @return The JSON object of the update
+     */
+    private static JSONObject position(int sessionKey, int driverNumber, Instant date, int position) {
+        JSONObject row = new JSONObject();
+        row.put("session_key", sessionKey);
+        row.put("driver_number", driverNumber);
+        row.put("date", iso(date));
+        row.put("position", position);
+        return row;
+    }
+
+    /**
+     * Formats an instant the way OpenF1 does.
+     *
+     * @param instant The instant to format
+     * @return The ISO-8601 date and time with an offset
+     */
+    private static String iso(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC).toString();
+    }
+}
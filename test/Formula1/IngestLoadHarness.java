@@ -0,0 +1,260 @@
+package Formula1;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This IngestLoadHarness class measures how long whole seasons take to ingest through the real API
+ * and RaceData code, fetching from a StubOpenF1Server on this machine instead of OpenF1.
+ *
+ * For every parallelism level, the harness fetches each season's races and then fetches the drivers
+ * and pit stops of every race on a pool of that many threads, building a RaceData for each. It
+ * reports races per second, the median and 99th percentile time of a race, the requests made, the
+ * races that failed, and the peak heap used.
+ *
+ * With --pipeline, the races go through an IngestPipeline instead, with that many fetch threads, and
+ * what each of its stages did is printed after each run. The time of a race is then the time between
+ * putting it into the pipeline and the sink receiving it.
+ *
+ * Usage: IngestLoadHarness [--fixtures=DIR] [--years=2023,2024] [--threads=1,4,16] [--latency=MS]
+ * [--jitter=MS] [--failure-rate=P] [--rounds=N] [--pipeline]
+ *
+ * Without --fixtures, a synthetic season is generated for each year with FixtureGenerator. A cache
+ * recorded from the real API, such as .f1cache, gives the most realistic results.
+ */
+public class IngestLoadHarness {
+    private final API openf1;
+    private final StubOpenF1Server server;
+    private final List<Integer> years;
+    private boolean pipeline;
+
+    /**
+     * The outcome of one ingest run.
+     *
+     * @param threads     The number of races fetched at the same time
+     * @param races       The number of races ingested
+     * @param failed      The number of races that could not be ingested
+     * @param wallNanos   The time the whole run took
+     * @param raceNanos   The time each race took, sorted
+     * @param requests    The number of requests the server received
+     * @param peakHeap    The peak heap use during the run in bytes
+     */
+    public record RunResult(int threads, int races, int failed, long wallNanos, long[] raceNanos, long requests,
+        long peakHeap) {
+    }
+
+    /**
+     * Constructs a harness ingesting seasons from a stub server.
+     *
+     * @param server The running server to fetch from
+     * @param years  The years of the seasons to ingest
+     */
+    public IngestLoadHarness(StubOpenF1Server server, List<Integer> years) {
+        this.server = server;
+        this.years = years;
+        // No response cache, so every request goes over HTTP to the stub
+        this.openf1 = new API(server.getBaseURL(), null);
+    }
+
+    /**
+     * Chooses whether the races go through an IngestPipeline or a plain pool of threads.
+     *
+     * @param pipeline true to use an IngestPipeline
+     */
+    public void setPipeline(boolean pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path fixtures = null;
+        List<Integer> years = List.of(2023, 2024);
+        int[] threadCounts = {1, 4, 16};
+        long latency = 0, jitter = 0;
+        double failureRate = 0;
+        int rounds = 1;
+        boolean pipeline = false;
+        for (String arg : args) {
+            if (arg.startsWith("--fixtures=")) {
+                fixtures = Paths.get(arg.substring("--fixtures=".length()));
+            } else if (arg.startsWith("--years=")) {
+                years = Arrays.stream(arg.substring("--years=".length()).split(",")).map(Integer::valueOf).toList();
+            } else if (arg.startsWith("--threads=")) {
+                threadCounts = Arrays.stream(arg.substring("--threads=".length()).split(","))
+                    .mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--latency=")) {
+                latency = Long.parseLong(arg.substring("--latency=".length()));
+            } else if (arg.startsWith("--jitter=")) {
+                jitter = Long.parseLong(arg.substring("--jitter=".length()));
+            } else if (arg.startsWith("--failure-rate=")) {
+                failureRate = Double.parseDouble(arg.substring("--failure-rate=".length()));
+            } else if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            } else if (arg.equals("--pipeline")) {
+                pipeline = true;
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+
+        if (fixtures == null) {
+            fixtures = Files.createTempDirectory("f1-fixtures");
+            for (int year : years) {
+                FixtureGenerator.write(fixtures, year, 22, year);
+            }
+        }
+
+        StubOpenF1Server server = new StubOpenF1Server(new ResponseCache(fixtures, true), 0);
+        server.setLatency(latency, jitter);
+        server.setFailureRate(failureRate);
+        server.start();
+        System.out.printf(Locale.ROOT, "Serving %s at %s, latency %d+%d ms, failure rate %.3f%n",
+            fixtures, server.getBaseURL(), latency, jitter, failureRate);
+        System.out.println("threads  races  failed  races/s   p50 ms   p99 ms  requests  peak heap MB");
+        try {
+            IngestLoadHarness harness = new IngestLoadHarness(server, years);
+            harness.setPipeline(pipeline);
+            for (int round = 0; round < rounds; round++) {
+                for (int threads : threadCounts) {
+                    print(harness.run(threads));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Ingests every season once with a number of races fetched at the same time.
+     *
+     * @param threads The number of races fetched at the same time
+     * @return The measurements of the run
+     */
+    public RunResult run(int threads) {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long requestsBefore = server.getRequestCount();
+        long start = System.nanoTime();
+
+        List<Race> races = new ArrayList<>();
+        for (int year : years) {
+            races.addAll(openf1.getSeasonRaces(year));
+        }
+        if (pipeline) {
+            return runPipeline(threads, races, heapPools, requestsBefore, start);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (Race race : races) {
+            futures.add(pool.submit(() -> ingest(race)));
+        }
+        long[] raceNanos = new long[futures.size()];
+        int done = 0, failed = 0;
+        for (Future<Long> future : futures) {
+            try {
+                raceNanos[done++] = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                failed++;
+                done--;
+            }
+        }
+        pool.shutdown();
+
+        long wall = System.nanoTime() - start;
+        long peakHeap = heapPools.stream().mapToLong(heap -> heap.getPeakUsage().getUsed()).sum();
+        long[] times = Arrays.copyOf(raceNanos, done);
+        Arrays.sort(times);
+        return new RunResult(threads, races.size(), failed, wall, times, server.getRequestCount() - requestsBefore,
+            peakHeap);
+    }
+
+    /**
+     * Ingests the races through an IngestPipeline and prints what each stage did.
+     *
+     * @param threads        The number of fetch threads
+     * @param races          The races to ingest
+     * @param heapPools      The heap pools whose peak use is reported
+     * @param requestsBefore The number of requests the server had received before the run
+     * @param start          When the run started, from System.nanoTime()
+     * @return The measurements of the run
+     */
+    private RunResult runPipeline(int threads, List<Race> races, List<MemoryPoolMXBean> heapPools,
+        long requestsBefore, long start) {
+        IngestPipeline.Settings defaults = IngestPipeline.Settings.defaults();
+        IngestPipeline ingest = new IngestPipeline(openf1, new IngestPipeline.Settings(threads,
+            defaults.decodeThreads(), defaults.modelThreads(), defaults.layoutThreads(), defaults.queueCapacity()));
+        List<Long> raceNanos = new ArrayList<>();
+        IngestPipeline.Report report = ingest.run(races, done -> raceNanos.add(done.latencyNanos()));
+        long wall = System.nanoTime() - start;
+        long peakHeap = heapPools.stream().mapToLong(heap -> heap.getPeakUsage().getUsed()).sum();
+        long[] times = raceNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.print(report.summary());
+        return new RunResult(threads, races.size(), races.size() - times.length, wall, times,
+            server.getRequestCount() - requestsBefore, peakHeap);
+    }
+
+    /**
+     * Fetches the drivers and pit stops of a race and builds its race data.
+     *
+     * @param race The race to ingest
+     * @return The time the race took in nanoseconds
+     */
+    private long ingest(Race race) {
+        long start = System.nanoTime();
+        List<Driver> drivers = openf1.fetchDriverInfo(race.getSessionKey());
+        List<Pitstop> pitstops = openf1.fetchPitInfo(race.getSessionKey());
+        RaceData raceData = new RaceData(drivers, pitstops);
+        if (raceData.getDrivers().isEmpty()) {
+            throw new IllegalStateException("No drivers for " + race.getCircuitName());
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Prints one row of the report.
+     *
+     * @param result The measurements of a run
+     */
+    private static void print(RunResult result) {
+        double seconds = result.wallNanos() / 1e9;
+        int succeeded = result.races() - result.failed();
+        System.out.printf(Locale.ROOT, "%7d  %5d  %6d  %7.2f  %7.1f  %7.1f  %8d  %12.1f%n",
+            result.threads(), result.races(), result.failed(), succeeded / seconds,
+            percentile(result.raceNanos(), 0.50) / 1e6, percentile(result.raceNanos(), 0.99) / 1e6,
+            result.requests(), result.peakHeap() / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Finds a percentile of sorted values by the nearest rank.
+     *
+     * @param sorted   The values in ascending order
+     * @param fraction The percentile between 0 and 1
+     * @return The value at the percentile, or 0 if there are no values
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
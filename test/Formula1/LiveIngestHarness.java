@@ -0,0 +1,180 @@
+package Formula1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * This LiveIngestHarness class follows a recorded race with a LiveSession as if it were happening
+ * now, against a LiveOpenF1Server releasing the race over time, and checks that the cost of a poll
+ * stays the same as the race goes on.
+ *
+ * It prints the rows, bytes, and time of the polls as the race goes on, compares the early and late
+ * polls, and checks that the race data built from the polls matches the race data fetched in one go
+ * after the race.
+ *
+ * Usage: LiveIngestHarness [--fixtures=DIR] [--year=2024] [--race=1] [--speedup=120] [--interval=MS]
+ *
+ * Without --fixtures, a synthetic season is generated with FixtureGenerator.
+ */
+public class LiveIngestHarness {
+    /**
+     * The measurements of one poll.
+     *
+     * @param raceTime The race time of the poll
+     * @param rows     The rows fetched
+     * @param bytes    The response bytes fetched
+     * @param nanos    The time the poll took
+     * @param changed  The number of drivers whose trace changed
+     */
+    private record PollResult(Duration raceTime, int rows, long bytes, long nanos, int changed) {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path fixtures = null;
+        int year = 2024, raceNumber = 1;
+        double speedup = 120;
+        long interval = 200;
+        for (String arg : args) {
+            if (arg.startsWith("--fixtures=")) {
+                fixtures = Paths.get(arg.substring("--fixtures=".length()));
+            } else if (arg.startsWith("--year=")) {
+                year = Integer.parseInt(arg.substring("--year=".length()));
+            } else if (arg.startsWith("--race=")) {
+                raceNumber = Integer.parseInt(arg.substring("--race=".length()));
+            } else if (arg.startsWith("--speedup=")) {
+                speedup = Double.parseDouble(arg.substring("--speedup=".length()));
+            } else if (arg.startsWith("--interval=")) {
+                interval = Long.parseLong(arg.substring("--interval=".length()));
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+        if (fixtures == null) {
+            fixtures = Files.createTempDirectory("f1-fixtures");
+            FixtureGenerator.write(fixtures, year, raceNumber, year);
+        }
+
+        API recorded = new API(new ResponseCache(fixtures, true));
+        List<Race> races = recorded.getSeasonRaces(year);
+        if (races.size() < raceNumber) {
+            System.out.println("No race " + raceNumber + " in " + year);
+            return;
+        }
+        Race race = races.get(raceNumber - 1);
+
+        LiveOpenF1Server server = new LiveOpenF1Server(new ResponseCache(fixtures, true), race, speedup, 0);
+        server.start();
+        try {
+            LiveSession session = new LiveSession(new API(server.getBaseURL(), null), race, server.clock());
+            RaceData raceData = session.start();
+            System.out.printf(Locale.ROOT, "%s %d, %.0fx real time, a poll every %d ms (%.0f s of race time)%n",
+                race.getCircuitName(), year, speedup, interval, interval * speedup / 1000);
+            System.out.println("race time  polls  rows/poll  bytes/poll  ms/poll  drivers changed");
+
+            List<PollResult> results = new ArrayList<>();
+            Instant end = server.getLastPublished().plusMillis((long) (interval * speedup));
+            Duration nextReport = Duration.ofMinutes(10);
+            int reportedFrom = 0;
+            while (server.now().isBefore(end)) {
+                Thread.sleep(interval);
+                long bytesBefore = server.getBytesServed();
+                long start = System.nanoTime();
+                LiveSession.Delta delta = session.poll();
+                int changed = LiveSession.apply(raceData, delta).size();
+                long nanos = System.nanoTime() - start;
+                Duration raceTime = Duration.between(race.getRaceStartTime(), server.now());
+                results.add(new PollResult(raceTime, delta.rows(), server.getBytesServed() - bytesBefore, nanos,
+                    changed));
+                if (raceTime.compareTo(nextReport) >= 0) {
+                    print(raceTime, results.subList(reportedFrom, results.size()));
+                    reportedFrom = results.size();
+                    nextReport = nextReport.plusMinutes(10);
+                }
+            }
+            if (reportedFrom < results.size()) {
+                print(Duration.between(race.getRaceStartTime(), server.now()),
+                    results.subList(reportedFrom, results.size()));
+            }
+
+            int third = Math.max(1, results.size() / 3);
+            System.out.printf(Locale.ROOT, "first third %.1f rows, %.0f bytes, %.2f ms per poll; "
+                + "last third %.1f rows, %.0f bytes, %.2f ms per poll%n",
+                mean(results.subList(0, third), PollResult::rows), mean(results.subList(0, third), PollResult::bytes),
+                mean(results.subList(0, third), PollResult::nanos) / 1e6,
+                mean(results.subList(results.size() - third, results.size()), PollResult::rows),
+                mean(results.subList(results.size() - third, results.size()), PollResult::bytes),
+                mean(results.subList(results.size() - third, results.size()), PollResult::nanos) / 1e6);
+            compare(raceData, new RaceData(recorded.fetchDriverInfo(race.getSessionKey()),
+                recorded.fetchPitInfo(race.getSessionKey())));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Prints one row of the report, summarizing the polls since the last row.
+     *
+     * @param raceTime The race time at the end of the polls
+     * @param polls    The polls
+     */
+    private static void print(Duration raceTime, List<PollResult> polls) {
+        System.out.printf(Locale.ROOT, "%5d min  %5d  %9.1f  %10.0f  %7.2f  %15d%n", raceTime.toMinutes(),
+            polls.size(), mean(polls, PollResult::rows), mean(polls, PollResult::bytes),
+            mean(polls, PollResult::nanos) / 1e6, polls.stream().mapToInt(PollResult::changed).sum());
+    }
+
+    /**
+     * Averages a measurement over polls.
+     *
+     * @param polls       The polls
+     * @param measurement The measurement of a poll
+     * @return The mean, or 0 if there are no polls
+     */
+    private static double mean(List<PollResult> polls, ToDoubleFunction<PollResult> measurement) {
+        return polls.stream().mapToDouble(measurement).average().orElse(0);
+    }
+
+    /**
+     * Checks that the race data built from polls matches the race data fetched after the race, and
+     * prints the differences.
+     *
+     * @param polled  The race data built from polls
+     * @param fetched The race data fetched in one go
+     */
+    private static void compare(RaceData polled, RaceData fetched) {
+        int mismatches = 0;
+        for (Driver expected : fetched.getDrivers().values()) {
+            Driver actual = polled.getDrivers().get(expected.getDriverNumber());
+            if (actual == null || actual.getFinalLap() != expected.getFinalLap()
+                || !actual.getFinishTime().equals(expected.getFinishTime())) {
+                mismatches++;
+                System.out.println("Driver " + expected.getDriverNumber() + " differs: "
+                    + (actual == null ? "missing" : "lap " + actual.getFinalLap() + " vs " + expected.getFinalLap()));
+            }
+        }
+        int polledStops = 0, fetchedStops = 0;
+        for (PriorityQueue<Pitstop> pits : polled.getDriversPitstops().values()) {
+            polledStops += pits.size();
+        }
+        for (PriorityQueue<Pitstop> pits : fetched.getDriversPitstops().values()) {
+            fetchedStops += pits.size();
+        }
+        if (polledStops != fetchedStops) {
+            mismatches++;
+            System.out.println("Pit stops differ: " + polledStops + " polled vs " + fetchedStops + " fetched");
+        }
+        System.out.println(mismatches == 0
+            ? "Polled race data matches the full fetch (" + polledStops + " pit stops)"
+            : mismatches + " differences from the full fetch");
+    }
+}
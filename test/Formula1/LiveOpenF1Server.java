@@ -0,0 +1,289 @@
+package Formula1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This LiveOpenF1Server class is a local stand-in for OpenF1 during a race, releasing the recorded
+ * laps and pit stops of one race over time as if it were happening now.
+ *
+ * The race clock starts at the start of the race when the server starts and runs a given number of
+ * times faster than real time. Like OpenF1, a lap is only served once it is completed and a pit stop
+ * once the car has left the pit lane, and the laps and pit endpoints accept the date_start&gt;= and
+ * date&gt;= filters a LiveSession polls with. The recorded responses can come from the real API or
+ * from FixtureGenerator.
+ */
+public class LiveOpenF1Server {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "live-openf1");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Race race;
+    private final double speedup;
+    private final String drivers;
+    private final List<Row> laps = new ArrayList<>();
+    private final List<Row> pits = new ArrayList<>();
+    private Instant lastPublished;
+    private volatile long startNanos;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    /**
+     * A recorded row and when it becomes available.
+     *
+     * @param date      The date the row is filtered on
+     * @param published The race time the row is first served at
+     * @param json      The row as served
+     */
+    private record Row(Instant date, Instant published, String json) {
+    }
+
+    /**
+     * Constructs a server replaying one recorded race, listening on a local port.
+     *
+     * @param recorded The cache holding the drivers, laps, and pit responses of the race
+     * @param race     The race to replay
+     * @param speedup  How many times faster than real time the race runs
+     * @param port     The port to listen on, or 0 for any free port
+     * @throws IOException If the port cannot be opened or the race is not in the cache
+     */
+    public LiveOpenF1Server(ResponseCache recorded, Race race, double speedup, int port) throws IOException {
+        this.race = race;
+        this.speedup = speedup;
+        API urls = new API();
+        int sessionKey = race.getSessionKey();
+        drivers = require(recorded, urls.getDriversURL(sessionKey));
+        lastPublished = race.getRaceStartTime();
+
+        JSONArray driverArray = new JSONArray(drivers);
+        for (int d = 0; d < driverArray.length(); d++) {
+            int driverNumber = driverArray.getJSONObject(d).getInt("driver_number");
+            String lapsJSON = recorded.get(urls.getLapsURL(sessionKey, driverNumber));
+            JSONArray lapArray = new JSONArray(lapsJSON == null ? "[]" : lapsJSON);
+            for (int i = 0; i < lapArray.length(); i++) {
+                JSONObject lap = lapArray.getJSONObject(i);
+                Instant start = OffsetDateTime.parse(lap.getString("date_start")).toInstant();
+                long millis = lap.isNull("lap_duration") ? 0 : (long) (lap.getDouble("lap_duration") * 1000);
+                laps.add(row(start, start.plusMillis(millis), lap));
+            }
+        }
+        JSONArray pitArray = new JSONArray(require(recorded, urls.getPitURL(sessionKey)));
+        for (int i = 0; i < pitArray.length(); i++) {
+            JSONObject pit = pitArray.getJSONObject(i);
+            Instant entry = OffsetDateTime.parse(pit.getString("date")).toInstant();
+            long millis = pit.isNull("pit_duration") ? 0 : (long) (pit.getDouble("pit_duration") * 1000);
+            pits.add(row(entry, entry.plusMillis(millis), pit));
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts the race clock and answering requests.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        server.start();
+    }
+
+    /**
+     * Stops the server and its threads.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the base URL to give to the API so its requests come to this server.
+     *
+     * @return The URL of the server, without a trailing slash
+     */
+    public String getBaseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the current time on the race clock.
+     *
+     * @return The race time now
+     */
+    public Instant now() {
+        long elapsed = startNanos == 0 ? 0 : System.nanoTime() - startNanos;
+        return race.getRaceStartTime().plusNanos((long) (elapsed * speedup));
+    }
+
+    /**
+     * Gets a clock following the race clock, for a LiveSession polling this server.
+     *
+     * @return The clock
+     */
+    public Clock clock() {
+        return new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now();
+            }
+        };
+    }
+
+    /**
+     * Gets the race time the last row becomes available at.
+     *
+     * @return The time the race is fully released
+     */
+    public Instant getLastPublished() {
+        return lastPublished;
+    }
+
+    /**
+     * Gets the number of requests received.
+     *
+     * @return The number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of response body bytes sent.
+     *
+     * @return The number of bytes
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Records a row, keeping track of the last one to be released.
+     *
+     * @param date      The date the row is filtered on
+     * @param published The race time the row becomes available
+     * @param json      The row
+     * @return The row
+     */
+    private Row row(Instant date, Instant published, JSONObject json) {
+        if (published.isAfter(lastPublished)) {
+            lastPublished = published;
+        }
+        return new Row(date, published, json.toString());
+    }
+
+    /**
+     * Gets a recorded response that must be there.
+     *
+     * @param recorded The cache of recorded responses
+     * @param url      The URL of the response
+     * @return The response body
+     * @throws IOException If the response was not recorded
+     */
+    private static String require(ResponseCache recorded, String url) throws IOException {
+        String body = recorded.get(url);
+        if (body == null) {
+            throw new IOException("No recorded response for " + url);
+        }
+        return body;
+    }
+
+    /**
+     * Answers a request with the rows released so far that match its date filter.
+     *
+     * @param exchange The request and its response
+     * @throws IOException If the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        Instant since = race.getRaceStartTime().minusSeconds(3600);
+        boolean sameSession = false;
+        for (String part : query == null ? new String[0] : query.split("&")) {
+            String parameter = URLDecoder.decode(part, StandardCharsets.UTF_8);
+            if (parameter.equals("session_key=" + race.getSessionKey())) {
+                sameSession = true;
+            } else if (parameter.startsWith("date_start>=") || parameter.startsWith("date>=")) {
+                since = Instant.parse(parameter.substring(parameter.indexOf(">=") + 2));
+            }
+        }
+
+        int status = 200;
+        String body;
+        if (!sameSession) {
+            status = 404;
+            body = "{\"detail\": \"No results found.\"}";
+        } else if (path.endsWith("/drivers")) {
+            body = drivers;
+        } else if (path.endsWith("/laps")) {
+            body = released(laps, since);
+        } else if (path.endsWith("/pit")) {
+            body = released(pits, since);
+        } else {
+            status = 404;
+            body = "{\"detail\": \"No results found.\"}";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bytesServed.addAndGet(bytes.length);
+    }
+
+    /**
+     * Builds the JSON array of the rows released by now and dated at or after an instant.
+     *
+     * @param rows  The recorded rows
+     * @param since The earliest date to include
+     * @return The JSON array
+     */
+    private String released(List<Row> rows, Instant since) {
+        Instant now = now();
+        StringBuilder json = new StringBuilder("[");
+        for (Row row : rows) {
+            if (!row.date().isBefore(since) && !row.published().isAfter(now)) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append(row.json());
+            }
+        }
+        return json.append(']').toString();
+    }
+}
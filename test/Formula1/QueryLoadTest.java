@@ -0,0 +1,216 @@
+package Formula1;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * This QueryLoadTest class measures how many requests per second a QueryServer answers and how long
+ * the slowest of them take, with the server fetching from a StubOpenF1Server on this machine.
+ *
+ * The test first requests every endpoint of a season once, which shows the cost of building each
+ * response from the stub, then has a number of clients request random endpoints as fast as they can
+ * for a while. A share of the requests sends the ETag of the previous response to the same path, as a
+ * polling client would, and is answered with an empty 304. It reports requests per second and the
+ * 50th, 99th, and 99.9th percentile latency of the 200 and 304 responses separately.
+ *
+ * Usage: QueryLoadTest [--fixtures=DIR] [--year=2024] [--clients=16] [--seconds=10]
+ * [--etag-share=0.5] [--latency=MS] [--server-threads=N]
+ */
+public class QueryLoadTest {
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final String baseURL;
+    private final List<String> paths = new ArrayList<>();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a load test of a running server.
+     *
+     * @param baseURL The address of the server
+     */
+    public QueryLoadTest(String baseURL) {
+        this.baseURL = baseURL;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path fixtures = null;
+        int year = 2024, clients = 16, seconds = 10, serverThreads = 0;
+        double etagShare = 0.5;
+        long latency = 20;
+        for (String arg : args) {
+            if (arg.startsWith("--fixtures=")) {
+                fixtures = Paths.get(arg.substring("--fixtures=".length()));
+            } else if (arg.startsWith("--year=")) {
+                year = Integer.parseInt(arg.substring("--year=".length()));
+            } else if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(arg.substring("--clients=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            } else if (arg.startsWith("--etag-share=")) {
+                etagShare = Double.parseDouble(arg.substring("--etag-share=".length()));
+            } else if (arg.startsWith("--latency=")) {
+                latency = Long.parseLong(arg.substring("--latency=".length()));
+            } else if (arg.startsWith("--server-threads=")) {
+                serverThreads = Integer.parseInt(arg.substring("--server-threads=".length()));
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+        if (fixtures == null) {
+            fixtures = Files.createTempDirectory("f1-fixtures");
+            FixtureGenerator.write(fixtures, year, 22, year);
+        }
+
+        StubOpenF1Server stub = new StubOpenF1Server(new ResponseCache(fixtures, true), 0);
+        stub.setLatency(latency, 0);
+        stub.start();
+        // No response cache or snapshots, so every response the server builds is fetched from the stub
+        DataSource data = new DataSource(new API(stub.getBaseURL(), null), Files.createTempDirectory("f1-none"));
+        QueryServer server = new QueryServer(data, 0, serverThreads);
+        server.start();
+        try {
+            QueryLoadTest test = new QueryLoadTest("http://localhost:" + server.getPort());
+            test.cold(year);
+            test.run(clients, seconds, etagShare);
+        } finally {
+            server.stop();
+            stub.stop();
+        }
+    }
+
+    /**
+     * Requests every endpoint of a season once, when none of the responses are built yet, and prints
+     * how long each took. The races of the season become the paths the load run requests.
+     *
+     * @param year The year of the season
+     * @throws IOException          If a request fails
+     * @throws InterruptedException If interrupted while waiting for a response
+     */
+    public void cold(int year) throws IOException, InterruptedException {
+        paths.clear();
+        paths.add("/seasons");
+        paths.add("/seasons/" + year + "/races");
+        long raceNanos = 0;
+        for (String path : List.copyOf(paths)) {
+            coldRequest(path);
+        }
+        for (Object race : new JSONArray(get(paths.get(1), false).body())) {
+            String path = "/seasons/" + year + "/races/" + ((JSONObject) race).getInt("session_key");
+            long start = System.nanoTime();
+            get(path, false);
+            raceNanos += System.nanoTime() - start;
+            paths.add(path);
+        }
+        System.out.printf(Locale.ROOT, "cold %-32s      %8.1f ms mean of %d races%n",
+            "/seasons/" + year + "/races/{key}", raceNanos / 1e6 / (paths.size() - 2), paths.size() - 2);
+        String analytics = "/seasons/" + year + "/analytics";
+        coldRequest(analytics);
+        paths.add(analytics);
+    }
+
+    /**
+     * Requests a path and prints how long it took.
+     *
+     * @param path The path to request
+     * @throws IOException          If the request fails
+     * @throws InterruptedException If interrupted while waiting for the response
+     */
+    private void coldRequest(String path) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<String> response = get(path, false);
+        System.out.printf(Locale.ROOT, "cold %-32s %d  %8.1f ms  %7d bytes%n", path, response.statusCode(),
+            (System.nanoTime() - start) / 1e6, response.body().length());
+    }
+
+    /**
+     * Has clients request random paths for a while and prints the throughput and latency.
+     *
+     * @param clients   The number of clients requesting at the same time
+     * @param seconds   How long to run for
+     * @param etagShare The share of requests that send the ETag of the last response to their path
+     * @throws InterruptedException If interrupted while waiting for the clients
+     */
+    public void run(int clients, int seconds, double etagShare) throws InterruptedException {
+        Metrics metrics = new Metrics();
+        LongAdder errors = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            SplittableRandom random = new SplittableRandom(c);
+            pool.execute(() -> {
+                while (System.nanoTime() < end) {
+                    String path = paths.get(random.nextInt(paths.size()));
+                    long start = System.nanoTime();
+                    try {
+                        int status = get(path, random.nextDouble() < etagShare).statusCode();
+                        metrics.timer(String.valueOf(status)).stop(start);
+                    } catch (IOException e) {
+                        errors.increment();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+
+        System.out.printf(Locale.ROOT, "%d clients for %d s, %.0f%% with If-None-Match%n", clients, seconds,
+            etagShare * 100);
+        System.out.println("status  requests    req/s   p50 ms   p99 ms  p999 ms   max ms");
+        long total = 0;
+        for (String status : List.of("200", "304", "404", "500", "502")) {
+            Metrics.Timer timer = metrics.timer(status);
+            if (timer.getCount() == 0) {
+                continue;
+            }
+            total += timer.getCount();
+            System.out.printf(Locale.ROOT, "%6s  %8d  %7.0f  %7.2f  %7.2f  %7.2f  %7.2f%n", status, timer.getCount(),
+                timer.getCount() / (double) seconds, timer.percentile(0.50) / 1e6, timer.percentile(0.99) / 1e6,
+                timer.percentile(0.999) / 1e6, timer.getMax() / 1e6);
+        }
+        System.out.printf(Locale.ROOT, " total  %8d  %7.0f  (%d failed)%n", total, total / (double) seconds,
+            errors.sum());
+    }
+
+    /**
+     * Requests a path, remembering the ETag of the response.
+     *
+     * @param path        The path to request
+     * @param conditional true to send the ETag of the last response to the path, if there was one
+     * @return The response
+     * @throws IOException          If the request fails
+     * @throws InterruptedException If interrupted while waiting for the response
+     */
+    private HttpResponse<String> get(String path, boolean conditional) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseURL + path)).GET();
+        String etag = etags.get(path);
+        if (conditional && etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        response.headers().firstValue("ETag").ifPresent(tag -> etags.put(path, tag));
+        return response;
+    }
+}
@@ -0,0 +1,202 @@
+package Formula1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This StubOpenF1Server class is a local stand-in for the OpenF1 API that answers requests with the
+ * responses stored in a response cache directory, either recorded from the real API or written by
+ * FixtureGenerator.
+ *
+ * Every response can be delayed by a fixed latency plus random jitter, and a share of the requests
+ * can be made to fail with a server error, to see how the ingest copes with a slow or unreliable
+ * network. Requests with no stored response get a 404 like the real API.
+ */
+public class StubOpenF1Server {
+    private final ResponseCache responses;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-openf1");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long latencyMillis, jitterMillis;
+    private volatile double failureRate;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final Set<String> served = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a server for the responses in a cache, listening on a local port.
+     *
+     * @param responses The cache of responses to serve
+     * @param port      The port to listen on, or 0 for any free port
+     * @throws IOException If the port cannot be opened
+     */
+    public StubOpenF1Server(ResponseCache responses, int port) throws IOException {
+        this.responses = responses;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server and its threads.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the base URL to give to the API so its requests come to this server.
+     *
+     * @return The URL of the server, without a trailing slash
+     */
+    public String getBaseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Sets how long each response is delayed.
+     *
+     * @param latencyMillis The delay of every response in milliseconds
+     * @param jitterMillis  The most extra random delay added to a response in milliseconds
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Sets the share of requests answered with a server error.
+     *
+     * @param failureRate The probability between 0 and 1 that a request fails
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Gets the number of requests received.
+     *
+     * @return The number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of requests made to fail on purpose.
+     *
+     * @return The number of injected failures
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Gets the number of requests that had no stored response.
+     *
+     * @return The number of 404 responses
+     */
+    public long getMissingCount() {
+        return missing.get();
+    }
+
+    /**
+     * Gets the number of response body bytes sent.
+     *
+     * @return The number of bytes
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Gets the number of different requests answered with a stored response.
+     *
+     * @return The number of distinct paths and queries served
+     */
+    public long getDistinctCount() {
+        return served.size();
+    }
+
+    /**
+     * Gets the number of requests for a stored response that had already been served before.
+     *
+     * @return The number of repeated downloads
+     */
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * Answers a request with its stored response after the configured delay.
+     *
+     * @param exchange The request and its response
+     * @throws IOException If the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int status;
+        String body;
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            failures.incrementAndGet();
+            status = 500;
+            body = "{\"detail\": \"Injected failure\"}";
+        } else {
+            // The cache is keyed by path and query only, so the host of the URL does not matter
+            body = responses.get(API.OPENF1_URL + exchange.getRequestURI());
+            status = 200;
+            if (body == null) {
+                missing.incrementAndGet();
+                status = 404;
+                body = "{\"detail\": \"No results found.\"}";
+            } else if (!served.add(exchange.getRequestURI().toString())) {
+                duplicates.incrementAndGet();
+            }
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bytesServed.addAndGet(bytes.length);
+    }
+}
@@ -0,0 +1,300 @@
+package Formula1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This TelemetryFixtureServer class is a local stand-in for OpenF1's car_data endpoint, making up the
+ * speed samples of every car in a recorded race as they are requested.
+ *
+ * A sample is made for every car every 270 ms, like the real data, from the start of the race to the
+ * end of the car's last lap. On track the speed goes up and down between 110 and 310 km/h. From the
+ * date of each recorded pit stop for its pit duration the car is in the pit lane at 78 to 80 km/h,
+ * stopping for two to four seconds part way along. The samples only depend on the car and the time,
+ * so a window and a whole race agree, and nothing is kept in memory: responses are written row by row
+ * as they are made. The date&gt;= and date&lt;= filters narrow the samples to a window; without them
+ * the whole race is sent.
+ */
+public class TelemetryFixtureServer {
+    public static final long SAMPLE_MILLIS = 270;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "telemetry-fixtures");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Integer, RaceCars> races = new HashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rowsServed = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    /**
+     * The pit lane of one recorded stop.
+     *
+     * @param lap        The lap of the stop
+     * @param entry      The time the car entered the pit lane
+     * @param exit       The time the car left the pit lane
+     * @param stopStart  The time the car stopped in its box
+     * @param stopEnd    The time the car pulled away
+     */
+    public record PitLane(int lap, Instant entry, Instant exit, Instant stopStart, Instant stopEnd) {
+    }
+
+    /**
+     * The cars of one race: when each car's data ends and its pit lanes.
+     *
+     * @param start  The start of the race
+     * @param finish The end of each car's last lap, by driver number
+     * @param lanes  The pit lanes of each car, by driver number
+     */
+    private record RaceCars(Instant start, Map<Integer, Instant> finish, Map<Integer, List<PitLane>> lanes) {
+    }
+
+    /**
+     * Constructs a server for the races of a recorded season, listening on a local port.
+     *
+     * @param recorded The cache holding the season, drivers, laps, and pit responses
+     * @param year     The year of the season
+     * @param port     The port to listen on, or 0 for any free port
+     * @throws IOException If the port cannot be opened
+     */
+    public TelemetryFixtureServer(ResponseCache recorded, int year, int port) throws IOException {
+        API urls = new API(recorded);
+        for (Race race : urls.getSeasonRaces(year)) {
+            int sessionKey = race.getSessionKey();
+            String drivers = recorded.get(urls.getDriversURL(sessionKey));
+            String pits = recorded.get(urls.getPitURL(sessionKey));
+            if (drivers == null || pits == null) {
+                continue;
+            }
+            Map<Integer, Instant> finish = new HashMap<>();
+            JSONArray driverArray = new JSONArray(drivers);
+            for (int d = 0; d < driverArray.length(); d++) {
+                int number = driverArray.getJSONObject(d).getInt("driver_number");
+                String laps = recorded.get(urls.getLapsURL(sessionKey, number));
+                JSONArray lapArray = new JSONArray(laps == null ? "[]" : laps);
+                Instant end = race.getRaceStartTime();
+                for (int i = 0; i < lapArray.length(); i++) {
+                    JSONObject lap = lapArray.getJSONObject(i);
+                    double seconds = lap.isNull("lap_duration") ? 0 : lap.getDouble("lap_duration");
+                    Instant lapEnd = OffsetDateTime.parse(lap.getString("date_start")).toInstant()
+                        .plusMillis((long) (seconds * 1000));
+                    if (lapEnd.isAfter(end)) {
+                        end = lapEnd;
+                    }
+                }
+                finish.put(number, end);
+            }
+            Map<Integer, List<PitLane>> lanes = new HashMap<>();
+            for (Pitstop pitstop : urls.decodePitstops(new JSONArray(pits))) {
+                lanes.computeIfAbsent(pitstop.getDriversID(), driver -> new ArrayList<>()).add(lane(pitstop));
+            }
+            races.put(sessionKey, new RaceCars(race.getRaceStartTime(), finish, lanes));
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server and its threads.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the base URL to give to the API so its requests come to this server.
+     *
+     * @return The URL of the server, without a trailing slash
+     */
+    public String getBaseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the pit lanes made up for a car, to check the breakdowns found from its samples.
+     *
+     * @param sessionKey The session key of the race
+     * @param driverID   The number of the driver
+     * @return The pit lanes of the car, in the order of the recorded stops
+     */
+    public List<PitLane> getPitLanes(int sessionKey, int driverID) {
+        RaceCars cars = races.get(sessionKey);
+        return cars == null ? List.of() : cars.lanes().getOrDefault(driverID, List.of());
+    }
+
+    /**
+     * Gets the number of requests received.
+     *
+     * @return The number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of samples sent.
+     *
+     * @return The number of rows
+     */
+    public long getRowsServed() {
+        return rowsServed.get();
+    }
+
+    /**
+     * Gets the number of response body bytes sent.
+     *
+     * @return The number of bytes
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Makes up the pit lane of a recorded stop, with a stop of two to four seconds a little before the
+     * middle of the lane.
+     *
+     * @param pitstop The recorded stop
+     * @return The pit lane
+     */
+    private static PitLane lane(Pitstop pitstop) {
+        long laneMillis = (long) (pitstop.getpitDuration() * 1000);
+        long stopMillis = 2000 + Math.floorMod(noise(pitstop.getDriversID(), pitstop.getLapNum()), 2001);
+        long entryMillis = (long) ((laneMillis - stopMillis) * 0.45);
+        Instant entry = pitstop.getstartPitTime();
+        return new PitLane(pitstop.getLapNum(), entry, entry.plusMillis(laneMillis), entry.plusMillis(entryMillis),
+            entry.plusMillis(entryMillis + stopMillis));
+    }
+
+    /**
+     * Makes up a deterministic number from two others.
+     *
+     * @param a The first number
+     * @param b The second number
+     * @return A number that looks random
+     */
+    private static int noise(long a, long b) {
+        long h = a * 0x9E3779B97F4A7C15L + b * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Makes up the speed of a car at a sample.
+     *
+     * @param cars     The race
+     * @param driverID The number of the driver
+     * @param index    The index of the sample since the start of the race
+     * @param time     The time of the sample
+     * @return The speed in km/h
+     */
+    private static int speed(RaceCars cars, int driverID, long index, Instant time) {
+        for (PitLane lane : cars.lanes().getOrDefault(driverID, List.of())) {
+            if (!time.isBefore(lane.entry()) && time.isBefore(lane.exit())) {
+                if (!time.isBefore(lane.stopStart()) && time.isBefore(lane.stopEnd())) {
+                    return 0;
+                }
+                return 78 + Math.floorMod(noise(driverID, index), 3);
+            }
+        }
+        double phase = (index * SAMPLE_MILLIS % 20_000) / 20_000.0 * 2 * Math.PI;
+        return (int) (210 + 95 * Math.sin(phase + driverID)) + Math.floorMod(noise(driverID, index), 6);
+    }
+
+    /**
+     * Answers a car_data request, writing the samples in the window as they are made.
+     *
+     * @param exchange The request and its response
+     * @throws IOException If the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int sessionKey = -1, driverID = -1;
+        Instant from = Instant.MIN, to = Instant.MAX;
+        String query = exchange.getRequestURI().getRawQuery();
+        for (String part : query == null ? new String[0] : query.split("&")) {
+            String parameter = URLDecoder.decode(part, StandardCharsets.UTF_8);
+            if (parameter.startsWith("session_key=")) {
+                sessionKey = Integer.parseInt(parameter.substring("session_key=".length()));
+            } else if (parameter.startsWith("driver_number=")) {
+                driverID = Integer.parseInt(parameter.substring("driver_number=".length()));
+            } else if (parameter.startsWith("date>=")) {
+                from = Instant.parse(parameter.substring("date>=".length()));
+            } else if (parameter.startsWith("date<=")) {
+                to = Instant.parse(parameter.substring("date<=".length()));
+            }
+        }
+
+        RaceCars cars = races.get(sessionKey);
+        Instant finish = cars == null ? null : cars.finish().get(driverID);
+        if (!exchange.getRequestURI().getPath().endsWith("/car_data") || finish == null) {
+            byte[] body = "{\"detail\": \"No results found.\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        long sinceStart = from.isBefore(cars.start()) ? 0 : Duration.between(cars.start(), from).toMillis();
+        long first = (sinceStart + SAMPLE_MILLIS - 1) / SAMPLE_MILLIS;
+        long bytes = 0, rows = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            out.write('[');
+            for (long index = first;; index++) {
+                Instant time = cars.start().plusMillis(index * SAMPLE_MILLIS);
+                if (time.isAfter(to) || time.isAfter(finish)) {
+                    break;
+                }
+                int speed = speed(cars, driverID, index, time);
+                String row = (rows > 0 ? "," : "") + "{\"brake\":" + (speed < 100 ? 100 : 0)
+                    + ",\"date\":\"" + time.atOffset(ZoneOffset.UTC) + "\",\"driver_number\":" + driverID
+                    + ",\"drs\":0,\"n_gear\":" + Math.max(1, speed / 45) + ",\"rpm\":" + (4000 + speed * 35)
+                    + ",\"session_key\":" + sessionKey + ",\"speed\":" + speed + ",\"throttle\":"
+                    + (speed == 0 ? 0 : 99) + "}";
+                out.write(row);
+                bytes += row.length();
+                rows++;
+            }
+            out.write(']');
+        }
+        rowsServed.addAndGet(rows);
+        bytesServed.addAndGet(bytes + 2);
+    }
+}
@@ -0,0 +1,273 @@
+package Formula1;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.jsoup.Jsoup;
+
+/**
+ * This TelemetryHarness class measures the time and peak heap of breaking down the pit stops of a
+ * race with PitTelemetry, against a TelemetryFixtureServer on this machine, and checks the breakdowns
+ * against the pit lanes the server made up.
+ *
+ * For comparison it also reads the whole race of car data of every car that stopped into a JSONArray
+ * and picks the windows out of it, the way the rest of the API reads responses, and reports the same
+ * measurements for that.
+ *
+ * Usage: TelemetryHarness [--fixtures=DIR] [--year=2024] [--races=2] [--resolution=MS] [--no-baseline]
+ *
+ * Without --fixtures, a synthetic season is generated with FixtureGenerator.
+ */
+public class TelemetryHarness {
+    private final TelemetryFixtureServer server;
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+
+    /**
+     * The measurements of reading the car data of one race.
+     *
+     * @param mode      How the car data was read
+     * @param nanos     The time it took
+     * @param requests  The requests made
+     * @param rows      The samples received
+     * @param bytes     The response bytes received
+     * @param peakHeap  The peak heap use in bytes
+     * @param complete  The number of stops with all three parts found
+     * @param stops     The number of stops
+     * @param meanError The mean difference from the made up pit lanes of the parts found, in seconds
+     */
+    private record RaceResult(String mode, long nanos, long requests, long rows, long bytes, long peakHeap,
+        int complete, int stops, double meanError) {
+    }
+
+    /**
+     * Constructs a harness reading car data from a fixture server.
+     *
+     * @param server The running server
+     */
+    public TelemetryHarness(TelemetryFixtureServer server) {
+        this.server = server;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path fixtures = null;
+        int year = 2024, raceCount = 2;
+        long resolution = PitTelemetry.DEFAULT_RESOLUTION_MILLIS;
+        boolean baseline = true;
+        for (String arg : args) {
+            if (arg.startsWith("--fixtures=")) {
+                fixtures = Paths.get(arg.substring("--fixtures=".length()));
+            } else if (arg.startsWith("--year=")) {
+                year = Integer.parseInt(arg.substring("--year=".length()));
+            } else if (arg.startsWith("--races=")) {
+                raceCount = Integer.parseInt(arg.substring("--races=".length()));
+            } else if (arg.startsWith("--resolution=")) {
+                resolution = Long.parseLong(arg.substring("--resolution=".length()));
+            } else if (arg.equals("--no-baseline")) {
+                baseline = false;
+            } else {
+                System.out.println("Unknown option " + arg);
+                return;
+            }
+        }
+        if (fixtures == null) {
+            fixtures = Files.createTempDirectory("f1-fixtures");
+            FixtureGenerator.write(fixtures, year, raceCount, year);
+        }
+
+        API recorded = new API(new ResponseCache(fixtures, true));
+        TelemetryFixtureServer server = new TelemetryFixtureServer(new ResponseCache(fixtures, true), year, 0);
+        server.start();
+        try {
+            TelemetryHarness harness = new TelemetryHarness(server);
+            List<Race> races = recorded.getSeasonRaces(year);
+            System.out.println("race             mode       s  requests     rows      MB  peak heap MB  complete"
+                + "  error s");
+            for (Race race : races.subList(0, Math.min(raceCount, races.size()))) {
+                RaceData raceData = new RaceData(recorded.fetchDriverInfo(race.getSessionKey()),
+                    recorded.fetchPitInfo(race.getSessionKey()));
+                print(race, harness.streamWindows(race, raceData, resolution));
+                if (baseline) {
+                    print(race, harness.readWholeRaces(race, raceData));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Breaks down the stops of a race with PitTelemetry, streaming a window around each stop.
+     *
+     * @param race       The race
+     * @param raceData   The drivers and pit stops of the race
+     * @param resolution The length of the speed trace buckets
+     * @return The measurements
+     */
+    private RaceResult streamWindows(Race race, RaceData raceData, long resolution) {
+        long[] before = startMeasuring();
+        long start = System.nanoTime();
+        List<PitTelemetry.Breakdown> breakdowns = new PitTelemetry(new API(server.getBaseURL(), null), race,
+            resolution).analyze(raceData);
+        long nanos = System.nanoTime() - start;
+        return finishMeasuring("windows", nanos, before, race, breakdowns);
+    }
+
+    /**
+     * Breaks down the stops of a race by reading the whole race of car data of each car that stopped
+     * into a JSONArray, keeping them all until the race is done.
+     *
+     * @param race     The race
+     * @param raceData The drivers and pit stops of the race
+     * @return The measurements
+     */
+    private RaceResult readWholeRaces(Race race, RaceData raceData) throws IOException {
+        long[] before = startMeasuring();
+        long start = System.nanoTime();
+        List<JSONArray> cars = new ArrayList<>();
+        List<PitTelemetry.Breakdown> breakdowns = new ArrayList<>();
+        for (PriorityQueue<Pitstop> pitstops : raceData.getDriversPitstops().values()) {
+            int driverID = pitstops.peek().getDriversID();
+            String body = Jsoup.connect(server.getBaseURL() + "/v1/car_data?session_key=" + race.getSessionKey()
+                + "&driver_number=" + driverID).ignoreContentType(true).maxBodySize(0).execute().body();
+            JSONArray samples = new JSONArray(body);
+            cars.add(samples);
+            for (Pitstop pitstop : pitstops) {
+                breakdowns.add(breakdown(pitstop, samples));
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        RaceResult result = finishMeasuring("whole race", nanos, before, race, breakdowns);
+        cars.clear();
+        return result;
+    }
+
+    /**
+     * Works out the breakdown of a stop from a whole race of samples in memory, the same way
+     * PitTelemetry does from a window.
+     *
+     * @param pitstop The stop
+     * @param samples The samples of the car
+     * @return The breakdown, without a speed trace
+     */
+    private static PitTelemetry.Breakdown breakdown(Pitstop pitstop, JSONArray samples) {
+        Instant from = pitstop.getstartPitTime().minus(PitTelemetry.PADDING);
+        Instant to = pitstop.getstartPitTime().plusMillis((long) (pitstop.getpitDuration() * 1000))
+            .plus(PitTelemetry.PADDING);
+        Instant slowedAt = null, stoppedAt = null, lastStationary = null, leftAt = null;
+        int lastSpeed = Integer.MAX_VALUE, count = 0;
+        for (int i = 0; i < samples.length(); i++) {
+            JSONObject sample = samples.getJSONObject(i);
+            Instant time = OffsetDateTime.parse(sample.getString("date")).toInstant();
+            if (time.isBefore(from) || time.isAfter(to)) {
+                continue;
+            }
+            count++;
+            int speed = sample.getInt("speed");
+            if (stoppedAt == null) {
+                if (speed <= PitTelemetry.PIT_LANE_KMH && lastSpeed > PitTelemetry.PIT_LANE_KMH) {
+                    slowedAt = time;
+                }
+                if (speed == 0) {
+                    stoppedAt = time;
+                    lastStationary = time;
+                }
+            } else if (leftAt == null) {
+                if (speed == 0) {
+                    lastStationary = time;
+                } else if (speed > PitTelemetry.PIT_LANE_KMH) {
+                    leftAt = time;
+                }
+            }
+            lastSpeed = speed;
+        }
+        if (stoppedAt == null) {
+            return new PitTelemetry.Breakdown(pitstop, Double.NaN, 0, Double.NaN, count, from, 0, new float[0]);
+        }
+        return new PitTelemetry.Breakdown(pitstop, slowedAt == null ? Double.NaN : seconds(slowedAt, stoppedAt),
+            seconds(stoppedAt, lastStationary), leftAt == null ? Double.NaN : seconds(lastStationary, leftAt), count,
+            from, 0, new float[0]);
+    }
+
+    /**
+     * Clears the heap and the server counters before a measurement.
+     *
+     * @return The server's requests, rows, and bytes so far
+     */
+    private long[] startMeasuring() {
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        return new long[] {server.getRequestCount(), server.getRowsServed(), server.getBytesServed()};
+    }
+
+    /**
+     * Collects the measurements of a race and checks its breakdowns against the made up pit lanes.
+     *
+     * @param mode       How the car data was read
+     * @param nanos      The time it took
+     * @param before     The server counters before
+     * @param race       The race
+     * @param breakdowns The breakdowns found
+     * @return The measurements
+     */
+    private RaceResult finishMeasuring(String mode, long nanos, long[] before, Race race,
+        List<PitTelemetry.Breakdown> breakdowns) {
+        long peakHeap = heapPools.stream().mapToLong(heap -> heap.getPeakUsage().getUsed()).sum();
+        int complete = 0, parts = 0;
+        double error = 0;
+        for (PitTelemetry.Breakdown breakdown : breakdowns) {
+            Pitstop pitstop = breakdown.pitstop();
+            TelemetryFixtureServer.PitLane lane = server.getPitLanes(race.getSessionKey(), pitstop.getDriversID())
+                .stream().filter(candidate -> candidate.lap() == pitstop.getLapNum()).findFirst().orElse(null);
+            if (lane == null || !breakdown.isComplete()) {
+                continue;
+            }
+            complete++;
+            error += Math.abs(breakdown.entrySeconds() - seconds(lane.entry(), lane.stopStart()));
+            error += Math.abs(breakdown.stationarySeconds() - seconds(lane.stopStart(), lane.stopEnd()));
+            error += Math.abs(breakdown.exitSeconds() - seconds(lane.stopEnd(), lane.exit()));
+            parts += 3;
+        }
+        return new RaceResult(mode, nanos, server.getRequestCount() - before[0], server.getRowsServed() - before[1],
+            server.getBytesServed() - before[2], peakHeap, complete, breakdowns.size(),
+            parts == 0 ? Double.NaN : error / parts);
+    }
+
+    /**
+     * Measures the time between two instants.
+     *
+     * @param from The earlier instant
+     * @param to   The later instant
+     * @return The time between them in seconds
+     */
+    private static double seconds(Instant from, Instant to) {
+        return Duration.between(from, to).toNanos() / 1e9;
+    }
+
+    /**
+     * Prints one row of the report.
+     *
+     * @param race   The race
+     * @param result The measurements
+     */
+    private static void print(Race race, RaceResult result) {
+        System.out.printf(Locale.ROOT, "%-15s %-10s %6.2f  %8d  %7d  %6.1f  %12.1f  %4d/%-4d  %7.2f%n",
+            race.getCircuitName(), result.mode(), result.nanos() / 1e9, result.requests(), result.rows(),
+            result.bytes() / (1024.0 * 1024.0), result.peakHeap() / (1024.0 * 1024.0), result.complete(),
+            result.stops(), result.meanError());
+    }
+}